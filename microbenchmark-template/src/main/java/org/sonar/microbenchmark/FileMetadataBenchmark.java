@@ -0,0 +1,113 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+
+/**
+ * Indexing of a file by the scanner, followed by the computation of line hashes for issue tracking
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class FileMetadataBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  public int linesNumber;
+
+  FileMetadata fileMetadata = new FileMetadata();
+  File dir;
+  DefaultInputFile inputFile;
+
+  @Setup
+  public void setup() throws Exception {
+    dir = new File(FileUtils.getTempDirectory(), "FileMetadataBenchmark");
+    FileUtils.forceMkdir(dir);
+    File file = new File(dir, "Foo.java");
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < linesNumber; i++) {
+      content.append("    ").append(RandomStringUtils.randomAlphanumeric(60)).append(i % 2 == 0 ? "\n" : "\r\n");
+    }
+    FileUtils.write(file, content, StandardCharsets.UTF_8);
+
+    inputFile = new DefaultInputFile("foo", "Foo.java")
+      .setModuleBaseDir(dir.toPath())
+      .setCharset(StandardCharsets.UTF_8);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(dir);
+  }
+
+  @Benchmark
+  public FileMetadata.Metadata readMetadata() throws Exception {
+    return fileMetadata.readMetadata(inputFile.file(), StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public int readMetadataThenLineHashes() throws Exception {
+    inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), StandardCharsets.UTF_8));
+    final int[] hashedLines = {0};
+    FileMetadata.computeLineHashesForIssueTracking(inputFile, new FileMetadata.LineHashConsumer() {
+      @Override
+      public void consume(int lineIdx, byte[] hash) {
+        hashedLines[0]++;
+      }
+    });
+    return hashedLines[0];
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(FileMetadataBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
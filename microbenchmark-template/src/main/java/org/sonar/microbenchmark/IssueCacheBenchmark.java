@@ -0,0 +1,161 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.issue.DefaultIssueCodec;
+import org.sonar.server.util.cache.DiskCache;
+
+/**
+ * Compares the encodings of the Compute Engine issue cache: Java serialization and {@link DefaultIssueCodec},
+ * with and without LZ4 compression. Size of the cache file is logged at the end of each trial.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+public class IssueCacheBenchmark {
+
+  private static final Logger LOG = Loggers.get(IssueCacheBenchmark.class);
+  private static final int NB_ISSUES = 10_000;
+
+  @Param({"serialization", "codec", "codec_lz4"})
+  public String encoding;
+
+  File file;
+  DefaultIssue[] issues;
+
+  @Setup
+  public void setup() throws Exception {
+    file = File.createTempFile("microbenchmark", ".dat");
+    issues = new DefaultIssue[NB_ISSUES];
+    Date date = new Date();
+    IssueChangeContext context = IssueChangeContext.createScan(date);
+    for (int i = 0; i < NB_ISSUES; i++) {
+      DefaultIssue issue = new DefaultIssue()
+        .setKey("AVQ" + i + "_ISSUE_KEY")
+        .setType(RuleType.CODE_SMELL)
+        .setComponentUuid("AVQ_COMPONENT_" + (i / 10))
+        .setComponentKey("org.sonarsource:project:src/main/java/org/sonar/File" + (i / 10) + ".java")
+        .setModuleUuid("AVQ_MODULE")
+        .setModuleUuidPath(".AVQ_MODULE.")
+        .setProjectUuid("AVQ_PROJECT")
+        .setProjectKey("org.sonarsource:project")
+        .setRuleKey(RuleKey.of("squid", "S" + (i % 300)))
+        .setLanguage("java")
+        .setSeverity(Severity.MAJOR)
+        .setMessage("Remove this unused private field \"field" + i + "\".")
+        .setLine(i % 2000 + 1)
+        .setGap(1.0)
+        .setEffort(Duration.create(5L))
+        .setStatus(Issue.STATUS_OPEN)
+        .setChecksum("7c0e4f9bbd5f5e4c5d8d0f0b5d8a3c2" + (i % 10))
+        .setAuthorLogin("someone")
+        .setCreationDate(date)
+        .setUpdateDate(date)
+        .setTags(Arrays.asList("unused", "pitfall"))
+        .setNew(i % 3 == 0)
+        .setChanged(true);
+      issue.setFieldChange(context, "severity", Severity.MINOR, Severity.MAJOR);
+      issues[i] = issue;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    LOG.info("{}: {} bytes", encoding, file.length());
+    file.delete();
+  }
+
+  @Benchmark
+  public int write_and_read() throws Exception {
+    DiskCache<DefaultIssue> cache = newCache();
+    DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender();
+    for (DefaultIssue issue : issues) {
+      appender.append(issue);
+    }
+    appender.close();
+
+    int count = 0;
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      while (traverse.hasNext()) {
+        traverse.next();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private DiskCache<DefaultIssue> newCache() {
+    switch (encoding) {
+      case "serialization":
+        return new DiskCache<>(file, System2.INSTANCE);
+      case "codec":
+        return new DiskCache<>(file, System2.INSTANCE, new DefaultIssueCodec(), false);
+      case "codec_lz4":
+        return new DiskCache<>(file, System2.INSTANCE, new DefaultIssueCodec(), true);
+      default:
+        throw new IllegalArgumentException(encoding);
+    }
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(IssueCacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.core.issue.tracking.BlockHashSequence;
+import org.sonar.core.issue.tracking.Input;
+import org.sonar.core.issue.tracking.LineHashSequence;
+import org.sonar.core.issue.tracking.Trackable;
+import org.sonar.core.issue.tracking.Tracker;
+import org.sonar.core.issue.tracking.Tracking;
+
+/**
+ * Measures {@link Tracker} on a file with many issues. Lines are shifted between base and raw, and a part of the
+ * messages is changed, so that all the matching passes are exercised.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+public class TrackerBenchmark {
+
+  private static final int NB_LINES = 5_000;
+  private static final int NB_RULES = 300;
+
+  @Param({"1000", "10000", "50000"})
+  public int nbIssues;
+
+  FakeInput rawInput;
+  FakeInput baseInput;
+
+  @Setup
+  public void setup() {
+    List<String> baseLines = new ArrayList<>();
+    List<String> rawLines = new ArrayList<>();
+    for (int line = 0; line < NB_LINES; line++) {
+      baseLines.add("line" + line);
+    }
+    // 10 lines are inserted at the beginning of the raw file
+    for (int line = 0; line < 10; line++) {
+      rawLines.add("new" + line);
+    }
+    rawLines.addAll(baseLines);
+
+    baseInput = new FakeInput(baseLines);
+    rawInput = new FakeInput(rawLines);
+    for (int i = 0; i < nbIssues; i++) {
+      RuleKey ruleKey = RuleKey.of("squid", "S" + (i % NB_RULES));
+      int baseLine = i % NB_LINES + 1;
+      baseInput.addIssue(ruleKey, baseLine, "Message " + i);
+      // one issue out of 5 has a new message
+      rawInput.addIssue(ruleKey, baseLine + 10, i % 5 == 0 ? ("Other message " + i) : ("Message " + i));
+    }
+  }
+
+  @Benchmark
+  public int track() {
+    Tracking<FakeIssue, FakeIssue> tracking = new Tracker<FakeIssue, FakeIssue>().track(rawInput, baseInput);
+    return tracking.getMatchedRaws().size();
+  }
+
+  static class FakeInput implements Input<FakeIssue> {
+    private final LineHashSequence lineHashes;
+    private final BlockHashSequence blockHashes;
+    private final List<FakeIssue> issues = new ArrayList<>();
+
+    FakeInput(List<String> lines) {
+      this.lineHashes = LineHashSequence.createForLines(lines);
+      this.blockHashes = BlockHashSequence.create(lineHashes);
+    }
+
+    void addIssue(RuleKey ruleKey, int line, String message) {
+      issues.add(new FakeIssue(ruleKey, line, lineHashes.getHashForLine(line), message));
+    }
+
+    @Override
+    public LineHashSequence getLineHashSequence() {
+      return lineHashes;
+    }
+
+    @Override
+    public BlockHashSequence getBlockHashSequence() {
+      return blockHashes;
+    }
+
+    @Override
+    public Collection<FakeIssue> getIssues() {
+      return issues;
+    }
+  }
+
+  static class FakeIssue implements Trackable {
+    private final RuleKey ruleKey;
+    private final Integer line;
+    private final String lineHash;
+    private final String message;
+
+    FakeIssue(RuleKey ruleKey, Integer line, String lineHash, String message) {
+      this.ruleKey = ruleKey;
+      this.line = line;
+      this.lineHash = lineHash;
+      this.message = message;
+    }
+
+    @CheckForNull
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public String getMessage() {
+      return message;
+    }
+
+    @CheckForNull
+    @Override
+    public String getLineHash() {
+      return lineHash;
+    }
+
+    @Override
+    public RuleKey getRuleKey() {
+      return ruleKey;
+    }
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(TrackerBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -60,6 +60,8 @@ import static org.sonar.process.ProcessCommands.MAX_PROCESSES;
  *   <li>Fourth byte will always contain {@link #EMPTY} unless process declares that it is operational by writing {@link #OPERATIONAL}.
  *       This does not imply that is done starting.</li>
  *   <li>The next 8 bytes contains a long (value of {@link System#currentTimeMillis()}) which represents the date of the last ping</li>
+ *   <li>The next {@link #SYSTEM_INFO_URL_SIZE_IN_BYTES} bytes contains the URL of the System Info JMX bean</li>
+ *   <li>The next 8 bytes contains a long which is incremented each time any process asks current one to wake up</li>
  * </ul>
  * </p>
  */
@@ -72,8 +74,9 @@ public class AllProcessesCommands implements AutoCloseable {
   private static final int SYSTEM_INFO_URL_BYTE_OFFSET = PING_BYTE_OFFSET + 8;
 
   private static final int SYSTEM_INFO_URL_SIZE_IN_BYTES = 500;
+  private static final int WAKE_UP_BYTE_OFFSET = SYSTEM_INFO_URL_BYTE_OFFSET + SYSTEM_INFO_URL_SIZE_IN_BYTES;
 
-  private static final int BYTE_LENGTH_FOR_ONE_PROCESS = 1 + 1 + 1 + 1 + 8 + SYSTEM_INFO_URL_SIZE_IN_BYTES;
+  private static final int BYTE_LENGTH_FOR_ONE_PROCESS = 1 + 1 + 1 + 1 + 8 + SYSTEM_INFO_URL_SIZE_IN_BYTES + 8;
 
   // With this shared memory we can handle up to MAX_PROCESSES processes
   private static final int MAX_SHARED_MEMORY = BYTE_LENGTH_FOR_ONE_PROCESS * MAX_PROCESSES;
@@ -184,6 +187,17 @@ public class AllProcessesCommands implements AutoCloseable {
     writeByte(processNumber, RESTART_BYTE_OFFSET, EMPTY);
   }
 
+  /**
+   * Increment is not atomic across processes, so concurrent requests may be counted once.
+   */
+  synchronized void askForWakeUp(int processNumber) {
+    writeLong(processNumber, WAKE_UP_BYTE_OFFSET, readLong(processNumber, WAKE_UP_BYTE_OFFSET) + 1);
+  }
+
+  long getWakeUpCount(int processNumber) {
+    return readLong(processNumber, WAKE_UP_BYTE_OFFSET);
+  }
+
   @Override
   public void close() {
     IOUtils.closeQuietly(sharedMemory);
@@ -311,6 +325,16 @@ public class AllProcessesCommands implements AutoCloseable {
       AllProcessesCommands.this.acknowledgeAskForRestart(processNumber);
     }
 
+    @Override
+    public void askForWakeUp() {
+      AllProcessesCommands.this.askForWakeUp(processNumber);
+    }
+
+    @Override
+    public long getWakeUpCount() {
+      return AllProcessesCommands.this.getWakeUpCount(processNumber);
+    }
+
     @Override
     public void endWatch() {
       throw new UnsupportedOperationException("ProcessCommands created from AllProcessesCommands can not be closed directly. Close AllProcessesCommands instead");
@@ -126,6 +126,16 @@ public class DefaultProcessCommands implements ProcessCommands {
     delegate.acknowledgeAskForRestart();
   }
 
+  @Override
+  public void askForWakeUp() {
+    delegate.askForWakeUp();
+  }
+
+  @Override
+  public long getWakeUpCount() {
+    return delegate.getWakeUpCount();
+  }
+
   @Override
   public void endWatch() {
     try {
@@ -81,5 +81,15 @@ public interface ProcessCommands extends AutoCloseable {
    */
   void acknowledgeAskForRestart();
 
+  /**
+   * Can be executed by any process to notify the process that it has some work to do.
+   */
+  void askForWakeUp();
+
+  /**
+   * Number of times the process has been asked to wake up. Only variations of this number are meaningful.
+   */
+  long getWakeUpCount();
+
   void endWatch();
 }
@@ -163,6 +163,21 @@ public class AllProcessesCommandsTest {
     assertThat(commands.askedForRestart(PROCESS_NUMBER)).isFalse();
   }
 
+  @Test
+  public void ask_for_wake_up() throws Exception {
+    AllProcessesCommands commands = new AllProcessesCommands(temp.newFolder());
+    int offset = 512;
+
+    assertThat(readLong(commands, offset)).isEqualTo(0L);
+    assertThat(commands.getWakeUpCount(PROCESS_NUMBER)).isEqualTo(0L);
+
+    commands.askForWakeUp(PROCESS_NUMBER);
+    commands.askForWakeUp(PROCESS_NUMBER);
+    assertThat(commands.getWakeUpCount(PROCESS_NUMBER)).isEqualTo(2L);
+    assertThat(readLong(commands, offset)).isEqualTo(2L);
+    assertThat(commands.getWakeUpCount(PROCESS_NUMBER + 1)).isEqualTo(0L);
+  }
+
   @Test
   public void getProcessCommands_fails_if_processNumber_is_less_than_0() throws Exception {
     AllProcessesCommands allProcessesCommands = new AllProcessesCommands(temp.newFolder());
@@ -129,6 +129,18 @@ public class DefaultProcessCommandsTest {
     assertThat(commands.askedForRestart()).isFalse();
   }
 
+  @Test
+  public void ask_for_wake_up_is_visible_from_secondary_commands() throws Exception {
+    File dir = temp.newFolder();
+
+    DefaultProcessCommands main = DefaultProcessCommands.main(dir, PROCESS_NUMBER);
+    DefaultProcessCommands secondary = DefaultProcessCommands.secondary(dir, PROCESS_NUMBER);
+    assertThat(main.getWakeUpCount()).isEqualTo(0L);
+
+    secondary.askForWakeUp();
+    assertThat(main.getWakeUpCount()).isEqualTo(1L);
+  }
+
   @Test
   public void main_fails_if_processNumber_is_less_than_0() throws Exception {
     int processNumber = -2;
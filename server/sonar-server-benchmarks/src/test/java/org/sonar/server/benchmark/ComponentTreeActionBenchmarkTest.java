@@ -0,0 +1,168 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import java.lang.management.ManagementFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.measures.Metric.ValueType;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.server.ws.WebService.Param;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.core.util.Uuids;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ResourceTypesRule;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.metric.MetricDto;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.i18n.I18nRule;
+import org.sonar.server.measure.ws.ComponentTreeAction;
+import org.sonar.server.measure.ws.ComponentTreeDataLoader;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.WsActionTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.db.component.SnapshotTesting.createForComponent;
+import static org.sonar.db.component.SnapshotTesting.newSnapshotForProject;
+import static org.sonar.db.measure.MeasureTesting.newMeasureDto;
+import static org.sonar.db.metric.MetricTesting.newMetricDto;
+
+/**
+ * Memory allocated and duration of a request to api/measures/component_tree sorted by the value of a metric, for
+ * projects of growing size. Only the requested page of components is loaded, so memory must not depend on the
+ * number of files of the project.
+ */
+public class ComponentTreeActionBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkComponentTree");
+
+  private static final int SMALL_PROJECT_FILES = 1_000;
+  private static final int LARGE_PROJECT_FILES = 20_000;
+  private static final int REQUESTS = 20;
+  private static final int BATCH_SIZE = 1_000;
+  // absolute bound, as the duration of a request on the small project is too short to be compared with
+  private static final long MAX_DURATION_MS = 1_000L;
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public UserSessionRule userSession = UserSessionRule.standalone();
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  ResourceTypesRule resourceTypes = new ResourceTypesRule();
+  DbClient dbClient = dbTester.getDbClient();
+  WsActionTester ws = new WsActionTester(new ComponentTreeAction(
+    new ComponentTreeDataLoader(dbClient, new ComponentFinder(dbClient), userSession, resourceTypes),
+    userSession, new I18nRule(), resourceTypes));
+
+  @Test
+  public void benchmark() {
+    resourceTypes.setLeavesQualifiers(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
+    MetricDto ncloc = newMetricDto().setKey("ncloc").setValueType(ValueType.INT.name()).setOptimizedBestValue(false).setEnabled(true);
+    dbClient.metricDao().insert(dbTester.getSession(), ncloc);
+    dbTester.commit();
+
+    String smallProjectUuid = insertProject(ncloc, SMALL_PROJECT_FILES);
+    String largeProjectUuid = insertProject(ncloc, LARGE_PROJECT_FILES);
+
+    RequestStats small = benchmarkRequests(smallProjectUuid, SMALL_PROJECT_FILES);
+    RequestStats large = benchmarkRequests(largeProjectUuid, LARGE_PROJECT_FILES);
+
+    // 20 times more files, but the same page of 100 components and their measures. Allocations include the ones of
+    // the embedded H2 database when sorting the rows.
+    benchmark.expectBetween("Bytes allocated per request on the large project", large.allocatedBytes, 0L, 3L * small.allocatedBytes);
+    benchmark.expectBetween("Duration of a request on the large project", large.durationMs, 0L, MAX_DURATION_MS);
+  }
+
+  private String insertProject(MetricDto metric, int files) {
+    LOGGER.info("Insert project with {} files", files);
+    DbSession dbSession = dbTester.getSession();
+    ComponentDto project = newProjectDto(Uuids.create());
+    dbClient.componentDao().insert(dbSession, project);
+    SnapshotDto projectSnapshot = newSnapshotForProject(project);
+    dbClient.snapshotDao().insert(dbSession, projectSnapshot);
+    for (int i = 1; i <= files; i++) {
+      ComponentDto file = newFileDto(project, Uuids.create()).setName("File" + i);
+      dbClient.componentDao().insert(dbSession, file);
+      SnapshotDto fileSnapshot = createForComponent(file, projectSnapshot);
+      dbClient.snapshotDao().insert(dbSession, fileSnapshot);
+      dbClient.measureDao().insert(dbSession, newMeasureDto(metric, fileSnapshot.getId()).setComponentId(file.getId()).setValue((double) (i % 1_000)));
+      if (i % BATCH_SIZE == 0) {
+        dbSession.commit();
+      }
+    }
+    dbSession.commit();
+    userSession.addProjectUuidPermissions(UserRole.USER, project.uuid());
+    return project.uuid();
+  }
+
+  private RequestStats benchmarkRequests(String projectUuid, int files) {
+    com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    // warm-up
+    call(projectUuid, files);
+
+    long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < REQUESTS; i++) {
+      call(projectUuid, files);
+    }
+    RequestStats stats = new RequestStats(
+      (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes) / REQUESTS,
+      (System.currentTimeMillis() - start) / REQUESTS);
+    LOGGER.info("Project with {} files: {} bytes allocated and {} ms per request", files, stats.allocatedBytes, stats.durationMs);
+    return stats;
+  }
+
+  private void call(String projectUuid, int files) {
+    String response = ws.newRequest()
+      .setParam("baseComponentId", projectUuid)
+      .setParam("metricKeys", "ncloc")
+      .setParam("strategy", "leaves")
+      .setParam(Param.SORT, "metric")
+      .setParam("metricSort", "ncloc")
+      .setParam(Param.ASCENDING, "false")
+      .setParam(Param.PAGE_SIZE, "100")
+      .setMediaType("application/json")
+      .execute()
+      .getInput();
+    assertThat(response).contains("\"total\":" + files);
+  }
+
+  private static class RequestStats {
+    private final long allocatedBytes;
+    private final long durationMs;
+
+    private RequestStats(long allocatedBytes, long durationMs) {
+      this.allocatedBytes = allocatedBytes;
+      this.durationMs = durationMs;
+    }
+  }
+}
@@ -44,6 +44,7 @@ import org.sonar.server.computation.batch.BatchReportReaderImpl;
 import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 import org.sonar.server.computation.duplication.Duplicate;
 import org.sonar.server.computation.duplication.Duplication;
 import org.sonar.server.computation.duplication.DuplicationRepositoryRule;
@@ -76,6 +77,8 @@ public class PersistFileSourcesStepTest {
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule();
   @Rule
   public DuplicationRepositoryRule duplicationRepository = DuplicationRepositoryRule.create(treeRootHolder);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   @Test
   public void benchmark() throws Exception {
@@ -97,7 +100,7 @@ public class PersistFileSourcesStepTest {
     SourceHashRepositoryImpl sourceHashRepository = new SourceHashRepositoryImpl(sourceLinesRepository);
     ScmInfoRepositoryImpl scmInfoRepository = new ScmInfoRepositoryImpl(ScannerReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
     PersistFileSourcesStep step = new PersistFileSourcesStep(dbClient, System2.INSTANCE, treeRootHolder, ScannerReportReader, sourceLinesRepository, scmInfoRepository,
-      duplicationRepository);
+      duplicationRepository, ceConfiguration);
     step.execute();
 
     long end = System.currentTimeMillis();
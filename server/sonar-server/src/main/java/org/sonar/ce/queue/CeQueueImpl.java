@@ -80,6 +80,7 @@ public class CeQueueImpl implements CeQueue {
       CeQueueDto dto = new CeTaskSubmitToInsertedCeQueueDto(dbSession, dbClient).apply(submission);
       CeTask task = loadTask(dbSession, dto);
       dbSession.commit();
+      notifySubmitted(Collections.singletonList(task));
       return task;
 
     } finally {
@@ -101,6 +102,7 @@ public class CeQueueImpl implements CeQueue {
         .toList();
       List<CeTask> tasks = loadTasks(dbSession, ceQueueDtos);
       dbSession.commit();
+      notifySubmitted(tasks);
       return tasks;
 
     } finally {
@@ -108,6 +110,12 @@ public class CeQueueImpl implements CeQueue {
     }
   }
 
+  private void notifySubmitted(List<CeTask> tasks) {
+    for (CeQueueListener listener : listeners) {
+      listener.onSubmitted(tasks);
+    }
+  }
+
   protected CeTask loadTask(DbSession dbSession, CeQueueDto dto) {
     if (dto.getComponentUuid() == null) {
       return new CeQueueDtoToCeTask().apply(dto);
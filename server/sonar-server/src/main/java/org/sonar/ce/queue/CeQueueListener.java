@@ -19,10 +19,16 @@
  */
 package org.sonar.ce.queue;
 
+import java.util.List;
 import org.sonar.db.ce.CeActivityDto;
 
 public interface CeQueueListener {
 
+  /**
+   * Called once the specified tasks are committed in the queue.
+   */
+  void onSubmitted(List<CeTask> tasks);
+
   void onRemoved(CeTask task, CeActivityDto.Status status);
 
 }
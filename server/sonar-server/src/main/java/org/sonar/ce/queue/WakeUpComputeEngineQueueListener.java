@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.List;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.ce.CeActivityDto;
+import org.sonar.server.app.ProcessCommandWrapper;
+
+/**
+ * Asks the Compute Engine process to wake up its idle workers as soon as tasks are submitted, rather than waiting
+ * for them to poll the queue.
+ */
+public class WakeUpComputeEngineQueueListener implements CeQueueListener {
+  private static final Logger LOG = Loggers.get(WakeUpComputeEngineQueueListener.class);
+
+  private final ProcessCommandWrapper processCommandWrapper;
+
+  public WakeUpComputeEngineQueueListener(ProcessCommandWrapper processCommandWrapper) {
+    this.processCommandWrapper = processCommandWrapper;
+  }
+
+  @Override
+  public void onSubmitted(List<CeTask> tasks) {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    try {
+      processCommandWrapper.notifyCeTasksSubmitted();
+    } catch (RuntimeException e) {
+      // tasks will be processed when workers poll the queue
+      LOG.debug("Failed to notify Compute Engine of submitted tasks", e);
+    }
+  }
+
+  @Override
+  public void onRemoved(CeTask task, CeActivityDto.Status status) {
+    // nothing to do
+  }
+}
@@ -30,4 +30,9 @@ public interface ProcessCommandWrapper {
    */
   void notifyOperational();
 
+  /**
+   * Notifies the Compute Engine that new tasks are available in its queue.
+   */
+  void notifyCeTasksSubmitted();
+
 }
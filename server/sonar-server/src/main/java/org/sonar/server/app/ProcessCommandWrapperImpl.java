@@ -23,6 +23,7 @@ import java.io.File;
 import org.sonar.api.config.Settings;
 import org.sonar.process.DefaultProcessCommands;
 import org.sonar.process.ProcessCommands;
+import org.sonar.process.ProcessId;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.sonar.process.ProcessEntryPoint.PROPERTY_PROCESS_INDEX;
@@ -45,6 +46,11 @@ public class ProcessCommandWrapperImpl implements ProcessCommandWrapper {
     call(VoidMethod.SET_OPERATIONAL, selfProcessNumber());
   }
 
+  @Override
+  public void notifyCeTasksSubmitted() {
+    call(VoidMethod.ASK_FOR_WAKE_UP, ProcessId.COMPUTE_ENGINE.getIpcIndex());
+  }
+
   private int selfProcessNumber() {
     return nonNullAsInt(PROPERTY_PROCESS_INDEX);
   }
@@ -70,6 +76,13 @@ public class ProcessCommandWrapperImpl implements ProcessCommandWrapper {
         processCommands.askForRestart();
         return null;
       }
+    },
+    ASK_FOR_WAKE_UP() {
+      @Override
+      <T> T callOn(ProcessCommands processCommands) {
+        processCommands.askForWakeUp();
+        return null;
+      }
     };
     abstract <T> T callOn(ProcessCommands processCommands);
   }
@@ -38,6 +38,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.user.ExternalIdentity;
 import org.sonar.server.user.NewUser;
 import org.sonar.server.user.UpdateUser;
@@ -53,10 +54,12 @@ public class UserIdentityAuthenticator {
 
   private final DbClient dbClient;
   private final UserUpdater userUpdater;
+  private final AuthorizedProjectsCache authorizedProjectsCache;
 
-  public UserIdentityAuthenticator(DbClient dbClient, UserUpdater userUpdater) {
+  public UserIdentityAuthenticator(DbClient dbClient, UserUpdater userUpdater, AuthorizedProjectsCache authorizedProjectsCache) {
     this.dbClient = dbClient;
     this.userUpdater = userUpdater;
+    this.authorizedProjectsCache = authorizedProjectsCache;
   }
 
   public void authenticate(UserIdentity user, IdentityProvider provider, HttpSession session) {
@@ -130,6 +133,9 @@ public class UserIdentityAuthenticator {
       removeGroups(dbSession, userDto, groupsToRemove, groupsByName);
 
       dbSession.commit();
+      if (!groupsToRemove.isEmpty()) {
+        authorizedProjectsCache.clear();
+      }
     }
   }
 
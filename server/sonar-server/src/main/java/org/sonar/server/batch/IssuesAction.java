@@ -21,6 +21,7 @@ package org.sonar.server.batch;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +47,7 @@ import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
 public class IssuesAction implements BatchWsAction {
 
   private static final String PARAM_KEY = "key";
+  private static final String PARAM_SINCE = "since";
 
   private final DbClient dbClient;
   private final IssueIndex issueIndex;
@@ -73,11 +75,19 @@ public class IssuesAction implements BatchWsAction {
       .setRequired(true)
       .setDescription("Project, module or file key")
       .setExampleValue(KEY_PROJECT_EXAMPLE_001);
+
+    action
+      .createParam(PARAM_SINCE)
+      .setDescription("If set, only the issues updated since this date are returned, including the closed ones. " +
+        "It allows to update the issues previously returned by this web service.")
+      .setSince("6.0")
+      .setExampleValue("2016-05-01T13:00:00+0100");
   }
 
   @Override
   public void handle(Request request, Response response) throws Exception {
     String componentKey = request.mandatoryParam(PARAM_KEY);
+    Date since = request.paramAsDateTime(PARAM_SINCE);
     userSession.checkComponentPermission(USER, componentKey);
 
     response.stream().setMediaType(MediaTypes.PROTOBUF);
@@ -87,7 +97,7 @@ public class IssuesAction implements BatchWsAction {
       Map<String, String> keysByUUid = keysByUUid(session, component);
 
       ScannerInput.ServerIssue.Builder issueBuilder = ScannerInput.ServerIssue.newBuilder();
-      for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component); issueDocIterator.hasNext();) {
+      for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component, since); issueDocIterator.hasNext();) {
         handleIssue(issueDocIterator.next(), issueBuilder, keysByUUid, response.stream().output());
       }
     } finally {
@@ -128,6 +138,10 @@ public class IssuesAction implements BatchWsAction {
       issueBuilder.setResolution(resolution);
     }
     issueBuilder.setCreationDate(issue.creationDate().getTime());
+    Date updateDate = issue.getTechnicalUpdateDate();
+    if (updateDate != null) {
+      issueBuilder.setUpdateDate(updateDate.getTime());
+    }
     try {
       issueBuilder.build().writeDelimitedTo(out);
     } catch (IOException e) {
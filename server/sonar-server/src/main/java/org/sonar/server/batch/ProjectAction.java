@@ -30,6 +30,7 @@ import org.sonar.scanner.protocol.input.ProjectRepositories;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.FileData.Builder;
 
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
 import static org.sonar.server.ws.WsUtils.writeProtobuf;
 
@@ -38,6 +39,7 @@ public class ProjectAction implements BatchWsAction {
   private static final String PARAM_KEY = "key";
   private static final String PARAM_PROFILE = "profile";
   private static final String PARAM_ISSUES_MODE = "issues_mode";
+  private static final String PARAM_ETAG = "etag";
 
   private final ProjectDataLoader projectDataLoader;
 
@@ -52,6 +54,7 @@ public class ProjectAction implements BatchWsAction {
       .setResponseExample(getClass().getResource("project-example.json"))
       .setSince("4.5")
       .setInternal(true)
+      .setStreaming(true)
       .setHandler(this);
 
     action
@@ -70,15 +73,31 @@ public class ProjectAction implements BatchWsAction {
       .setDescription("Issues mode or not")
       .setDefaultValue(false)
       .setBooleanPossibleValues();
+
+    action
+      .createParam(PARAM_ETAG)
+      .setDescription("ETag of the project repository returned by a previous call. " +
+        "If the project repository did not change since then, the response is empty with HTTP status 304 (Not Modified).")
+      .setSince("6.0")
+      .setExampleValue("da39a3ee5e6b4b0d3255bfef95601890afd80709");
   }
 
   @Override
   public void handle(Request wsRequest, Response wsResponse) throws Exception {
+    String etag = wsRequest.param(PARAM_ETAG);
     ProjectRepositories data = projectDataLoader.load(ProjectDataQuery.create()
       .setModuleKey(wsRequest.mandatoryParam(PARAM_KEY))
       .setProfileName(wsRequest.param(PARAM_PROFILE))
-      .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE)));
-
+      .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE))
+      .setETag(etag));
+
+    if (data.etag() != null) {
+      wsResponse.setHeader("ETag", '"' + data.etag() + '"');
+      if (data.etag().equals(etag)) {
+        wsResponse.stream().setStatus(HTTP_NOT_MODIFIED);
+        return;
+      }
+    }
     WsProjectResponse projectResponse = buildResponse(data);
     writeProtobuf(projectResponse, wsRequest, wsResponse);
   }
@@ -86,6 +105,9 @@ public class ProjectAction implements BatchWsAction {
   private static WsProjectResponse buildResponse(ProjectRepositories data) {
     WsProjectResponse.Builder response = WsProjectResponse.newBuilder();
     setLastAnalysisDate(response, data);
+    if (data.etag() != null) {
+      response.setEtag(data.etag());
+    }
     response.setTimestamp(data.timestamp());
     response.getMutableFileDataByModuleAndPath()
       .putAll(buildFileDataByModuleAndPath(data));
@@ -22,10 +22,15 @@ package org.sonar.server.batch;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ServerSide;
@@ -34,6 +39,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.FilePathWithHashDto;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
@@ -86,6 +92,12 @@ public class ProjectDataLoader {
       TreeModuleSettings treeModuleSettings = new TreeModuleSettings(moduleUuidsByKey, moduleIdsByKey, modulesTree, modulesTreeSettings);
 
       addSettingsToChildrenModules(data, query.getModuleKey(), Maps.<String, String>newHashMap(), treeModuleSettings, hasScanPerm);
+      data.setETag(computeETag(session, project, moduleUuidsByKey, data));
+      if (data.etag().equals(query.getETag())) {
+        // files, by far the largest part of the project repository, are already known by the scanner
+        return data;
+      }
+
       List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, module);
       addFileData(data, modulesTree, files);
 
@@ -99,6 +111,37 @@ public class ProjectDataLoader {
     }
   }
 
+  /**
+   * Files are updated only by analyses, so the ETag is computed from the last analysis of the project instead of
+   * the files themselves. Settings and modules can also change between analyses.
+   */
+  private String computeETag(DbSession session, ComponentDto project, Map<String, String> moduleUuidsByKey, ProjectRepositories data) {
+    Hasher hasher = Hashing.sha1().newHasher();
+    SnapshotDto lastAnalysis = dbClient.snapshotDao().selectLastSnapshotByComponentId(session, project.getId());
+    hasher.putLong(lastAnalysis == null ? 0L : lastAnalysis.getId());
+    for (Map.Entry<String, String> moduleUuidByKey : new TreeMap<>(moduleUuidsByKey).entrySet()) {
+      putString(hasher, moduleUuidByKey.getKey());
+      putString(hasher, moduleUuidByKey.getValue());
+    }
+    for (Map.Entry<String, Map<String, String>> moduleSettings : new TreeMap<>(data.settings()).entrySet()) {
+      putString(hasher, moduleSettings.getKey());
+      for (Map.Entry<String, String> setting : new TreeMap<>(moduleSettings.getValue()).entrySet()) {
+        putString(hasher, setting.getKey());
+        putString(hasher, setting.getValue());
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putString(Hasher hasher, @Nullable String s) {
+    if (s == null) {
+      hasher.putInt(-1);
+    } else {
+      // length prevents collisions between different splits of the same characters
+      hasher.putInt(s.length()).putString(s, StandardCharsets.UTF_8);
+    }
+  }
+
   private static boolean isProjectOrModule(ComponentDto module) {
     if (!Scopes.PROJECT.equals(module.scope())) {
       return false;
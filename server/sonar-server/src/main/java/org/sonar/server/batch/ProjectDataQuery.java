@@ -27,6 +27,7 @@ public class ProjectDataQuery {
   private String projectOrModuleKey;
   private String profileName;
   private boolean issuesMode;
+  private String etag;
 
   private ProjectDataQuery() {
     // No direct call
@@ -51,6 +52,19 @@ public class ProjectDataQuery {
     return this;
   }
 
+  /**
+   * ETag of the project repository already known by the scanner. Files are not loaded if it is still valid.
+   */
+  @CheckForNull
+  public String getETag() {
+    return etag;
+  }
+
+  public ProjectDataQuery setETag(@Nullable String etag) {
+    this.etag = etag;
+    return this;
+  }
+
   public String getModuleKey() {
     return projectOrModuleKey;
   }
@@ -21,26 +21,30 @@ package org.sonar.server.computation.batch;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Parser;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
 import javax.annotation.CheckForNull;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.LineReaderIterator;
 import org.sonar.scanner.protocol.output.ScannerReport;
 
 public class BatchReportReaderImpl implements BatchReportReader {
+  private static final long MAX_CACHED_COMPONENTS = 50_000L;
+
   private final org.sonar.scanner.protocol.output.ScannerReportReader delegate;
   // caching of metadata which are read often
   private ScannerReport.Metadata metadata;
+  // components are read by several steps (tree building, validation, sources, links, ...)
+  private final Cache<Integer, ScannerReport.Component> components = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_COMPONENTS)
+    .build();
 
   public BatchReportReaderImpl(BatchReportDirectoryHolder batchReportDirectoryHolder) {
     this.delegate = new org.sonar.scanner.protocol.output.ScannerReportReader(batchReportDirectoryHolder.getDirectory());
@@ -56,16 +60,11 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<String> readScannerLogs() {
-    File file = delegate.getFileStructure().analysisLog();
-    if (!file.exists()) {
+    InputStream input = delegate.openAnalysisLog();
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
-    try {
-      InputStreamReader reader = new InputStreamReader(FileUtils.openInputStream(file), StandardCharsets.UTF_8);
-      return new LineReaderIterator(reader);
-    } catch (IOException e) {
-      throw new IllegalStateException("Fail to open file " + file, e);
-    }
+    return new LineReaderIterator(new InputStreamReader(input, StandardCharsets.UTF_8));
   }
 
   @Override
@@ -86,7 +85,12 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public ScannerReport.Component readComponent(int componentRef) {
-    return delegate.readComponent(componentRef);
+    ScannerReport.Component component = components.getIfPresent(componentRef);
+    if (component == null) {
+      component = delegate.readComponent(componentRef);
+      components.put(componentRef, component);
+    }
+    return component;
   }
 
   @Override
@@ -121,16 +125,11 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
-    File file = delegate.readFileSource(fileRef);
-    if (file == null) {
+    InputStream input = delegate.openFileSource(fileRef);
+    if (input == null) {
       return Optional.absent();
     }
-
-    try {
-      return Optional.<CloseableIterator<String>>of(new CloseableLineIterator(IOUtils.lineIterator(FileUtils.openInputStream(file), StandardCharsets.UTF_8)));
-    } catch (IOException e) {
-      throw new IllegalStateException("Fail to traverse file: " + file, e);
-    }
+    return Optional.<CloseableIterator<String>>of(new CloseableLineIterator(new LineIterator(new InputStreamReader(input, StandardCharsets.UTF_8))));
   }
 
   private static class CloseableLineIterator extends CloseableIterator<String> {
@@ -164,41 +163,27 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<ScannerReport.Test> readTests(int testFileRef) {
-    File file = delegate.readTests(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
-    try {
-      return new ParserCloseableIterator<>(ScannerReport.Test.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
+    InputStream input = delegate.openTests(testFileRef);
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
+    return new ParserCloseableIterator<>(ScannerReport.Test.parser(), input);
   }
 
   @Override
   public CloseableIterator<ScannerReport.CoverageDetail> readCoverageDetails(int testFileRef) {
-    File file = delegate.readCoverageDetails(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
-    try {
-      return new ParserCloseableIterator<>(ScannerReport.CoverageDetail.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
+    InputStream input = delegate.openCoverageDetails(testFileRef);
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
+    return new ParserCloseableIterator<>(ScannerReport.CoverageDetail.parser(), input);
   }
 
   private static class ParserCloseableIterator<T> extends CloseableIterator<T> {
     private final Parser<T> parser;
-    private final FileInputStream fileInputStream;
+    private final InputStream fileInputStream;
 
-    public ParserCloseableIterator(Parser<T> parser, FileInputStream fileInputStream) {
+    public ParserCloseableIterator(Parser<T> parser, InputStream fileInputStream) {
       this.parser = parser;
       this.fileInputStream = fileInputStream;
     }
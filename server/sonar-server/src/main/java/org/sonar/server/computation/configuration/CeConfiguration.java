@@ -26,6 +26,50 @@ public interface CeConfiguration {
    */
   int getWorkerCount();
 
+  /**
+   * The maximum number of workers. Workers are added to the {@link #getWorkerCount()} permanent ones when tasks are
+   * pending and there is enough free heap, and they are removed as soon as the queue is empty.
+   */
+  int getMaxWorkerCount();
+
+  /**
+   * The minimum percentage of the maximum heap size which must be free to add a worker.
+   */
+  int getWorkerMinFreeHeapPercent();
+
+  /**
+   * The maximum number of {@link org.sonar.server.computation.step.ComputationStep} which can be executed concurrently
+   * when processing a single CeTask. {@code 1} means steps are executed sequentially.
+   */
+  int getStepsParallelism();
+
+  /**
+   * The maximum number of files whose sources are persisted in a single transaction by
+   * {@link org.sonar.server.computation.step.PersistFileSourcesStep}. It can't be greater than
+   * {@link org.sonar.db.BatchSession#MAX_BATCH_SIZE}, after which batch sessions are always committed.
+   */
+  int getFileSourcesCommitMaxFiles();
+
+  /**
+   * The maximum number of bytes of compressed source data persisted in a single transaction by
+   * {@link org.sonar.server.computation.step.PersistFileSourcesStep}. A transaction is committed as soon as it
+   * contains at least this number of bytes or {@link #getFileSourcesCommitMaxFiles()} files.
+   */
+  long getFileSourcesCommitMaxBytes();
+
+  /**
+   * The number of threads computing the data of file sources in
+   * {@link org.sonar.server.computation.step.PersistFileSourcesStep}. {@code 1} means data is computed by the thread
+   * executing the step.
+   */
+  int getFileSourcesComputationThreads();
+
+  /**
+   * The maximum number of bytes of file source data computed but not persisted yet by
+   * {@link org.sonar.server.computation.step.PersistFileSourcesStep}.
+   */
+  long getFileSourcesMaxInFlightBytes();
+
   /**
    * The delay in milliseconds before calling another {@link org.sonar.server.computation.taskprocessor.CeWorkerCallable}
    * when previous one had nothing to do.
@@ -25,54 +25,87 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.BatchSession;
 
 import static java.lang.String.format;
+import static org.sonar.server.util.PositiveNumberSettings.readPositiveInt;
+import static org.sonar.server.util.PositiveNumberSettings.readPositiveLong;
 
 /**
  * Immutable implementation of {@link CeConfiguration} which takes value returned by
- * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY} and
+ * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY}, the values
+ * returned by {@link CeConfiguration#getMaxWorkerCount()} and {@link CeConfiguration#getWorkerMinFreeHeapPercent()} from
+ * properties {@link CeConfigurationImpl#CE_MAX_WORKERS_COUNT_PROPERTY} and
+ * {@link CeConfigurationImpl#CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY}, the value
+ * returned by {@link CeConfiguration#getStepsParallelism()} from property {@link CeConfigurationImpl#CE_STEPS_PARALLELISM_PROPERTY}, the
+ * values returned by {@link CeConfiguration#getFileSourcesCommitMaxFiles()}, {@link CeConfiguration#getFileSourcesCommitMaxBytes()},
+ * {@link CeConfiguration#getFileSourcesComputationThreads()} and {@link CeConfiguration#getFileSourcesMaxInFlightBytes()} from the
+ * properties {@code sonar.ce.fileSources.*} and
  * always returns {@link #DEFAULT_QUEUE_POLLING_DELAY} when {@link CeConfiguration#getQueuePollingDelay()} is called.
  */
 public class CeConfigurationImpl implements CeConfiguration, Startable {
   public static final String CE_WORKERS_COUNT_PROPERTY = "sonar.ce.workerCount";
+  public static final String CE_MAX_WORKERS_COUNT_PROPERTY = "sonar.ce.maxWorkerCount";
+  public static final String CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY = "sonar.ce.workerMinFreeHeapPercent";
+  public static final String CE_STEPS_PARALLELISM_PROPERTY = "sonar.ce.stepsParallelism";
+  public static final String CE_FILE_SOURCES_COMMIT_MAX_FILES_PROPERTY = "sonar.ce.fileSources.commitMaxFiles";
+  public static final String CE_FILE_SOURCES_COMMIT_MAX_BYTES_PROPERTY = "sonar.ce.fileSources.commitMaxBytes";
+  public static final String CE_FILE_SOURCES_COMPUTATION_THREADS_PROPERTY = "sonar.ce.fileSources.computationThreads";
+  public static final String CE_FILE_SOURCES_MAX_IN_FLIGHT_BYTES_PROPERTY = "sonar.ce.fileSources.maxInFlightBytes";
 
   private static final Logger LOG = Loggers.get(CeConfigurationImpl.class);
 
   @VisibleForTesting
   protected static final int DEFAULT_WORKER_COUNT = 1;
+  @VisibleForTesting
+  protected static final int DEFAULT_WORKER_MIN_FREE_HEAP_PERCENT = 25;
+  @VisibleForTesting
+  protected static final int DEFAULT_STEPS_PARALLELISM = 1;
+  @VisibleForTesting
+  protected static final int DEFAULT_FILE_SOURCES_COMMIT_MAX_FILES = 100;
+  // 10 MB
+  @VisibleForTesting
+  protected static final long DEFAULT_FILE_SOURCES_COMMIT_MAX_BYTES = 10L * 1024 * 1024;
+  @VisibleForTesting
+  protected static final int DEFAULT_FILE_SOURCES_COMPUTATION_THREADS = 1;
+  // 50 MB
+  @VisibleForTesting
+  protected static final long DEFAULT_FILE_SOURCES_MAX_IN_FLIGHT_BYTES = 50L * 1024 * 1024;
   // 2 seconds
   @VisibleForTesting
   protected static final long DEFAULT_QUEUE_POLLING_DELAY = 2 * 1000L;
 
   private final int workerCount;
+  private final int maxWorkerCount;
+  private final int workerMinFreeHeapPercent;
+  private final int stepsParallelism;
+  private final int fileSourcesCommitMaxFiles;
+  private final long fileSourcesCommitMaxBytes;
+  private final int fileSourcesComputationThreads;
+  private final long fileSourcesMaxInFlightBytes;
 
   public CeConfigurationImpl(Settings settings) {
-    String workerCountAsStr = settings.getString(CE_WORKERS_COUNT_PROPERTY);
-    if (workerCountAsStr == null || workerCountAsStr.isEmpty()) {
-      this.workerCount = DEFAULT_WORKER_COUNT;
-    } else {
-      this.workerCount = parseStringValue(workerCountAsStr);
+    this.workerCount = readPositiveInt(settings, CE_WORKERS_COUNT_PROPERTY, DEFAULT_WORKER_COUNT);
+    this.maxWorkerCount = readPositiveInt(settings, CE_MAX_WORKERS_COUNT_PROPERTY, workerCount);
+    if (maxWorkerCount < workerCount) {
+      throw MessageException.of(format("value '%s' of property %s is invalid. It must be greater than or equal to value of property %s (%s).",
+        maxWorkerCount, CE_MAX_WORKERS_COUNT_PROPERTY, CE_WORKERS_COUNT_PROPERTY, workerCount));
     }
-  }
-
-  private static int parseStringValue(String workerCountAsStr) {
-    try {
-      int value = Integer.parseInt(workerCountAsStr);
-      if (value < 1) {
-        throw parsingError(workerCountAsStr);
-      }
-      return value;
-    } catch (NumberFormatException e) {
-      throw parsingError(workerCountAsStr);
+    this.workerMinFreeHeapPercent = readPositiveInt(settings, CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY, DEFAULT_WORKER_MIN_FREE_HEAP_PERCENT);
+    if (workerMinFreeHeapPercent > 100) {
+      throw MessageException.of(format("value '%s' of property %s is invalid. It must be a percentage between 1 and 100.",
+        workerMinFreeHeapPercent, CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY));
     }
-  }
-
-  private static MessageException parsingError(String workerCountAsStr) {
-    return MessageException.of(format(
-      "value '%s' of property %s is invalid. It must an integer strictly greater than 0.",
-      workerCountAsStr,
-      CE_WORKERS_COUNT_PROPERTY)
-      );
+    this.stepsParallelism = readPositiveInt(settings, CE_STEPS_PARALLELISM_PROPERTY, DEFAULT_STEPS_PARALLELISM);
+    this.fileSourcesCommitMaxFiles = readPositiveInt(settings, CE_FILE_SOURCES_COMMIT_MAX_FILES_PROPERTY, DEFAULT_FILE_SOURCES_COMMIT_MAX_FILES);
+    if (fileSourcesCommitMaxFiles > BatchSession.MAX_BATCH_SIZE) {
+      // batch sessions are committed anyway after this number of statements
+      throw MessageException.of(format("value '%s' of property %s is invalid. It must be lower than or equal to %s.",
+        fileSourcesCommitMaxFiles, CE_FILE_SOURCES_COMMIT_MAX_FILES_PROPERTY, BatchSession.MAX_BATCH_SIZE));
+    }
+    this.fileSourcesCommitMaxBytes = readPositiveLong(settings, CE_FILE_SOURCES_COMMIT_MAX_BYTES_PROPERTY, DEFAULT_FILE_SOURCES_COMMIT_MAX_BYTES);
+    this.fileSourcesComputationThreads = readPositiveInt(settings, CE_FILE_SOURCES_COMPUTATION_THREADS_PROPERTY, DEFAULT_FILE_SOURCES_COMPUTATION_THREADS);
+    this.fileSourcesMaxInFlightBytes = readPositiveLong(settings, CE_FILE_SOURCES_MAX_IN_FLIGHT_BYTES_PROPERTY, DEFAULT_FILE_SOURCES_MAX_IN_FLIGHT_BYTES);
   }
 
   @Override
@@ -80,6 +113,12 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
     if (this.workerCount > 1) {
       LOG.info("Compute Engine will use {} concurrent workers to process tasks", this.workerCount);
     }
+    if (this.maxWorkerCount > this.workerCount) {
+      LOG.info("Compute Engine will use up to {} concurrent workers when tasks are pending", this.maxWorkerCount);
+    }
+    if (this.stepsParallelism > 1) {
+      LOG.info("Compute Engine will execute up to {} independent steps concurrently", this.stepsParallelism);
+    }
   }
 
   @Override
@@ -92,6 +131,41 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
     return workerCount;
   }
 
+  @Override
+  public int getMaxWorkerCount() {
+    return maxWorkerCount;
+  }
+
+  @Override
+  public int getWorkerMinFreeHeapPercent() {
+    return workerMinFreeHeapPercent;
+  }
+
+  @Override
+  public int getStepsParallelism() {
+    return stepsParallelism;
+  }
+
+  @Override
+  public int getFileSourcesCommitMaxFiles() {
+    return fileSourcesCommitMaxFiles;
+  }
+
+  @Override
+  public long getFileSourcesCommitMaxBytes() {
+    return fileSourcesCommitMaxBytes;
+  }
+
+  @Override
+  public int getFileSourcesComputationThreads() {
+    return fileSourcesComputationThreads;
+  }
+
+  @Override
+  public long getFileSourcesMaxInFlightBytes() {
+    return fileSourcesMaxInFlightBytes;
+  }
+
   @Override
   public long getQueuePollingDelay() {
     return DEFAULT_QUEUE_POLLING_DELAY;
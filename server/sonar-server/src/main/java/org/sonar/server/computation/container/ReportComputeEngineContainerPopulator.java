@@ -54,6 +54,7 @@ import org.sonar.server.computation.issue.IssueVisitors;
 import org.sonar.server.computation.issue.LoadComponentUuidsHavingOpenIssuesVisitor;
 import org.sonar.server.computation.issue.NewEffortAggregator;
 import org.sonar.server.computation.issue.NewEffortCalculator;
+import org.sonar.server.computation.issue.PersistedIssuesHolderImpl;
 import org.sonar.server.computation.issue.RuleRepositoryImpl;
 import org.sonar.server.computation.issue.RuleTagsCopier;
 import org.sonar.server.computation.issue.RuleTypeCopier;
@@ -173,6 +174,7 @@ public final class ReportComputeEngineContainerPopulator implements ContainerPop
       IssueLifecycle.class,
       ComponentsWithUnprocessedIssues.class,
       ComponentIssuesRepositoryImpl.class,
+      PersistedIssuesHolderImpl.class,
       IssueFilter.class,
 
       // common rules
@@ -23,6 +23,7 @@ import org.sonar.core.platform.Module;
 import org.sonar.ce.queue.report.ReportSubmitter;
 import org.sonar.server.computation.taskprocessor.report.ReportTaskProcessor;
 import org.sonar.server.computation.step.ComputationStepExecutor;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationHashIndex;
 
 public class ReportProcessingModule extends Module {
   @Override
@@ -31,7 +32,8 @@ public class ReportProcessingModule extends Module {
         ContainerFactoryImpl.class,
         ComputationStepExecutor.class,
         ReportTaskProcessor.class,
-        ReportSubmitter.class
+        ReportSubmitter.class,
+        CrossProjectDuplicationHashIndex.class
     );
   }
 }
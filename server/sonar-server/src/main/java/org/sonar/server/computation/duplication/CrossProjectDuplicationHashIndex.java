@@ -0,0 +1,168 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.duplication;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.primitives.Ints;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ResultSetIterator;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Bloom filter of the hashes of the blocks stored in the table DUPLICATIONS_INDEX, shared by all the analysis
+ * reports processed by the Compute Engine.
+ * <p>
+ * It is loaded from DB when it is first used, then the hashes of the blocks persisted by the following analyses are
+ * added to it (see {@link org.sonar.server.computation.step.PersistCrossProjectDuplicationIndexStep}). A hash which is
+ * not in the filter is not in DB, so that blocks are looked up in DB only for the hashes which might be in the filter.
+ * </p>
+ * <p>
+ * Hashes of the blocks deleted from DB are not removed from the filter, they only increase the rate of false positives.
+ * The filter is loaded again once more hashes than expected when it was loaded have been added. As the hashes being
+ * inserted by other tasks could be missed by the load, it is started only when no insertion is in progress (see
+ * {@link #startInsertions()}). The current filter is used until the new one is loaded, and the hashes added in the
+ * meantime are added to both.
+ * </p>
+ */
+public class CrossProjectDuplicationHashIndex {
+
+  private static final Logger LOGGER = Loggers.get(CrossProjectDuplicationHashIndex.class);
+
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+  private static final int MIN_EXPECTED_INSERTIONS = 100_000;
+
+  private final DbClient dbClient;
+  private final int minExpectedInsertions;
+  // only one load at a time, the filter is searched and fed while it is loaded again
+  private final Object loadLock = new Object();
+
+  @CheckForNull
+  private BloomFilter<CharSequence> filter;
+  private long remainingInsertions;
+  private int insertionsInProgress = 0;
+  // hashes added while the filter is loaded again, null if no load is in progress
+  @CheckForNull
+  private List<String> hashesAddedDuringLoad;
+
+  public CrossProjectDuplicationHashIndex(DbClient dbClient) {
+    this(dbClient, MIN_EXPECTED_INSERTIONS);
+  }
+
+  @VisibleForTesting
+  CrossProjectDuplicationHashIndex(DbClient dbClient, int minExpectedInsertions) {
+    this.dbClient = dbClient;
+    this.minExpectedInsertions = minExpectedInsertions;
+  }
+
+  /**
+   * @return false if no block with this hash exists in DB, true if such block might exist
+   */
+  public boolean mightContain(String hash) {
+    loadIfNeeded();
+    synchronized (this) {
+      return filter.mightContain(hash);
+    }
+  }
+
+  /**
+   * Must be called before inserting blocks in DB. Hashes of the inserted blocks are then added with
+   * {@link #put(String)}, and {@link #endInsertions()} is called once they are committed.
+   */
+  public void startInsertions() {
+    loadIfNeeded();
+    synchronized (this) {
+      insertionsInProgress++;
+    }
+  }
+
+  /**
+   * Adds the hash of a block inserted in DB, see {@link #startInsertions()}
+   */
+  public synchronized void put(String hash) {
+    checkState(insertionsInProgress > 0, "Insertions are not started");
+    filter.put(hash);
+    remainingInsertions--;
+    if (hashesAddedDuringLoad != null) {
+      hashesAddedDuringLoad.add(hash);
+    }
+  }
+
+  /**
+   * Called once the blocks inserted since {@link #startInsertions()} are committed, or rolled back
+   */
+  public synchronized void endInsertions() {
+    checkState(insertionsInProgress > 0, "Insertions are not started");
+    insertionsInProgress--;
+  }
+
+  private synchronized boolean isLoadNeeded() {
+    return filter == null || (remainingInsertions < 0 && insertionsInProgress == 0 && hashesAddedDuringLoad == null);
+  }
+
+  private void loadIfNeeded() {
+    if (isLoadNeeded()) {
+      synchronized (loadLock) {
+        if (isLoadNeeded()) {
+          load();
+        }
+      }
+    }
+  }
+
+  private void load() {
+    synchronized (this) {
+      hashesAddedDuringLoad = new ArrayList<>();
+    }
+    Profiler profiler = Profiler.create(LOGGER).startInfo("Load hashes of cross project duplication blocks");
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      int units = dbClient.duplicationDao().countUnits(dbSession);
+      int expectedInsertions = Ints.saturatedCast((long) units + Math.max(units / 2, minExpectedInsertions));
+      BloomFilter<CharSequence> loadedFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, FALSE_POSITIVE_PROBABILITY);
+      try (ResultSetIterator<String> hashes = dbClient.duplicationDao().selectHashes(dbSession)) {
+        while (hashes.hasNext()) {
+          loadedFilter.put(hashes.next());
+        }
+      }
+      synchronized (this) {
+        for (String hash : hashesAddedDuringLoad) {
+          loadedFilter.put(hash);
+        }
+        this.filter = loadedFilter;
+        this.remainingInsertions = (long) expectedInsertions - units - hashesAddedDuringLoad.size();
+      }
+    } finally {
+      synchronized (this) {
+        hashesAddedDuringLoad = null;
+      }
+    }
+    profiler.stopInfo();
+  }
+}
@@ -0,0 +1,446 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.ObjectCodec;
+
+import static org.sonar.server.util.cache.CodecUtils.readString;
+import static org.sonar.server.util.cache.CodecUtils.readVarInt;
+import static org.sonar.server.util.cache.CodecUtils.readVarLong;
+import static org.sonar.server.util.cache.CodecUtils.writeString;
+import static org.sonar.server.util.cache.CodecUtils.writeVarInt;
+import static org.sonar.server.util.cache.CodecUtils.writeVarLong;
+
+/**
+ * Compact binary encoding of {@link DefaultIssue}, including its {@link FieldDiffs} and comments, used by
+ * {@link IssueCache}. The encoding is only used for the lifetime of a Compute Engine task, so it does not need to
+ * be compatible between versions.
+ */
+public class DefaultIssueCodec implements ObjectCodec<DefaultIssue> {
+
+  private static final int MANUAL_SEVERITY = 1;
+  private static final int NEW = 1 << 1;
+  private static final int BEING_CLOSED = 1 << 2;
+  private static final int ON_DISABLED_RULE = 1 << 3;
+  private static final int CHANGED = 1 << 4;
+  private static final int SEND_NOTIFICATIONS = 1 << 5;
+  private static final int HAS_TYPE = 1 << 6;
+  private static final int HAS_RULE_KEY = 1 << 7;
+  private static final int HAS_LINE = 1 << 8;
+  private static final int HAS_GAP = 1 << 9;
+  private static final int HAS_EFFORT = 1 << 10;
+  private static final int HAS_CREATION_DATE = 1 << 11;
+  private static final int HAS_UPDATE_DATE = 1 << 12;
+  private static final int HAS_CLOSE_DATE = 1 << 13;
+  private static final int HAS_SELECTED_AT = 1 << 14;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+  private static final byte LONG_VALUE = 2;
+  private static final byte INTEGER_VALUE = 3;
+  private static final byte DOUBLE_VALUE = 4;
+  private static final byte DATE_VALUE = 5;
+  private static final byte BOOLEAN_VALUE = 6;
+  private static final byte SERIALIZED_VALUE = 7;
+  private static final byte LOCATIONS_VALUE = 8;
+
+  private static final byte CURRENT_CHANGE = 0;
+  private static final byte OTHER_CHANGE = 1;
+
+  @Override
+  public void write(DefaultIssue issue, DataOutput output) throws IOException {
+    writeVarInt(output, flags(issue));
+    writeString(output, issue.key());
+    if (issue.type() != null) {
+      writeVarInt(output, issue.type().ordinal());
+    }
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    if (issue.ruleKey() != null) {
+      writeString(output, issue.ruleKey().repository());
+      writeString(output, issue.ruleKey().rule());
+    }
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    writeString(output, issue.message());
+    if (issue.line() != null) {
+      writeVarInt(output, issue.line());
+    }
+    if (issue.gap() != null) {
+      output.writeDouble(issue.gap());
+    }
+    if (issue.effort() != null) {
+      writeVarLong(output, issue.effort().toMinutes());
+    }
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeString(output, issue.authorLogin());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    if (issue.selectedAt() != null) {
+      writeVarLong(output, issue.selectedAt());
+    }
+    writeAttributes(output, issue.attributes());
+    writeTags(output, issue.tags());
+    writeValue(output, issue.getLocations());
+    writeComments(output, issue.comments());
+    writeChanges(output, issue);
+  }
+
+  private static int flags(DefaultIssue issue) {
+    int flags = 0;
+    flags |= issue.manualSeverity() ? MANUAL_SEVERITY : 0;
+    flags |= issue.isNew() ? NEW : 0;
+    flags |= issue.isBeingClosed() ? BEING_CLOSED : 0;
+    flags |= issue.isOnDisabledRule() ? ON_DISABLED_RULE : 0;
+    flags |= issue.isChanged() ? CHANGED : 0;
+    flags |= issue.mustSendNotifications() ? SEND_NOTIFICATIONS : 0;
+    flags |= issue.type() != null ? HAS_TYPE : 0;
+    flags |= issue.ruleKey() != null ? HAS_RULE_KEY : 0;
+    flags |= issue.line() != null ? HAS_LINE : 0;
+    flags |= issue.gap() != null ? HAS_GAP : 0;
+    flags |= issue.effort() != null ? HAS_EFFORT : 0;
+    flags |= issue.creationDate() != null ? HAS_CREATION_DATE : 0;
+    flags |= issue.updateDate() != null ? HAS_UPDATE_DATE : 0;
+    flags |= issue.closeDate() != null ? HAS_CLOSE_DATE : 0;
+    flags |= issue.selectedAt() != null ? HAS_SELECTED_AT : 0;
+    return flags;
+  }
+
+  private static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    if (date != null) {
+      output.writeLong(date.getTime());
+    }
+  }
+
+  private static void writeAttributes(DataOutput output, Map<String, String> attributes) throws IOException {
+    writeVarInt(output, attributes.size());
+    for (Map.Entry<String, String> entry : attributes.entrySet()) {
+      writeString(output, entry.getKey());
+      writeString(output, entry.getValue());
+    }
+  }
+
+  private static void writeTags(DataOutput output, Set<String> tags) throws IOException {
+    writeVarInt(output, tags.size());
+    for (String tag : tags) {
+      writeString(output, tag);
+    }
+  }
+
+  private static void writeComments(DataOutput output, List<IssueComment> comments) throws IOException {
+    writeVarInt(output, comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment c = (DefaultIssueComment) comment;
+      writeString(output, c.issueKey());
+      writeString(output, c.key());
+      writeString(output, c.userLogin());
+      writeString(output, c.markdownText());
+      writeValue(output, c.createdAt());
+      writeValue(output, c.updatedAt());
+      output.writeBoolean(c.isNew());
+    }
+  }
+
+  /**
+   * {@link DefaultIssue#changes()} usually references {@link DefaultIssue#currentChange()} one or several times.
+   * These references are kept as is.
+   */
+  private static void writeChanges(DataOutput output, DefaultIssue issue) throws IOException {
+    FieldDiffs currentChange = issue.currentChange();
+    output.writeBoolean(currentChange != null);
+    if (currentChange != null) {
+      writeFieldDiffs(output, currentChange);
+    }
+    List<FieldDiffs> changes = issue.changes();
+    writeVarInt(output, changes.size());
+    for (FieldDiffs change : changes) {
+      if (change == currentChange) {
+        output.writeByte(CURRENT_CHANGE);
+      } else {
+        output.writeByte(OTHER_CHANGE);
+        writeFieldDiffs(output, change);
+      }
+    }
+  }
+
+  private static void writeFieldDiffs(DataOutput output, FieldDiffs fieldDiffs) throws IOException {
+    writeString(output, fieldDiffs.issueKey());
+    writeString(output, fieldDiffs.userLogin());
+    writeValue(output, fieldDiffs.creationDate());
+    writeVarInt(output, fieldDiffs.diffs().size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : fieldDiffs.diffs().entrySet()) {
+      writeString(output, entry.getKey());
+      writeValue(output, entry.getValue().oldValue());
+      writeValue(output, entry.getValue().newValue());
+    }
+  }
+
+  private static void writeValue(DataOutput output, @Nullable Object value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL_VALUE);
+    } else if (value instanceof String) {
+      output.writeByte(STRING_VALUE);
+      writeString(output, (String) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG_VALUE);
+      output.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INTEGER_VALUE);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE_VALUE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof Date) {
+      output.writeByte(DATE_VALUE);
+      output.writeLong(((Date) value).getTime());
+    } else if (value instanceof Boolean) {
+      output.writeByte(BOOLEAN_VALUE);
+      output.writeBoolean((Boolean) value);
+    } else if (value instanceof DbIssues.Locations) {
+      output.writeByte(LOCATIONS_VALUE);
+      writeBytes(output, ((DbIssues.Locations) value).toByteArray());
+    } else {
+      output.writeByte(SERIALIZED_VALUE);
+      writeBytes(output, serialize(value));
+    }
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    writeVarInt(output, bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] serialize(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+      objectOutput.writeObject(value);
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    int flags = readVarInt(input);
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    if (isSet(flags, HAS_TYPE)) {
+      issue.setType(RuleType.values()[readVarInt(input)]);
+    }
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    if (isSet(flags, HAS_RULE_KEY)) {
+      issue.setRuleKey(RuleKey.of(readString(input), readString(input)));
+    }
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setManualSeverity(isSet(flags, MANUAL_SEVERITY));
+    issue.setMessage(readString(input));
+    if (isSet(flags, HAS_LINE)) {
+      issue.setLine(readVarInt(input));
+    }
+    if (isSet(flags, HAS_GAP)) {
+      issue.setGap(input.readDouble());
+    }
+    if (isSet(flags, HAS_EFFORT)) {
+      issue.setEffort(Duration.create(readVarLong(input)));
+    }
+    String status = readString(input);
+    if (status != null) {
+      issue.setStatus(status);
+    }
+    issue.setResolution(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    issue.setAuthorLogin(readString(input));
+    issue.setCreationDate(readDate(input, isSet(flags, HAS_CREATION_DATE)));
+    issue.setUpdateDate(readDate(input, isSet(flags, HAS_UPDATE_DATE)));
+    issue.setCloseDate(readDate(input, isSet(flags, HAS_CLOSE_DATE)));
+    if (isSet(flags, HAS_SELECTED_AT)) {
+      issue.setSelectedAt(readVarLong(input));
+    }
+    issue.setNew(isSet(flags, NEW));
+    issue.setBeingClosed(isSet(flags, BEING_CLOSED));
+    issue.setOnDisabledRule(isSet(flags, ON_DISABLED_RULE));
+    issue.setChanged(isSet(flags, CHANGED));
+    issue.setSendNotifications(isSet(flags, SEND_NOTIFICATIONS));
+    readAttributes(input, issue);
+    readTags(input, issue);
+    issue.setLocations(readValue(input));
+    readComments(input, issue);
+    readChanges(input, issue);
+    return issue;
+  }
+
+  private static boolean isSet(int flags, int flag) {
+    return (flags & flag) != 0;
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input, boolean isSet) throws IOException {
+    return isSet ? new Date(input.readLong()) : null;
+  }
+
+  private static void readAttributes(DataInput input, DefaultIssue issue) throws IOException {
+    int size = readVarInt(input);
+    if (size > 0) {
+      Map<String, String> attributes = new HashMap<>(size);
+      for (int i = 0; i < size; i++) {
+        attributes.put(readString(input), readString(input));
+      }
+      issue.setAttributes(attributes);
+    }
+  }
+
+  private static void readTags(DataInput input, DefaultIssue issue) throws IOException {
+    int size = readVarInt(input);
+    if (size > 0) {
+      List<String> tags = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        tags.add(readString(input));
+      }
+      issue.setTags(tags);
+    }
+  }
+
+  private static void readComments(DataInput input, DefaultIssue issue) throws IOException {
+    int size = readVarInt(input);
+    for (int i = 0; i < size; i++) {
+      DefaultIssueComment comment = new DefaultIssueComment()
+        .setIssueKey(readString(input))
+        .setKey(readString(input))
+        .setUserLogin(readString(input))
+        .setMarkdownText(readString(input))
+        .setCreatedAt((Date) readValue(input))
+        .setUpdatedAt((Date) readValue(input))
+        .setNew(input.readBoolean());
+      issue.addComment(comment);
+    }
+  }
+
+  private static void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    FieldDiffs currentChange = null;
+    if (input.readBoolean()) {
+      currentChange = readFieldDiffs(input);
+      // also adds currentChange to changes, which are replaced below
+      issue.setCurrentChange(currentChange);
+    }
+    int size = readVarInt(input);
+    if (size > 0) {
+      List<FieldDiffs> changes = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        if (input.readByte() == CURRENT_CHANGE) {
+          changes.add(currentChange);
+        } else {
+          changes.add(readFieldDiffs(input));
+        }
+      }
+      issue.setChanges(changes);
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs fieldDiffs = new FieldDiffs()
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setCreationDate((Date) readValue(input));
+    int size = readVarInt(input);
+    for (int i = 0; i < size; i++) {
+      fieldDiffs.setDiff(readString(input), (Serializable) readValue(input), (Serializable) readValue(input));
+    }
+    return fieldDiffs;
+  }
+
+  @CheckForNull
+  private static Object readValue(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case NULL_VALUE:
+        return null;
+      case STRING_VALUE:
+        return readString(input);
+      case LONG_VALUE:
+        return input.readLong();
+      case INTEGER_VALUE:
+        return input.readInt();
+      case DOUBLE_VALUE:
+        return input.readDouble();
+      case DATE_VALUE:
+        return new Date(input.readLong());
+      case BOOLEAN_VALUE:
+        return input.readBoolean();
+      case LOCATIONS_VALUE:
+        return DbIssues.Locations.parseFrom(readBytes(input));
+      case SERIALIZED_VALUE:
+        return deserialize(readBytes(input));
+      default:
+        throw new IllegalStateException("Unsupported value type " + type);
+    }
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[readVarInt(input)];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  private static Object deserialize(byte[] bytes) throws IOException {
+    try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return objectInput.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Fail to deserialize value", e);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+/**
+ * Outcome of the persistence of the issues of {@link IssueCache}. It's populated by
+ * {@link org.sonar.server.computation.step.PersistIssuesStep} and used to index the issues without reading them again
+ * from DB.
+ */
+public interface PersistedIssuesHolder {
+
+  /**
+   * Technical update date of the issues inserted or updated during the analysis.
+   *
+   * @throws IllegalStateException if issues have not been persisted yet
+   */
+  long getTechnicalUpdateDate();
+
+  /**
+   * Whether some issues have been changed by end-users during the analysis. Such issues are merged by
+   * {@link UpdateConflictResolver}, so their persisted state differs from the one in {@link IssueCache}.
+   *
+   * @throws IllegalStateException if issues have not been persisted yet
+   */
+  boolean hasConflicts();
+
+}
@@ -0,0 +1,53 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import static com.google.common.base.Preconditions.checkState;
+
+public class PersistedIssuesHolderImpl implements MutablePersistedIssuesHolder {
+
+  private boolean persisted = false;
+  private long technicalUpdateDate;
+  private boolean conflicts;
+
+  @Override
+  public void setPersisted(long technicalUpdateDate, boolean conflicts) {
+    checkState(!persisted, "Issues have already been persisted");
+    this.persisted = true;
+    this.technicalUpdateDate = technicalUpdateDate;
+    this.conflicts = conflicts;
+  }
+
+  @Override
+  public long getTechnicalUpdateDate() {
+    checkPersisted();
+    return technicalUpdateDate;
+  }
+
+  @Override
+  public boolean hasConflicts() {
+    checkPersisted();
+    return conflicts;
+  }
+
+  private void checkPersisted() {
+    checkState(persisted, "Issues have not been persisted");
+  }
+}
@@ -0,0 +1,380 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures of components of the analysis report, and
+ * which stores them in columns of primitive values rather than as {@link Measure} objects.
+ * <p>
+ * Measures are indexed by the report ref of the component and by the index of the metric in this repository, in an
+ * open addressing hash table, so that a lookup does not allocate any object. Their value type, value, data and level
+ * are stored in arrays and {@link Measure} objects are created when measures are read. The few measures which can not
+ * be stored this way (measures with description, quality gate status or variations) are stored as is in a side table,
+ * as are measures of developers.
+ * </p>
+ * <p>
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ * </p>
+ */
+public final class ColumnBasedRawMeasureRepository implements MeasureRepository {
+  private static final int INITIAL_CAPACITY = 1024;
+  // metric index of the entry of the hash table which references the last row added for a component
+  private static final int COMPONENT_ROWS_HEAD = -1;
+  // value type of the rows which measure is stored in detailedMeasures
+  private static final byte DETAILED = -1;
+  private static final byte NO_LEVEL = -1;
+  private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+  private static final Measure.Level[] LEVELS = Measure.Level.values();
+
+  private final Map<String, Integer> metricIndexesByKey = new HashMap<>();
+  private final List<String> metricKeys = new ArrayList<>();
+
+  // hash table of the rows, by (component ref, metric index)
+  private long[] slotKeys = new long[2 * INITIAL_CAPACITY];
+  private int[] slotRows = new int[2 * INITIAL_CAPACITY];
+  private int usedSlots = 0;
+
+  // columns of the rows
+  private int rowCount = 0;
+  private int[] metricIndexes = new int[INITIAL_CAPACITY];
+  private int[] previousRowsOfComponent = new int[INITIAL_CAPACITY];
+  private byte[] valueTypes = new byte[INITIAL_CAPACITY];
+  private double[] values = new double[INITIAL_CAPACITY];
+  private byte[] levels = new byte[INITIAL_CAPACITY];
+  private String[] data = new String[INITIAL_CAPACITY];
+
+  private final Map<Integer, Measure> detailedMeasures = new HashMap<>();
+  private final Map<Integer, Map<MeasureKey, Measure>> developerMeasures = new HashMap<>();
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    int row = findRow(component, metric);
+    return row < 0 ? Optional.<Measure>absent() : Optional.of(toMeasure(row));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (exists(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (!exists(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    int row = findRow(component, metric);
+    if (row >= 0) {
+      builder.add(toMeasure(row));
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(ref(component));
+    if (measuresOfDevelopers != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfDevelopers.entrySet()) {
+        if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+          builder.add(entry.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int componentRef = ref(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    int row = slotRow(slot(componentRef, COMPONENT_ROWS_HEAD));
+    while (row >= 0) {
+      builder.put(metricKeys.get(metricIndexes[row]), toMeasure(row));
+      row = previousRowsOfComponent[row];
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(componentRef);
+    if (measuresOfDevelopers != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfDevelopers.entrySet()) {
+        builder.put(entry.getKey().getMetricKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int componentRef = ref(component);
+    if (measure.getDeveloper() != null) {
+      addDeveloperMeasure(componentRef, metric, measure, overridePolicy);
+      return;
+    }
+
+    int metricIndex = metricIndex(metric.getKey());
+    int row = slotRow(slot(componentRef, metricIndex));
+    if (row < 0) {
+      row = newRow(componentRef, metricIndex);
+      // slot is looked up again, as adding the row may have modified the hash table
+      insertSlot(slot(componentRef, metricIndex), key(componentRef, metricIndex), row);
+    } else if (overridePolicy == OverridePolicy.DO_NOT_OVERRIDE) {
+      return;
+    }
+    setRow(row, measure);
+  }
+
+  public enum OverridePolicy {
+    OVERRIDE, DO_NOT_OVERRIDE
+  }
+
+  private void addDeveloperMeasure(int componentRef, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(componentRef);
+    if (measuresOfDevelopers == null) {
+      measuresOfDevelopers = new HashMap<>();
+      developerMeasures.put(componentRef, measuresOfDevelopers);
+    }
+    MeasureKey key = new MeasureKey(metric.getKey(), measure.getDeveloper());
+    if (!measuresOfDevelopers.containsKey(key) || overridePolicy == OverridePolicy.OVERRIDE) {
+      measuresOfDevelopers.put(key, measure);
+    }
+  }
+
+  private boolean exists(Component component, Metric metric, Measure measure) {
+    if (measure.getDeveloper() == null) {
+      return findRow(component, metric) >= 0;
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(ref(component));
+    return measuresOfDevelopers != null && measuresOfDevelopers.containsKey(new MeasureKey(metric.getKey(), measure.getDeveloper()));
+  }
+
+  private int findRow(Component component, Metric metric) {
+    int componentRef = ref(component);
+    Integer metricIndex = metricIndexesByKey.get(metric.getKey());
+    if (metricIndex == null) {
+      return -1;
+    }
+    return slotRow(slot(componentRef, metricIndex));
+  }
+
+  private static int ref(Component component) {
+    return component.getReportAttributes().getRef();
+  }
+
+  private int metricIndex(String metricKey) {
+    Integer index = metricIndexesByKey.get(metricKey);
+    if (index == null) {
+      index = metricKeys.size();
+      metricKeys.add(metricKey);
+      metricIndexesByKey.put(metricKey, index);
+    }
+    return index;
+  }
+
+  private int newRow(int componentRef, int metricIndex) {
+    if (rowCount == valueTypes.length) {
+      int capacity = 2 * rowCount;
+      metricIndexes = Arrays.copyOf(metricIndexes, capacity);
+      previousRowsOfComponent = Arrays.copyOf(previousRowsOfComponent, capacity);
+      valueTypes = Arrays.copyOf(valueTypes, capacity);
+      values = Arrays.copyOf(values, capacity);
+      levels = Arrays.copyOf(levels, capacity);
+      data = Arrays.copyOf(data, capacity);
+    }
+    int row = rowCount;
+    rowCount++;
+    metricIndexes[row] = metricIndex;
+
+    // rows of a component are chained, starting from the last one added
+    int headSlot = slot(componentRef, COMPONENT_ROWS_HEAD);
+    int previousRow = slotRow(headSlot);
+    previousRowsOfComponent[row] = previousRow;
+    if (previousRow < 0) {
+      insertSlot(headSlot, key(componentRef, COMPONENT_ROWS_HEAD), row);
+    } else {
+      slotRows[headSlot] = row + 1;
+    }
+    return row;
+  }
+
+  private void setRow(int row, Measure measure) {
+    if (valueTypes[row] == DETAILED) {
+      detailedMeasures.remove(row);
+    }
+    data[row] = null;
+    levels[row] = NO_LEVEL;
+    values[row] = 0d;
+    if (measure.getDescription() != null || measure.hasQualityGateStatus() || measure.hasVariations()) {
+      valueTypes[row] = DETAILED;
+      detailedMeasures.put(row, measure);
+      return;
+    }
+    Measure.ValueType valueType = measure.getValueType();
+    valueTypes[row] = (byte) valueType.ordinal();
+    data[row] = measure.getData();
+    switch (valueType) {
+      case BOOLEAN:
+        values[row] = measure.getBooleanValue() ? 1d : 0d;
+        break;
+      case INT:
+        values[row] = measure.getIntValue();
+        break;
+      case LONG:
+        values[row] = measure.getLongValue();
+        break;
+      case DOUBLE:
+        values[row] = measure.getDoubleValue();
+        break;
+      case LEVEL:
+        levels[row] = (byte) measure.getLevelValue().ordinal();
+        break;
+      default:
+        // no value
+    }
+  }
+
+  private Measure toMeasure(int row) {
+    byte valueType = valueTypes[row];
+    if (valueType == DETAILED) {
+      return detailedMeasures.get(row);
+    }
+    Measure.ValueType type = VALUE_TYPES[valueType];
+    Double value = null;
+    if (type == Measure.ValueType.BOOLEAN || type == Measure.ValueType.INT || type == Measure.ValueType.LONG || type == Measure.ValueType.DOUBLE) {
+      value = values[row];
+    }
+    Measure.Level level = levels[row] == NO_LEVEL ? null : LEVELS[levels[row]];
+    return Measure.createSimple(type, value, data[row], level);
+  }
+
+  private static long key(int componentRef, int metricIndex) {
+    return ((long) componentRef << 32) | (metricIndex & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Slot of the hash table which contains the specified key, or the empty slot where it should be inserted.
+   */
+  private int slot(int componentRef, int metricIndex) {
+    long key = key(componentRef, metricIndex);
+    int mask = slotKeys.length - 1;
+    int slot = hash(key) & mask;
+    while (slotRows[slot] != 0 && slotKeys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * @return the row referenced by the slot, or -1 if the slot is empty
+   */
+  private int slotRow(int slot) {
+    return slotRows[slot] - 1;
+  }
+
+  private void insertSlot(int slot, long key, int row) {
+    slotKeys[slot] = key;
+    // 0 means empty slot
+    slotRows[slot] = row + 1;
+    usedSlots++;
+    if (2 * usedSlots > slotKeys.length) {
+      rehash();
+    }
+  }
+
+  private void rehash() {
+    long[] oldKeys = slotKeys;
+    int[] oldRows = slotRows;
+    slotKeys = new long[2 * oldKeys.length];
+    slotRows = new int[2 * oldRows.length];
+    int mask = slotKeys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldRows[i] != 0) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (slotRows[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slotKeys[slot] = oldKeys[i];
+        slotRows[slot] = oldRows[i];
+      }
+    }
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -95,6 +95,14 @@ public final class Measure {
     this.variations = variations;
   }
 
+  /**
+   * Measure with no developer, description, quality gate status nor variations, to restore the measures stored as
+   * primitive values by {@link ColumnBasedRawMeasureRepository}.
+   */
+  static Measure createSimple(ValueType valueType, @Nullable Double value, @Nullable String data, @Nullable Level dataLevel) {
+    return new Measure(valueType, null, value, data, dataLevel, null, null, null);
+  }
+
   public static NewMeasureBuilder newMeasureBuilder() {
     return new NewMeasureBuilder();
   }
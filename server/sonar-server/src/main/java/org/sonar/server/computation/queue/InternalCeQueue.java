@@ -48,6 +48,13 @@ public interface InternalCeQueue extends CeQueue {
    */
   Optional<CeTask> peek();
 
+  /**
+   * Number of tasks which can be peeked right now by concurrent calls to {@link #peek()}. Pending tasks of a
+   * component which already has a task in progress are excluded, and other tasks of a same component are counted
+   * once. Returns 0 if the queue is paused.
+   */
+  int countEligibleForPeek();
+
   /**
    * Removes all the tasks from the queue, whatever their status. They are marked
    * as {@link CeActivityDto.Status#CANCELED} in past activity.
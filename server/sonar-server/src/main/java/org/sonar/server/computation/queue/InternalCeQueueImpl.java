@@ -75,6 +75,16 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     }
   }
 
+  @Override
+  public int countEligibleForPeek() {
+    if (peekPaused.get()) {
+      return 0;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.ceQueueDao().countEligibleForPeek(dbSession);
+    }
+  }
+
   @Override
   public int clear() {
     return cancelAll(true);
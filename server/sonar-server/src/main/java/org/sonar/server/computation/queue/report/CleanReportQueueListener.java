@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.queue.report;
 
+import java.util.List;
 import org.sonar.ce.queue.report.ReportFiles;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.ce.queue.CeQueueListener;
@@ -32,6 +33,11 @@ public class CleanReportQueueListener implements CeQueueListener {
     this.reportFiles = reportFiles;
   }
 
+  @Override
+  public void onSubmitted(List<CeTask> tasks) {
+    // nothing to do
+  }
+
   @Override
   public void onRemoved(CeTask task, CeActivityDto.Status status) {
     reportFiles.deleteIfExists(task.getUuid());
@@ -19,18 +19,38 @@
  */
 package org.sonar.server.computation.step;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.slf4j.MDC;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
+import org.sonar.server.computation.configuration.CeConfiguration;
 
 public final class ComputationStepExecutor {
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
+  private static final String THREAD_NAME_PREFIX = "ce-step-";
 
   private final ComputationSteps steps;
   @CheckForNull
   private final Listener listener;
+  private final int parallelism;
 
   /**
    * Used when no {@link org.sonar.server.computation.step.ComputationStepExecutor.Listener} is available in pico
@@ -40,16 +60,34 @@ public final class ComputationStepExecutor {
     this(steps, null);
   }
 
+  /**
+   * Steps are executed sequentially.
+   */
   public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener) {
     this.steps = steps;
     this.listener = listener;
+    this.parallelism = 1;
+  }
+
+  /**
+   * Up to {@link CeConfiguration#getStepsParallelism()} independent {@link ResourceAwareComputationStep} are executed
+   * concurrently.
+   */
+  public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener, CeConfiguration ceConfiguration) {
+    this.steps = steps;
+    this.listener = listener;
+    this.parallelism = ceConfiguration.getStepsParallelism();
   }
 
   public void execute() {
     Profiler stepProfiler = Profiler.create(LOGGER);
     boolean allStepsExecuted = false;
     try {
-      executeSteps(stepProfiler);
+      if (parallelism > 1) {
+        executeStepsConcurrently();
+      } else {
+        executeSteps(stepProfiler);
+      }
       allStepsExecuted = true;
     } finally {
       if (listener != null) {
@@ -66,6 +104,148 @@ public final class ComputationStepExecutor {
     }
   }
 
+  private void executeStepsConcurrently() {
+    StepsGraph graph = new StepsGraph(ImmutableList.copyOf(steps.instances()));
+    ExecutorService executorService = Executors.newFixedThreadPool(parallelism,
+      new ThreadFactoryBuilder()
+        .setNameFormat(THREAD_NAME_PREFIX + "%d")
+        .build());
+    try {
+      graph.execute(new ExecutorCompletionService<Integer>(executorService));
+    } finally {
+      shutdownAndWait(executorService);
+    }
+  }
+
+  /**
+   * Fails fast: running steps are interrupted but the method only returns once they are all done, so that no step
+   * is still running when {@link Listener#finished(boolean)} is called.
+   */
+  private static void shutdownAndWait(ExecutorService executorService) {
+    executorService.shutdownNow();
+    boolean interrupted = false;
+    while (!executorService.isTerminated()) {
+      try {
+        executorService.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Dependency graph of the steps: a step depends on every step before it in the ordered list unless both of them
+   * declare the resources they access and these accesses do not conflict.
+   */
+  private static final class StepsGraph {
+    private final List<ComputationStep> orderedSteps;
+    private final int[] remainingDependencies;
+    private final List<List<Integer>> dependents;
+
+    private StepsGraph(List<ComputationStep> orderedSteps) {
+      this.orderedSteps = orderedSteps;
+      this.remainingDependencies = new int[orderedSteps.size()];
+      this.dependents = new ArrayList<>(orderedSteps.size());
+      for (int i = 0; i < orderedSteps.size(); i++) {
+        dependents.add(new ArrayList<Integer>());
+        for (int j = 0; j < i; j++) {
+          if (conflict(orderedSteps.get(j), orderedSteps.get(i))) {
+            remainingDependencies[i]++;
+            dependents.get(j).add(i);
+          }
+        }
+      }
+    }
+
+    private static boolean conflict(ComputationStep first, ComputationStep second) {
+      if (!(first instanceof ResourceAwareComputationStep) || !(second instanceof ResourceAwareComputationStep)) {
+        return true;
+      }
+      ResourceAwareComputationStep a = (ResourceAwareComputationStep) first;
+      ResourceAwareComputationStep b = (ResourceAwareComputationStep) second;
+      return !Collections.disjoint(a.getWrittenResources(), b.getWrittenResources())
+        || !Collections.disjoint(a.getWrittenResources(), b.getReadResources())
+        || !Collections.disjoint(a.getReadResources(), b.getWrittenResources());
+    }
+
+    private void execute(CompletionService<Integer> completionService) {
+      // steps ready to be executed, lowest index first to stay as close as possible to the declared order
+      Queue<Integer> readySteps = new PriorityQueue<>();
+      for (int i = 0; i < orderedSteps.size(); i++) {
+        if (remainingDependencies[i] == 0) {
+          readySteps.add(i);
+        }
+      }
+      Map<String, String> loggingContext = MDC.getCopyOfContextMap();
+      int executedSteps = 0;
+      while (executedSteps < orderedSteps.size()) {
+        while (!readySteps.isEmpty()) {
+          int index = readySteps.poll();
+          completionService.submit(new StepCallable(index, orderedSteps.get(index), loggingContext));
+        }
+        int executedIndex = waitForNextExecutedStep(completionService);
+        executedSteps++;
+        for (Integer dependent : dependents.get(executedIndex)) {
+          remainingDependencies[dependent]--;
+          if (remainingDependencies[dependent] == 0) {
+            readySteps.add(dependent);
+          }
+        }
+      }
+    }
+
+    private static int waitForNextExecutedStep(CompletionService<Integer> completionService) {
+      try {
+        Future<Integer> future = completionService.take();
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for computation steps to complete", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException("Computation step failed", cause);
+      }
+    }
+  }
+
+  private static final class StepCallable implements Callable<Integer> {
+    private final int index;
+    private final ComputationStep step;
+    @CheckForNull
+    private final Map<String, String> loggingContext;
+
+    private StepCallable(int index, ComputationStep step, @Nullable Map<String, String> loggingContext) {
+      this.index = index;
+      this.step = step;
+      this.loggingContext = loggingContext;
+    }
+
+    @Override
+    public Integer call() {
+      // logs of the step must go to the log file of the task
+      if (loggingContext != null) {
+        MDC.setContextMap(loggingContext);
+      }
+      try {
+        Profiler stepProfiler = Profiler.create(LOGGER).start();
+        step.execute();
+        stepProfiler.stopInfo(step.getDescription());
+        return index;
+      } finally {
+        MDC.clear();
+      }
+    }
+  }
+
   public interface Listener {
     void finished(boolean allStepsExecuted);
   }
@@ -28,11 +28,15 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.report.ReportFiles;
+import org.sonar.scanner.protocol.output.ReportStream;
 import org.sonar.server.computation.batch.MutableBatchReportDirectoryHolder;
 
 /**
  * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
  * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * <p>
+ * Reports sent as a {@link ReportStream} are not extracted. The file is added as is to the holder and read in place.
+ * </p>
  */
 public class ExtractReportStep implements ComputationStep {
   private static final Logger LOG = Loggers.get(ExtractReportStep.class);
@@ -52,8 +56,13 @@ public class ExtractReportStep implements ComputationStep {
 
   @Override
   public void execute() {
-    File dir = tempFolder.newDir();
     File zip = reportFiles.fileForUuid(task.getUuid());
+    if (ReportStream.isReportStream(zip)) {
+      reportDirectoryHolder.setDirectory(zip);
+      LOG.info("Analysis report stream opened | size={}", FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(zip)));
+      return;
+    }
+    File dir = tempFolder.newDir();
     try {
       ZipUtils.unzip(zip, dir);
       reportDirectoryHolder.setDirectory(dir);
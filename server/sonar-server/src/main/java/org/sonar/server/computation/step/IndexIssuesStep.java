@@ -19,22 +19,157 @@
  */
 package org.sonar.server.computation.step;
 
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterators;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.sonar.api.resources.Scopes;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.TreeRootHolder;
+import org.sonar.server.computation.issue.IssueCache;
+import org.sonar.server.computation.issue.PersistedIssuesHolder;
+import org.sonar.server.computation.issue.RuleRepository;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.issue.index.IssueDocFactory;
 import org.sonar.server.issue.index.IssueIndexer;
 
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Indexes the issues persisted by {@link PersistIssuesStep}. Documents are built from {@link IssueCache} and from the
+ * component tree, so that issues are not read again from DB. Issues which have been merged with changes done by
+ * end-users during the analysis are the exception: the whole project is then indexed from DB.
+ */
 public class IndexIssuesStep implements ComputationStep {
 
+  private static final char MODULE_UUID_PATH_SEP = '.';
+
   private final IssueIndexer indexer;
   private final TreeRootHolder treeRootHolder;
+  private final IssueCache issueCache;
+  private final RuleRepository ruleRepository;
+  private final PersistedIssuesHolder persistedIssuesHolder;
+  private final DbClient dbClient;
 
-  public IndexIssuesStep(IssueIndexer indexer, TreeRootHolder treeRootHolder) {
+  public IndexIssuesStep(IssueIndexer indexer, TreeRootHolder treeRootHolder, IssueCache issueCache, RuleRepository ruleRepository,
+    PersistedIssuesHolder persistedIssuesHolder, DbClient dbClient) {
     this.indexer = indexer;
     this.treeRootHolder = treeRootHolder;
+    this.issueCache = issueCache;
+    this.ruleRepository = ruleRepository;
+    this.persistedIssuesHolder = persistedIssuesHolder;
+    this.dbClient = dbClient;
   }
 
   @Override
   public void execute() {
-    indexer.index(treeRootHolder.getRoot().getUuid());
+    String projectUuid = treeRootHolder.getRoot().getUuid();
+    if (persistedIssuesHolder.hasConflicts()) {
+      indexer.index(projectUuid);
+      return;
+    }
+
+    DbSession dbSession = dbClient.openSession(false);
+    CloseableIterator<DefaultIssue> issues = issueCache.traverse();
+    try {
+      IssueToDoc toDoc = new IssueToDoc(dbSession, projectUuid, new Date(persistedIssuesHolder.getTechnicalUpdateDate()));
+      indexer.index(Iterators.transform(Iterators.filter(issues, IsPersisted.INSTANCE), toDoc));
+    } finally {
+      issues.close();
+      dbClient.closeSession(dbSession);
+    }
+  }
+
+  private enum IsPersisted implements Predicate<DefaultIssue> {
+    INSTANCE;
+
+    @Override
+    public boolean apply(@Nonnull DefaultIssue issue) {
+      return issue.isNew() || issue.isChanged();
+    }
+  }
+
+  private class IssueToDoc implements Function<DefaultIssue, IssueDoc> {
+    private final DbSession dbSession;
+    private final String projectUuid;
+    private final Date technicalUpdateDate;
+    private final Map<String, ComponentLocation> locationsByUuid = new HashMap<>();
+
+    private IssueToDoc(DbSession dbSession, String projectUuid, Date technicalUpdateDate) {
+      this.dbSession = dbSession;
+      this.projectUuid = projectUuid;
+      this.technicalUpdateDate = technicalUpdateDate;
+      addLocations(treeRootHolder.getRoot(), "" + MODULE_UUID_PATH_SEP);
+    }
+
+    private void addLocations(Component component, String parentModuleUuidPath) {
+      String moduleUuidPath = parentModuleUuidPath;
+      String scope;
+      switch (component.getType()) {
+        case PROJECT:
+        case MODULE:
+          moduleUuidPath = parentModuleUuidPath + component.getUuid() + MODULE_UUID_PATH_SEP;
+          scope = Scopes.PROJECT;
+          break;
+        case DIRECTORY:
+          scope = Scopes.DIRECTORY;
+          break;
+        case FILE:
+          scope = Scopes.FILE;
+          break;
+        default:
+          throw new IllegalStateException("Unsupported component type " + component.getType());
+      }
+      String path = component.getType() == Component.Type.PROJECT ? null : component.getReportAttributes().getPath();
+      locationsByUuid.put(component.getUuid(), new ComponentLocation(moduleUuidPath, path, scope));
+      for (Component child : component.getChildren()) {
+        addLocations(child, moduleUuidPath);
+      }
+    }
+
+    @Override
+    public IssueDoc apply(@Nonnull DefaultIssue issue) {
+      ComponentLocation location = getLocation(issue.componentUuid());
+      String language = ruleRepository.getByKey(issue.ruleKey()).getLanguage();
+      return IssueDocFactory.create(issue, projectUuid, technicalUpdateDate, language, location.moduleUuidPath, location.path, location.scope);
+    }
+
+    private ComponentLocation getLocation(String componentUuid) {
+      ComponentLocation location = locationsByUuid.get(componentUuid);
+      if (location == null) {
+        // issue closed on a component which has been removed from the project
+        Optional<ComponentDto> component = dbClient.componentDao().selectByUuid(dbSession, componentUuid);
+        checkState(component.isPresent(), "Component with uuid '%s' of issue does not exist", componentUuid);
+        ComponentDto dto = component.get();
+        location = new ComponentLocation(dto.moduleUuidPath(), dto.path(), dto.scope());
+        locationsByUuid.put(componentUuid, location);
+      }
+      return location;
+    }
+  }
+
+  private static final class ComponentLocation {
+    private final String moduleUuidPath;
+    @CheckForNull
+    private final String path;
+    private final String scope;
+
+    private ComponentLocation(String moduleUuidPath, @Nullable String path, String scope) {
+      this.moduleUuidPath = moduleUuidPath;
+      this.path = path;
+      this.scope = scope;
+    }
   }
 
   @Override
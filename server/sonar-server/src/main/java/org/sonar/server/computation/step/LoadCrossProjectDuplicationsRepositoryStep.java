@@ -20,11 +20,19 @@
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.duplication.DuplicationUnitDto;
@@ -38,6 +46,7 @@ import org.sonar.server.computation.component.CrawlerDepthLimit;
 import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationHashIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.snapshot.Snapshot;
@@ -52,33 +61,47 @@ import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_
  * Blocks can be empty if :
  * - The file is excluded from the analysis using {@link org.sonar.api.CoreProperties#CPD_EXCLUSIONS}
  * - On Java, if the number of statements of the file is too small, nothing will be sent.
+ *
+ * Only the hashes which might exist in DB according to {@link CrossProjectDuplicationHashIndex} are looked up in DB.
+ * The blocks of several files of the same language are looked up with the same queries.
  */
 public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(LoadCrossProjectDuplicationsRepositoryStep.class);
 
+  /**
+   * Number of candidate hashes from which blocks of pending files of a language are looked up in DB
+   */
+  private static final int HASHES_PER_BATCH = DatabaseUtils.PARTITION_SIZE_FOR_ORACLE;
+
   private final TreeRootHolder treeRootHolder;
   private final BatchReportReader reportReader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectDuplicationHashIndex hashIndex;
   private final DbClient dbClient;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, CrossProjectDuplicationHashIndex hashIndex, DbClient dbClient) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.hashIndex = hashIndex;
     this.dbClient = dbClient;
   }
 
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        CrossProjectDuplicationVisitor visitor = new CrossProjectDuplicationVisitor(dbSession);
+        new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+        visitor.flushAll();
+      }
     }
   }
 
@@ -88,9 +111,12 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   }
 
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    private final DbSession dbSession;
+    private final Map<String, PendingFiles> pendingFilesByLanguage = new HashMap<>();
 
-    private CrossProjectDuplicationVisitor() {
+    private CrossProjectDuplicationVisitor(DbSession dbSession) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
+      this.dbSession = dbSession;
     }
 
     @Override
@@ -101,37 +127,104 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
         return;
       }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
+      Set<String> candidateHashes = new HashSet<>();
+      for (CpdTextBlock cpdTextBlock : cpdTextBlocks) {
+        if (hashIndex.mightContain(cpdTextBlock.getHash())) {
+          candidateHashes.add(cpdTextBlock.getHash());
+        }
+      }
+      if (candidateHashes.isEmpty()) {
+        return;
+      }
+
+      String language = file.getFileAttributes().getLanguageKey();
+      PendingFiles pendingFiles = pendingFilesByLanguage.get(language);
+      if (pendingFiles == null) {
+        pendingFiles = new PendingFiles(language);
+        pendingFilesByLanguage.put(language, pendingFiles);
+      }
+      pendingFiles.add(new PendingFile(file, cpdTextBlocks, candidateHashes));
+      if (pendingFiles.hashes.size() >= HASHES_PER_BATCH) {
+        flush(pendingFiles);
+      }
+    }
+
+    private void flushAll() {
+      for (PendingFiles pendingFiles : pendingFilesByLanguage.values()) {
+        flush(pendingFiles);
+      }
+    }
+
+    private void flush(PendingFiles pendingFiles) {
+      if (pendingFiles.files.isEmpty()) {
+        return;
+      }
+      ListMultimap<String, DuplicationUnitDto> dtosByHash = ArrayListMultimap.create();
+      for (DuplicationUnitDto dto : selectDuplicates(pendingFiles.language, pendingFiles.hashes)) {
+        dtosByHash.put(dto.getHash(), dto);
+      }
+      for (PendingFile pendingFile : pendingFiles.files) {
+        computeCpd(pendingFile, dtosByHash);
+      }
+      pendingFiles.clear();
+    }
+
+    private void computeCpd(PendingFile pendingFile, ListMultimap<String, DuplicationUnitDto> dtosByHash) {
+      List<DuplicationUnitDto> dtos = new ArrayList<>();
+      for (String hash : pendingFile.candidateHashes) {
+        dtos.addAll(dtosByHash.get(hash));
+      }
       if (dtos.isEmpty()) {
         return;
       }
 
+      Component file = pendingFile.file;
       Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
-      Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
+      Collection<Block> originBlocks = from(pendingFile.cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
       LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
 
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      DbSession dbSession = dbClient.openSession(false);
-      try {
-        Snapshot projectSnapshot = analysisMetadataHolder.getBaseProjectSnapshot();
-        Long projectSnapshotId = projectSnapshot == null ? null : projectSnapshot.getId();
-        return dbClient.duplicationDao().selectCandidates(dbSession, projectSnapshotId, file.getFileAttributes().getLanguageKey(), hashes);
-      } finally {
-        dbClient.closeSession(dbSession);
-      }
+    private List<DuplicationUnitDto> selectDuplicates(String language, Collection<String> hashes) {
+      Snapshot projectSnapshot = analysisMetadataHolder.getBaseProjectSnapshot();
+      Long projectSnapshotId = projectSnapshot == null ? null : projectSnapshot.getId();
+      return dbClient.duplicationDao().selectCandidates(dbSession, projectSnapshotId, language, hashes);
     }
   }
 
-  private enum CpdTextBlockToHash implements Function<CpdTextBlock, String> {
-    INSTANCE;
+  /**
+   * Files of a language which blocks have not been looked up in DB yet
+   */
+  private static final class PendingFiles {
+    private final String language;
+    private final List<PendingFile> files = new ArrayList<>();
+    private final Set<String> hashes = new HashSet<>();
 
-    @Override
-    public String apply(@Nonnull CpdTextBlock duplicationBlock) {
-      return duplicationBlock.getHash();
+    private PendingFiles(String language) {
+      this.language = language;
+    }
+
+    private void add(PendingFile file) {
+      files.add(file);
+      hashes.addAll(file.candidateHashes);
+    }
+
+    private void clear() {
+      files.clear();
+      hashes.clear();
+    }
+  }
+
+  private static final class PendingFile {
+    private final Component file;
+    private final List<CpdTextBlock> cpdTextBlocks;
+    private final Set<String> candidateHashes;
+
+    private PendingFile(Component file, List<CpdTextBlock> cpdTextBlocks, Set<String> candidateHashes) {
+      this.file = file;
+      this.cpdTextBlocks = cpdTextBlocks;
+      this.candidateHashes = candidateHashes;
     }
   }
 
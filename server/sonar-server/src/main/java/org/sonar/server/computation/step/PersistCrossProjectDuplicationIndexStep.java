@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -31,41 +33,50 @@ import org.sonar.server.computation.component.DbIdsRepository;
 import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationHashIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
 
 import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.holder;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.table;
 
 /**
- * Persist cross project duplications text blocks into DUPLICATIONS_INDEX table
+ * Persist cross project duplications text blocks into DUPLICATIONS_INDEX table, and add their hashes to
+ * {@link CrossProjectDuplicationHashIndex}
  */
-public class PersistCrossProjectDuplicationIndexStep implements ComputationStep {
+public class PersistCrossProjectDuplicationIndexStep implements ResourceAwareComputationStep {
 
   private final DbClient dbClient;
   private final TreeRootHolder treeRootHolder;
   private final BatchReportReader reportReader;
   private final DbIdsRepository dbIdsRepository;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectDuplicationHashIndex hashIndex;
 
   public PersistCrossProjectDuplicationIndexStep(DbClient dbClient, DbIdsRepository dbIdsRepository, TreeRootHolder treeRootHolder, BatchReportReader reportReader,
-    CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder) {
+    CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder, CrossProjectDuplicationHashIndex hashIndex) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.dbIdsRepository = dbIdsRepository;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.hashIndex = hashIndex;
   }
 
   @Override
   public void execute() {
+    if (!crossProjectDuplicationStatusHolder.isEnabled()) {
+      return;
+    }
+    hashIndex.startInsertions();
     DbSession session = dbClient.openSession(true);
     try {
-      if (crossProjectDuplicationStatusHolder.isEnabled()) {
-        Component project = treeRootHolder.getRoot();
-        long projectSnapshotId = dbIdsRepository.getSnapshotId(project);
-        new DepthTraversalTypeAwareCrawler(new DuplicationVisitor(session, projectSnapshotId)).visit(project);
-      }
+      Component project = treeRootHolder.getRoot();
+      long projectSnapshotId = dbIdsRepository.getSnapshotId(project);
+      new DepthTraversalTypeAwareCrawler(new DuplicationVisitor(session, projectSnapshotId)).visit(project);
       session.commit();
     } finally {
+      hashIndex.endInsertions();
       dbClient.closeSession(session);
     }
   }
@@ -102,6 +113,7 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
               .setSnapshotId(dbIdsRepository.getSnapshotId(component))
               .setProjectSnapshotId(projectSnapshotId)
             );
+          hashIndex.put(block.getHash());
           indexInFile++;
         }
       } finally {
@@ -110,6 +122,16 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
     }
   }
 
+  @Override
+  public Set<String> getReadResources() {
+    return ImmutableSet.of(holder(TreeRootHolder.class), holder(BatchReportReader.class), holder(DbIdsRepository.class), holder(CrossProjectDuplicationStatusHolder.class));
+  }
+
+  @Override
+  public Set<String> getWrittenResources() {
+    return ImmutableSet.of(table("duplications_index"), holder(CrossProjectDuplicationHashIndex.class));
+  }
+
   @Override
   public String getDescription() {
     return "Persist cross project duplications index";
@@ -20,6 +20,8 @@
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
@@ -38,8 +40,10 @@ import org.sonar.server.computation.event.Event;
 import org.sonar.server.computation.event.EventRepository;
 
 import static com.google.common.collect.Iterables.transform;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.holder;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.table;
 
-public class PersistEventsStep implements ComputationStep {
+public class PersistEventsStep implements ResourceAwareComputationStep {
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -130,6 +134,16 @@ public class PersistEventsStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<String> getReadResources() {
+    return ImmutableSet.of(holder(TreeRootHolder.class), holder(AnalysisMetadataHolder.class), holder(EventRepository.class), holder(DbIdsRepository.class));
+  }
+
+  @Override
+  public Set<String> getWrittenResources() {
+    return ImmutableSet.of(table("events"));
+  }
+
   @Override
   public String getDescription() {
     return "Persist events";
@@ -20,11 +20,23 @@
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -46,6 +58,7 @@ import org.sonar.server.computation.component.CrawlerDepthLimit;
 import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.duplication.DuplicationRepository;
 import org.sonar.server.computation.scm.Changeset;
 import org.sonar.server.computation.scm.ScmInfo;
@@ -61,8 +74,10 @@ import org.sonar.server.computation.source.SourceLinesRepository;
 import org.sonar.server.computation.source.SymbolsLineReader;
 
 import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.holder;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.table;
 
-public class PersistFileSourcesStep implements ComputationStep {
+public class PersistFileSourcesStep implements ResourceAwareComputationStep {
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -71,9 +86,10 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final CeConfiguration ceConfiguration;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, CeConfiguration ceConfiguration) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -81,112 +97,282 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    DbSession session = dbClient.openSession(false);
+    Component project = treeRootHolder.getRoot();
+    final Map<String, Component> filesByUuid = collectFiles(project);
+
+    DbSession readSession = dbClient.openSession(false);
+    // Batch session is committed every few files or bytes (see FileSourceWriter), which bounds the
+    // data kept in memory for big files
+    DbSession writeSession = dbClient.openSession(true);
+    final FileSourcesPipeline pipeline = new FileSourcesPipeline(new FileSourceWriter(writeSession, project.getUuid()));
     try {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(session))
-        .visit(treeRootHolder.getRoot());
+      // hashes of previous sources are not kept in memory, files are persisted while being read
+      readSession.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject",
+        ImmutableMap.of("projectUuid", project.getUuid(), "dataType", Type.SOURCE),
+        new ResultHandler() {
+          @Override
+          public void handleResult(ResultContext context) {
+            FileSourceDto previousDto = (FileSourceDto) context.getResultObject();
+            Component file = filesByUuid.remove(previousDto.getFileUuid());
+            if (file != null) {
+              pipeline.add(file, previousDto);
+            }
+          }
+        });
+      // new files
+      for (Component file : filesByUuid.values()) {
+        pipeline.add(file, null);
+      }
+      pipeline.finish();
     } finally {
-      MyBatis.closeQuietly(session);
+      pipeline.close();
+      MyBatis.closeQuietly(writeSession);
+      MyBatis.closeQuietly(readSession);
     }
   }
 
-  private class FileSourceVisitor extends TypeAwareVisitorAdapter {
+  private static Map<String, Component> collectFiles(Component project) {
+    final Map<String, Component> filesByUuid = new LinkedHashMap<>();
+    new DepthTraversalTypeAwareCrawler(
+      new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, PRE_ORDER) {
+        @Override
+        public void visitFile(Component file) {
+          filesByUuid.put(file.getUuid(), file);
+        }
+      }).visit(project);
+    return filesByUuid;
+  }
 
-    private final DbSession session;
+  /**
+   * Computes the source data of a file. It only reads from the report and from repositories which are not modified
+   * anymore and can therefore be called concurrently for different files.
+   */
+  private ComputedFileSource compute(Component file, Optional<ScmInfo> scmInfo) {
+    int fileRef = file.getReportAttributes().getRef();
+    ScannerReport.Component component = reportReader.readComponent(fileRef);
+    CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
+    LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplicationRepository, file);
+    try {
+      ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
+      ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
+      byte[] data = FileSourceDto.encodeSourceData(fileSourceData.getFileSourceData());
+      return new ComputedFileSource(data, fileSourceData.getSrcHash(), fileSourceData.getLineHashes(), computeRevision(lineReaders.getLatestChange()));
+    } catch (Exception e) {
+      throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+    } finally {
+      linesIterator.close();
+      lineReaders.close();
+    }
+  }
 
-    private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
-    private String projectUuid;
+  @CheckForNull
+  private static String computeRevision(@Nullable Changeset latestChange) {
+    if (latestChange == null) {
+      return null;
+    }
+    return latestChange.getRevision();
+  }
 
-    private FileSourceVisitor(DbSession session) {
-      super(CrawlerDepthLimit.FILE, PRE_ORDER);
-      this.session = session;
+  private static final class ComputedFileSource {
+    private final byte[] data;
+    private final String dataHash;
+    private final String srcHash;
+    private final String lineHashes;
+    @CheckForNull
+    private final String revision;
+
+    private ComputedFileSource(byte[] data, String srcHash, String lineHashes, @Nullable String revision) {
+      this.data = data;
+      this.dataHash = DigestUtils.md5Hex(data);
+      this.srcHash = srcHash;
+      this.lineHashes = lineHashes;
+      this.revision = revision;
     }
+  }
 
-    @Override
-    public void visitProject(Component project) {
-      this.projectUuid = project.getUuid();
-      session.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject", ImmutableMap.of("projectUuid", projectUuid, "dataType", Type.SOURCE),
-        new ResultHandler() {
-          @Override
-          public void handleResult(ResultContext context) {
-            FileSourceDto dto = (FileSourceDto) context.getResultObject();
-            previousFileSourcesByUuid.put(dto.getFileUuid(), dto);
-          }
-        });
+  /**
+   * Sources of files are computed by {@link CeConfiguration#getFileSourcesComputationThreads()} threads and
+   * written by the calling thread, in the order the files are added. At most
+   * {@link CeConfiguration#getFileSourcesMaxInFlightBytes()} bytes of computed data are waiting to be written.
+   * Sources are computed by the calling thread when a single thread is configured.
+   */
+  private class FileSourcesPipeline {
+    private static final int MAX_IN_FLIGHT_FILES_PER_THREAD = 4;
+
+    private final FileSourceWriter writer;
+    @CheckForNull
+    private final ExecutorService executorService;
+    private final int maxInFlightFiles;
+    private final long maxInFlightBytes;
+    private final Deque<PendingFileSource> pendingFileSources = new ArrayDeque<>();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+
+    private FileSourcesPipeline(FileSourceWriter writer) {
+      this.writer = writer;
+      int threads = ceConfiguration.getFileSourcesComputationThreads();
+      if (threads > 1) {
+        this.executorService = Executors.newFixedThreadPool(threads,
+          new ThreadFactoryBuilder()
+            .setNameFormat("ce-file-sources-%d")
+            .setDaemon(true)
+            .build());
+      } else {
+        this.executorService = null;
+      }
+      this.maxInFlightFiles = threads * MAX_IN_FLIGHT_FILES_PER_THREAD;
+      this.maxInFlightBytes = ceConfiguration.getFileSourcesMaxInFlightBytes();
     }
 
-    @Override
-    public void visitFile(Component file) {
-      int fileRef = file.getReportAttributes().getRef();
-      ScannerReport.Component component = reportReader.readComponent(fileRef);
-      CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-      LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
+    private void add(final Component file, @Nullable FileSourceDto previousDto) {
+      // ScmInfoRepository is not thread-safe, ScmInfo is loaded by the calling thread
+      final Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+      if (executorService == null) {
+        writer.write(file, previousDto, compute(file, scmInfo));
+        return;
+      }
+
+      while (pendingFileSources.size() >= maxInFlightFiles || inFlightBytes.get() >= maxInFlightBytes) {
+        writeNext();
+      }
+      Future<ComputedFileSource> future = executorService.submit(new Callable<ComputedFileSource>() {
+        @Override
+        public ComputedFileSource call() {
+          ComputedFileSource computedFileSource = compute(file, scmInfo);
+          inFlightBytes.addAndGet(computedFileSource.data.length);
+          return computedFileSource;
+        }
+      });
+      pendingFileSources.add(new PendingFileSource(file, previousDto, future));
+    }
+
+    private void finish() {
+      while (!pendingFileSources.isEmpty()) {
+        writeNext();
+      }
+      writer.commitPending();
+    }
+
+    private void writeNext() {
+      PendingFileSource pending = pendingFileSources.remove();
+      ComputedFileSource computedFileSource = getQuietly(pending.future);
+      inFlightBytes.addAndGet(-computedFileSource.data.length);
+      writer.write(pending.file, pending.previousDto, computedFileSource);
+    }
+
+    private ComputedFileSource getQuietly(Future<ComputedFileSource> future) {
       try {
-        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
-        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
-      } finally {
-        linesIterator.close();
-        lineReaders.close();
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while computing sources", e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException(e.getCause());
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+    private void close() {
+      if (executorService != null) {
+        // pending computations are useless when execution fails
+        executorService.shutdownNow();
+      }
+    }
+  }
 
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
-      String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
-      FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
+  private static final class PendingFileSource {
+    private final Component file;
+    @CheckForNull
+    private final FileSourceDto previousDto;
+    private final Future<ComputedFileSource> future;
 
+    private PendingFileSource(Component file, @Nullable FileSourceDto previousDto, Future<ComputedFileSource> future) {
+      this.file = file;
+      this.previousDto = previousDto;
+      this.future = future;
+    }
+  }
+
+  private class FileSourceWriter {
+
+    private final DbSession session;
+    private final String projectUuid;
+    private final int commitMaxFiles;
+    private final long commitMaxBytes;
+    private int pendingFiles = 0;
+    private long pendingBytes = 0L;
+
+    private FileSourceWriter(DbSession session, String projectUuid) {
+      this.session = session;
+      this.projectUuid = projectUuid;
+      this.commitMaxFiles = ceConfiguration.getFileSourcesCommitMaxFiles();
+      this.commitMaxBytes = ceConfiguration.getFileSourcesCommitMaxBytes();
+    }
+
+    private void write(Component file, @Nullable FileSourceDto previousDto, ComputedFileSource source) {
+      try {
+        persistSource(file.getUuid(), previousDto, source);
+      } catch (Exception e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+      }
+    }
+
+    private void persistSource(String componentUuid, @Nullable FileSourceDto previousDto, ComputedFileSource source) {
       if (previousDto == null) {
         FileSourceDto dto = new FileSourceDto()
           .setProjectUuid(projectUuid)
           .setFileUuid(componentUuid)
           .setDataType(Type.SOURCE)
-          .setBinaryData(data)
-          .setSrcHash(srcHash)
-          .setDataHash(dataHash)
-          .setLineHashes(lineHashes)
+          .setBinaryData(source.data)
+          .setSrcHash(source.srcHash)
+          .setDataHash(source.dataHash)
+          .setLineHashes(source.lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(source.revision);
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        addPending(source.data.length);
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
+        boolean binaryDataUpdated = !source.dataHash.equals(previousDto.getDataHash());
+        boolean srcHashUpdated = !source.srcHash.equals(previousDto.getSrcHash());
+        boolean revisionUpdated = !ObjectUtils.equals(source.revision, previousDto.getRevision());
         if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
           previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
+            .setBinaryData(source.data)
+            .setDataHash(source.dataHash)
+            .setSrcHash(source.srcHash)
+            .setLineHashes(source.lineHashes)
+            .setRevision(source.revision)
             .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(previousDto);
-          session.commit();
+          dbClient.fileSourceDao().update(session, previousDto);
+          addPending(source.data.length);
         }
       }
     }
 
-    @CheckForNull
-    private String computeRevision(@Nullable Changeset latestChange) {
-      if (latestChange == null) {
-        return null;
+    private void addPending(int dataLength) {
+      pendingFiles++;
+      pendingBytes += dataLength;
+      if (pendingFiles >= commitMaxFiles || pendingBytes >= commitMaxBytes) {
+        commit();
+      }
+    }
+
+    private void commitPending() {
+      if (pendingFiles > 0) {
+        commit();
       }
-      return latestChange.getRevision();
+    }
+
+    private void commit() {
+      session.commit();
+      pendingFiles = 0;
+      pendingBytes = 0L;
     }
   }
 
@@ -196,13 +382,12 @@ public class PersistFileSourcesStep implements ComputationStep {
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, DuplicationRepository duplicationRepository, Component component) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<ScannerReport.LineCoverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
@@ -241,6 +426,17 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<String> getReadResources() {
+    return ImmutableSet.of(holder(TreeRootHolder.class), holder(BatchReportReader.class), holder(SourceLinesRepository.class), holder(DuplicationRepository.class));
+  }
+
+  @Override
+  public Set<String> getWrittenResources() {
+    // ScmInfoRepository lazily loads and caches data, it is therefore considered as written
+    return ImmutableSet.of(holder(ScmInfoRepository.class), table("file_sources"));
+  }
+
   @Override
   public String getDescription() {
     return "Persist sources";
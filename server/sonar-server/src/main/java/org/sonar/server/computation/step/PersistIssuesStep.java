@@ -19,11 +19,15 @@
  */
 package org.sonar.server.computation.step;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.ibatis.executor.BatchResult;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.DefaultIssueComment;
 import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.BatchSession;
 import org.sonar.db.issue.IssueChangeDto;
 import org.sonar.db.issue.IssueChangeMapper;
 import org.sonar.db.issue.IssueDto;
@@ -32,32 +36,50 @@ import org.sonar.server.computation.issue.UpdateConflictResolver;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.server.computation.issue.IssueCache;
+import org.sonar.server.computation.issue.MutablePersistedIssuesHolder;
 import org.sonar.server.computation.issue.RuleRepository;
 import org.sonar.db.DbClient;
 import org.sonar.core.util.CloseableIterator;
 
+/**
+ * Inserts, updates and issue changes are sent in three distinct batch sessions, so that each of them is executed
+ * as JDBC batches of a single statement, with periodic commits.
+ */
 public class PersistIssuesStep implements ComputationStep {
 
+  /**
+   * Updates are flushed before {@link BatchSession} automatically commits, which would lose the update counts
+   * required to detect conflicts.
+   */
+  private static final int UPDATE_BATCH_SIZE = BatchSession.MAX_BATCH_SIZE - 1;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final UpdateConflictResolver conflictResolver;
   private final RuleRepository ruleRepository;
   private final IssueCache issueCache;
+  private final MutablePersistedIssuesHolder persistedIssuesHolder;
 
   public PersistIssuesStep(DbClient dbClient, System2 system2, UpdateConflictResolver conflictResolver,
-    RuleRepository ruleRepository, IssueCache issueCache) {
+    RuleRepository ruleRepository, IssueCache issueCache, MutablePersistedIssuesHolder persistedIssuesHolder) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.conflictResolver = conflictResolver;
     this.ruleRepository = ruleRepository;
     this.issueCache = issueCache;
+    this.persistedIssuesHolder = persistedIssuesHolder;
   }
 
   @Override
   public void execute() {
-    DbSession session = dbClient.openSession(true);
-    IssueMapper mapper = session.getMapper(IssueMapper.class);
-    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
+    // same date for all the issues, so that they can be indexed without being read again from DB
+    long now = system2.now();
+    DbSession insertSession = dbClient.openSession(true);
+    DbSession updateSession = dbClient.openSession(true);
+    DbSession changeSession = dbClient.openSession(true);
+    IssueMapper insertMapper = insertSession.getMapper(IssueMapper.class);
+    IssueUpdates updates = new IssueUpdates(updateSession, now);
+    IssueChangeMapper changeMapper = changeSession.getMapper(IssueChangeMapper.class);
 
     CloseableIterator<DefaultIssue> issues = issueCache.traverse();
     try {
@@ -66,31 +88,34 @@ public class PersistIssuesStep implements ComputationStep {
         boolean saved = false;
         if (issue.isNew()) {
           Integer ruleId = ruleRepository.getByKey(issue.ruleKey()).getId();
-          IssueDto dto = IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now());
-          mapper.insert(dto);
+          IssueDto dto = IssueDto.toDtoForComputationInsert(issue, ruleId, now);
+          insertMapper.insert(dto);
           saved = true;
         } else if (issue.isChanged()) {
-          IssueDto dto = IssueDto.toDtoForUpdate(issue, system2.now());
-          int updateCount = mapper.updateIfBeforeSelectedDate(dto);
-          if (updateCount == 0) {
-            // End-user and scan changed the issue at the same time.
-            // See https://jira.sonarsource.com/browse/SONAR-4309
-            conflictResolver.resolve(issue, mapper);
-          }
+          updates.add(issue);
           saved = true;
         }
         if (saved) {
           insertChanges(changeMapper, issue);
         }
       }
-      session.flushStatements();
-      session.commit();
+      updates.flush();
+      flushAndCommit(insertSession);
+      flushAndCommit(changeSession);
+      persistedIssuesHolder.setPersisted(now, updates.conflicts);
     } finally {
-      MyBatis.closeQuietly(session);
+      MyBatis.closeQuietly(insertSession);
+      MyBatis.closeQuietly(updateSession);
+      MyBatis.closeQuietly(changeSession);
       issues.close();
     }
   }
 
+  private static void flushAndCommit(DbSession session) {
+    session.flushStatements();
+    session.commit();
+  }
+
   private static void insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
     for (IssueComment comment : issue.comments()) {
       DefaultIssueComment c = (DefaultIssueComment) comment;
@@ -106,6 +131,68 @@ public class PersistIssuesStep implements ComputationStep {
     }
   }
 
+  /**
+   * Batch of updates of existing issues. Update counts are checked when the batch is flushed, in order to resolve
+   * conflicts with changes made by end-users during the analysis.
+   */
+  private class IssueUpdates {
+    private final DbSession session;
+    private final IssueMapper mapper;
+    private final long now;
+    private final List<DefaultIssue> pendingIssues = new ArrayList<>(UPDATE_BATCH_SIZE);
+    private boolean conflicts = false;
+
+    private IssueUpdates(DbSession session, long now) {
+      this.session = session;
+      this.mapper = session.getMapper(IssueMapper.class);
+      this.now = now;
+    }
+
+    private void add(DefaultIssue issue) {
+      IssueDto dto = IssueDto.toDtoForUpdate(issue, now);
+      mapper.updateIfBeforeSelectedDate(dto);
+      pendingIssues.add(issue);
+      if (pendingIssues.size() >= UPDATE_BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      int[] updateCounts = updateCounts(session.flushStatements());
+      if (updateCounts.length != pendingIssues.size()) {
+        throw new IllegalStateException(String.format("%d update counts returned for %d updated issues", updateCounts.length, pendingIssues.size()));
+      }
+      for (int i = 0; i < updateCounts.length; i++) {
+        // Statement.SUCCESS_NO_INFO is returned by some drivers when count is not known. Update is then
+        // considered as successful.
+        if (updateCounts[i] == 0) {
+          // End-user and scan changed the issue at the same time.
+          // See https://jira.sonarsource.com/browse/SONAR-4309
+          conflictResolver.resolve(pendingIssues.get(i), mapper);
+          conflicts = true;
+        }
+      }
+      // updates done by conflict resolution
+      flushAndCommit(session);
+      pendingIssues.clear();
+    }
+
+    private int[] updateCounts(List<BatchResult> batchResults) {
+      int size = 0;
+      for (BatchResult batchResult : batchResults) {
+        size += batchResult.getUpdateCounts().length;
+      }
+      int[] updateCounts = new int[size];
+      int offset = 0;
+      for (BatchResult batchResult : batchResults) {
+        int[] counts = batchResult.getUpdateCounts();
+        System.arraycopy(counts, 0, updateCounts, offset, counts.length);
+        offset += counts.length;
+      }
+      return updateCounts;
+    }
+  }
+
   @Override
   public String getDescription() {
     return "Persist issues";
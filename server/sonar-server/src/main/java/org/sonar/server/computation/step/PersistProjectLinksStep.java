@@ -21,6 +21,7 @@ package org.sonar.server.computation.step;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import java.util.List;
 import java.util.Locale;
@@ -43,11 +44,13 @@ import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
 
 import static com.google.common.collect.Sets.newHashSet;
 import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.holder;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.table;
 
 /**
  * Persist project and module links
  */
-public class PersistProjectLinksStep implements ComputationStep {
+public class PersistProjectLinksStep implements ResourceAwareComputationStep {
 
   private final DbClient dbClient;
   private final I18n i18n;
@@ -155,6 +158,16 @@ public class PersistProjectLinksStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<String> getReadResources() {
+    return ImmutableSet.of(holder(TreeRootHolder.class), holder(BatchReportReader.class));
+  }
+
+  @Override
+  public Set<String> getWrittenResources() {
+    return ImmutableSet.of(table("project_links"));
+  }
+
   @Override
   public String getDescription() {
     return "Persist project links";
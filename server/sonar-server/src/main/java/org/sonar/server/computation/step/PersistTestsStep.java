@@ -23,6 +23,7 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Table;
 import java.util.ArrayList;
@@ -55,7 +56,10 @@ import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
 
-public class PersistTestsStep implements ComputationStep {
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.holder;
+import static org.sonar.server.computation.step.ResourceAwareComputationStep.Resources.table;
+
+public class PersistTestsStep implements ResourceAwareComputationStep {
 
   private static final Logger LOG = Loggers.get(PersistTestsStep.class);
 
@@ -86,6 +90,16 @@ public class PersistTestsStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<String> getReadResources() {
+    return ImmutableSet.of(holder(TreeRootHolder.class), holder(BatchReportReader.class));
+  }
+
+  @Override
+  public Set<String> getWrittenResources() {
+    return ImmutableSet.of(table("file_sources"));
+  }
+
   @Override
   public String getDescription() {
     return "Persist tests";
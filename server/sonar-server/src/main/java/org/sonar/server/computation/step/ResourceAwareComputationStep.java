@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import java.util.Set;
+
+/**
+ * A {@link ComputationStep} which declares the resources (holders, repositories, DB tables, ...) it reads and writes.
+ * <p>
+ * {@link ComputationStepExecutor} may execute such a step concurrently with the other {@link ResourceAwareComputationStep}
+ * next to it in {@link ComputationSteps#instances()} as long as none of them writes a resource the other one reads or
+ * writes. Any step which does not implement this interface is executed once all the steps before it are done and
+ * before any step after it is started.
+ * </p>
+ * <p>
+ * Resources are identified by name, by convention the fully qualified name of the class for holders and repositories
+ * (see {@link Resources#holder(Class)}) and the name of the table prefixed by {@code "table:"} for DB tables
+ * (see {@link Resources#table(String)}).
+ * </p>
+ */
+public interface ResourceAwareComputationStep extends ComputationStep {
+
+  /**
+   * Resources this step only reads.
+   */
+  Set<String> getReadResources();
+
+  /**
+   * Resources this step modifies.
+   */
+  Set<String> getWrittenResources();
+
+  final class Resources {
+    private Resources() {
+      // only statics
+    }
+
+    public static String holder(Class<?> holderClass) {
+      return holderClass.getName();
+    }
+
+    public static String table(String tableName) {
+      return "table:" + tableName;
+    }
+  }
+}
@@ -23,4 +23,10 @@ public interface CeProcessingScheduler {
 
   void startScheduling();
 
+  /**
+   * Makes the idle workers poll the queue right away instead of waiting for the end of the polling delay, for
+   * instance because tasks have just been submitted. Does nothing if scheduling is not started.
+   */
+  void wakeUp();
+
 }
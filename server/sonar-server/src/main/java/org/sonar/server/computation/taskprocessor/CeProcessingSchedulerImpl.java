@@ -22,7 +22,9 @@ package org.sonar.server.computation.taskprocessor;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -31,32 +33,49 @@ import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.queue.InternalCeQueue;
 
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Runs {@link CeConfiguration#getWorkerCount()} workers which poll the queue with a delay of
+ * {@link CeConfiguration#getQueuePollingDelay()} when it is empty. Idle workers can be woken up with {@link #wakeUp()}.
+ * <p>
+ * When {@link CeConfiguration#getMaxWorkerCount()} is greater than the worker count, additional workers are started
+ * as long as more tasks can be peeked from the queue than there are idle workers and enough free heap (see
+ * {@link CeConfiguration#getWorkerMinFreeHeapPercent()}). Such a worker stops as soon as it finds the queue empty.
+ * </p>
+ */
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
   private static final Logger LOG = Loggers.get(CeProcessingSchedulerImpl.class);
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final CeWorkerCallable workerRunnable;
+  private final InternalCeQueue queue;
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
+  private final int maxWorkerCount;
+  private final int minFreeHeapPercent;
   private final ChainingCallback[] chainingCallbacks;
+  private final Set<ChainingCallback> additionalCallbacks = Collections.newSetFromMap(new ConcurrentHashMap<ChainingCallback, Boolean>());
+  private volatile boolean scheduling = false;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
-    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable, InternalCeQueue queue) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
+    this.queue = queue;
 
     this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
     this.timeUnit = MILLISECONDS;
+    this.maxWorkerCount = ceConfiguration.getMaxWorkerCount();
+    this.minFreeHeapPercent = ceConfiguration.getWorkerMinFreeHeapPercent();
 
     int workerCount = ceConfiguration.getWorkerCount();
     this.chainingCallbacks = new ChainingCallback[workerCount];
     for (int i = 0; i < workerCount; i++) {
-      chainingCallbacks[i] = new ChainingCallback();
+      chainingCallbacks[i] = new ChainingCallback(false);
     }
   }
 
@@ -67,28 +86,101 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   @Override
   public void startScheduling() {
+    scheduling = true;
     for (ChainingCallback chainingCallback : chainingCallbacks) {
-      ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
-      addCallback(future, chainingCallback, executorService);
+      chainingCallback.chainWithDelay();
     }
   }
 
+  @Override
+  public void wakeUp() {
+    if (!scheduling) {
+      return;
+    }
+    int wokenUp = 0;
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (chainingCallback.wakeUp()) {
+        wokenUp++;
+      }
+    }
+    addWorkersIfNeeded(wokenUp);
+  }
+
+  /**
+   * Starts additional workers for the tasks which can be peeked and will not be processed by the
+   * {@code availableWorkers}. The queue is read without holding the lock, as this is called each time a task is
+   * processed.
+   */
+  private void addWorkersIfNeeded(int availableWorkers) {
+    int workerCount = getWorkerCount();
+    if (!scheduling || workerCount >= maxWorkerCount) {
+      return;
+    }
+    long eligibleTaskCount = queue.countEligibleForPeek();
+    synchronized (this) {
+      // workers started concurrently since the queue was read will process some of the eligible tasks
+      int currentWorkerCount = getWorkerCount();
+      long missingWorkers = Math.min(
+        eligibleTaskCount - availableWorkers - Math.max(0, currentWorkerCount - workerCount),
+        (long) maxWorkerCount - currentWorkerCount);
+      if (!scheduling || missingWorkers <= 0) {
+        return;
+      }
+      if (!hasEnoughFreeHeap()) {
+        LOG.debug("Not enough free heap to start additional Compute Engine workers");
+        return;
+      }
+      for (int i = 0; i < missingWorkers; i++) {
+        ChainingCallback chainingCallback = new ChainingCallback(true);
+        additionalCallbacks.add(chainingCallback);
+        chainingCallback.chainWithoutDelay();
+      }
+    }
+  }
+
+  private int getWorkerCount() {
+    return chainingCallbacks.length + additionalCallbacks.size();
+  }
+
+  private boolean hasEnoughFreeHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long maxMemory = runtime.maxMemory();
+    long freeMemory = maxMemory - (runtime.totalMemory() - runtime.freeMemory());
+    return freeMemory * 100 >= maxMemory * minFreeHeapPercent;
+  }
+
   @Override
   public void stop() {
+    scheduling = false;
     for (ChainingCallback chainingCallback : chainingCallbacks) {
       chainingCallback.stop();
     }
+    for (ChainingCallback chainingCallback : additionalCallbacks) {
+      chainingCallback.stop();
+    }
   }
 
   private class ChainingCallback implements FutureCallback<Boolean> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
+    private final boolean additional;
     @CheckForNull
-    private ListenableFuture<Boolean> workerFuture;
+    private volatile ListenableFuture<Boolean> workerFuture;
+    private volatile boolean delayed = false;
+
+    private ChainingCallback(boolean additional) {
+      this.additional = additional;
+    }
 
     @Override
     public void onSuccess(@Nullable Boolean result) {
       if (result != null && result) {
         chainWithoutDelay();
+        if (maxWorkerCount > chainingCallbacks.length) {
+          // this worker polls the queue again right away
+          addWorkersIfNeeded(1);
+        }
+      } else if (additional) {
+        additionalCallbacks.remove(this);
       } else {
         chainWithDelay();
       }
@@ -99,11 +191,13 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
+        // also called when a delayed polling is cancelled by wakeUp()
         chainWithoutDelay();
       }
     }
 
     private void chainWithoutDelay() {
+      delayed = false;
       if (keepRunning()) {
         workerFuture = executorService.submit(workerRunnable);
       }
@@ -112,14 +206,16 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
     private void chainWithDelay() {
       if (keepRunning()) {
+        delayed = true;
         workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
       }
       addCallback();
     }
 
     private void addCallback() {
-      if (workerFuture != null && keepRunning()) {
-        Futures.addCallback(workerFuture, this, executorService);
+      ListenableFuture<Boolean> future = workerFuture;
+      if (future != null && keepRunning()) {
+        Futures.addCallback(future, this, executorService);
       }
     }
 
@@ -127,10 +223,19 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       return keepRunning.get();
     }
 
+    /**
+     * @return {@code true} if this worker was waiting for the polling delay and will now poll the queue immediately
+     */
+    public boolean wakeUp() {
+      ListenableFuture<Boolean> future = workerFuture;
+      return delayed && future != null && keepRunning() && future.cancel(false);
+    }
+
     public void stop() {
       this.keepRunning.set(false);
-      if (workerFuture != null) {
-        workerFuture.cancel(false);
+      ListenableFuture<Boolean> future = workerFuture;
+      if (future != null) {
+        future.cancel(false);
       }
     }
   }
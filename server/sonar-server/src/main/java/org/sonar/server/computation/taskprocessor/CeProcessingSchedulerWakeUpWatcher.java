@@ -0,0 +1,116 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.taskprocessor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.process.DefaultProcessCommands;
+import org.sonar.process.ProcessId;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.sonar.process.ProcessEntryPoint.PROPERTY_SHARED_PATH;
+
+/**
+ * Watches the wake-up requests sent to the Compute Engine through the shared memory, for instance by the Web Server
+ * when tasks are submitted (see {@link org.sonar.process.ProcessCommands#askForWakeUp()}), and wakes up the idle
+ * workers of {@link CeProcessingScheduler}.
+ * <p>
+ * Nothing is watched when the shared directory is not defined. Workers then only rely on polling the queue.
+ * </p>
+ */
+public class CeProcessingSchedulerWakeUpWatcher implements Startable {
+  private static final Logger LOG = Loggers.get(CeProcessingSchedulerWakeUpWatcher.class);
+  private static final long WATCH_DELAY_MS = 100L;
+
+  private final Settings settings;
+  private final CeProcessingScheduler scheduler;
+
+  @CheckForNull
+  private DefaultProcessCommands processCommands;
+  @CheckForNull
+  private ScheduledExecutorService executorService;
+  private long wakeUpCount;
+
+  public CeProcessingSchedulerWakeUpWatcher(Settings settings, CeProcessingScheduler scheduler) {
+    this.settings = settings;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public void start() {
+    String sharedPath = settings.getString(PROPERTY_SHARED_PATH);
+    if (sharedPath == null) {
+      LOG.debug("Shared directory is not defined, Compute Engine workers will not be woken up on task submission");
+      return;
+    }
+    processCommands = DefaultProcessCommands.secondary(new File(sharedPath), ProcessId.COMPUTE_ENGINE.getIpcIndex());
+    wakeUpCount = processCommands.getWakeUpCount();
+    executorService = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder()
+        .setNameFormat("ce-wake-up-watcher-%d")
+        .setDaemon(true)
+        .build());
+    executorService.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          checkWakeUp();
+        } catch (RuntimeException e) {
+          LOG.error("Failed to check wake-up requests of Compute Engine workers", e);
+        }
+      }
+    }, WATCH_DELAY_MS, WATCH_DELAY_MS, MILLISECONDS);
+  }
+
+  /**
+   * Wakes up the workers if a wake-up request was sent since the previous call.
+   */
+  @VisibleForTesting
+  void checkWakeUp() {
+    if (processCommands == null) {
+      return;
+    }
+    long count = processCommands.getWakeUpCount();
+    if (count != wakeUpCount) {
+      wakeUpCount = count;
+      scheduler.wakeUp();
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+      executorService = null;
+    }
+    if (processCommands != null) {
+      processCommands.close();
+      processCommands = null;
+    }
+  }
+}
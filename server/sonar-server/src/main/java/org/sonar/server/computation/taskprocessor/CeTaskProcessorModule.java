@@ -28,6 +28,7 @@ public class CeTaskProcessorModule extends Module {
       CeTaskProcessorRepositoryImpl.class,
       CeWorkerCallableImpl.class,
       CeProcessingSchedulerExecutorServiceImpl.class,
-      CeProcessingSchedulerImpl.class);
+      CeProcessingSchedulerImpl.class,
+      CeProcessingSchedulerWakeUpWatcher.class);
   }
 }
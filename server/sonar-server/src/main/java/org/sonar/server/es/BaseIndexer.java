@@ -19,20 +19,33 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.server.ServerSide;
 
+/**
+ * Indexing requests are queued and executed by a single thread. A request is coalesced with the request of same key
+ * (see {@link #index(String, IndexerTask)}) which is still waiting in the queue, if any, as this request will load
+ * from database all the changes done until it is started. Requests to index everything ({@link #index()}) are
+ * coalesced together. The caller waits for its request to be executed.
+ */
 @ServerSide
 public abstract class BaseIndexer implements Startable {
 
+  private static final String ALL_KEY = "";
+
   private final ThreadPoolExecutor executor;
+  private final ConcurrentMap<String, QueuedTask> queuedTasksByKey = new ConcurrentHashMap<>();
   private final String indexName;
   private final String typeName;
   private final String dateFieldName;
@@ -60,32 +73,44 @@ public abstract class BaseIndexer implements Startable {
       threadKeepAliveSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
   }
 
-  public void index(final IndexerTask task) {
+  /**
+   * Executes the task. It is never coalesced with other tasks.
+   */
+  public void index(IndexerTask task) {
     if (enabled) {
-      final long requestedAt = System.currentTimeMillis();
-      Future submit = executor.submit(new Runnable() {
-        @Override
-        public void run() {
-          if (lastUpdatedAt == -1L) {
-            lastUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName);
-          }
-          if (requestedAt > lastUpdatedAt) {
-            long l = task.index(lastUpdatedAt);
-            // l can be 0 if no documents were indexed
-            lastUpdatedAt = Math.max(l, lastUpdatedAt);
-          }
-        }
-      });
-      try {
-        Uninterruptibles.getUninterruptibly(submit);
-      } catch (ExecutionException e) {
-        Throwables.propagate(e);
+      QueuedTask queuedTask = new QueuedTask(null, task);
+      executor.execute(queuedTask);
+      await(queuedTask);
+    }
+  }
+
+  /**
+   * @param key identifies the documents indexed by the task, for example the UUID of a project. Queued tasks
+   *            with the same key are executed once.
+   */
+  public void index(String key, IndexerTask task) {
+    if (enabled) {
+      QueuedTask queuedTask = new QueuedTask(key, task);
+      QueuedTask existingTask = queuedTasksByKey.putIfAbsent(key, queuedTask);
+      if (existingTask == null) {
+        executor.execute(queuedTask);
+      } else {
+        queuedTask = existingTask;
       }
+      await(queuedTask);
+    }
+  }
+
+  private static void await(QueuedTask queuedTask) {
+    try {
+      Uninterruptibles.getUninterruptibly(queuedTask);
+    } catch (ExecutionException e) {
+      Throwables.propagate(e);
     }
   }
 
   public void index() {
-    index(new IndexerTask() {
+    index(ALL_KEY, new IndexerTask() {
       @Override
       public long index(long lastUpdatedAt) {
         return doIndex(lastUpdatedAt);
@@ -100,6 +125,11 @@ public abstract class BaseIndexer implements Startable {
     return this;
   }
 
+  @VisibleForTesting
+  int queueSize() {
+    return queuedTasksByKey.size();
+  }
+
   @Override
   public void start() {
     // nothing to do at startup
@@ -114,4 +144,27 @@ public abstract class BaseIndexer implements Startable {
     long index(long lastUpdatedAt);
   }
 
+  private class QueuedTask extends FutureTask<Void> {
+    private QueuedTask(@Nullable final String key, final IndexerTask task) {
+      super(new Runnable() {
+        @Override
+        public void run() {
+          if (key != null) {
+            // from now, requests with the same key are not coalesced with this task anymore
+            queuedTasksByKey.remove(key);
+          }
+          long requestedAt = System.currentTimeMillis();
+          if (lastUpdatedAt == -1L) {
+            lastUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName);
+          }
+          if (requestedAt > lastUpdatedAt) {
+            long l = task.index(lastUpdatedAt);
+            // l can be 0 if no documents were indexed
+            lastUpdatedAt = Math.max(l, lastUpdatedAt);
+          }
+        }
+      }, null);
+    }
+  }
+
 }
@@ -52,7 +52,7 @@ import static java.lang.String.format;
  * <ul>
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
- *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>index refresh is optional (enabled by default) and can be delayed until the index is searched</li>
  * </ul>
  */
 public class BulkIndexer implements Startable {
@@ -67,6 +67,7 @@ public class BulkIndexer implements Startable {
   private boolean large = false;
   private long flushByteSize = FLUSH_BYTE_SIZE;
   private boolean disableRefresh = false;
+  private boolean refreshOnRead = false;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
@@ -108,6 +109,15 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Set to true to refresh the index only when it is searched again, instead of in method {@link #stop()}.
+   * See {@link EsClient#refreshBeforeNextRead(String)}.
+   */
+  public BulkIndexer setRefreshOnRead(boolean b) {
+    this.refreshOnRead = b;
+    return this;
+  }
+
   @Override
   public void start() {
     Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
@@ -197,7 +207,9 @@ public class BulkIndexer implements Startable {
     }
     progress.stop();
 
-    if (!disableRefresh) {
+    if (refreshOnRead) {
+      client.refreshBeforeNextRead(indexName);
+    } else if (!disableRefresh) {
       client.prepareRefresh(indexName).get();
     }
     if (large) {
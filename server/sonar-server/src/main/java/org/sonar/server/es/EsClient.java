@@ -19,6 +19,12 @@
  */
 package org.sonar.server.es;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang.StringUtils;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequestBuilder;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
@@ -88,6 +94,8 @@ public class EsClient implements Startable {
   public static final Logger LOGGER = Loggers.get("es");
   private final Settings settings;
   private Client nativeClient = null;
+  // indices changed since their last refresh, see refreshBeforeNextRead(String)
+  private final Set<String> indicesToRefresh = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   public EsClient(Settings settings) {
     this.settings = settings;
@@ -99,9 +107,35 @@ public class EsClient implements Startable {
   }
 
   public RefreshRequestBuilder prepareRefresh(String... indices) {
+    indicesToRefresh.removeAll(Arrays.asList(indices));
     return new ProxyRefreshRequestBuilder(nativeClient()).setIndices(indices);
   }
 
+  /**
+   * Requests the index to be refreshed before it is searched again with {@link #prepareSearch(String...)} or
+   * {@link #prepareCount(String...)}, instead of being refreshed immediately. Consecutive changes which are not
+   * read in between, for example the deletions of a purge, are made searchable by a single refresh.
+   * <p>
+   * Only the searches done through this instance are concerned.
+   * </p>
+   */
+  public void refreshBeforeNextRead(String index) {
+    indicesToRefresh.add(index);
+  }
+
+  private void refreshIfRequested(String... indices) {
+    if (indicesToRefresh.isEmpty()) {
+      return;
+    }
+    // all the indices are searched when none is specified
+    Collection<String> searchedIndices = indices.length == 0 ? new ArrayList<>(indicesToRefresh) : Arrays.asList(indices);
+    for (String index : searchedIndices) {
+      if (indicesToRefresh.remove(index)) {
+        new ProxyRefreshRequestBuilder(nativeClient()).setIndices(index).get();
+      }
+    }
+  }
+
   public FlushRequestBuilder prepareFlush(String... indices) {
     return new ProxyFlushRequestBuilder(nativeClient()).setIndices(indices);
   }
@@ -143,6 +177,7 @@ public class EsClient implements Startable {
   }
 
   public SearchRequestBuilder prepareSearch(String... indices) {
+    refreshIfRequested(indices);
     return new ProxySearchRequestBuilder(nativeClient()).setIndices(indices);
   }
 
@@ -163,6 +198,7 @@ public class EsClient implements Startable {
   }
 
   public CountRequestBuilder prepareCount(String... indices) {
+    refreshIfRequested(indices);
     return new ProxyCountRequestBuilder(nativeClient()).setIndices(indices);
   }
 
@@ -0,0 +1,118 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import java.util.Date;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.resources.Scopes;
+import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.core.issue.DefaultIssue;
+
+/**
+ * Builds {@link IssueDoc} from issues which are not read from DB, for example the issues just persisted by the
+ * Compute Engine. Fields have the same values as the ones read by {@link IssueResultSetIterator}.
+ */
+public final class IssueDocFactory {
+
+  private static final Splitter MODULE_PATH_SPLITTER = Splitter.on('.').trimResults().omitEmptyStrings();
+
+  private IssueDocFactory() {
+    // only statics
+  }
+
+  /**
+   * @param projectUuid uuid of the root component of the issue
+   * @param ruleLanguage language of the rule of the issue, if any
+   * @param moduleUuidPath module uuid path of the component of the issue, for example {@code ".PROJECT_UUID.MODULE_UUID."}
+   * @param componentPath path of the component of the issue, as persisted in column PROJECTS.PATH
+   * @param componentScope scope of the component of the issue, see {@link Scopes}
+   */
+  public static IssueDoc create(DefaultIssue issue, String projectUuid, Date technicalUpdateDate, @Nullable String ruleLanguage,
+    String moduleUuidPath, @Nullable String componentPath, String componentScope) {
+    IssueDoc doc = new IssueDoc(Maps.<String, Object>newHashMapWithExpectedSize(30));
+
+    // all the fields must be present, even if value is null
+    doc.setKey(issue.key());
+    doc.setProjectUuid(projectUuid);
+    doc.setTechnicalUpdateDate(technicalUpdateDate);
+    doc.setAssignee(issue.assignee());
+    doc.setGap(issue.gap());
+    doc.setAttributes(KeyValueFormat.format(issue.attributes()));
+    doc.setLine(issue.line());
+    doc.setMessage(issue.message());
+    doc.setResolution(issue.resolution());
+    doc.setSeverity(issue.severity());
+    doc.setManualSeverity(issue.manualSeverity());
+    doc.setChecksum(issue.checksum());
+    doc.setStatus(issue.status());
+    doc.setEffort(issue.effortInMinutes());
+    doc.setAuthorLogin(issue.authorLogin());
+    doc.setFuncCloseDate(issue.closeDate());
+    doc.setFuncCreationDate(issue.creationDate());
+    doc.setFuncUpdateDate(issue.updateDate());
+    doc.setRuleKey(issue.ruleKey().toString());
+    doc.setLanguage(ruleLanguage);
+    doc.setComponentUuid(issue.componentUuid());
+    doc.setModuleUuid(extractModule(moduleUuidPath));
+    doc.setModuleUuidPath(moduleUuidPath);
+    String filePath = extractFilePath(componentPath, componentScope);
+    doc.setFilePath(filePath);
+    doc.setDirectoryPath(extractDirPath(filePath, componentScope));
+    doc.setTags(ImmutableList.copyOf(issue.tags()));
+    doc.setType(issue.type());
+    return doc;
+  }
+
+  @CheckForNull
+  static String extractDirPath(@Nullable String filePath, String scope) {
+    if (filePath != null) {
+      if (Scopes.DIRECTORY.equals(scope)) {
+        return filePath;
+      }
+      int lastSlashIndex = CharMatcher.anyOf("/").lastIndexIn(filePath);
+      if (lastSlashIndex > 0) {
+        return filePath.substring(0, lastSlashIndex);
+      }
+      return "/";
+    }
+    return null;
+  }
+
+  @CheckForNull
+  static String extractFilePath(@Nullable String filePath, String scope) {
+    // On modules, the path contains the relative path of the module starting from its parent, and in E/S we're only interested in the path
+    // of files and directories.
+    // That's why the file path should be null on modules and projects.
+    if (filePath != null && !Scopes.PROJECT.equals(scope)) {
+      return filePath;
+    }
+    return null;
+  }
+
+  static String extractModule(String moduleUuidPath) {
+    return Iterators.getLast(MODULE_PATH_SPLITTER.split(moduleUuidPath).iterator());
+  }
+}
@@ -701,9 +701,21 @@ public class IssueIndex extends BaseIndex {
    * Only fields needed for the batch are returned.
    */
   public Iterator<IssueDoc> selectIssuesForBatch(ComponentDto component) {
+    return selectIssuesForBatch(component, null);
+  }
+
+  /**
+   * Same as {@link #selectIssuesForBatch(ComponentDto)}, but when {@code since} is set, only the issues updated since
+   * this date are returned, including the closed ones, so that the batch can update the issues it already knows.
+   */
+  public Iterator<IssueDoc> selectIssuesForBatch(ComponentDto component, @Nullable Date since) {
     BoolFilterBuilder filter = FilterBuilders.boolFilter()
-      .must(createAuthorizationFilter(true, userSession.getLogin(), userSession.getUserGroups()))
-      .mustNot(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+      .must(createAuthorizationFilter(true, userSession.getLogin(), userSession.getUserGroups()));
+    if (since == null) {
+      filter.mustNot(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+    } else {
+      filter.must(FilterBuilders.rangeFilter(IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT).gte(since).cache(false));
+    }
 
     switch (component.scope()) {
       case Scopes.PROJECT:
@@ -727,7 +739,7 @@ public class IssueIndex extends BaseIndex {
           IssueIndexDefinition.FIELD_ISSUE_FILE_PATH, IssueIndexDefinition.FIELD_ISSUE_SEVERITY, IssueIndexDefinition.FIELD_ISSUE_MANUAL_SEVERITY,
           IssueIndexDefinition.FIELD_ISSUE_RESOLUTION, IssueIndexDefinition.FIELD_ISSUE_STATUS, IssueIndexDefinition.FIELD_ISSUE_ASSIGNEE,
           IssueIndexDefinition.FIELD_ISSUE_LINE, IssueIndexDefinition.FIELD_ISSUE_MESSAGE, IssueIndexDefinition.FIELD_ISSUE_CHECKSUM,
-          IssueIndexDefinition.FIELD_ISSUE_FUNC_CREATED_AT},
+          IssueIndexDefinition.FIELD_ISSUE_FUNC_CREATED_AT, IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT},
         null)
       .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), filter));
     SearchResponse response = requestBuilder.get();
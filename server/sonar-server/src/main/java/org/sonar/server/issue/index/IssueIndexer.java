@@ -22,7 +22,7 @@ package org.sonar.server.issue.index;
 import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nullable;
-import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.FilterBuilders;
@@ -40,8 +40,6 @@ import static org.sonar.server.issue.index.IssueIndexDefinition.TYPE_ISSUE;
 
 public class IssueIndexer extends BaseIndexer {
 
-  private static final int MAX_BATCH_SIZE = 1000;
-
   private final DbClient dbClient;
 
   public IssueIndexer(DbClient dbClient, EsClient esClient) {
@@ -59,7 +57,7 @@ public class IssueIndexer extends BaseIndexer {
   }
 
   public void index(final String projectUuid) {
-    super.index(new IndexerTask() {
+    super.index(projectUuid, new IndexerTask() {
       @Override
       public long index(long lastUpdatedAt) {
         return doIndex(createBulkIndexer(false), lastUpdatedAt, projectUuid);
@@ -68,7 +66,9 @@ public class IssueIndexer extends BaseIndexer {
   }
 
   /**
-   * For benchmarks
+   * Indexes documents which are not read from DB, for example the issues just persisted by the Compute Engine
+   * (see {@link IssueDocFactory}). Contrary to {@link #index(String)}, documents are not filtered on the max
+   * technical update date of the index.
    */
   public void index(Iterator<IssueDoc> issues) {
     doIndex(createBulkIndexer(false), issues);
@@ -103,7 +103,7 @@ public class IssueIndexer extends BaseIndexer {
 
   public void deleteProject(String uuid) {
     BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
-    bulk.setDisableRefresh(false);
+    bulk.setRefreshOnRead(true);
     bulk.start();
     SearchRequestBuilder search = esClient.prepareSearch(INDEX)
       .setRouting(uuid)
@@ -115,24 +115,22 @@ public class IssueIndexer extends BaseIndexer {
     bulk.stop();
   }
 
-  public void deleteByKeys(List<String> issueKeys){
+  /**
+   * Deletions are sent in bulk requests executed concurrently. As it is called by the Compute Engine, the index is
+   * refreshed right away: refresh on read (see {@link EsClient#refreshBeforeNextRead(String)}) would only concern the
+   * searches of the Compute Engine, not the ones of the web server.
+   */
+  public void deleteByKeys(List<String> issueKeys) {
     if (issueKeys.isEmpty()) {
       return;
     }
 
-    int count = 0;
-    BulkRequestBuilder builder = esClient.prepareBulk();
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
+    bulk.start();
     for (String issueKey : issueKeys) {
-      builder.add(esClient.prepareDelete(INDEX, TYPE_ISSUE, issueKey));
-      count++;
-      if (count >= MAX_BATCH_SIZE) {
-        builder.get();
-        builder = esClient.prepareBulk();
-        count = 0;
-      }
+      bulk.add(new DeleteRequest(INDEX, TYPE_ISSUE, issueKey));
     }
-    builder.get();
-    esClient.prepareRefresh(INDEX).get();
+    bulk.stop();
   }
 
   private BulkIndexer createBulkIndexer(boolean large) {
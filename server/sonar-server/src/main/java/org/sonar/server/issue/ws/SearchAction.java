@@ -128,6 +128,7 @@ public class SearchAction implements IssuesWsAction {
           "Since 5.5, response field 'reporter' has been removed, as manual issue feature has been dropped.",
         COMPONENT_KEYS, COMPONENT_UUIDS, COMPONENTS, COMPONENT_ROOT_UUIDS, COMPONENT_ROOTS)
       .setSince("3.6")
+      .setStreaming(true)
       .setResponseExample(getClass().getResource("example-search.json"));
 
     action.addPagingParams(100, MAX_LIMIT);
@@ -41,6 +41,7 @@ import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.sonar.api.measures.Metric.ValueType;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.ResourceTypes;
 import org.sonar.api.web.UserRole;
@@ -49,6 +50,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentDtoWithSnapshotId;
 import org.sonar.db.component.ComponentTreeQuery;
+import org.sonar.db.component.ComponentTreeQuery.MeasureValue;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.metric.MetricDto;
@@ -78,6 +80,7 @@ import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT
 import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.NAME_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
+import static org.sonar.server.measure.ws.ComponentTreeSort.NUMERIC_VALUE_TYPES;
 import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPeriods;
 import static org.sonar.server.user.AbstractUserSession.insufficientPrivilegesException;
 
@@ -108,19 +111,23 @@ public class ComponentTreeDataLoader {
           .build();
       }
       Long developerId = searchDeveloperId(dbSession, wsRequest);
+      List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
+      List<WsMeasures.Period> periods = snapshotToWsPeriods(baseSnapshot);
 
-      ComponentTreeQuery dbQuery = toComponentTreeQuery(wsRequest, baseSnapshot);
+      MetricDto metricSortedInDb = searchMetricSortedInDb(wsRequest, metrics);
+      ComponentTreeQuery dbQuery = toComponentTreeQuery(wsRequest, baseSnapshot, metricSortedInDb, periods, developerId);
       ComponentDtosAndTotal componentDtosAndTotal = searchComponents(dbSession, dbQuery, wsRequest);
       List<ComponentDtoWithSnapshotId> components = componentDtosAndTotal.componentDtos;
-      List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      List<WsMeasures.Period> periods = snapshotToWsPeriods(baseSnapshot);
       Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, baseSnapshot, components, metrics,
         periods, developerId);
 
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-      int componentCount = computeComponentCount(componentDtosAndTotal.total, components, componentWithMeasuresOnly(wsRequest));
-      components = paginateComponents(components, wsRequest);
+      int componentCount = componentDtosAndTotal.total;
+      if (metricSortedInDb == null) {
+        components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
+        components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+        componentCount = computeComponentCount(componentDtosAndTotal.total, components, componentWithMeasuresOnly(wsRequest));
+        components = paginateComponents(components, wsRequest);
+      }
       Map<Long, ComponentDto> referenceComponentsById = searchReferenceComponentsById(dbSession, components);
 
       return ComponentTreeData.builder()
@@ -302,6 +309,33 @@ public class ComponentTreeDataLoader {
     return wsRequest.getSort().contains(METRIC_SORT) || wsRequest.getSort().contains(METRIC_PERIOD_SORT);
   }
 
+  /**
+   * The metric to sort on, when the sort and the filter on its measures can be done by the DB, so that only the
+   * requested page of components is loaded. Otherwise all components are loaded then sorted in memory:
+   * <ul>
+   *   <li>sort on a textual metric, as measure data is stored as CLOB</li>
+   *   <li>sort on both the value and the variation of the metric</li>
+   * </ul>
+   */
+  @CheckForNull
+  private static MetricDto searchMetricSortedInDb(ComponentTreeWsRequest wsRequest, List<MetricDto> metrics) {
+    List<String> metricSorts = from(wsRequest.getSort()).filter(Predicates.not(IsNotMetricSort.INSTANCE)).toList();
+    if (metricSorts.size() != 1 || wsRequest.getMetricSort() == null) {
+      return null;
+    }
+    Optional<MetricDto> metric = from(metrics).firstMatch(new MatchMetricKey(wsRequest.getMetricSort()));
+    if (!metric.isPresent()) {
+      return null;
+    }
+
+    ValueType valueType = ValueType.valueOf(metric.get().getValueType());
+    boolean isNumeric = NUMERIC_VALUE_TYPES.contains(valueType);
+    if (METRIC_PERIOD_SORT.equals(metricSorts.get(0))) {
+      return isNumeric ? metric.get() : null;
+    }
+    return isNumeric || ValueType.LEVEL.equals(valueType) ? metric.get() : null;
+  }
+
   @CheckForNull
   private List<String> childrenQualifiers(ComponentTreeWsRequest request, String baseQualifier) {
     List<String> requestQualifiers = request.getQualifiers();
@@ -323,7 +357,8 @@ public class ComponentTreeDataLoader {
     return new ArrayList<>(qualifiersIntersection);
   }
 
-  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, SnapshotDto baseSnapshot) {
+  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, SnapshotDto baseSnapshot, @Nullable MetricDto metricSortedInDb,
+    List<WsMeasures.Period> periods, @Nullable Long developerId) {
     List<String> childrenQualifiers = childrenQualifiers(wsRequest, baseSnapshot.getQualifier());
 
     List<String> sortsWithoutMetricSort = newArrayList(Iterables.filter(wsRequest.getSort(), IsNotMetricSort.INSTANCE));
@@ -342,8 +377,10 @@ public class ComponentTreeDataLoader {
     if (childrenQualifiers != null) {
       dbQuery.setQualifiers(childrenQualifiers);
     }
-    // load all components if we must sort by metric value
-    if (isSortByMetric(wsRequest)) {
+    if (metricSortedInDb != null) {
+      setMeasureSortAndFilter(dbQuery, wsRequest, metricSortedInDb, periods, developerId);
+    } else if (isSortByMetric(wsRequest)) {
+      // load all components if we must sort by metric value
       dbQuery.setPage(1);
       dbQuery.setPageSize(Integer.MAX_VALUE);
     }
@@ -351,6 +388,56 @@ public class ComponentTreeDataLoader {
     return dbQuery.build();
   }
 
+  private static void setMeasureSortAndFilter(ComponentTreeQuery.Builder dbQuery, ComponentTreeWsRequest wsRequest, MetricDto metric,
+    List<WsMeasures.Period> periods, @Nullable Long developerId) {
+    List<String> sqlSortFields = new ArrayList<>();
+    for (String sort : wsRequest.getSort()) {
+      sqlSortFields.add(IsNotMetricSort.INSTANCE.apply(sort) ? sort : ComponentTreeQuery.MEASURE_SORT_FIELD);
+    }
+    if (!Iterables.any(wsRequest.getSort(), IsNotMetricSort.INSTANCE)) {
+      sqlSortFields.add(NAME_SORT);
+    }
+    dbQuery.setSortFields(sqlSortFields);
+
+    Integer periodIndex = wsRequest.getMetricPeriodSort();
+    MeasureValue sortValue;
+    if (wsRequest.getSort().contains(METRIC_PERIOD_SORT)) {
+      sortValue = MeasureValue.variation(requireNonNull(periodIndex), fileBestVariation(metric, periodIndex, periods));
+    } else if (ValueType.LEVEL.name().equals(metric.getValueType())) {
+      sortValue = MeasureValue.level();
+    } else {
+      sortValue = MeasureValue.value(fileBestValue(metric));
+    }
+    dbQuery.setMeasureSort(metric.getId(), developerId, sortValue);
+
+    if (componentWithMeasuresOnly(wsRequest)) {
+      MeasureValue filterValue = periodIndex == null
+        ? MeasureValue.valueOrData(fileBestValue(metric))
+        : MeasureValue.variation(periodIndex, fileBestVariation(metric, periodIndex, periods));
+      dbQuery.setMeasureFilter(metric.getId(), developerId, filterValue);
+    }
+  }
+
+  /**
+   * Same best value as {@link MetricDtoWithBestValue}
+   */
+  @CheckForNull
+  private static Double fileBestValue(MetricDto metric) {
+    if (!MetricDtoFunctions.isOptimizedForBestValue().apply(metric) || MetricDtoWithBestValue.isNewTypeMetric(metric)) {
+      return null;
+    }
+    return metric.getBestValue();
+  }
+
+  @CheckForNull
+  private static Double fileBestVariation(MetricDto metric, int periodIndex, List<WsMeasures.Period> periods) {
+    if (!MetricDtoFunctions.isOptimizedForBestValue().apply(metric) || !MetricDtoWithBestValue.isNewTypeMetric(metric)
+      || !Lists.transform(periods, WsPeriodToIndex.INSTANCE).contains(periodIndex)) {
+      return null;
+    }
+    return 0.0d;
+  }
+
   private void checkPermissions(ComponentDto baseComponent) {
     String projectUuid = firstNonNull(baseComponent.projectUuid(), baseComponent.uuid());
     if (!userSession.hasComponentUuidPermission(UserRole.ADMIN, projectUuid) &&
@@ -39,8 +39,7 @@ class MetricDtoWithBestValue {
     MeasureDto measure = new MeasureDto()
       .setMetricId(metric.getId())
       .setMetricKey(metric.getKey());
-    boolean isNewTypeMetric = metric.getKey().toLowerCase(Locale.ENGLISH).startsWith(LOWER_CASE_NEW_METRIC_PREFIX);
-    if (isNewTypeMetric) {
+    if (isNewTypeMetric(metric)) {
       for (Integer periodIndex : periodIndexes) {
         measure.setVariation(periodIndex, 0.0d);
       }
@@ -51,6 +50,10 @@ class MetricDtoWithBestValue {
     this.bestValue = measure;
   }
 
+  static boolean isNewTypeMetric(MetricDto metric) {
+    return metric.getKey().toLowerCase(Locale.ENGLISH).startsWith(LOWER_CASE_NEW_METRIC_PREFIX);
+  }
+
   MetricDto getMetric() {
     return metric;
   }
@@ -24,15 +24,23 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.Properties;
@@ -46,6 +54,8 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
 
+import static org.sonar.server.util.PositiveNumberSettings.readPositiveInt;
+
 @Properties({
   @Property(
     key = NotificationService.PROPERTY_DELAY,
@@ -58,6 +68,18 @@ import org.sonar.db.DbClient;
     defaultValue = "600",
     name = "Delay before reporting notification status, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_BATCH_SIZE,
+    defaultValue = "100",
+    name = "Number of notifications removed at once from the queue",
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_DELIVERY_THREADS,
+    defaultValue = "1",
+    name = "Number of threads delivering notifications",
+    project = false,
     global = false)
 })
 @ServerSide
@@ -69,15 +91,28 @@ public class NotificationService implements Startable {
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  public static final String PROPERTY_DELIVERY_THREADS = "sonar.notifications.deliveryThreads";
+
+  static final int DEFAULT_BATCH_SIZE = 100;
+  static final int DEFAULT_DELIVERY_THREADS = 1;
 
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
+  private final int batchSize;
+  private final int deliveryThreads;
   private final DefaultNotificationManager manager;
   private final List<NotificationDispatcher> dispatchers;
   private final DbClient dbClient;
 
+  private final AtomicLong deliveredCount = new AtomicLong();
+  private final AtomicLong deliveryFailureCount = new AtomicLong();
+  private final AtomicLong deliveryTime = new AtomicLong();
+
   private ScheduledExecutorService executorService;
-  private boolean stopping = false;
+  @CheckForNull
+  private ExecutorService deliveryExecutorService;
+  private volatile boolean stopping = false;
   private final boolean disabled;
 
   public NotificationService(Settings settings, DefaultNotificationManager manager, DbClient dbClient,
@@ -85,6 +120,8 @@ public class NotificationService implements Startable {
     this.disabled = "ComputeEngineSettings".equals(settings.getClass().getSimpleName());
     this.delayInSeconds = settings.getLong(PROPERTY_DELAY);
     this.delayBeforeReportingStatusInSeconds = settings.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS);
+    this.batchSize = readPositiveInt(settings, PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+    this.deliveryThreads = readPositiveInt(settings, PROPERTY_DELIVERY_THREADS, DEFAULT_DELIVERY_THREADS);
     this.manager = manager;
     this.dbClient = dbClient;
     this.dispatchers = ImmutableList.copyOf(dispatchers);
@@ -106,6 +143,13 @@ public class NotificationService implements Startable {
                   .setNameFormat(THREAD_NAME_PREFIX + "%d")
                   .setPriority(Thread.MIN_PRIORITY)
                   .build());
+      if (deliveryThreads > 1) {
+        deliveryExecutorService = Executors.newFixedThreadPool(deliveryThreads,
+          new ThreadFactoryBuilder()
+            .setNameFormat(THREAD_NAME_PREFIX + "delivery-%d")
+            .setPriority(Thread.MIN_PRIORITY)
+            .build());
+      }
       executorService.scheduleWithFixedDelay(new Runnable() {
         @Override
         public void run() {
@@ -116,7 +160,7 @@ public class NotificationService implements Startable {
           }
         }
       }, 0, delayInSeconds, TimeUnit.SECONDS);
-      LOG.info("Notification service started (delay {} sec.)", delayInSeconds);
+      LOG.info("Notification service started (delay {} sec., {} delivery threads)", delayInSeconds, deliveryThreads);
     }
   }
 
@@ -127,6 +171,11 @@ public class NotificationService implements Startable {
         stopping = true;
         executorService.shutdown();
         executorService.awaitTermination(5, TimeUnit.SECONDS);
+        // deliveries are submitted by the polling thread, the pool must not be shut down while it is running
+        if (deliveryExecutorService != null) {
+          deliveryExecutorService.shutdown();
+          deliveryExecutorService.awaitTermination(5, TimeUnit.SECONDS);
+        }
       } catch (InterruptedException e) {
         LOG.error("Error during stop of notification service", e);
       }
@@ -140,10 +189,14 @@ public class NotificationService implements Startable {
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      deliver(notifToSend);
-      notifSentCount++;
+    List<Notification> notifsToSend = manager.getFromQueue(batchSize);
+    while (!notifsToSend.isEmpty()) {
+      List<Notification> undelivered = deliver(notifsToSend);
+      notifSentCount += notifsToSend.size() - undelivered.size();
+      if (!undelivered.isEmpty()) {
+        // notifications are removed from the queue before being delivered
+        manager.scheduleForSending(undelivered);
+      }
       if (stopping) {
         break;
       }
@@ -154,7 +207,70 @@ public class NotificationService implements Startable {
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.getFromQueue(batchSize);
+    }
+  }
+
+  /**
+   * Delivers the notifications concurrently when more than one delivery thread is configured. Returns when all of
+   * them are delivered, or as soon as the deliveries in progress are done if the service is stopping.
+   *
+   * @return the notifications which were not delivered because the service is stopping
+   */
+  private List<Notification> deliver(List<Notification> notifications) {
+    long start = System.currentTimeMillis();
+    List<Notification> undelivered = new ArrayList<>();
+    if (deliveryExecutorService == null || notifications.size() == 1) {
+      for (Notification notification : notifications) {
+        if (stopping) {
+          undelivered.add(notification);
+        } else {
+          deliver(notification);
+        }
+      }
+    } else {
+      deliverConcurrently(notifications, undelivered);
+    }
+    deliveryTime.addAndGet(System.currentTimeMillis() - start);
+    return undelivered;
+  }
+
+  private void deliverConcurrently(List<Notification> notifications, List<Notification> undelivered) {
+    List<Future<Boolean>> deliveries = new ArrayList<>(notifications.size());
+    for (final Notification notification : notifications) {
+      try {
+        deliveries.add(deliveryExecutorService.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            if (stopping) {
+              return false;
+            }
+            deliver(notification);
+            return true;
+          }
+        }));
+      } catch (RejectedExecutionException e) {
+        deliveries.add(Futures.immediateFuture(false));
+      }
+    }
+    for (int i = 0; i < deliveries.size(); i++) {
+      if (!isDelivered(deliveries.get(i))) {
+        undelivered.add(notifications.get(i));
+      }
+    }
+  }
+
+  private static boolean isDelivered(Future<Boolean> delivery) {
+    try {
+      return delivery.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while delivering notifications", e);
+      return false;
+    } catch (ExecutionException e) {
+      // failures are already caught by deliver(Notification)
+      LOG.warn("Unable to deliver notification", e.getCause());
+      return true;
     }
   }
 
@@ -177,10 +293,12 @@ public class NotificationService implements Startable {
         dispatcher.performDispatch(notification, context);
       } catch (Exception e) {
         // catch all exceptions in order to dispatch using other dispatchers
+        deliveryFailureCount.incrementAndGet();
         LOG.warn(String.format("Unable to dispatch notification %s using %s", notification, dispatcher), e);
       }
     }
     dispatch(notification, recipients);
+    deliveredCount.incrementAndGet();
   }
 
   private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
@@ -193,12 +311,42 @@ public class NotificationService implements Startable {
           channel.deliver(notification, username);
         } catch (Exception e) {
           // catch all exceptions in order to deliver via other channels
+          deliveryFailureCount.incrementAndGet();
           LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
         }
       }
     }
   }
 
+  /**
+   * Number of notifications delivered since startup.
+   */
+  public long getDeliveredCount() {
+    return deliveredCount.get();
+  }
+
+  /**
+   * Number of failures of dispatchers or channels since startup.
+   */
+  public long getDeliveryFailureCount() {
+    return deliveryFailureCount.get();
+  }
+
+  /**
+   * Time spent delivering notifications since startup, in milliseconds.
+   */
+  public long getDeliveryTime() {
+    return deliveryTime.get();
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getDeliveryThreads() {
+    return deliveryThreads;
+  }
+
   @VisibleForTesting
   protected List<NotificationDispatcher> getDispatchers() {
     return dispatchers;
@@ -0,0 +1,55 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+public interface NotificationsMBean {
+
+  String OBJECT_NAME = "SonarQube:name=Notifications";
+
+  /**
+   * Count of notifications waiting in the queue.
+   */
+  long getPendingCount();
+
+  /**
+   * Count of notifications delivered since startup.
+   */
+  long getDeliveredCount();
+
+  /**
+   * Count of failures of dispatchers or channels since startup.
+   */
+  long getDeliveryFailureCount();
+
+  /**
+   * Time spent delivering notifications since startup, in milliseconds.
+   */
+  long getDeliveryTime();
+
+  /**
+   * Configured number of notifications removed at once from the queue.
+   */
+  int getBatchSize();
+
+  /**
+   * Configured number of threads delivering notifications.
+   */
+  int getDeliveryThreads();
+}
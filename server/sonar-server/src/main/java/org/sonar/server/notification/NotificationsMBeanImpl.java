@@ -0,0 +1,76 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
+
+public class NotificationsMBeanImpl implements NotificationsMBean, Startable {
+  private final NotificationService notificationService;
+  private final DefaultNotificationManager notificationManager;
+
+  public NotificationsMBeanImpl(NotificationService notificationService, DefaultNotificationManager notificationManager) {
+    this.notificationService = notificationService;
+    this.notificationManager = notificationManager;
+  }
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  /**
+   * Unregister, if needed
+   */
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  @Override
+  public long getPendingCount() {
+    return notificationManager.count();
+  }
+
+  @Override
+  public long getDeliveredCount() {
+    return notificationService.getDeliveredCount();
+  }
+
+  @Override
+  public long getDeliveryFailureCount() {
+    return notificationService.getDeliveryFailureCount();
+  }
+
+  @Override
+  public long getDeliveryTime() {
+    return notificationService.getDeliveryTime();
+  }
+
+  @Override
+  public int getBatchSize() {
+    return notificationService.getBatchSize();
+  }
+
+  @Override
+  public int getDeliveryThreads() {
+    return notificationService.getDeliveryThreads();
+  }
+}
@@ -29,6 +29,7 @@ import org.sonar.db.component.ResourceDto;
 import org.sonar.db.permission.PermissionRepository;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.user.UserSession;
 
 import static org.sonar.server.permission.PermissionPrivilegeChecker.checkGlobalAdminUser;
@@ -42,14 +43,16 @@ public class PermissionService {
   private final IssueAuthorizationIndexer issueAuthorizationIndexer;
   private final UserSession userSession;
   private final ComponentFinder componentFinder;
+  private final AuthorizedProjectsCache authorizedProjectsCache;
 
   public PermissionService(DbClient dbClient, PermissionRepository permissionRepository, IssueAuthorizationIndexer issueAuthorizationIndexer, UserSession userSession,
-    ComponentFinder componentFinder) {
+    ComponentFinder componentFinder, AuthorizedProjectsCache authorizedProjectsCache) {
     this.dbClient = dbClient;
     this.permissionRepository = permissionRepository;
     this.issueAuthorizationIndexer = issueAuthorizationIndexer;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
+    this.authorizedProjectsCache = authorizedProjectsCache;
   }
 
   public List<String> globalPermissions() {
@@ -110,5 +113,7 @@ public class PermissionService {
 
   private void indexProjectPermissions() {
     issueAuthorizationIndexer.index();
+    // applying a template replaces the permissions of the project
+    authorizedProjectsCache.clear();
   }
 }
@@ -32,6 +32,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.user.UserSession;
 
 import static org.sonar.api.security.DefaultGroups.isAnyone;
@@ -53,14 +54,17 @@ public class PermissionUpdater {
   private final IssueAuthorizationIndexer issueAuthorizationIndexer;
   private final UserSession userSession;
   private final ComponentFinder componentFinder;
+  private final AuthorizedProjectsCache authorizedProjectsCache;
 
   public PermissionUpdater(DbClient dbClient, PermissionRepository permissionRepository,
-    IssueAuthorizationIndexer issueAuthorizationIndexer, UserSession userSession, ComponentFinder componentFinder) {
+    IssueAuthorizationIndexer issueAuthorizationIndexer, UserSession userSession, ComponentFinder componentFinder,
+    AuthorizedProjectsCache authorizedProjectsCache) {
     this.dbClient = dbClient;
     this.permissionRepository = permissionRepository;
     this.issueAuthorizationIndexer = issueAuthorizationIndexer;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
+    this.authorizedProjectsCache = authorizedProjectsCache;
   }
 
   public static List<String> globalPermissions() {
@@ -98,6 +102,7 @@ public class PermissionUpdater {
       session.commit();
       if (change.componentKey() != null) {
         indexProjectPermissions();
+        authorizedProjectsCache.clear();
       }
     }
   }
@@ -93,6 +93,19 @@ public class MasterServletFilter implements Filter {
       }
       godChain.doFilter(request, response);
     }
+    failIfResponseAborted(request);
+  }
+
+  /**
+   * Fails the request if a web service aborted its streamed response (see
+   * {@link org.sonar.server.ws.ServletResponse.ServletStream#abort(Throwable)}). As the response is committed, the
+   * servlet container closes the connection instead of sending an error page.
+   */
+  private static void failIfResponseAborted(ServletRequest request) throws ServletException {
+    Object cause = request.getAttribute(org.sonar.server.ws.ServletResponse.ABORT_CAUSE_ATTRIBUTE);
+    if (cause instanceof Throwable) {
+      throw new ServletException("Response has been aborted", (Throwable) cause);
+    }
   }
 
   @Override
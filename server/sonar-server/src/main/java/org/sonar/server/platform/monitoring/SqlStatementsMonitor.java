@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.db.DbClient;
+import org.sonar.db.profiling.SqlStatementMetrics;
+import org.sonar.db.profiling.SqlStatementMetrics.StatementStats;
+
+import static java.lang.String.format;
+
+/**
+ * Execution count, rows and latency of the SQL statements executed by the web server, by id of MyBatis mapped statement
+ */
+public class SqlStatementsMonitor extends BaseMonitorMBean implements SqlStatementsMonitorMBean {
+
+  static final int MAX_STATEMENTS = 50;
+
+  private final DbClient dbClient;
+
+  public SqlStatementsMonitor(DbClient dbClient) {
+    this.dbClient = dbClient;
+  }
+
+  @Override
+  public String name() {
+    return "SQL Statements";
+  }
+
+  @Override
+  public int getStatementCount() {
+    return metrics().getStatements().size();
+  }
+
+  @Override
+  public String[] getSlowestStatements() {
+    List<StatementStats> statements = slowestStatements();
+    String[] result = new String[statements.size()];
+    for (int i = 0; i < result.length; i++) {
+      StatementStats stats = statements.get(i);
+      result[i] = format("%s executions=%d rows=%d total=%sms p50=%sms p95=%sms p99=%sms max=%sms", stats.getId(), stats.getExecutions(), stats.getRows(),
+        toMs(stats.getTotalMicros()), toMs(stats.getP50Micros()), toMs(stats.getP95Micros()), toMs(stats.getP99Micros()), toMs(stats.getMaxMicros()));
+    }
+    return result;
+  }
+
+  @Override
+  public void reset() {
+    metrics().reset();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    for (StatementStats stats : slowestStatements()) {
+      Map<String, Object> statementAttributes = new LinkedHashMap<>();
+      statementAttributes.put("Executions", stats.getExecutions());
+      statementAttributes.put("Rows", stats.getRows());
+      statementAttributes.put("Total (ms)", toMs(stats.getTotalMicros()));
+      statementAttributes.put("50th Percentile (ms)", toMs(stats.getP50Micros()));
+      statementAttributes.put("95th Percentile (ms)", toMs(stats.getP95Micros()));
+      statementAttributes.put("99th Percentile (ms)", toMs(stats.getP99Micros()));
+      statementAttributes.put("Max (ms)", toMs(stats.getMaxMicros()));
+      attributes.put(stats.getId(), statementAttributes);
+    }
+    return attributes;
+  }
+
+  private List<StatementStats> slowestStatements() {
+    List<StatementStats> statements = metrics().getStatements();
+    return statements.size() > MAX_STATEMENTS ? statements.subList(0, MAX_STATEMENTS) : statements;
+  }
+
+  private SqlStatementMetrics metrics() {
+    return dbClient.getMyBatis().getStatementMetrics();
+  }
+
+  private static double toMs(long micros) {
+    return micros / 1_000.0;
+  }
+}
@@ -30,6 +30,7 @@ import org.sonar.api.rules.AnnotationRuleParser;
 import org.sonar.api.rules.XMLRuleParser;
 import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
 import org.sonar.ce.CeModule;
+import org.sonar.ce.queue.WakeUpComputeEngineQueueListener;
 import org.sonar.core.component.DefaultResourceTypes;
 import org.sonar.core.timemachine.Periods;
 import org.sonar.core.user.DefaultUserFinder;
@@ -140,6 +141,7 @@ import org.sonar.server.metric.ws.MetricsWsModule;
 import org.sonar.server.notification.DefaultNotificationManager;
 import org.sonar.server.notification.NotificationCenter;
 import org.sonar.server.notification.NotificationService;
+import org.sonar.server.notification.NotificationsMBeanImpl;
 import org.sonar.server.notification.email.AlertsEmailTemplate;
 import org.sonar.server.notification.email.EmailNotificationChannel;
 import org.sonar.server.permission.PermissionFinder;
@@ -156,6 +158,7 @@ import org.sonar.server.platform.monitoring.PluginsMonitor;
 import org.sonar.server.platform.monitoring.ProcessSystemInfoClient;
 import org.sonar.server.platform.monitoring.SettingsMonitor;
 import org.sonar.server.platform.monitoring.SonarQubeMonitor;
+import org.sonar.server.platform.monitoring.SqlStatementsMonitor;
 import org.sonar.server.platform.monitoring.SystemMonitor;
 import org.sonar.server.platform.ws.ChangeLogLevelAction;
 import org.sonar.server.platform.ws.DbMigrationStatusAction;
@@ -278,6 +281,7 @@ import org.sonar.server.ui.ws.GlobalNavigationAction;
 import org.sonar.server.ui.ws.NavigationWs;
 import org.sonar.server.ui.ws.SettingsNavigationAction;
 import org.sonar.server.updatecenter.ws.UpdateCenterWs;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.user.DefaultUserService;
 import org.sonar.server.user.GroupMembershipFinder;
 import org.sonar.server.user.GroupMembershipService;
@@ -523,6 +527,7 @@ public class PlatformLevel4 extends PlatformLevel {
       PermissionRepository.class,
       PermissionService.class,
       PermissionUpdater.class,
+      AuthorizedProjectsCache.class,
       PermissionFinder.class,
       PermissionsWsModule.class,
 
@@ -618,6 +623,7 @@ public class PlatformLevel4 extends PlatformLevel {
       NotificationService.class,
       NotificationCenter.class,
       DefaultNotificationManager.class,
+      NotificationsMBeanImpl.class,
 
       // Tests
       CoverageService.class,
@@ -648,6 +654,7 @@ public class PlatformLevel4 extends PlatformLevel {
       PluginsMonitor.class,
       JvmPropsMonitor.class,
       DatabaseMonitor.class,
+      SqlStatementsMonitor.class,
       MigrateDbAction.class,
       LogsAction.class,
       ChangeLogLevelAction.class,
@@ -673,6 +680,8 @@ public class PlatformLevel4 extends PlatformLevel {
       // Compute engine (must be after Views and Developer Cockpit)
       CeModule.class,
       CeWsModule.class,
+      // only the Web Server wakes up the Compute Engine process on task submission
+      WakeUpComputeEngineQueueListener.class,
 
       ProjectSettingsFactory.class,
 
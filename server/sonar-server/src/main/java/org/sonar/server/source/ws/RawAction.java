@@ -55,6 +55,7 @@ public class RawAction implements SourcesWsAction {
       .setDescription("Get source code as raw text. Require 'See Source Code' permission on file")
       .setSince("5.0")
       .setResponseExample(Resources.getResource(getClass(), "example-raw.txt"))
+      .setStreaming(true)
       .setHandler(this);
 
     action
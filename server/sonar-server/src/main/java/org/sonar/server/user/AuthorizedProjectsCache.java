@@ -0,0 +1,140 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.user.AuthorizationDao;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Server-wide cache of the root projects on which a user, or anonymous, has a given permission. It saves
+ * {@link ServerUserSession} from loading all these projects on each request.
+ * <p>
+ * Only the projects found in the cache are trusted. Any other project is checked with a query on this single project,
+ * so that permissions granted outside of this cache, for instance by the Compute Engine when it applies the default
+ * permission template to a new project, are visible immediately. Code which removes permissions or group memberships
+ * must call {@link #clear()}.
+ * </p>
+ */
+@ServerSide
+public class AuthorizedProjectsCache {
+  private static final long MAX_CACHED_PROJECTS = 500_000L;
+  // safety net for the permissions removed without calling clear()
+  private static final long EXPIRATION_MINUTES = 10L;
+
+  private final AuthorizationDao authorizationDao;
+  private final AtomicLong generation = new AtomicLong();
+  private final LoadingCache<Key, Set<String>> cache;
+
+  public AuthorizedProjectsCache(final AuthorizationDao authorizationDao) {
+    this.authorizationDao = authorizationDao;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(MAX_CACHED_PROJECTS)
+      .weigher(new Weigher<Key, Set<String>>() {
+        @Override
+        public int weigh(Key key, Set<String> projects) {
+          return 1 + projects.size();
+        }
+      })
+      .expireAfterWrite(EXPIRATION_MINUTES, MINUTES)
+      .build(new CacheLoader<Key, Set<String>>() {
+        @Override
+        public Set<String> load(Key key) {
+          if (key.byUuid) {
+            return ImmutableSet.copyOf(authorizationDao.selectAuthorizedRootProjectsUuids(key.userId, key.permission));
+          }
+          return ImmutableSet.copyOf(authorizationDao.selectAuthorizedRootProjectsKeys(key.userId, key.permission));
+        }
+      });
+  }
+
+  public boolean hasProjectPermissionByKey(@Nullable Integer userId, String permission, String projectKey) {
+    return get(userId, permission, false).contains(projectKey)
+      || authorizationDao.isAuthorizedComponentKey(projectKey, userId, permission);
+  }
+
+  public boolean hasProjectPermissionByUuid(@Nullable Integer userId, String permission, String projectUuid) {
+    return get(userId, permission, true).contains(projectUuid)
+      || authorizationDao.isAuthorizedComponentUuid(projectUuid, userId, permission);
+  }
+
+  /**
+   * Must be called once permissions or group memberships are removed.
+   */
+  public void clear() {
+    // sets loaded concurrently with this call are stored with the previous generation and are never read
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  private Set<String> get(@Nullable Integer userId, String permission, boolean byUuid) {
+    try {
+      return cache.getUnchecked(new Key(generation.get(), userId, permission, byUuid));
+    } catch (UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  @Immutable
+  private static final class Key {
+    private final long generation;
+    @Nullable
+    private final Integer userId;
+    private final String permission;
+    private final boolean byUuid;
+
+    private Key(long generation, @Nullable Integer userId, String permission, boolean byUuid) {
+      this.generation = generation;
+      this.userId = userId;
+      this.permission = permission;
+      this.byUuid = byUuid;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return generation == key.generation && byUuid == key.byUuid && Objects.equals(userId, key.userId) && permission.equals(key.permission);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(generation, userId, permission, byUuid);
+    }
+  }
+}
@@ -62,7 +62,7 @@ public class RubyUserSession {
     ThreadLocalUserSession threadLocalUserSession = container.getComponentByType(ThreadLocalUserSession.class);
 
     UserSession session = new ServerUserSession(container.getComponentByType(AuthorizationDao.class),
-      container.getComponentByType(ResourceDao.class))
+      container.getComponentByType(ResourceDao.class), container.getComponentByType(AuthorizedProjectsCache.class))
       .setLogin(login)
       .setName(name)
       .setUserId(userId)
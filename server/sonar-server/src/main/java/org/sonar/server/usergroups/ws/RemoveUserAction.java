@@ -31,6 +31,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.user.UserSession;
 
 import static java.lang.String.format;
@@ -47,10 +48,12 @@ public class RemoveUserAction implements UserGroupsWsAction {
 
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final AuthorizedProjectsCache authorizedProjectsCache;
 
-  public RemoveUserAction(DbClient dbClient, UserSession userSession) {
+  public RemoveUserAction(DbClient dbClient, UserSession userSession, AuthorizedProjectsCache authorizedProjectsCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.authorizedProjectsCache = authorizedProjectsCache;
   }
 
   @Override
@@ -82,6 +85,7 @@ public class RemoveUserAction implements UserGroupsWsAction {
       UserGroupDto userGroup = new UserGroupDto().setGroupId(group.getId()).setUserId(user.getId());
       dbClient.userGroupDao().delete(dbSession, userGroup);
       dbSession.commit();
+      authorizedProjectsCache.clear();
       response.noContent();
     } finally {
       dbClient.closeSession(dbSession);
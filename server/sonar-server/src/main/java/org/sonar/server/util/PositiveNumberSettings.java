@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util;
+
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
+
+import static java.lang.String.format;
+
+/**
+ * Reads settings which must be integers strictly greater than 0. A {@link MessageException} naming the property is
+ * thrown when the value is invalid, and the default value is used when the property is not set.
+ */
+public class PositiveNumberSettings {
+  private PositiveNumberSettings() {
+    // prevent instantiation
+  }
+
+  public static int readPositiveInt(Settings settings, String propertyKey, int defaultValue) {
+    long value = readPositiveLong(settings, propertyKey, defaultValue);
+    if (value > Integer.MAX_VALUE) {
+      throw parsingError(propertyKey, String.valueOf(value));
+    }
+    return (int) value;
+  }
+
+  public static long readPositiveLong(Settings settings, String propertyKey, long defaultValue) {
+    String valueAsStr = settings.getString(propertyKey);
+    if (valueAsStr == null || valueAsStr.isEmpty()) {
+      return defaultValue;
+    }
+    return parseStringValue(propertyKey, valueAsStr);
+  }
+
+  private static long parseStringValue(String propertyKey, String valueAsStr) {
+    try {
+      long value = Long.parseLong(valueAsStr);
+      if (value < 1) {
+        throw parsingError(propertyKey, valueAsStr);
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw parsingError(propertyKey, valueAsStr);
+    }
+  }
+
+  private static MessageException parsingError(String propertyKey, String valueAsStr) {
+    return MessageException.of(format(
+      "value '%s' of property %s is invalid. It must an integer strictly greater than 0.",
+      valueAsStr,
+      propertyKey)
+      );
+  }
+}
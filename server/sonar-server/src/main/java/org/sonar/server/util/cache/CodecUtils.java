@@ -0,0 +1,110 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Helpers to write compact values in {@link ObjectCodec} implementations.
+ */
+public final class CodecUtils {
+
+  private CodecUtils() {
+    // only statics
+  }
+
+  /**
+   * Writes a positive int on 1 to 5 bytes. Negative values are supported but always use 5 bytes.
+   */
+  public static void writeVarInt(DataOutput output, int value) throws IOException {
+    int v = value;
+    while ((v & ~0x7F) != 0) {
+      output.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    output.writeByte(v);
+  }
+
+  public static int readVarInt(DataInput input) throws IOException {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = input.readByte();
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  /**
+   * Writes a positive long on 1 to 10 bytes. Negative values are supported but always use 10 bytes.
+   */
+  public static void writeVarLong(DataOutput output, long value) throws IOException {
+    long v = value;
+    while ((v & ~0x7FL) != 0L) {
+      output.writeByte((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    output.writeByte((int) v);
+  }
+
+  public static long readVarLong(DataInput input) throws IOException {
+    long result = 0L;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = input.readByte();
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("Malformed varlong");
+  }
+
+  /**
+   * Writes a nullable UTF-8 string prefixed by its length + 1, {@code 0} standing for {@code null}. Unlike
+   * {@link DataOutput#writeUTF(String)}, length of string is not limited.
+   */
+  public static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    if (s == null) {
+      writeVarInt(output, 0);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(output, bytes.length + 1);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  public static String readString(DataInput input) throws IOException {
+    int length = readVarInt(input);
+    if (length == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length - 1];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
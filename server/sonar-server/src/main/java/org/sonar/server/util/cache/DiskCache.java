@@ -19,36 +19,58 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
-import org.sonar.server.util.ObjectInputStreamIterator;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * <p>
+ * Objects are encoded by an {@link ObjectCodec} (Java serialization by default) and grouped in blocks of about
+ * {@link #BLOCK_SIZE} bytes. Blocks can optionally be compressed with LZ4.
+ * </p>
  */
 public class DiskCache<O extends Serializable> {
 
+  static final int BLOCK_SIZE = 64 * 1024;
+  private static final byte RAW_BLOCK = 0;
+  private static final byte LZ4_BLOCK = 1;
+
   private final File file;
   private final System2 system2;
+  private final ObjectCodec<O> codec;
+  private final boolean compressed;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, new JavaSerializationCodec<O>(), false);
+  }
+
+  public DiskCache(File file, System2 system2, ObjectCodec<O> codec, boolean compressed) {
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
+    this.compressed = compressed;
     OutputStream output = null;
     boolean threw = true;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
-      output.flush();
+      // creates or truncates the file, so that "traverse()" can be called on empty cache and
+      // "newAppender()" can be called multiple times
+      output = new FileOutputStream(file);
       threw = false;
     } catch (IOException e) {
       throw new IllegalStateException("Fail to write into file: " + file, e);
@@ -69,41 +91,186 @@ public class DiskCache<O extends Serializable> {
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      return new DiskIterator(new DataInputStream(FileUtils.openInputStream(file)));
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final DataOutputStream output;
+    private final ExposedByteArrayOutputStream block = new ExposedByteArrayOutputStream(BLOCK_SIZE);
+    private final ExposedByteArrayOutputStream record = new ExposedByteArrayOutputStream(1024);
+    private final DataOutputStream blockOutput = new DataOutputStream(block);
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    private final LZ4Compressor compressor;
+    private byte[] compressionBuffer = new byte[0];
 
     private DiskAppender() {
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
       } catch (IOException e) {
         throw new IllegalStateException("Fail to open file " + file, e);
       }
+      this.compressor = compressed ? LZ4Factory.fastestInstance().fastCompressor() : null;
     }
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        record.reset();
+        codec.write(object, recordOutput);
+        recordOutput.flush();
+        CodecUtils.writeVarInt(blockOutput, record.size());
+        blockOutput.write(record.buffer(), 0, record.size());
+        if (block.size() >= BLOCK_SIZE) {
+          writeBlock();
+        }
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
       }
     }
 
+    private void writeBlock() throws IOException {
+      blockOutput.flush();
+      int rawLength = block.size();
+      if (rawLength == 0) {
+        return;
+      }
+      if (compressor == null) {
+        output.writeByte(RAW_BLOCK);
+        output.writeInt(rawLength);
+        output.write(block.buffer(), 0, rawLength);
+      } else {
+        int maxCompressedLength = compressor.maxCompressedLength(rawLength);
+        if (compressionBuffer.length < maxCompressedLength) {
+          compressionBuffer = new byte[maxCompressedLength];
+        }
+        int compressedLength = compressor.compress(block.buffer(), 0, rawLength, compressionBuffer, 0, maxCompressedLength);
+        output.writeByte(LZ4_BLOCK);
+        output.writeInt(rawLength);
+        output.writeInt(compressedLength);
+        output.write(compressionBuffer, 0, compressedLength);
+      }
+      block.reset();
+    }
+
     @Override
     public void close() {
+      try {
+        writeBlock();
+      } catch (IOException e) {
+        IOUtils.closeQuietly(output);
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
       system2.close(output);
     }
   }
+
+  private class DiskIterator extends CloseableIterator<O> {
+    private final DataInputStream input;
+    private final BlockInputStream blockInput = new BlockInputStream();
+    private final DataInputStream recordInput = new DataInputStream(blockInput);
+    private byte[] compressedBlock = new byte[0];
+    private LZ4FastDecompressor decompressor;
+
+    private DiskIterator(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    protected O doNext() {
+      try {
+        if (blockInput.available() == 0 && !readBlock()) {
+          return null;
+        }
+        int recordLength = CodecUtils.readVarInt(recordInput);
+        int recordEnd = blockInput.position() + recordLength;
+        blockInput.limit(recordEnd);
+        O object = codec.read(recordInput);
+        blockInput.seekAndUnlimit(recordEnd);
+        return object;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    private boolean readBlock() throws IOException {
+      int type;
+      try {
+        type = input.readByte();
+      } catch (EOFException e) {
+        return false;
+      }
+      int rawLength = input.readInt();
+      byte[] raw = blockInput.prepare(rawLength);
+      if (type == RAW_BLOCK) {
+        input.readFully(raw, 0, rawLength);
+      } else if (type == LZ4_BLOCK) {
+        int compressedLength = input.readInt();
+        if (compressedBlock.length < compressedLength) {
+          compressedBlock = new byte[compressedLength];
+        }
+        input.readFully(compressedBlock, 0, compressedLength);
+        if (decompressor == null) {
+          decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+        }
+        decompressor.decompress(compressedBlock, 0, raw, 0, rawLength);
+      } else {
+        throw new IllegalStateException("Unsupported block type " + type + " in file " + file);
+      }
+      return true;
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    private ExposedByteArrayOutputStream(int size) {
+      super(size);
+    }
+
+    private byte[] buffer() {
+      return buf;
+    }
+  }
+
+  /**
+   * Reusable input on the current decoded block. It can be limited to the bytes of the current record, so that
+   * codecs can not read more than what they wrote.
+   */
+  private static class BlockInputStream extends ByteArrayInputStream {
+    private int blockLength = 0;
+
+    private BlockInputStream() {
+      super(new byte[0]);
+    }
+
+    private byte[] prepare(int length) {
+      if (buf.length < length) {
+        buf = new byte[length];
+      }
+      pos = 0;
+      mark = 0;
+      count = length;
+      blockLength = length;
+      return buf;
+    }
+
+    private int position() {
+      return pos;
+    }
+
+    private void limit(int end) {
+      count = end;
+    }
+
+    private void seekAndUnlimit(int position) {
+      pos = position;
+      count = blockLength;
+    }
+  }
 }
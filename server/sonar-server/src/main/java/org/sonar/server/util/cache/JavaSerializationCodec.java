@@ -0,0 +1,70 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * {@link ObjectCodec} based on Java serialization. Each object is serialized with its own stream header and class
+ * descriptors, which makes this codec much less compact and slower than a dedicated one.
+ */
+public class JavaSerializationCodec<O extends Serializable> implements ObjectCodec<O> {
+
+  @Override
+  public void write(O object, final DataOutput output) throws IOException {
+    ObjectOutputStream objectOutput = new ObjectOutputStream(new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        output.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        output.write(b, off, len);
+      }
+    });
+    objectOutput.writeObject(object);
+    objectOutput.flush();
+  }
+
+  @Override
+  public O read(DataInput input) throws IOException {
+    ObjectInputStream objectInput = new ObjectInputStream(asInputStream(input));
+    try {
+      return (O) objectInput.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Fail to deserialize object", e);
+    }
+  }
+
+  private static InputStream asInputStream(DataInput input) {
+    if (input instanceof InputStream) {
+      return (InputStream) input;
+    }
+    throw new IllegalArgumentException("Unsupported input " + input.getClass());
+  }
+}
@@ -19,27 +19,70 @@
  */
 package org.sonar.server.ws;
 
+import com.google.common.net.HttpHeaders;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.utils.text.JsonWriter;
 import org.sonar.api.utils.text.XmlWriter;
 import org.sonarqube.ws.MediaTypes;
 
+import static com.google.common.base.Preconditions.checkState;
+
 public class ServletResponse implements Response {
 
-  private Map<String, String> headers = new HashMap<>();
+  /**
+   * Maximum size of the output of a streamed response which is kept in memory before the response is committed.
+   * Smaller responses are sent at once, with a content length.
+   */
+  static final int STREAMING_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Request attribute holding the failure of a web service whose streamed response was already committed, see
+   * {@link ServletStream#abort(Throwable)}.
+   */
+  public static final String ABORT_CAUSE_ATTRIBUTE = "org.sonar.server.ws.abortCause";
+
+  private static final String GZIP_ENCODING = "gzip";
+
+  private final Map<String, String> headers = new HashMap<>();
 
   public static class ServletStream implements Stream {
     private String mediaType;
     private int httpStatus = 200;
     private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    @CheckForNull
+    private final HttpServletRequest source;
+    @CheckForNull
+    private final HttpServletResponse target;
+    private final boolean gzipAccepted;
+    private final Map<String, String> headers;
+    @CheckForNull
+    private StreamingOutput streamingOutput;
+
+    public ServletStream() {
+      this(null, null, false, Collections.<String, String>emptyMap());
+    }
+
+    private ServletStream(@Nullable HttpServletRequest source, @Nullable HttpServletResponse target, boolean gzipAccepted, Map<String, String> headers) {
+      this.source = source;
+      this.target = target;
+      this.gzipAccepted = gzipAccepted;
+      this.headers = headers;
+    }
 
     @CheckForNull
     public String mediaType() {
@@ -64,20 +107,182 @@ public class ServletResponse implements Response {
 
     @Override
     public OutputStream output() {
-      return output;
+      return streamingOutput == null ? output : streamingOutput;
     }
 
     public String outputAsString() {
       return new String(output.toByteArray(), StandardCharsets.UTF_8);
     }
 
+    /**
+     * @throws IllegalStateException if the response is streamed and has already been committed
+     */
     public ServletStream reset() {
+      checkState(!isCommitted(), "Response is already committed");
       output.reset();
       return this;
     }
+
+    /**
+     * Sends the output to the servlet response while it is written, instead of keeping it in memory. The
+     * first {@link #STREAMING_BUFFER_SIZE} bytes are still buffered, so that the response can be reset
+     * until then. Once exceeded, status, media type and headers are sent and the body is transferred in chunks,
+     * gzip-compressed if accepted by the client.
+     * <p>
+     * No effect if the response has not been created from a servlet response.
+     * </p>
+     */
+    public ServletStream enableStreaming() {
+      if (target != null && streamingOutput == null) {
+        streamingOutput = new StreamingOutput(target);
+      }
+      return this;
+    }
+
+    public boolean isStreaming() {
+      return streamingOutput != null;
+    }
+
+    public boolean isCommitted() {
+      return streamingOutput != null && streamingOutput.committedOutput != null;
+    }
+
+    /**
+     * Sends the remaining output of a streamed response and commits it. No effect if the response is not streamed
+     * or has been aborted.
+     */
+    public void finish() throws IOException {
+      if (streamingOutput != null && !streamingOutput.aborted) {
+        streamingOutput.finish();
+      }
+    }
+
+    /**
+     * Aborts a streamed response which failed after being committed. Its remaining output is dropped and the
+     * {@code cause} is stored in the request attribute {@link #ABORT_CAUSE_ATTRIBUTE}, so that the request is failed
+     * once processed. The servlet container then closes the connection instead of completing the response, and the
+     * client can not mistake it for a complete one.
+     * <p>
+     * No effect if the response is not committed.
+     * </p>
+     */
+    public void abort(Throwable cause) {
+      if (isCommitted()) {
+        streamingOutput.aborted = true;
+        source.setAttribute(ABORT_CAUSE_ATTRIBUTE, cause);
+      }
+    }
+
+    private class StreamingOutput extends OutputStream {
+      private final HttpServletResponse target;
+      @CheckForNull
+      private OutputStream committedOutput;
+      private boolean aborted = false;
+
+      private StreamingOutput(HttpServletResponse target) {
+        this.target = target;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        if (aborted) {
+          return;
+        }
+        if (committedOutput != null) {
+          committedOutput.write(b);
+        } else {
+          output.write(b);
+          commitIfFull();
+        }
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        if (aborted) {
+          return;
+        }
+        if (committedOutput != null) {
+          committedOutput.write(b, off, len);
+        } else {
+          output.write(b, off, len);
+          commitIfFull();
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        // flushing buffered output would commit small responses without content length
+        if (committedOutput != null) {
+          committedOutput.flush();
+        }
+      }
+
+      @Override
+      public void close() {
+        // output is closed by finish(), once the request is fully processed
+      }
+
+      private void commitIfFull() throws IOException {
+        if (output.size() >= STREAMING_BUFFER_SIZE) {
+          commit(false);
+        }
+      }
+
+      private void commit(boolean complete) throws IOException {
+        target.setStatus(httpStatus);
+        if (mediaType != null) {
+          target.setContentType(mediaType);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+          target.setHeader(header.getKey(), header.getValue());
+        }
+        OutputStream out = target.getOutputStream();
+        if (gzipAccepted && output.size() > 0) {
+          target.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+          target.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+          out = new GZIPOutputStream(out, STREAMING_BUFFER_SIZE);
+        } else if (complete) {
+          target.setContentLength(output.size());
+        }
+        output.writeTo(out);
+        output.reset();
+        committedOutput = out;
+      }
+
+      private void finish() throws IOException {
+        if (committedOutput == null) {
+          commit(true);
+        }
+        if (committedOutput instanceof GZIPOutputStream) {
+          ((GZIPOutputStream) committedOutput).finish();
+        }
+        committedOutput.flush();
+        target.flushBuffer();
+      }
+    }
   }
 
-  private final ServletStream stream = new ServletStream();
+  private final ServletStream stream;
+
+  /**
+   * Response fully kept in memory
+   */
+  public ServletResponse() {
+    this.stream = new ServletStream();
+  }
+
+  /**
+   * Response kept in memory, unless streaming is enabled with {@link ServletStream#enableStreaming()}. It is then
+   * written to {@code target}.
+   */
+  public ServletResponse(HttpServletRequest source, HttpServletResponse target) {
+    this.stream = new ServletStream(source, target, acceptsGzip(source), headers);
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest source) {
+    String acceptEncoding = source.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ENGLISH).contains(GZIP_ENCODING);
+  }
 
   @Override
   public JsonWriter newJsonWriter() {
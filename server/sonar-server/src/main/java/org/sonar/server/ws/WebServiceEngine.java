@@ -104,16 +104,19 @@ public class WebServiceEngine implements LocalConnector, Startable {
       }
       checkActionExtension(actionExtension);
       verifyRequest(action, request);
+      if (action.isStreaming()) {
+        enableStreaming(response);
+      }
       action.handler().handle(request, response);
     } catch (IllegalArgumentException e) {
-      sendErrors(response, 400, new Errors().add(Message.of(e.getMessage())));
+      sendErrors(response, e, 400, new Errors().add(Message.of(e.getMessage())));
     } catch (BadRequestException e) {
-      sendErrors(response, 400, e.errors());
+      sendErrors(response, e, 400, e.errors());
     } catch (ServerException e) {
-      sendErrors(response, e.httpCode(), new Errors().add(Message.of(e.getMessage())));
+      sendErrors(response, e, e.httpCode(), new Errors().add(Message.of(e.getMessage())));
     } catch (Exception e) {
       Loggers.get(getClass()).error("Fail to process request " + request, e);
-      sendErrors(response, 500, new Errors().add(Message.of(e.getMessage())));
+      sendErrors(response, e, 500, new Errors().add(Message.of(e.getMessage())));
     }
   }
 
@@ -129,10 +132,24 @@ public class WebServiceEngine implements LocalConnector, Startable {
     return action;
   }
 
-  private void sendErrors(Response response, int status, Errors errors) {
+  private static void enableStreaming(Response response) {
     Response.Stream stream = response.stream();
     if (stream instanceof ServletResponse.ServletStream) {
-      ((ServletResponse.ServletStream) stream).reset();
+      ((ServletResponse.ServletStream) stream).enableStreaming();
+    }
+  }
+
+  private void sendErrors(Response response, Exception cause, int status, Errors errors) {
+    Response.Stream stream = response.stream();
+    if (stream instanceof ServletResponse.ServletStream) {
+      ServletResponse.ServletStream servletStream = (ServletResponse.ServletStream) stream;
+      if (servletStream.isCommitted()) {
+        // part of the response has already been sent to the client, the error can't be returned anymore
+        Loggers.get(getClass()).error("Fail to send error {} of a response which is already committed. Response is aborted.", status, cause);
+        servletStream.abort(cause);
+        return;
+      }
+      servletStream.reset();
     }
     stream.setStatus(status);
     stream.setMediaType(MediaTypes.JSON);
@@ -37,11 +37,12 @@ import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 public class CeQueueImplTest {
 
@@ -65,6 +66,7 @@ public class CeQueueImplTest {
 
     verifyCeTask(taskSubmit, task, null);
     verifyCeQueueDtoForTaskSubmit(taskSubmit);
+    verify(listener).onSubmitted(singletonList(task));
   }
 
   @Test
@@ -108,6 +110,7 @@ public class CeQueueImplTest {
     verifyCeTask(taskSubmit2, tasks.get(1), null);
     verifyCeQueueDtoForTaskSubmit(taskSubmit1);
     verifyCeQueueDtoForTaskSubmit(taskSubmit2);
+    verify(listener).onSubmitted(tasks);
   }
 
   @Test
@@ -130,7 +133,8 @@ public class CeQueueImplTest {
     // ignore
     boolean canceled = underTest.cancel("UNKNOWN");
     assertThat(canceled).isFalse();
-    verifyZeroInteractions(listener);
+    verify(listener).onSubmitted(singletonList(task));
+    verifyNoMoreInteractions(listener);
 
     canceled = underTest.cancel(task.getUuid());
     assertThat(canceled).isTrue();
@@ -0,0 +1,61 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.Collections;
+import org.junit.Test;
+import org.sonar.db.ce.CeActivityDto;
+import org.sonar.server.app.ProcessCommandWrapper;
+
+import static java.util.Collections.singletonList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class WakeUpComputeEngineQueueListenerTest {
+
+  private ProcessCommandWrapper processCommandWrapper = mock(ProcessCommandWrapper.class);
+  private CeTask task = new CeTask.Builder().setUuid("TASK_1").setType("REPORT").build();
+
+  private WakeUpComputeEngineQueueListener underTest = new WakeUpComputeEngineQueueListener(processCommandWrapper);
+
+  @Test
+  public void notify_compute_engine_when_tasks_are_submitted() {
+    underTest.onSubmitted(singletonList(task));
+
+    verify(processCommandWrapper).notifyCeTasksSubmitted();
+  }
+
+  @Test
+  public void do_not_notify_compute_engine_when_no_tasks_are_submitted() {
+    underTest.onSubmitted(Collections.<CeTask>emptyList());
+    underTest.onRemoved(task, CeActivityDto.Status.SUCCESS);
+
+    verifyZeroInteractions(processCommandWrapper);
+  }
+
+  @Test
+  public void submission_does_not_fail_when_compute_engine_can_not_be_notified() {
+    doThrow(new IllegalArgumentException("Property process.sharedDir is not set")).when(processCommandWrapper).notifyCeTasksSubmitted();
+
+    underTest.onSubmitted(singletonList(task));
+  }
+}
@@ -27,6 +27,7 @@ import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.config.Settings;
 import org.sonar.process.DefaultProcessCommands;
+import org.sonar.process.ProcessId;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.process.ProcessEntryPoint.PROPERTY_PROCESS_INDEX;
@@ -112,4 +113,32 @@ public class ProcessCommandWrapperImplTest {
     }
   }
 
+  @Test
+  public void notifyCeTasksSubmitted_throws_IAE_if_process_sharedDir_property_not_set() throws Exception {
+    ProcessCommandWrapperImpl processCommandWrapper = new ProcessCommandWrapperImpl(settings);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property process.sharedDir is not set");
+
+    processCommandWrapper.notifyCeTasksSubmitted();
+  }
+
+  @Test
+  public void notifyCeTasksSubmitted_asks_compute_engine_to_wake_up() throws IOException {
+    File tmpDir = temp.newFolder().getAbsoluteFile();
+    settings.setProperty(PROPERTY_SHARED_PATH, tmpDir.getAbsolutePath());
+    settings.setProperty(PROPERTY_PROCESS_INDEX, PROCESS_NUMBER);
+
+    ProcessCommandWrapperImpl underTest = new ProcessCommandWrapperImpl(settings);
+    underTest.notifyCeTasksSubmitted();
+    underTest.notifyCeTasksSubmitted();
+
+    try (DefaultProcessCommands processCommands = DefaultProcessCommands.secondary(tmpDir, ProcessId.COMPUTE_ENGINE.getIpcIndex())) {
+      assertThat(processCommands.getWakeUpCount()).isEqualTo(2L);
+    }
+    try (DefaultProcessCommands processCommands = DefaultProcessCommands.secondary(tmpDir, PROCESS_NUMBER)) {
+      assertThat(processCommands.getWakeUpCount()).isEqualTo(0L);
+    }
+  }
+
 }
@@ -40,6 +40,7 @@ import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.db.user.UserTesting;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.user.NewUserNotifier;
 import org.sonar.server.user.UserUpdater;
 import org.sonar.server.user.index.UserIndexer;
@@ -49,6 +50,7 @@ import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 public class UserIdentityAuthenticatorTest {
 
@@ -91,7 +93,9 @@ public class UserIdentityAuthenticatorTest {
     system2
     );
 
-  UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(dbClient, userUpdater);
+  AuthorizedProjectsCache authorizedProjectsCache = mock(AuthorizedProjectsCache.class);
+
+  UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(dbClient, userUpdater, authorizedProjectsCache);
 
   @Before
   public void setUp() throws Exception {
@@ -205,6 +209,7 @@ public class UserIdentityAuthenticatorTest {
 
     Set<String> userGroups = new HashSet<>(dbClient.groupMembershipDao().selectGroupsByLogins(dbSession, singletonList(USER_LOGIN)).get(USER_LOGIN));
     assertThat(userGroups).containsOnly("group1", "group2");
+    verifyZeroInteractions(authorizedProjectsCache);
   }
 
   @Test
@@ -234,6 +239,7 @@ public class UserIdentityAuthenticatorTest {
     dbSession.commit();
 
     verifyUserGroups(USER_LOGIN, "group1");
+    verify(authorizedProjectsCache).clear();
   }
 
   @Test
@@ -20,7 +20,9 @@
 package org.sonar.server.batch;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Rule;
@@ -29,6 +31,7 @@ import org.junit.rules.ExpectedException;
 import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.security.DefaultGroups;
+import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.db.DbTester;
@@ -168,6 +171,30 @@ public class IssuesActionTest {
     assertThat(serverIssue.getManualSeverity()).isFalse();
     assertThat(serverIssue.getChecksum()).isEqualTo("123456");
     assertThat(serverIssue.getAssigneeLogin()).isEqualTo("john");
+    assertThat(serverIssue.getUpdateDate()).isEqualTo(DateUtils.parseDate("2014-12-04").getTime());
+  }
+
+  @Test
+  public void issues_updated_since_date() throws Exception {
+    ComponentDto project = ComponentTesting.newProjectDto(PROJECT_UUID).setKey(PROJECT_KEY);
+    ComponentDto file = ComponentTesting.newFileDto(project, FILE_UUID).setKey(FILE_KEY);
+    db.getDbClient().componentDao().insert(db.getSession(), project, file);
+    db.getSession().commit();
+
+    indexIssues(
+      IssueTesting.newDoc("OLD", file).setTechnicalUpdateDate(DateUtils.parseDate("2014-12-04")),
+      IssueTesting.newDoc("UPDATED", file).setTechnicalUpdateDate(DateUtils.parseDate("2015-01-10")),
+      IssueTesting.newDoc("CLOSED", file).setTechnicalUpdateDate(DateUtils.parseDate("2015-01-11")).setStatus("CLOSED").setResolution("FIXED"));
+
+    addBrowsePermissionOnComponent(PROJECT_KEY);
+    WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setParam("since", "2015-01-01T00:00:00+0000");
+
+    ByteArrayInputStream input = new ByteArrayInputStream(request.execute().output());
+    List<String> keys = new ArrayList<>();
+    for (ServerIssue serverIssue = ServerIssue.parseDelimitedFrom(input); serverIssue != null; serverIssue = ServerIssue.parseDelimitedFrom(input)) {
+      keys.add(serverIssue.getKey());
+    }
+    assertThat(keys).containsOnly("UPDATED", "CLOSED");
   }
 
   @Test
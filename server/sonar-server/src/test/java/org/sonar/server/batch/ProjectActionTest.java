@@ -87,4 +87,40 @@ public class ProjectActionTest {
     WsProjectResponse wsProjectResponse = WsProjectResponse.parseFrom(result.getInputStream());
     assertThat(wsProjectResponse.getFileDataByModuleAndPath()).isEmpty();
   }
+
+  @Test
+  public void return_not_modified_when_etag_is_still_valid() throws Exception {
+    ProjectRepositories projectRepositories = new ProjectRepositories().addFileData("module-1", "src/Foo.java", new FileData("abcd", null));
+    projectRepositories.setETag("1234");
+    ArgumentCaptor<ProjectDataQuery> queryArgumentCaptor = ArgumentCaptor.forClass(ProjectDataQuery.class);
+    when(projectDataLoader.load(queryArgumentCaptor.capture())).thenReturn(projectRepositories);
+
+    TestResponse result = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setParam("etag", "1234")
+      .execute();
+
+    assertThat(queryArgumentCaptor.getValue().getETag()).isEqualTo("1234");
+    assertThat(result.getStatus()).isEqualTo(304);
+    assertThat(result.getHeader("ETag")).isEqualTo("\"1234\"");
+    assertThat(result.getInput()).isEmpty();
+  }
+
+  @Test
+  public void return_etag_of_modified_project_repository() throws Exception {
+    ProjectRepositories projectRepositories = new ProjectRepositories().addFileData("module-1", "src/Foo.java", new FileData("abcd", null));
+    projectRepositories.setETag("5678");
+    when(projectDataLoader.load(any(ProjectDataQuery.class))).thenReturn(projectRepositories);
+
+    TestResponse result = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setParam("etag", "1234")
+      .execute();
+
+    WsProjectResponse wsProjectResponse = WsProjectResponse.parseFrom(result.getInputStream());
+    assertThat(wsProjectResponse.getEtag()).isEqualTo("5678");
+    assertThat(wsProjectResponse.getFileDataByModuleAndPath()).containsKey("module-1");
+  }
 }
@@ -34,6 +34,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotTesting;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.db.qualityprofile.QualityProfileDto;
 import org.sonar.db.source.FileSourceDao;
@@ -562,6 +563,53 @@ public class ProjectDataLoaderMediumTest {
     assertThat(ref.fileData(project.key(), projectFile.path())).isNull();
   }
 
+  @Test
+  public void do_not_return_file_data_when_etag_is_still_valid() {
+    ComponentDto project = ComponentTesting.newProjectDto();
+    userSessionRule.login("john").setGlobalPermissions(SCAN_EXECUTION);
+    tester.get(DbClient.class).componentDao().insert(dbSession, project);
+    addDefaultProfile();
+    tester.get(DbClient.class).propertiesDao().insertProperty(
+      dbSession, new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR").setResourceId(project.getId()));
+    ComponentDto file = ComponentTesting.newFileDto(project, "file");
+    tester.get(DbClient.class).componentDao().insert(dbSession, file);
+    tester.get(FileSourceDao.class).insert(newFileSourceDto(file).setSrcHash("123456"));
+    dbSession.commit();
+
+    ProjectRepositories ref = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()));
+    assertThat(ref.etag()).isNotEmpty();
+    assertThat(ref.fileDataByPath(project.key())).hasSize(1);
+
+    ProjectRepositories notModified = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setETag(ref.etag()));
+    assertThat(notModified.etag()).isEqualTo(ref.etag());
+    assertThat(notModified.fileDataByModuleAndPath()).isEmpty();
+    assertThat(notModified.settings(project.key())).containsEntry("sonar.jira.project.key", "SONAR");
+
+    ProjectRepositories modified = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setETag("outdated"));
+    assertThat(modified.fileDataByPath(project.key())).hasSize(1);
+  }
+
+  @Test
+  public void etag_changes_when_project_is_analyzed_or_settings_change() {
+    ComponentDto project = ComponentTesting.newProjectDto();
+    userSessionRule.login("john").setGlobalPermissions(SCAN_EXECUTION);
+    tester.get(DbClient.class).componentDao().insert(dbSession, project);
+    addDefaultProfile();
+    dbSession.commit();
+    String initialETag = underTest.load(ProjectDataQuery.create().setModuleKey(project.key())).etag();
+    assertThat(underTest.load(ProjectDataQuery.create().setModuleKey(project.key())).etag()).isEqualTo(initialETag);
+
+    tester.get(DbClient.class).snapshotDao().insert(dbSession, SnapshotTesting.newSnapshotForProject(project));
+    dbSession.commit();
+    String analyzedETag = underTest.load(ProjectDataQuery.create().setModuleKey(project.key())).etag();
+    assertThat(analyzedETag).isNotEqualTo(initialETag);
+
+    tester.get(DbClient.class).propertiesDao().insertProperty(
+      dbSession, new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR").setResourceId(project.getId()));
+    dbSession.commit();
+    assertThat(underTest.load(ProjectDataQuery.create().setModuleKey(project.key())).etag()).isNotEqualTo(analyzedETag);
+  }
+
   private void addDefaultProfile() {
     QualityProfileDto profileDto = newQProfileDto(QProfileName.createFor(ServerTester.Xoo.KEY, "SonarQube way"), "abcd").setRulesUpdatedAt(
       formatDateTime(new Date())).setDefault(true);
@@ -21,6 +21,7 @@ package org.sonar.server.computation.batch;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
@@ -151,10 +152,10 @@ public class BatchReportReaderImplTest {
   }
 
   @Test
-  public void readComponent_is_not_cached() {
+  public void readComponent_is_cached() {
     writer.writeComponent(COMPONENT);
 
-    assertThat(underTest.readComponent(COMPONENT_REF)).isNotSameAs(underTest.readComponent(COMPONENT_REF));
+    assertThat(underTest.readComponent(COMPONENT_REF)).isSameAs(underTest.readComponent(COMPONENT_REF));
   }
 
   @Test
@@ -315,4 +316,26 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_report_stream() throws IOException {
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setRootComponentRef(COMPONENT_REF).build());
+    FileUtils.write(writer.getFileStructure().analysisLog(), "log1\nlog2");
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    writer.writeCoverageDetails(COMPONENT_REF, of(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2));
+    File stream = tempFolder.newFile();
+    try (OutputStream output = FileUtils.openOutputStream(stream)) {
+      writer.writeStream(output, true);
+    }
+
+    BatchReportReaderImpl streamReader = new BatchReportReaderImpl(new ImmutableBatchReportDirectoryHolder(stream));
+
+    assertThat(streamReader.readMetadata().getRootComponentRef()).isEqualTo(COMPONENT_REF);
+    assertThat(streamReader.readScannerLogs()).containsExactly("log1", "log2");
+    assertThat(streamReader.readFileSource(COMPONENT_REF).get()).containsExactly("1", "2", "3");
+    assertThat(streamReader.readTests(COMPONENT_REF)).containsExactly(TEST_1, TEST_2);
+    assertThat(streamReader.readCoverageDetails(COMPONENT_REF)).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
+    assertThat(streamReader.readComponentIssues(COMPONENT_REF)).isEmpty();
+  }
 }
@@ -28,7 +28,14 @@ import org.sonar.api.utils.MessageException;
 
 import static java.lang.Math.abs;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_FILE_SOURCES_COMMIT_MAX_BYTES_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_FILE_SOURCES_COMMIT_MAX_FILES_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_FILE_SOURCES_COMPUTATION_THREADS_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_FILE_SOURCES_MAX_IN_FLIGHT_BYTES_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_MAX_WORKERS_COUNT_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_STEPS_PARALLELISM_PROPERTY;
 import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_WORKERS_COUNT_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY;
 
 public class CeConfigurationImplTest {
   @Rule
@@ -102,6 +109,134 @@ public class CeConfigurationImplTest {
     new CeConfigurationImpl(settings);
   }
 
+  @Test
+  public void getStepsParallelism_returns_1_when_property_is_not_defined() {
+    assertThat(new CeConfigurationImpl(settings).getStepsParallelism()).isEqualTo(1);
+  }
+
+  @Test
+  public void getStepsParallelism_returns_value_when_property_is_integer_greater_than_1() {
+    settings.setProperty(CE_STEPS_PARALLELISM_PROPERTY, 4);
+
+    assertThat(new CeConfigurationImpl(settings).getStepsParallelism()).isEqualTo(4);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_steps_parallelism_property_is_0() {
+    settings.setProperty(CE_STEPS_PARALLELISM_PROPERTY, "0");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '0' of property " + CE_STEPS_PARALLELISM_PROPERTY + " is invalid. " +
+      "It must an integer strictly greater than 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void file_sources_commit_limits_have_default_values_when_properties_are_not_defined() {
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getFileSourcesCommitMaxFiles()).isEqualTo(100);
+    assertThat(underTest.getFileSourcesCommitMaxBytes()).isEqualTo(10L * 1024 * 1024);
+  }
+
+  @Test
+  public void file_sources_commit_limits_are_read_from_properties() {
+    settings.setProperty(CE_FILE_SOURCES_COMMIT_MAX_FILES_PROPERTY, 20);
+    settings.setProperty(CE_FILE_SOURCES_COMMIT_MAX_BYTES_PROPERTY, "5000000000");
+
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getFileSourcesCommitMaxFiles()).isEqualTo(20);
+    assertThat(underTest.getFileSourcesCommitMaxBytes()).isEqualTo(5000000000L);
+  }
+
+  @Test
+  public void file_sources_commit_max_files_can_not_be_greater_than_size_of_batch_sessions() {
+    settings.setProperty(CE_FILE_SOURCES_COMMIT_MAX_FILES_PROPERTY, 251);
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '251' of property " + CE_FILE_SOURCES_COMMIT_MAX_FILES_PROPERTY + " is invalid. It must be lower than or equal to 250.");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void file_sources_computation_is_sequential_by_default() {
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getFileSourcesComputationThreads()).isEqualTo(1);
+    assertThat(underTest.getFileSourcesMaxInFlightBytes()).isEqualTo(50L * 1024 * 1024);
+  }
+
+  @Test
+  public void file_sources_computation_settings_are_read_from_properties() {
+    settings.setProperty(CE_FILE_SOURCES_COMPUTATION_THREADS_PROPERTY, 4);
+    settings.setProperty(CE_FILE_SOURCES_MAX_IN_FLIGHT_BYTES_PROPERTY, 1000);
+
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getFileSourcesComputationThreads()).isEqualTo(4);
+    assertThat(underTest.getFileSourcesMaxInFlightBytes()).isEqualTo(1000L);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_file_sources_commit_max_bytes_property_is_negative() {
+    settings.setProperty(CE_FILE_SOURCES_COMMIT_MAX_BYTES_PROPERTY, "-1");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '-1' of property " + CE_FILE_SOURCES_COMMIT_MAX_BYTES_PROPERTY + " is invalid. " +
+      "It must an integer strictly greater than 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void worker_count_is_fixed_by_default() {
+    settings.setProperty(CE_WORKERS_COUNT_PROPERTY, 2);
+
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getMaxWorkerCount()).isEqualTo(2);
+    assertThat(underTest.getWorkerMinFreeHeapPercent()).isEqualTo(25);
+  }
+
+  @Test
+  public void adaptive_worker_count_settings_are_read_from_properties() {
+    settings.setProperty(CE_WORKERS_COUNT_PROPERTY, 2);
+    settings.setProperty(CE_MAX_WORKERS_COUNT_PROPERTY, 6);
+    settings.setProperty(CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY, 40);
+
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getWorkerCount()).isEqualTo(2);
+    assertThat(underTest.getMaxWorkerCount()).isEqualTo(6);
+    assertThat(underTest.getWorkerMinFreeHeapPercent()).isEqualTo(40);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_max_worker_count_is_less_than_worker_count() {
+    settings.setProperty(CE_WORKERS_COUNT_PROPERTY, 3);
+    settings.setProperty(CE_MAX_WORKERS_COUNT_PROPERTY, 2);
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '2' of property " + CE_MAX_WORKERS_COUNT_PROPERTY + " is invalid. " +
+      "It must be greater than or equal to value of property " + CE_WORKERS_COUNT_PROPERTY + " (3).");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_min_free_heap_percent_is_greater_than_100() {
+    settings.setProperty(CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY, 101);
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '101' of property " + CE_WORKER_MIN_FREE_HEAP_PERCENT_PROPERTY + " is invalid. " +
+      "It must be a percentage between 1 and 100.");
+
+    new CeConfigurationImpl(settings);
+  }
+
   private void expectMessageException(int value) {
     expectedException.expect(MessageException.class);
     expectedException.expectMessage("value '" + value + "' of property " + CE_WORKERS_COUNT_PROPERTY + " is invalid. " +
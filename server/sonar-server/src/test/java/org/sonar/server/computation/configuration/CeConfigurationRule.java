@@ -28,6 +28,13 @@ import static com.google.common.base.Preconditions.checkArgument;
  */
 public class CeConfigurationRule extends ExternalResource implements CeConfiguration {
   private int workerCount = CeConfigurationImpl.DEFAULT_WORKER_COUNT;
+  private Integer maxWorkerCount;
+  private int workerMinFreeHeapPercent = CeConfigurationImpl.DEFAULT_WORKER_MIN_FREE_HEAP_PERCENT;
+  private int stepsParallelism = CeConfigurationImpl.DEFAULT_STEPS_PARALLELISM;
+  private int fileSourcesCommitMaxFiles = CeConfigurationImpl.DEFAULT_FILE_SOURCES_COMMIT_MAX_FILES;
+  private long fileSourcesCommitMaxBytes = CeConfigurationImpl.DEFAULT_FILE_SOURCES_COMMIT_MAX_BYTES;
+  private int fileSourcesComputationThreads = CeConfigurationImpl.DEFAULT_FILE_SOURCES_COMPUTATION_THREADS;
+  private long fileSourcesMaxInFlightBytes = CeConfigurationImpl.DEFAULT_FILE_SOURCES_MAX_IN_FLIGHT_BYTES;
   private long queuePollingDelay = CeConfigurationImpl.DEFAULT_QUEUE_POLLING_DELAY;
 
   @Override
@@ -41,6 +48,83 @@ public class CeConfigurationRule extends ExternalResource implements CeConfigura
     return this;
   }
 
+  @Override
+  public int getMaxWorkerCount() {
+    return maxWorkerCount == null ? workerCount : maxWorkerCount;
+  }
+
+  public CeConfigurationRule setMaxWorkerCount(int maxWorkerCount) {
+    checkArgument(maxWorkerCount >= workerCount, "max worker count must be >= worker count");
+    this.maxWorkerCount = maxWorkerCount;
+    return this;
+  }
+
+  @Override
+  public int getWorkerMinFreeHeapPercent() {
+    return workerMinFreeHeapPercent;
+  }
+
+  public CeConfigurationRule setWorkerMinFreeHeapPercent(int workerMinFreeHeapPercent) {
+    checkArgument(workerMinFreeHeapPercent >= 1 && workerMinFreeHeapPercent <= 100, "min free heap percent must be between 1 and 100");
+    this.workerMinFreeHeapPercent = workerMinFreeHeapPercent;
+    return this;
+  }
+
+  @Override
+  public int getStepsParallelism() {
+    return stepsParallelism;
+  }
+
+  public CeConfigurationRule setStepsParallelism(int stepsParallelism) {
+    checkArgument(stepsParallelism >= 1, "steps parallelism must be >= 1");
+    this.stepsParallelism = stepsParallelism;
+    return this;
+  }
+
+  @Override
+  public int getFileSourcesCommitMaxFiles() {
+    return fileSourcesCommitMaxFiles;
+  }
+
+  public CeConfigurationRule setFileSourcesCommitMaxFiles(int fileSourcesCommitMaxFiles) {
+    checkArgument(fileSourcesCommitMaxFiles >= 1, "max files per commit must be >= 1");
+    this.fileSourcesCommitMaxFiles = fileSourcesCommitMaxFiles;
+    return this;
+  }
+
+  @Override
+  public long getFileSourcesCommitMaxBytes() {
+    return fileSourcesCommitMaxBytes;
+  }
+
+  public CeConfigurationRule setFileSourcesCommitMaxBytes(long fileSourcesCommitMaxBytes) {
+    checkArgument(fileSourcesCommitMaxBytes >= 1, "max bytes per commit must be >= 1");
+    this.fileSourcesCommitMaxBytes = fileSourcesCommitMaxBytes;
+    return this;
+  }
+
+  @Override
+  public int getFileSourcesComputationThreads() {
+    return fileSourcesComputationThreads;
+  }
+
+  public CeConfigurationRule setFileSourcesComputationThreads(int fileSourcesComputationThreads) {
+    checkArgument(fileSourcesComputationThreads >= 1, "file sources computation threads must be >= 1");
+    this.fileSourcesComputationThreads = fileSourcesComputationThreads;
+    return this;
+  }
+
+  @Override
+  public long getFileSourcesMaxInFlightBytes() {
+    return fileSourcesMaxInFlightBytes;
+  }
+
+  public CeConfigurationRule setFileSourcesMaxInFlightBytes(long fileSourcesMaxInFlightBytes) {
+    checkArgument(fileSourcesMaxInFlightBytes >= 1, "max in-flight bytes must be >= 1");
+    this.fileSourcesMaxInFlightBytes = fileSourcesMaxInFlightBytes;
+    return this;
+  }
+
   @Override
   public long getQueuePollingDelay() {
     return queuePollingDelay;
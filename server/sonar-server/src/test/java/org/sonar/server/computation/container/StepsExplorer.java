@@ -39,6 +39,7 @@ public class StepsExplorer {
 
     return from(reflections.getSubTypesOf(ComputationStep.class))
         .filter(NotAbstractClass.INSTANCE)
+        .filter(NotMemberClass.INSTANCE)
         .transform(ClassToCanonicalName.INSTANCE)
         // anonymous classes do not have canonical names
         .filter(notNull())
@@ -54,6 +55,18 @@ public class StepsExplorer {
     }
   }
 
+  /**
+   * Steps are top-level classes, member classes are test doubles declared in tests of package step.
+   */
+  private enum NotMemberClass implements Predicate<Class<? extends ComputationStep>> {
+    INSTANCE;
+
+    @Override
+    public boolean apply(Class<? extends ComputationStep> input) {
+      return !input.isMemberClass();
+    }
+  }
+
   public static Function<Class<?>, String> toCanonicalName() {
     return ClassToCanonicalName.INSTANCE;
   }
@@ -0,0 +1,202 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.duplication;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.ResultSetIterator;
+import org.sonar.db.duplication.DuplicationDao;
+import org.sonar.db.duplication.DuplicationUnitDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CrossProjectDuplicationHashIndexTest {
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  DbClient dbClient = dbTester.getDbClient();
+  DbSession dbSession = dbTester.getSession();
+
+  CrossProjectDuplicationHashIndex underTest = new CrossProjectDuplicationHashIndex(dbClient);
+
+  @Test
+  public void load_hashes_from_db() {
+    insertUnit("a8998353e96320ec");
+    insertUnit("b1234353e96320ff");
+
+    assertThat(underTest.mightContain("a8998353e96320ec")).isTrue();
+    assertThat(underTest.mightContain("b1234353e96320ff")).isTrue();
+    assertThat(underTest.mightContain("c0000000e96320aa")).isFalse();
+  }
+
+  @Test
+  public void hashes_are_loaded_only_once() {
+    insertUnit("a8998353e96320ec");
+    assertThat(underTest.mightContain("a8998353e96320ec")).isTrue();
+
+    // not added to the index
+    insertUnit("b1234353e96320ff");
+
+    assertThat(underTest.mightContain("b1234353e96320ff")).isFalse();
+  }
+
+  @Test
+  public void put_adds_hash_to_loaded_index() {
+    assertThat(underTest.mightContain("a8998353e96320ec")).isFalse();
+
+    underTest.startInsertions();
+    underTest.put("a8998353e96320ec");
+    underTest.endInsertions();
+
+    assertThat(underTest.mightContain("a8998353e96320ec")).isTrue();
+  }
+
+  @Test
+  public void start_insertions_loads_index() {
+    insertUnit("a8998353e96320ec");
+
+    underTest.startInsertions();
+    // inserted after the load, but not added to the index
+    insertUnit("b1234353e96320ff");
+    underTest.endInsertions();
+
+    assertThat(underTest.mightContain("a8998353e96320ec")).isTrue();
+    assertThat(underTest.mightContain("b1234353e96320ff")).isFalse();
+  }
+
+  @Test
+  public void fail_to_put_hash_if_insertions_are_not_started() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Insertions are not started");
+
+    underTest.put("a8998353e96320ec");
+  }
+
+  @Test
+  public void reload_index_once_more_hashes_than_expected_have_been_added() {
+    underTest = new CrossProjectDuplicationHashIndex(dbClient, 2);
+    underTest.startInsertions();
+    putUnits("a8998353e96320ec", "b1234353e96320ff", "c0000000e96320aa");
+    underTest.endInsertions();
+    // not added to the index
+    insertUnit("d0000000e96320bb");
+
+    assertThat(underTest.mightContain("d0000000e96320bb")).isTrue();
+    assertThat(underTest.mightContain("a8998353e96320ec")).isTrue();
+  }
+
+  @Test
+  public void do_not_reload_index_while_insertions_are_in_progress() {
+    underTest = new CrossProjectDuplicationHashIndex(dbClient, 2);
+    underTest.startInsertions();
+    putUnits("a8998353e96320ec", "b1234353e96320ff", "c0000000e96320aa");
+    // inserted by another task, not committed yet when the index would be loaded
+    insertUnit("d0000000e96320bb");
+
+    assertThat(underTest.mightContain("d0000000e96320bb")).isFalse();
+
+    underTest.endInsertions();
+
+    assertThat(underTest.mightContain("d0000000e96320bb")).isTrue();
+  }
+
+  @Test
+  public void hashes_added_while_index_is_reloaded_are_kept() {
+    DbClient dbClient = mock(DbClient.class, RETURNS_DEEP_STUBS);
+    final DuplicationDao duplicationDao = mock(DuplicationDao.class);
+    when(dbClient.duplicationDao()).thenReturn(duplicationDao);
+    ResultSetIterator<String> noHashes = hashes();
+    when(duplicationDao.selectHashes(any(DbSession.class))).thenReturn(noHashes);
+    underTest = new CrossProjectDuplicationHashIndex(dbClient, 1);
+    underTest.startInsertions();
+    // deleted from DB before the index is reloaded
+    underTest.put("e0000000e96320cc");
+    underTest.put("a8998353e96320ec");
+    underTest.endInsertions();
+
+    // another task adds a hash while the index is reloaded
+    when(duplicationDao.selectHashes(any(DbSession.class))).thenAnswer(new Answer<ResultSetIterator<String>>() {
+      @Override
+      public ResultSetIterator<String> answer(InvocationOnMock invocation) {
+        underTest.startInsertions();
+        underTest.put("c0000000e96320aa");
+        underTest.endInsertions();
+        return hashes("a8998353e96320ec", "b1234353e96320ff");
+      }
+    });
+
+    assertThat(underTest.mightContain("b1234353e96320ff")).isTrue();
+    assertThat(underTest.mightContain("a8998353e96320ec")).isTrue();
+    assertThat(underTest.mightContain("c0000000e96320aa")).isTrue();
+    assertThat(underTest.mightContain("e0000000e96320cc")).isFalse();
+  }
+
+  private void putUnits(String... hashes) {
+    for (String hash : hashes) {
+      insertUnit(hash);
+      underTest.put(hash);
+    }
+  }
+
+  private static ResultSetIterator<String> hashes(String... hashes) {
+    final Iterator<String> it = Arrays.asList(hashes).iterator();
+    ResultSetIterator<String> resultSetIterator = mock(ResultSetIterator.class);
+    when(resultSetIterator.hasNext()).thenAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) {
+        return it.hasNext();
+      }
+    });
+    when(resultSetIterator.next()).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        return it.next();
+      }
+    });
+    return resultSetIterator;
+  }
+
+  private void insertUnit(String hash) {
+    dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setHash(hash)
+      .setStartLine(1)
+      .setEndLine(10)
+      .setIndexInFile(0)
+      .setProjectSnapshotId(1L)
+      .setSnapshotId(2L));
+    dbSession.commit();
+  }
+}
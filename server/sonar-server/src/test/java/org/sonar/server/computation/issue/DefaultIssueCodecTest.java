@@ -0,0 +1,186 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DefaultIssueCodecTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void write_and_read_issue_with_all_fields() throws Exception {
+    Date date = new Date(1_400_000_000_000L);
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1).setEndLine(2))
+      .build();
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ABCDE")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_UUID")
+      .setComponentKey("struts:Action.java")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("struts")
+      .setRuleKey(RuleKey.of("squid", "AvoidCycles"))
+      .setLanguage("java")
+      .setSeverity(Severity.BLOCKER)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(10)
+      .setGap(2.5)
+      .setEffort(Duration.create(30L))
+      .setStatus(Issue.STATUS_RESOLVED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setAssignee("simon")
+      .setChecksum("abc123")
+      .setAuthorLogin("julien")
+      .setCreationDate(date)
+      .setUpdateDate(date)
+      .setCloseDate(date)
+      .setSelectedAt(1_500_000_000_000L)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setAttributes(ImmutableMap.of("jira", "FOO-123"))
+      .setTags(Arrays.asList("tag1", "tag2"))
+      .setLocations(locations)
+      .addComment(new DefaultIssueComment().setIssueKey("ABCDE").setKey("COMMENT").setUserLogin("simon")
+        .setMarkdownText("a *comment*").setCreatedAt(date).setUpdatedAt(date).setNew(true));
+    issue.addChange(new FieldDiffs().setIssueKey("ABCDE").setUserLogin("julien").setCreationDate(date).setDiff("status", "OPEN", "CONFIRMED"));
+    IssueChangeContext context = IssueChangeContext.createUser(date, "simon");
+    issue.setFieldChange(context, "severity", Severity.MAJOR, Severity.BLOCKER);
+    issue.setFieldChange(context, "effort", 10L, 30L);
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.key()).isEqualTo("ABCDE");
+    assertThat(read.type()).isEqualTo(RuleType.BUG);
+    assertThat(read.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(read.componentKey()).isEqualTo("struts:Action.java");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(read.moduleUuidPath()).isEqualTo(".MODULE_UUID.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(read.projectKey()).isEqualTo("struts");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("squid", "AvoidCycles"));
+    assertThat(read.language()).isEqualTo("java");
+    assertThat(read.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("the message");
+    assertThat(read.line()).isEqualTo(10);
+    assertThat(read.gap()).isEqualTo(2.5);
+    assertThat(read.effort()).isEqualTo(Duration.create(30L));
+    assertThat(read.status()).isEqualTo(Issue.STATUS_RESOLVED);
+    assertThat(read.resolution()).isEqualTo(Issue.RESOLUTION_FIXED);
+    assertThat(read.assignee()).isEqualTo("simon");
+    assertThat(read.checksum()).isEqualTo("abc123");
+    assertThat(read.authorLogin()).isEqualTo("julien");
+    assertThat(read.creationDate()).isEqualTo(date);
+    assertThat(read.updateDate()).isEqualTo(date);
+    assertThat(read.closeDate()).isEqualTo(date);
+    assertThat(read.selectedAt()).isEqualTo(1_500_000_000_000L);
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.attributes()).containsOnly(entry("jira", "FOO-123"));
+    assertThat(read.tags()).containsExactly("tag1", "tag2");
+    assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(locations);
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.issueKey()).isEqualTo("ABCDE");
+    assertThat(comment.key()).isEqualTo("COMMENT");
+    assertThat(comment.userLogin()).isEqualTo("simon");
+    assertThat(comment.markdownText()).isEqualTo("a *comment*");
+    assertThat(comment.createdAt()).isEqualTo(date);
+    assertThat(comment.updatedAt()).isEqualTo(date);
+    assertThat(comment.isNew()).isTrue();
+
+    FieldDiffs currentChange = read.currentChange();
+    assertThat(currentChange.userLogin()).isEqualTo("simon");
+    assertThat(currentChange.creationDate()).isEqualTo(date);
+    assertThat(currentChange.toString()).isEqualTo(issue.currentChange().toString());
+    assertThat(currentChange.get("effort").newValue()).isEqualTo(30L);
+    // current change is referenced twice, as when it was written
+    assertThat(read.changes()).hasSize(3);
+    assertThat(read.changes().get(0).toString()).isEqualTo("status=OPEN|CONFIRMED");
+    assertThat(read.changes().get(1)).isSameAs(currentChange);
+    assertThat(read.changes().get(2)).isSameAs(currentChange);
+  }
+
+  @Test
+  public void write_and_read_issue_with_only_mandatory_fields() throws Exception {
+    DefaultIssue issue = new DefaultIssue().setKey("ABCDE");
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.key()).isEqualTo("ABCDE");
+    assertThat(read.type()).isNull();
+    assertThat(read.ruleKey()).isNull();
+    assertThat(read.status()).isNull();
+    assertThat(read.line()).isNull();
+    assertThat(read.gap()).isNull();
+    assertThat(read.effort()).isNull();
+    assertThat(read.creationDate()).isNull();
+    assertThat(read.selectedAt()).isNull();
+    assertThat(read.isNew()).isTrue();
+    assertThat(read.attributes()).isEmpty();
+    assertThat(read.tags()).isEmpty();
+    assertThat((Object) read.getLocations()).isNull();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.currentChange()).isNull();
+    assertThat(read.changes()).isEmpty();
+  }
+
+  private DefaultIssue writeAndRead(DefaultIssue issue) throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append(issue).close();
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      return traverse.next();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistedIssuesHolderImplTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  PersistedIssuesHolderImpl underTest = new PersistedIssuesHolderImpl();
+
+  @Test
+  public void get_technical_update_date_and_conflicts() {
+    underTest.setPersisted(1_500L, true);
+
+    assertThat(underTest.getTechnicalUpdateDate()).isEqualTo(1_500L);
+    assertThat(underTest.hasConflicts()).isTrue();
+  }
+
+  @Test
+  public void fail_with_ISE_when_getting_technical_update_date_before_issues_are_persisted() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Issues have not been persisted");
+
+    underTest.getTechnicalUpdateDate();
+  }
+
+  @Test
+  public void fail_with_ISE_when_getting_conflicts_before_issues_are_persisted() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Issues have not been persisted");
+
+    underTest.hasConflicts();
+  }
+
+  @Test
+  public void fail_with_ISE_when_issues_are_persisted_twice() {
+    underTest.setPersisted(1_500L, false);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Issues have already been persisted");
+
+    underTest.setPersisted(2_000L, false);
+  }
+}
@@ -23,6 +23,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.SetMultimap;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
@@ -60,7 +61,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(DataProviderRunner.class)
-public class MapBasedRawMeasureRepositoryTest {
+public class ColumnBasedRawMeasureRepositoryTest {
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
@@ -83,12 +84,7 @@ public class MapBasedRawMeasureRepositoryTest {
   private ReportMetricValidator reportMetricValidator = mock(ReportMetricValidator.class);
 
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MapBasedRawMeasureRepository<Integer> underTest = new MapBasedRawMeasureRepository<>(new Function<Component, Integer>() {
-    @Override
-    public Integer apply(Component component) {
-      return component.getReportAttributes().getRef();
-    }
-  });
+  private ColumnBasedRawMeasureRepository underTest = new ColumnBasedRawMeasureRepository();
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
@@ -223,12 +219,100 @@ public class MapBasedRawMeasureRepositoryTest {
 
   @Test
   public void update_updates_the_stored_value() {
-    Measure newMeasure = Measure.updatedMeasureBuilder(SOME_MEASURE).create();
+    Measure newMeasure = Measure.newMeasureBuilder().create("other value");
 
     underTest.add(FILE_COMPONENT, metric1, SOME_MEASURE);
     underTest.update(FILE_COMPONENT, metric1, newMeasure);
 
-    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isSameAs(newMeasure);
+    MeasureAssert.assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1)).hasValue("other value");
+  }
+
+  @Test
+  public void update_replaces_measure_with_quality_gate_status_by_simple_measure() {
+    Measure measureWithStatus = Measure.updatedMeasureBuilder(SOME_MEASURE).setQualityGateStatus(new QualityGateStatus(Measure.Level.ERROR)).create();
+
+    underTest.add(FILE_COMPONENT, metric1, measureWithStatus);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isSameAs(measureWithStatus);
+
+    underTest.update(FILE_COMPONENT, metric1, Measure.newMeasureBuilder().create("other value"));
+    Measure res = underTest.getRawMeasure(FILE_COMPONENT, metric1).get();
+    MeasureAssert.assertThat(res).hasValue("other value");
+    assertThat(res.hasQualityGateStatus()).isFalse();
+  }
+
+  @Test
+  @UseDataProvider("measures")
+  public void getRawMeasure_restores_value_and_data_of_measure(Measure measure) {
+    MetricImpl metric = new MetricImpl(1, "key", "name", metricTypeOf(measure));
+    Measure measureWithData = withData(measure, "some data");
+
+    underTest.add(FILE_COMPONENT, metric, measureWithData);
+
+    Measure res = underTest.getRawMeasure(FILE_COMPONENT, metric).get();
+    assertThat(res.getValueType()).isEqualTo(measure.getValueType());
+    assertThat(res.getData()).isEqualTo(measureWithData.getData());
+    assertThat(res.toString()).isEqualTo(measureWithData.toString());
+  }
+
+  @Test
+  public void getRawMeasures_returns_all_measures_of_component() {
+    underTest.add(FILE_COMPONENT, metric1, SOME_MEASURE);
+    underTest.add(FILE_COMPONENT, metric2, Measure.newMeasureBuilder().create("other value"));
+    underTest.add(OTHER_COMPONENT, metric1, Measure.newMeasureBuilder().create("value of other component"));
+    Measure devMeasure = Measure.newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create("value of developer");
+    underTest.add(FILE_COMPONENT, metric1, devMeasure);
+
+    SetMultimap<String, Measure> measures = underTest.getRawMeasures(FILE_COMPONENT);
+
+    assertThat(measures.keySet()).containsOnly(METRIC_KEY_1, METRIC_KEY_2);
+    assertThat(measures.get(METRIC_KEY_1)).hasSize(2).contains(devMeasure);
+    MeasureAssert.assertThat(measures.get(METRIC_KEY_2).iterator().next()).hasValue("other value");
+  }
+
+  @Test
+  public void store_measures_of_many_components_and_metrics() {
+    int componentCount = 500;
+    int metricCount = 20;
+    for (int ref = 1; ref <= componentCount; ref++) {
+      Component component = ReportComponent.builder(Component.Type.FILE, ref).setKey("file " + ref).build();
+      for (int metricId = 1; metricId <= metricCount; metricId++) {
+        underTest.add(component, new MetricImpl(metricId, "key" + metricId, "name" + metricId, Metric.MetricType.INT), Measure.newMeasureBuilder().create(ref * metricId));
+      }
+    }
+
+    for (int ref = 1; ref <= componentCount; ref++) {
+      Component component = ReportComponent.builder(Component.Type.FILE, ref).setKey("file " + ref).build();
+      assertThat(underTest.getRawMeasures(component).size()).isEqualTo(metricCount);
+      for (int metricId = 1; metricId <= metricCount; metricId++) {
+        Metric metric = new MetricImpl(metricId, "key" + metricId, "name" + metricId, Metric.MetricType.INT);
+        MeasureAssert.assertThat(underTest.getRawMeasure(component, metric)).hasValue(ref * metricId);
+      }
+    }
+  }
+
+  private static Metric.MetricType metricTypeOf(Measure measure) {
+    for (Metric.MetricType metricType : Metric.MetricType.values()) {
+      if (metricType.getValueType() == measure.getValueType()) {
+        return metricType;
+      }
+    }
+    return Metric.MetricType.INT;
+  }
+
+  private static Measure withData(Measure measure, String data) {
+    Measure.NewMeasureBuilder builder = Measure.newMeasureBuilder();
+    switch (measure.getValueType()) {
+      case BOOLEAN:
+        return builder.create(measure.getBooleanValue(), data);
+      case INT:
+        return builder.create(measure.getIntValue(), data);
+      case LONG:
+        return builder.create(measure.getLongValue(), data);
+      case DOUBLE:
+        return builder.create(measure.getDoubleValue(), 1, data);
+      default:
+        return measure;
+    }
   }
 
   @Test
@@ -257,8 +341,7 @@ public class MapBasedRawMeasureRepositoryTest {
 
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
-    assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(SOME_MEASURE);
+    MeasureAssert.assertThat(res).hasValue("some value");
 
     // make sure we really match on the specified component and metric
     assertThat(underTest.getRawMeasure(OTHER_COMPONENT, metric1)).isAbsent();
@@ -284,12 +284,12 @@ public class MeasureRepositoryImplTest {
 
   @Test
   public void update_updates_the_stored_value() {
-    Measure newMeasure = Measure.updatedMeasureBuilder(SOME_MEASURE).create();
+    Measure newMeasure = Measure.newMeasureBuilder().create("other value");
 
     underTest.add(FILE_COMPONENT, metric1, SOME_MEASURE);
     underTest.update(FILE_COMPONENT, metric1, newMeasure);
 
-    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isSameAs(newMeasure);
+    MeasureAssert.assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1)).hasValue("other value");
   }
 
   @Test
@@ -318,8 +318,7 @@ public class MeasureRepositoryImplTest {
 
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
-    assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(SOME_MEASURE);
+    MeasureAssert.assertThat(res).hasValue("some value");
 
     // make sure we really match on the specified component and metric
     assertThat(underTest.getRawMeasure(OTHER_COMPONENT, metric1)).isAbsent();
@@ -362,15 +361,14 @@ public class MeasureRepositoryImplTest {
   public void getRawMeasure_retrieves_added_measure_over_batch_measure() {
     when(reportMetricValidator.validate(METRIC_KEY_1)).thenReturn(true);
     reportReader.putMeasures(FILE_COMPONENT.getReportAttributes().getRef(), ImmutableList.of(
-      ScannerReport.Measure.newBuilder().setMetricKey(METRIC_KEY_1).setStringValue(StringValue.newBuilder().setValue("some value")).build()));
+      ScannerReport.Measure.newBuilder().setMetricKey(METRIC_KEY_1).setStringValue(StringValue.newBuilder().setValue("batch value")).build()));
 
     Measure addedMeasure = SOME_MEASURE;
     underTest.add(FILE_COMPONENT, metric1, addedMeasure);
 
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
-    assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(addedMeasure);
+    MeasureAssert.assertThat(res).hasValue("some value");
   }
 
   @Test
@@ -130,6 +130,41 @@ public class CeTasksMBeanImplTest {
       return WORKER_COUNT;
     }
 
+    @Override
+    public int getMaxWorkerCount() {
+      throw new UnsupportedOperationException("getMaxWorkerCount is not implemented");
+    }
+
+    @Override
+    public int getWorkerMinFreeHeapPercent() {
+      throw new UnsupportedOperationException("getWorkerMinFreeHeapPercent is not implemented");
+    }
+
+    @Override
+    public int getStepsParallelism() {
+      throw new UnsupportedOperationException("getStepsParallelism is not implemented");
+    }
+
+    @Override
+    public int getFileSourcesCommitMaxFiles() {
+      throw new UnsupportedOperationException("getFileSourcesCommitMaxFiles is not implemented");
+    }
+
+    @Override
+    public long getFileSourcesCommitMaxBytes() {
+      throw new UnsupportedOperationException("getFileSourcesCommitMaxBytes is not implemented");
+    }
+
+    @Override
+    public int getFileSourcesComputationThreads() {
+      throw new UnsupportedOperationException("getFileSourcesComputationThreads is not implemented");
+    }
+
+    @Override
+    public long getFileSourcesMaxInFlightBytes() {
+      throw new UnsupportedOperationException("getFileSourcesMaxInFlightBytes is not implemented");
+    }
+
     @Override
     public long getQueuePollingDelay() {
       throw new UnsupportedOperationException("getQueuePollingDelay is not implemented");
@@ -43,6 +43,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Matchers.any;
@@ -50,7 +51,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 public class InternalCeQueueImplTest {
@@ -76,6 +77,7 @@ public class InternalCeQueueImplTest {
 
     verifyCeTask(taskSubmit, task, null);
     verifyCeQueueDtoForTaskSubmit(taskSubmit);
+    verify(listener).onSubmitted(singletonList(task));
   }
 
   @Test
@@ -119,6 +121,7 @@ public class InternalCeQueueImplTest {
     verifyCeTask(taskSubmit2, tasks.get(1), null);
     verifyCeQueueDtoForTaskSubmit(taskSubmit1);
     verifyCeQueueDtoForTaskSubmit(taskSubmit2);
+    verify(listener).onSubmitted(tasks);
   }
 
   @Test
@@ -216,6 +219,20 @@ public class InternalCeQueueImplTest {
     assertThat(peek.isPresent()).isFalse();
   }
 
+  @Test
+  public void count_eligible_for_peek() throws Exception {
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    submit(CeTaskTypes.REPORT, "PROJECT_2");
+    assertThat(underTest.countEligibleForPeek()).isEqualTo(2);
+
+    underTest.peek();
+    assertThat(underTest.countEligibleForPeek()).isEqualTo(1);
+
+    underTest.pausePeek();
+    assertThat(underTest.countEligibleForPeek()).isEqualTo(0);
+  }
+
   @Test
   public void cancel_pending() throws Exception {
     CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
@@ -223,7 +240,8 @@ public class InternalCeQueueImplTest {
     // ignore
     boolean canceled = underTest.cancel("UNKNOWN");
     assertThat(canceled).isFalse();
-    verifyZeroInteractions(listener);
+    verify(listener).onSubmitted(singletonList(task));
+    verifyNoMoreInteractions(listener);
 
     canceled = underTest.cancel(task.getUuid());
     assertThat(canceled).isTrue();
@@ -19,14 +19,22 @@
  */
 package org.sonar.server.computation.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Condition;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
@@ -42,6 +50,8 @@ public class ComputationStepExecutorTest {
   public LogTester logTester = new LogTester();
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule().setStepsParallelism(4);
 
   private final ComputationStepExecutor.Listener listener = mock(ComputationStepExecutor.Listener.class);
   private final ComputationStep computationStep1 = mockComputationStep("step1");
@@ -119,6 +129,156 @@ public class ComputationStepExecutorTest {
 
   }
 
+  @Test
+  public void execute_runs_concurrently_steps_which_do_not_access_the_same_resources() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    RecordingStep step1 = new RecordingStep("step1", ImmutableSet.of("A"), ImmutableSet.of("B"), bothStarted);
+    RecordingStep step2 = new RecordingStep("step2", ImmutableSet.of("A"), ImmutableSet.of("C"), bothStarted);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2), listener, ceConfiguration).execute();
+
+    // each step waits for the other one to be started, which would time out if they were not executed concurrently
+    assertThat(step1.startedConcurrently).isTrue();
+    assertThat(step2.startedConcurrently).isTrue();
+    verify(listener).finished(true);
+  }
+
+  @Test
+  public void execute_runs_in_order_steps_which_write_a_resource_read_by_another_step() {
+    List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+    RecordingStep step1 = new RecordingStep("step1", ImmutableSet.<String>of(), ImmutableSet.of("B"), executions);
+    RecordingStep step2 = new RecordingStep("step2", ImmutableSet.of("B"), ImmutableSet.of("C"), executions);
+    RecordingStep step3 = new RecordingStep("step3", ImmutableSet.<String>of(), ImmutableSet.of("C"), executions);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), listener, ceConfiguration).execute();
+
+    assertThat(executions).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_runs_step_which_does_not_declare_its_resources_alone() {
+    final List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+    RecordingStep step1 = new RecordingStep("step1", ImmutableSet.<String>of(), ImmutableSet.of("B"), executions);
+    ComputationStep step2 = new ComputationStep() {
+      @Override
+      public void execute() {
+        executions.add("step2");
+      }
+
+      @Override
+      public String getDescription() {
+        return "step2";
+      }
+    };
+    RecordingStep step3 = new RecordingStep("step3", ImmutableSet.<String>of(), ImmutableSet.of("C"), executions);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, step3), listener, ceConfiguration).execute();
+
+    assertThat(executions).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_logs_end_timing_for_each_concurrent_ComputationStep() {
+    List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+    RecordingStep step1 = new RecordingStep("step1", ImmutableSet.<String>of(), ImmutableSet.of("B"), executions);
+    RecordingStep step2 = new RecordingStep("step2", ImmutableSet.<String>of(), ImmutableSet.of("C"), executions);
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2), listener, ceConfiguration).execute();
+
+    List<String> infoLogs = logTester.logs(LoggerLevel.INFO);
+    assertThat(infoLogs).hasSize(2);
+    assertThat(infoLogs).haveAtLeastOne(new Condition<String>() {
+      @Override
+      public boolean matches(String value) {
+        return value.contains("step1 | time=");
+      }
+    });
+    assertThat(infoLogs).haveAtLeastOne(new Condition<String>() {
+      @Override
+      public boolean matches(String value) {
+        return value.contains("step2 | time=");
+      }
+    });
+  }
+
+  @Test
+  public void execute_with_concurrent_steps_let_exception_go_up_as_is_and_does_not_start_dependent_steps() {
+    List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+    RuntimeException toBeThrown = new RuntimeException("simulating failing execute Step method");
+    RecordingStep step1 = new RecordingStep("step1", ImmutableSet.<String>of(), ImmutableSet.of("B"), executions).failWith(toBeThrown);
+    RecordingStep step2 = new RecordingStep("step2", ImmutableSet.of("B"), ImmutableSet.of("C"), executions);
+
+    try {
+      new ComputationStepExecutor(mockComputationSteps(step1, step2), listener, ceConfiguration).execute();
+      fail("exception toBeThrown should have been raised");
+    } catch (RuntimeException e) {
+      assertThat(e).isSameAs(toBeThrown);
+      assertThat(executions).isEmpty();
+      verify(listener).finished(false);
+      verifyNoMoreInteractions(listener);
+    }
+  }
+
+  private static class RecordingStep implements ResourceAwareComputationStep {
+    private final String description;
+    private final Set<String> readResources;
+    private final Set<String> writtenResources;
+    private final List<String> executions;
+    private final CountDownLatch started;
+    private RuntimeException failure;
+    private volatile boolean startedConcurrently = false;
+
+    private RecordingStep(String description, Set<String> readResources, Set<String> writtenResources, List<String> executions) {
+      this(description, readResources, writtenResources, executions, new CountDownLatch(0));
+    }
+
+    private RecordingStep(String description, Set<String> readResources, Set<String> writtenResources, CountDownLatch started) {
+      this(description, readResources, writtenResources, Collections.synchronizedList(new ArrayList<String>()), started);
+    }
+
+    private RecordingStep(String description, Set<String> readResources, Set<String> writtenResources, List<String> executions, CountDownLatch started) {
+      this.description = description;
+      this.readResources = readResources;
+      this.writtenResources = writtenResources;
+      this.executions = executions;
+      this.started = started;
+    }
+
+    private RecordingStep failWith(RuntimeException failure) {
+      this.failure = failure;
+      return this;
+    }
+
+    @Override
+    public void execute() {
+      if (failure != null) {
+        throw failure;
+      }
+      started.countDown();
+      try {
+        startedConcurrently = started.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      executions.add(description);
+    }
+
+    @Override
+    public Set<String> getReadResources() {
+      return readResources;
+    }
+
+    @Override
+    public Set<String> getWrittenResources() {
+      return writtenResources;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
+
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
     ComputationSteps steps = mock(ComputationSteps.class);
     when(steps.instances()).thenReturn(Arrays.asList(computationSteps));
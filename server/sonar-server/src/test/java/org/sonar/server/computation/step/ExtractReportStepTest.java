@@ -21,6 +21,7 @@ package org.sonar.server.computation.step;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import org.apache.commons.io.FileUtils;
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeMatcher;
@@ -35,7 +36,10 @@ import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.server.computation.batch.MutableBatchReportDirectoryHolder;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.report.ReportFiles;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -101,4 +105,21 @@ public class ExtractReportStepTest {
       }
     }));
   }
+
+  @Test
+  public void do_not_extract_report_stream() throws Exception {
+    File reportDir = tempFolder.newDir();
+    new ScannerReportWriter(reportDir).writeMetadata(ScannerReport.Metadata.newBuilder().build());
+    File stream = tempFolder.newFile();
+    try (OutputStream output = FileUtils.openOutputStream(stream)) {
+      new ScannerReportWriter(reportDir).writeStream(output, true);
+    }
+    when(reportFiles.fileForUuid(TASK_UUID)).thenReturn(stream);
+
+    underTest.execute();
+
+    verify(reportDirectoryHolder).setDirectory(stream);
+    assertThat(logTester.logs(LoggerLevel.INFO)).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.INFO).get(0)).startsWith("Analysis report stream opened");
+  }
 }
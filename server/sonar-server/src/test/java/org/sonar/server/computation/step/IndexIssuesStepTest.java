@@ -19,33 +19,165 @@
  */
 package org.sonar.server.computation.step;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
 import org.sonar.server.computation.batch.TreeRootHolderRule;
-import org.sonar.server.computation.component.Component;
-import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.issue.DumbRule;
+import org.sonar.server.computation.issue.IssueCache;
+import org.sonar.server.computation.issue.PersistedIssuesHolderImpl;
+import org.sonar.server.computation.issue.RuleRepositoryRule;
+import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.issue.index.IssueIndexer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
-import static org.sonar.server.computation.component.Component.Type.*;
-import static org.sonar.server.computation.component.ReportComponent.*;
+import static org.sonar.server.computation.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.component.Component.Type.FILE;
+import static org.sonar.server.computation.component.Component.Type.MODULE;
+import static org.sonar.server.computation.component.Component.Type.PROJECT;
+import static org.sonar.server.computation.component.ReportComponent.builder;
 
 public class IndexIssuesStepTest {
 
-  static String PROJECT_UUID = "PROJECT_UUID";
+  static final String PROJECT_UUID = "PROJECT_UUID";
+  static final String MODULE_UUID = "MODULE_UUID";
+  static final String DIRECTORY_UUID = "DIRECTORY_UUID";
+  static final String FILE_UUID = "FILE_UUID";
+  static final long NOW = 1_500_000_000_000L;
+  static final RuleKey RULE_KEY = RuleKey.of("xoo", "S01");
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule()
-    .setRoot(builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey("PROJECT_KEY").build());
+    .setRoot(builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey("PROJECT_KEY")
+      .addChildren(builder(MODULE, 2).setUuid(MODULE_UUID).setKey("MODULE_KEY").setPath("sub")
+        .addChildren(builder(DIRECTORY, 3).setUuid(DIRECTORY_UUID).setKey("MODULE_KEY:src/main").setPath("src/main")
+          .addChildren(builder(FILE, 4).setUuid(FILE_UUID).setKey("MODULE_KEY:src/main/Foo.java").setPath("src/main/Foo.java").build())
+          .build())
+        .build())
+      .build());
+
+  @Rule
+  public RuleRepositoryRule ruleRepository = new RuleRepositoryRule()
+    .add(new DumbRule(RULE_KEY).setLanguage("xoo"));
+
+  IssueIndexer issueIndexer = mock(IssueIndexer.class);
+  List<IssueDoc> indexedDocs = new ArrayList<>();
+  PersistedIssuesHolderImpl persistedIssuesHolder = new PersistedIssuesHolderImpl();
+  IssueCache issueCache;
+  IndexIssuesStep underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    issueCache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Iterator<IssueDoc> docs = (Iterator<IssueDoc>) invocation.getArguments()[0];
+        while (docs.hasNext()) {
+          indexedDocs.add(docs.next());
+        }
+        return null;
+      }
+    }).when(issueIndexer).index(any(Iterator.class));
+    underTest = new IndexIssuesStep(issueIndexer, treeRootHolder, issueCache, ruleRepository, persistedIssuesHolder, dbTester.getDbClient());
+  }
 
   @Test
-  public void call_indexers() {
-    IssueIndexer issueIndexer = mock(IssueIndexer.class);
-    IndexIssuesStep underTest = new IndexIssuesStep(issueIndexer, treeRootHolder);
+  public void index_new_and_changed_issues_from_cache() {
+    issueCache.newAppender()
+      .append(newIssue("NEW", FILE_UUID).setNew(true))
+      .append(newIssue("CHANGED", MODULE_UUID).setNew(false).setChanged(true))
+      .append(newIssue("UNCHANGED", FILE_UUID).setNew(false))
+      .close();
+    persistedIssuesHolder.setPersisted(NOW, false);
+
+    underTest.execute();
+
+    verify(issueIndexer, never()).index(PROJECT_UUID);
+    assertThat(indexedDocs).hasSize(2);
+
+    IssueDoc fileIssue = indexedDocs.get(0);
+    assertThat(fileIssue.key()).isEqualTo("NEW");
+    assertThat(fileIssue.projectUuid()).isEqualTo(PROJECT_UUID);
+    assertThat(fileIssue.moduleUuid()).isEqualTo(MODULE_UUID);
+    assertThat(fileIssue.modulePath()).isEqualTo("." + PROJECT_UUID + "." + MODULE_UUID + ".");
+    assertThat(fileIssue.filePath()).isEqualTo("src/main/Foo.java");
+    assertThat(fileIssue.directoryPath()).isEqualTo("src/main");
+    assertThat(fileIssue.language()).isEqualTo("xoo");
+    assertThat(fileIssue.ruleKey()).isEqualTo(RULE_KEY);
+    assertThat(fileIssue.type()).isEqualTo(RuleType.BUG);
+    assertThat(fileIssue.getTechnicalUpdateDate()).isEqualTo(new Date(NOW));
+
+    IssueDoc moduleIssue = indexedDocs.get(1);
+    assertThat(moduleIssue.key()).isEqualTo("CHANGED");
+    assertThat(moduleIssue.moduleUuid()).isEqualTo(MODULE_UUID);
+    assertThat(moduleIssue.filePath()).isNull();
+    assertThat(moduleIssue.directoryPath()).isNull();
+    // all the fields are present, even if value is null, as when documents are read from DB
+    assertThat(moduleIssue.getFields()).hasSize(fileIssue.getFields().size());
+  }
+
+  @Test
+  public void index_issues_of_components_removed_from_project() {
+    ComponentDto project = ComponentTesting.newProjectDto(PROJECT_UUID);
+    ComponentDto removedFile = ComponentTesting.newFileDto(project, "REMOVED_FILE_UUID").setPath("src/Old.java").setEnabled(false);
+    dbTester.getDbClient().componentDao().insert(dbTester.getSession(), project, removedFile);
+    dbTester.getSession().commit();
+    issueCache.newAppender().append(newIssue("CLOSED", "REMOVED_FILE_UUID").setNew(false).setChanged(true)).close();
+    persistedIssuesHolder.setPersisted(NOW, false);
+
+    underTest.execute();
+
+    assertThat(indexedDocs).hasSize(1);
+    assertThat(indexedDocs.get(0).moduleUuid()).isEqualTo(PROJECT_UUID);
+    assertThat(indexedDocs.get(0).filePath()).isEqualTo("src/Old.java");
+    assertThat(indexedDocs.get(0).directoryPath()).isEqualTo("src");
+  }
+
+  @Test
+  public void index_project_from_db_when_issues_have_been_merged_with_changes_of_end_users() {
+    issueCache.newAppender().append(newIssue("CHANGED", FILE_UUID).setNew(false).setChanged(true)).close();
+    persistedIssuesHolder.setPersisted(NOW, true);
 
     underTest.execute();
 
     verify(issueIndexer).index(PROJECT_UUID);
+    assertThat(indexedDocs).isEmpty();
+  }
+
+  private static DefaultIssue newIssue(String key, String componentUuid) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setRuleKey(RULE_KEY)
+      .setComponentUuid(componentUuid)
+      .setProjectUuid(PROJECT_UUID)
+      .setType(RuleType.BUG)
+      .setSeverity("MAJOR")
+      .setStatus("OPEN");
   }
 }
@@ -44,6 +44,7 @@ import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.FileAttributes;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationHashIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.snapshot.Snapshot;
@@ -95,8 +96,10 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
   Snapshot baseProjectSnapshot;
 
+  CrossProjectDuplicationHashIndex hashIndex = new CrossProjectDuplicationHashIndex(dbClient);
+
   ComputationStep underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
-    integrateCrossProjectDuplications, dbClient);
+    integrateCrossProjectDuplications, hashIndex, dbClient);
 
   @Before
   public void setUp() throws Exception {
@@ -326,6 +329,42 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
     verifyZeroInteractions(integrateCrossProjectDuplications);
   }
 
+  @Test
+  public void do_not_look_up_blocks_which_hash_is_not_in_hash_index() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseProjectSnapshot(baseProjectSnapshot);
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+    ComponentDto otherFIle = createFile("OTHER_FILE_KEY", otherProject);
+    SnapshotDto otherFileSnapshot = createFileSnapshot(otherFIle, otherProjectSnapshot);
+
+    String hash = "a8998353e96320ec";
+    dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setHash(hash)
+      .setStartLine(40)
+      .setEndLine(55)
+      .setIndexInFile(0)
+      .setProjectSnapshotId(otherProjectSnapshot.getId())
+      .setSnapshotId(otherFileSnapshot.getId()));
+    dbSession.commit();
+
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build()));
+
+    CrossProjectDuplicationHashIndex emptyHashIndex = mock(CrossProjectDuplicationHashIndex.class);
+    new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
+      integrateCrossProjectDuplications, emptyHashIndex, dbClient).execute();
+
+    verify(emptyHashIndex).mightContain(hash);
+    verifyZeroInteractions(integrateCrossProjectDuplications);
+  }
+
   private ComponentDto createProject(String projectKey) {
     ComponentDto project = ComponentTesting.newProjectDto().setKey(projectKey);
     dbClient.componentDao().insert(dbSession, project);
@@ -27,8 +27,11 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.batch.BatchReportReaderRule;
@@ -36,11 +39,19 @@ import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.DbIdsRepositoryImpl;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationHashIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class PersistCrossProjectDuplicationIndexStepTest {
@@ -66,6 +77,9 @@ public class PersistCrossProjectDuplicationIndexStepTest {
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(PROJECT);
 
@@ -75,7 +89,10 @@ public class PersistCrossProjectDuplicationIndexStepTest {
 
   DbClient dbClient = dbTester.getDbClient();
 
-  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(dbClient, dbIdsRepository, treeRootHolder, reportReader, crossProjectDuplicationStatusHolder);
+  CrossProjectDuplicationHashIndex hashIndex = mock(CrossProjectDuplicationHashIndex.class);
+
+  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(dbClient, dbIdsRepository, treeRootHolder, reportReader, crossProjectDuplicationStatusHolder,
+    hashIndex);
 
   @Before
   public void setUp() throws Exception {
@@ -121,6 +138,11 @@ public class PersistCrossProjectDuplicationIndexStepTest {
     assertThat(dtos).extracting("indexInFile").containsOnly(0L, 1L);
     assertThat(dtos).extracting("snapshotId").containsOnly(FILE_SNAPSHOT_ID);
     assertThat(dtos).extracting("projectSnapshotId").containsOnly(PROJECT_SNAPSHOT_ID);
+    InOrder inOrder = inOrder(hashIndex);
+    inOrder.verify(hashIndex).startInsertions();
+    inOrder.verify(hashIndex).put(CPD_TEXT_BLOCK.getHash());
+    inOrder.verify(hashIndex).put("b1234353e96320ff");
+    inOrder.verify(hashIndex).endInsertions();
   }
 
   @Test
@@ -141,6 +163,32 @@ public class PersistCrossProjectDuplicationIndexStepTest {
     underTest.execute();
 
     assertThat(dbTester.countRowsOfTable("duplications_index")).isEqualTo(0);
+    verifyZeroInteractions(hashIndex);
+  }
+
+  @Test
+  public void no_session_is_opened_and_insertions_are_not_started_when_hashes_fail_to_be_loaded() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    DbClient failingDbClient = mock(DbClient.class, RETURNS_DEEP_STUBS);
+    DbSession loadSession = mock(DbSession.class);
+    when(failingDbClient.openSession(false)).thenReturn(loadSession);
+    when(failingDbClient.duplicationDao().countUnits(any(DbSession.class))).thenThrow(new IllegalStateException("Unavailable"));
+    CrossProjectDuplicationHashIndex realHashIndex = new CrossProjectDuplicationHashIndex(failingDbClient);
+    ComputationStep step = new PersistCrossProjectDuplicationIndexStep(failingDbClient, dbIdsRepository, treeRootHolder, reportReader,
+      crossProjectDuplicationStatusHolder, realHashIndex);
+
+    try {
+      step.execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unavailable");
+    }
+
+    verify(loadSession).close();
+    verify(failingDbClient, never()).openSession(true);
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Insertions are not started");
+    realHashIndex.endInsertions();
   }
 
 }
@@ -38,6 +38,7 @@ import org.sonar.server.computation.batch.BatchReportReaderRule;
 import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 import org.sonar.server.computation.duplication.Duplicate;
 import org.sonar.server.computation.duplication.Duplication;
 import org.sonar.server.computation.duplication.DuplicationRepositoryRule;
@@ -49,7 +50,12 @@ import org.sonar.server.computation.source.SourceLinesRepositoryRule;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PersistFileSourcesStepTest extends BaseStepTest {
@@ -77,6 +83,8 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   public SourceLinesRepositoryRule fileSourceRepository = new SourceLinesRepositoryRule();
   @Rule
   public DuplicationRepositoryRule duplicationRepository = DuplicationRepositoryRule.create(treeRootHolder);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession session = dbTester.getSession();
@@ -86,7 +94,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   @Before
   public void setup() {
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, ceConfiguration);
   }
 
   @Override
@@ -463,6 +471,121 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  @Test
+  public void persist_sources_of_new_and_existing_files_in_several_transactions() {
+    ceConfiguration.setFileSourcesCommitMaxFiles(2);
+    DbSession batchSession = spyBatchSession();
+    int nbFiles = 5;
+    initReportWithFiles(nbFiles);
+    // sources of a file which has been removed since then, and of an existing file
+    long past = 150000L;
+    for (String fileUuid : Arrays.asList("REMOVED_FILE", "FILE_3")) {
+      dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+        .setProjectUuid(PROJECT_UUID)
+        .setFileUuid(fileUuid)
+        .setDataType(Type.SOURCE)
+        .setSrcHash("old")
+        .setDataHash("old")
+        .setSourceData(DbFileSources.Data.newBuilder().addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("old line").build()).build())
+        .setCreatedAt(past)
+        .setUpdatedAt(past));
+    }
+    dbTester.getSession().commit();
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(nbFiles + 1);
+    for (int i = 0; i < nbFiles; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("line of file " + i);
+      assertThat(fileSourceDto.getCreatedAt()).isEqualTo(i == 3 ? past : NOW);
+      assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+    }
+    assertThat(dbClient.fileSourceDao().selectSourceByFileUuid(session, "REMOVED_FILE").getUpdatedAt()).isEqualTo(past);
+    // 2 + 2 + 1 files
+    verify(batchSession, times(3)).commit();
+  }
+
+  @Test
+  public void commit_transaction_once_it_contains_max_bytes_of_sources() {
+    ceConfiguration.setFileSourcesCommitMaxBytes(1L);
+    DbSession batchSession = spyBatchSession();
+    int nbFiles = 5;
+    initReportWithFiles(nbFiles);
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(nbFiles);
+    verify(batchSession, times(nbFiles)).commit();
+  }
+
+  @Test
+  public void do_not_commit_when_no_sources_are_persisted() {
+    DbSession batchSession = spyBatchSession();
+    initReportWithFiles(0);
+
+    underTest.execute();
+
+    verify(batchSession, never()).commit();
+  }
+
+  @Test
+  public void compute_sources_of_files_concurrently() {
+    ceConfiguration.setFileSourcesComputationThreads(3).setFileSourcesMaxInFlightBytes(1);
+    int nbFiles = 20;
+    initReportWithFiles(nbFiles);
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(nbFiles);
+    for (int i = 0; i < nbFiles; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("line of file " + i);
+    }
+  }
+
+  @Test
+  public void fail_with_key_of_file_when_sources_can_not_be_computed_concurrently() {
+    ceConfiguration.setFileSourcesComputationThreads(3);
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
+      ReportComponent.builder(Component.Type.FILE, FILE_REF).setUuid(FILE_UUID).setKey("MODULE_KEY:src/Foo.java").build())
+      .build());
+    fileSourceRepository.addLine(FILE_REF, "line1");
+    // file is missing from report
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Cannot persist sources of MODULE_KEY:src/Foo.java");
+
+    underTest.execute();
+  }
+
+  /**
+   * Spies the batch session in which sources are persisted
+   */
+  private DbSession spyBatchSession() {
+    DbSession batchSession = spy(dbClient.openSession(true));
+    DbClient spiedDbClient = spy(dbClient);
+    doReturn(batchSession).when(spiedDbClient).openSession(true);
+    underTest = new PersistFileSourcesStep(spiedDbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository,
+      ceConfiguration);
+    return batchSession;
+  }
+
+  private void initReportWithFiles(int nbFiles) {
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    ScannerReport.Component.Builder reportModule = ScannerReport.Component.newBuilder().setRef(2).setType(ComponentType.MODULE);
+    for (int i = 0; i < nbFiles; i++) {
+      int ref = 10 + i;
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("MODULE_KEY:src/Foo" + i + ".java").build());
+      reportModule.addChildRef(ref);
+      reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(ref).setType(ComponentType.FILE).setLines(1).build());
+      fileSourceRepository.addLine(ref, "line of file " + i);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+    reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(1).setType(ComponentType.PROJECT).addChildRef(2).build());
+    reportReader.putComponent(reportModule.build());
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
@@ -43,8 +43,10 @@ import org.sonar.db.rule.RuleTesting;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.batch.BatchReportReaderRule;
 import org.sonar.server.computation.issue.IssueCache;
+import org.sonar.server.computation.issue.PersistedIssuesHolderImpl;
 import org.sonar.server.computation.issue.RuleRepositoryImpl;
 import org.sonar.server.computation.issue.UpdateConflictResolver;
+import org.sonar.server.issue.IssueTesting;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -71,6 +73,8 @@ public class PersistIssuesStepTest extends BaseStepTest {
 
   IssueCache issueCache;
 
+  PersistedIssuesHolderImpl persistedIssuesHolder = new PersistedIssuesHolderImpl();
+
   ComputationStep step;
 
   @Override
@@ -85,7 +89,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(NOW);
     reportReader.setMetadata(ScannerReport.Metadata.getDefaultInstance());
 
-    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient), issueCache);
+    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient), issueCache, persistedIssuesHolder);
   }
 
   @After
@@ -125,6 +129,9 @@ public class PersistIssuesStepTest extends BaseStepTest {
     assertThat(result.getSeverity()).isEqualTo(Severity.BLOCKER);
     assertThat(result.getStatus()).isEqualTo(Issue.STATUS_OPEN);
     assertThat(result.getType()).isEqualTo(RuleType.BUG.getDbConstant());
+    assertThat(result.getUpdatedAt()).isEqualTo(NOW);
+    assertThat(persistedIssuesHolder.getTechnicalUpdateDate()).isEqualTo(NOW);
+    assertThat(persistedIssuesHolder.hasConflicts()).isFalse();
   }
 
   @Test
@@ -150,6 +157,43 @@ public class PersistIssuesStepTest extends BaseStepTest {
     dbTester.assertDbUnit(getClass(), "close_issue-result.xml", "issues");
   }
 
+  @Test
+  public void resolve_conflict_when_issue_has_been_updated_since_analysis_started() {
+    RuleDto rule = RuleTesting.newDto(RuleKey.of("xoo", "S01"));
+    dbClient.ruleDao().insert(session, rule);
+    ComponentDto project = ComponentTesting.newProjectDto();
+    dbClient.componentDao().insert(session, project);
+    ComponentDto file = ComponentTesting.newFileDto(project);
+    dbClient.componentDao().insert(session, file);
+    // issue has been updated in db at NOW, after it was selected by the analysis
+    dbClient.issueDao().insert(session, IssueTesting.newDto(rule, file, project).setKee("ISSUE").setUpdatedAt(NOW));
+    session.commit();
+
+    issueCache.newAppender().append(new DefaultIssue()
+      .setKey("ISSUE")
+      .setType(RuleType.CODE_SMELL)
+      .setRuleKey(rule.getKey())
+      .setComponentUuid(file.uuid())
+      .setProjectUuid(project.uuid())
+      .setSeverity(Severity.BLOCKER)
+      .setMessage("new message")
+      .setStatus(Issue.STATUS_CLOSED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setSelectedAt(NOW - 1_000L)
+      .setNew(false)
+      .setChanged(true)
+      ).close();
+
+    step.execute();
+
+    IssueDto result = dbClient.issueDao().selectOrFailByKey(session, "ISSUE");
+    assertThat(result.getMessage()).isEqualTo("new message");
+    // status and resolution are kept from db
+    assertThat(result.getStatus()).isEqualTo(Issue.STATUS_OPEN);
+    assertThat(result.getResolution()).isNull();
+    assertThat(persistedIssuesHolder.hasConflicts()).isTrue();
+  }
+
   @Test
   public void add_comment() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -44,6 +44,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 import org.sonar.server.computation.configuration.CeConfigurationRule;
+import org.sonar.server.computation.queue.InternalCeQueue;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -52,6 +53,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class CeProcessingSchedulerImplTest {
@@ -64,11 +66,12 @@ public class CeProcessingSchedulerImplTest {
   public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   private CeWorkerCallable ceWorkerRunnable = mock(CeWorkerCallable.class);
+  private InternalCeQueue queue = mock(InternalCeQueue.class);
   private StubCeProcessingSchedulerExecutorService processingExecutorService = new StubCeProcessingSchedulerExecutorService();
   private SchedulerCall regularDelayedPoll = new SchedulerCall(ceWorkerRunnable, 2000L, TimeUnit.MILLISECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorkerRunnable);
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, queue);
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_true() throws Exception {
@@ -189,7 +192,7 @@ public class CeProcessingSchedulerImplTest {
 
     ListenableScheduledFuture listenableScheduledFuture = mock(ListenableScheduledFuture.class);
     CeProcessingSchedulerExecutorService processingExecutorService = mock(CeProcessingSchedulerExecutorService.class);
-    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, queue);
     when(processingExecutorService.schedule(ceWorkerRunnable, ceConfiguration.getQueuePollingDelay(), MILLISECONDS))
         .thenReturn(listenableScheduledFuture);
 
@@ -199,6 +202,136 @@ public class CeProcessingSchedulerImplTest {
     verify(listenableScheduledFuture, times(workerCount)).addListener(any(Runnable.class), eq(processingExecutorService));
   }
 
+  @Test
+  public void wakeUp_does_nothing_when_scheduling_is_not_started() {
+    underTest.wakeUp();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).isEmpty();
+  }
+
+  @Test
+  public void wakeUp_cancels_delayed_polling_and_polls_without_delay() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    underTest.wakeUp();
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll
+      );
+    verifyZeroInteractions(queue);
+  }
+
+  @Test
+  public void wakeUp_starts_additional_workers_for_pending_tasks_up_to_maxWorkerCount() throws Exception {
+    ceConfiguration.setMaxWorkerCount(3).setWorkerMinFreeHeapPercent(1);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, queue);
+    when(queue.countEligibleForPeek()).thenReturn(10);
+    when(ceWorkerRunnable.call())
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    underTest.wakeUp();
+    processingExecutorService.runFutures();
+
+    // submitted callables are run synchronously by the stub, additional workers stop once they find the queue empty
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll,
+      notDelayedPoll,
+      notDelayedPoll
+      );
+  }
+
+  @Test
+  public void wakeUp_does_not_start_additional_workers_when_idle_workers_are_enough() throws Exception {
+    ceConfiguration.setMaxWorkerCount(3).setWorkerMinFreeHeapPercent(1);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, queue);
+    when(queue.countEligibleForPeek()).thenReturn(1);
+    when(ceWorkerRunnable.call())
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    underTest.wakeUp();
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll
+      );
+  }
+
+  @Test
+  public void wakeUp_does_not_start_additional_workers_without_enough_free_heap() throws Exception {
+    ceConfiguration.setMaxWorkerCount(3).setWorkerMinFreeHeapPercent(100);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, queue);
+    when(queue.countEligibleForPeek()).thenReturn(10);
+    when(ceWorkerRunnable.call())
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    underTest.wakeUp();
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll
+      );
+  }
+
+  @Test
+  public void additional_workers_are_started_when_a_task_is_processed_and_tasks_are_pending() throws Exception {
+    ceConfiguration.setMaxWorkerCount(2).setWorkerMinFreeHeapPercent(1);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, queue);
+    when(queue.countEligibleForPeek()).thenReturn(5);
+    when(ceWorkerRunnable.call())
+      .thenReturn(true)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll,
+      notDelayedPoll
+      );
+  }
+
+  @Test
+  public void no_additional_worker_is_started_when_the_worker_which_processed_a_task_can_peek_the_eligible_one() throws Exception {
+    ceConfiguration.setMaxWorkerCount(2).setWorkerMinFreeHeapPercent(1);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, queue);
+    when(queue.countEligibleForPeek()).thenReturn(1);
+    when(ceWorkerRunnable.call())
+      .thenReturn(true)
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll
+      );
+  }
+
   private void startSchedulingAndRun() throws ExecutionException, InterruptedException {
     underTest.startScheduling();
 
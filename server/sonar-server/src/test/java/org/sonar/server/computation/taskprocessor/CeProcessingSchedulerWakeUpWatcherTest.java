@@ -0,0 +1,89 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.taskprocessor;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.process.DefaultProcessCommands;
+import org.sonar.process.ProcessId;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.sonar.process.ProcessEntryPoint.PROPERTY_SHARED_PATH;
+
+public class CeProcessingSchedulerWakeUpWatcherTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Settings settings = new Settings();
+  private CeProcessingScheduler scheduler = mock(CeProcessingScheduler.class);
+  private CeProcessingSchedulerWakeUpWatcher underTest = new CeProcessingSchedulerWakeUpWatcher(settings, scheduler);
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void wakes_up_scheduler_once_per_wake_up_request() throws Exception {
+    File sharedDir = temp.newFolder();
+    settings.setProperty(PROPERTY_SHARED_PATH, sharedDir.getAbsolutePath());
+    underTest.start();
+
+    underTest.checkWakeUp();
+    verifyZeroInteractions(scheduler);
+
+    try (DefaultProcessCommands commands = DefaultProcessCommands.secondary(sharedDir, ProcessId.COMPUTE_ENGINE.getIpcIndex())) {
+      commands.askForWakeUp();
+    }
+    underTest.checkWakeUp();
+    underTest.checkWakeUp();
+
+    verify(scheduler).wakeUp();
+  }
+
+  @Test
+  public void wake_up_requests_sent_before_start_are_ignored() throws Exception {
+    File sharedDir = temp.newFolder();
+    settings.setProperty(PROPERTY_SHARED_PATH, sharedDir.getAbsolutePath());
+    try (DefaultProcessCommands commands = DefaultProcessCommands.secondary(sharedDir, ProcessId.COMPUTE_ENGINE.getIpcIndex())) {
+      commands.askForWakeUp();
+    }
+
+    underTest.start();
+    underTest.checkWakeUp();
+
+    verifyZeroInteractions(scheduler);
+  }
+
+  @Test
+  public void does_nothing_when_shared_directory_is_not_defined() {
+    underTest.start();
+    underTest.checkWakeUp();
+
+    verifyZeroInteractions(scheduler);
+  }
+}
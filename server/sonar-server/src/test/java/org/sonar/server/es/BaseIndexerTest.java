@@ -0,0 +1,221 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BaseIndexerTest {
+
+  EsClient esClient = mock(EsClient.class);
+  ExecutorService callers = Executors.newFixedThreadPool(3);
+  FakeIndexer underTest = new FakeIndexer(esClient);
+
+  @After
+  public void tearDown() {
+    callers.shutdownNow();
+    underTest.stop();
+  }
+
+  @Test
+  public void do_nothing_if_disabled() {
+    underTest.setEnabled(false);
+
+    underTest.index();
+
+    assertThat(underTest.executions.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void coalesce_queued_requests_with_same_key() throws Exception {
+    when(esClient.getMaxFieldValue(anyString(), anyString(), anyString())).thenReturn(0L);
+    underTest.setEnabled(true);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    // blocks the queue
+    Future<?> blocking = callers.submit(new Runnable() {
+      @Override
+      public void run() {
+        underTest.index("BLOCKING", new BaseIndexer.IndexerTask() {
+          @Override
+          public long index(long lastUpdatedAt) {
+            started.countDown();
+            awaitQuietly(release);
+            return 0L;
+          }
+        });
+      }
+    });
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+    Future<?> first = callers.submit(new IndexProject(underTest, "P1"));
+    Future<?> second = callers.submit(new IndexProject(underTest, "P1"));
+    waitForQueuedTasks(1);
+    // give a chance to the second request to be queued
+    Thread.sleep(100L);
+    release.countDown();
+    blocking.get(10, TimeUnit.SECONDS);
+    first.get(10, TimeUnit.SECONDS);
+    second.get(10, TimeUnit.SECONDS);
+
+    assertThat(underTest.projectExecutions.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_coalesce_requests_with_different_keys() {
+    when(esClient.getMaxFieldValue(anyString(), anyString(), anyString())).thenReturn(0L);
+    underTest.setEnabled(true);
+
+    new IndexProject(underTest, "P1").run();
+    new IndexProject(underTest, "P2").run();
+
+    assertThat(underTest.projectExecutions.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void coalesce_queued_requests_to_index_everything() throws Exception {
+    when(esClient.getMaxFieldValue(anyString(), anyString(), anyString())).thenReturn(0L);
+    underTest.setEnabled(true);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Future<?> blocking = callers.submit(new Runnable() {
+      @Override
+      public void run() {
+        underTest.index(new BaseIndexer.IndexerTask() {
+          @Override
+          public long index(long lastUpdatedAt) {
+            started.countDown();
+            awaitQuietly(release);
+            return 0L;
+          }
+        });
+      }
+    });
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+    Future<?> first = callers.submit(new IndexEverything(underTest));
+    Future<?> second = callers.submit(new IndexEverything(underTest));
+    waitForQueuedTasks(1);
+    // give a chance to the second request to be queued
+    Thread.sleep(100L);
+    release.countDown();
+    blocking.get(10, TimeUnit.SECONDS);
+    first.get(10, TimeUnit.SECONDS);
+    second.get(10, TimeUnit.SECONDS);
+
+    assertThat(underTest.executions.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_coalesce_tasks_without_key() {
+    when(esClient.getMaxFieldValue(anyString(), anyString(), anyString())).thenReturn(0L);
+    underTest.setEnabled(true);
+    final AtomicInteger taskExecutions = new AtomicInteger();
+    BaseIndexer.IndexerTask task = new BaseIndexer.IndexerTask() {
+      @Override
+      public long index(long lastUpdatedAt) {
+        taskExecutions.incrementAndGet();
+        return 0L;
+      }
+    };
+
+    underTest.index(task);
+    underTest.index(task);
+
+    assertThat(taskExecutions.get()).isEqualTo(2);
+    assertThat(underTest.queueSize()).isEqualTo(0);
+  }
+
+  private void waitForQueuedTasks(int count) throws InterruptedException {
+    for (int i = 0; i < 100 && underTest.queueSize() < count; i++) {
+      Thread.sleep(10L);
+    }
+    assertThat(underTest.queueSize()).isEqualTo(count);
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class IndexProject implements Runnable {
+    private final FakeIndexer indexer;
+    private final String projectUuid;
+
+    private IndexProject(FakeIndexer indexer, String projectUuid) {
+      this.indexer = indexer;
+      this.projectUuid = projectUuid;
+    }
+
+    @Override
+    public void run() {
+      indexer.index(projectUuid, new BaseIndexer.IndexerTask() {
+        @Override
+        public long index(long lastUpdatedAt) {
+          indexer.projectExecutions.incrementAndGet();
+          return 0L;
+        }
+      });
+    }
+  }
+
+  private static class IndexEverything implements Runnable {
+    private final FakeIndexer indexer;
+
+    private IndexEverything(FakeIndexer indexer) {
+      this.indexer = indexer;
+    }
+
+    @Override
+    public void run() {
+      indexer.index();
+    }
+  }
+
+  private static class FakeIndexer extends BaseIndexer {
+    private final AtomicInteger executions = new AtomicInteger();
+    private final AtomicInteger projectExecutions = new AtomicInteger();
+
+    private FakeIndexer(EsClient client) {
+      super(client, 0L, FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, FakeIndexDefinition.INT_FIELD);
+    }
+
+    @Override
+    protected long doIndex(long lastUpdatedAt) {
+      executions.incrementAndGet();
+      return 0L;
+    }
+  }
+}
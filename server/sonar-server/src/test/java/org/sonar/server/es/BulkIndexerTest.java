@@ -120,6 +120,22 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void refresh_on_read() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setRefreshOnRead(true);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.add(newIndexRequest(78));
+    indexer.stop();
+
+    // index is not refreshed yet
+    assertThat(esTester.client().nativeClient().prepareCount(FakeIndexDefinition.INDEX).get().getCount()).isEqualTo(0);
+
+    // index is refreshed before being searched
+    assertThat(count()).isEqualTo(2);
+  }
+
   private long count() {
     return esTester.countDocuments("fakes", "fake");
   }
@@ -136,7 +136,7 @@ public class EsTester extends ExternalResource {
    * Get all the indexed documents (no paginated results). Results are not sorted.
    */
   public List<SearchHit> getDocuments(String indexName, String typeName) {
-    SearchRequestBuilder req = client.nativeClient().prepareSearch(indexName).setTypes(typeName).setQuery(QueryBuilders.matchAllQuery());
+    SearchRequestBuilder req = client.prepareSearch(indexName).setTypes(typeName).setQuery(QueryBuilders.matchAllQuery());
     req.setSearchType(SearchType.SCAN)
       .setScroll(new TimeValue(60000))
       .setSize(100);
@@ -174,6 +174,14 @@ public class EsTester extends ExternalResource {
     return client;
   }
 
+  /**
+   * Another client of the same node, as used by another process (web server or Compute Engine). It is not aware of
+   * the refreshes requested on read through {@link #client()}.
+   */
+  public EsClient newClient() {
+    return new EsClient(new Settings(), NodeHolder.INSTANCE.node.client());
+  }
+
   private enum SearchHitToId implements Function<SearchHit, String> {
     INSTANCE;
 
@@ -22,8 +22,10 @@ package org.sonar.server.issue.index;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
@@ -1228,6 +1230,21 @@ public class IssueIndexTest {
     assertThat(Lists.newArrayList(underTest.selectIssuesForBatch(ComponentTesting.newProjectDto()))).isEmpty();
   }
 
+  @Test
+  public void search_issues_for_batch_updated_since_date() {
+    ComponentDto project = ComponentTesting.newProjectDto();
+    ComponentDto file = ComponentTesting.newFileDto(project);
+
+    indexIssues(
+      IssueTesting.newDoc("OLD", file).setTechnicalUpdateDate(parseDate("2014-12-04")),
+      IssueTesting.newDoc("UPDATED", file).setTechnicalUpdateDate(parseDate("2015-01-10")),
+      // closed issues are returned so that the batch can drop them
+      IssueTesting.newDoc("CLOSED", file).setTechnicalUpdateDate(parseDate("2015-01-11")).setStatus(Issue.STATUS_CLOSED).setResolution(Issue.RESOLUTION_FIXED));
+
+    assertThat(keys(underTest.selectIssuesForBatch(project, parseDate("2015-01-01")))).containsOnly("UPDATED", "CLOSED");
+    assertThat(keys(underTest.selectIssuesForBatch(project, null))).containsOnly("OLD", "UPDATED");
+  }
+
   @Test
   public void fail_to_search_issues_for_batch_on_not_allowed_scope() {
     try {
@@ -1258,6 +1275,14 @@ public class IssueIndexTest {
     assertThat(Lists.newArrayList(underTest.selectIssuesForBatch(project2))).isEmpty();
   }
 
+  private static List<String> keys(Iterator<IssueDoc> issues) {
+    List<String> keys = new ArrayList<>();
+    while (issues.hasNext()) {
+      keys.add(issues.next().key());
+    }
+    return keys;
+  }
+
   private void indexIssues(IssueDoc... issues) {
     issueIndexer.index(Arrays.asList(issues).iterator());
     for (IssueDoc issue : issues) {
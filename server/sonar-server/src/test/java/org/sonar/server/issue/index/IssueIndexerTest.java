@@ -128,6 +128,20 @@ public class IssueIndexerTest {
     verifyIssueKeys("Issue3");
   }
 
+  @Test
+  public void deleted_issues_are_not_searchable_by_other_processes() throws Exception {
+    addIssue("Issue1");
+    addIssue("Issue2");
+    verifyIssueKeys("Issue1", "Issue2");
+
+    // deleted by the Compute Engine, searched by the web server
+    IssueIndexer indexer = new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.newClient());
+    indexer.setEnabled(true);
+    indexer.deleteByKeys(asList("Issue1"));
+
+    verifyIssueKeys("Issue2");
+  }
+
   @Test
   public void delete_more_than_one_thousand_issues_by_keys() throws Exception {
     int numberOfIssues = 1010;
@@ -280,6 +280,63 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(4);
   }
 
+  @Test
+  public void sort_by_metric_value_with_best_value_and_paginated() {
+    ComponentDto projectDto = newProjectDto("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    ComponentDto directoryDto = newDirectory(projectDto, "directory-uuid", "path/to/directory").setName("directory");
+    SnapshotDto directorySnapshot = componentDb.insertComponentAndSnapshot(directoryDto, projectSnapshot);
+    SnapshotDto fileSnapshot1 = componentDb.insertComponentAndSnapshot(newFileDto(projectDto, "file-uuid-1").setName("file-1"), projectSnapshot);
+    SnapshotDto fileSnapshot2 = componentDb.insertComponentAndSnapshot(newFileDto(projectDto, "file-uuid-2").setName("file-2"), projectSnapshot);
+    // no measure, as equal to best value
+    componentDb.insertComponentAndSnapshot(newFileDto(projectDto, "file-uuid-3").setName("file-3"), projectSnapshot);
+    MetricDto violations = newMetricDto().setKey("violations").setValueType(ValueType.INT.name()).setOptimizedBestValue(true).setBestValue(0d);
+    dbClient.metricDao().insert(dbSession, violations);
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(violations, directorySnapshot.getId()).setValue(20.0d),
+      newMeasureDto(violations, fileSnapshot1.getId()).setValue(10.0d),
+      newMeasureDto(violations, fileSnapshot2.getId()).setValue(15.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(Param.ASCENDING, "false")
+      .setParam(PARAM_METRIC_SORT, "violations")
+      .setParam(PARAM_METRIC_KEYS, "violations")
+      .setParam(Param.PAGE, "2")
+      .setParam(Param.PAGE_SIZE, "2"));
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-1", "file-uuid-3");
+    assertThat(response.getComponents(1).getMeasures(0).getValue()).isEqualTo("0");
+    assertThat(response.getPaging().getTotal()).isEqualTo(4);
+  }
+
+  @Test
+  public void sort_by_level_metric() {
+    ComponentDto projectDto = newProjectDto("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    SnapshotDto fileSnapshot1 = componentDb.insertComponentAndSnapshot(newFileDto(projectDto, "file-uuid-1"), projectSnapshot);
+    SnapshotDto fileSnapshot2 = componentDb.insertComponentAndSnapshot(newFileDto(projectDto, "file-uuid-2"), projectSnapshot);
+    SnapshotDto fileSnapshot3 = componentDb.insertComponentAndSnapshot(newFileDto(projectDto, "file-uuid-3"), projectSnapshot);
+    componentDb.insertComponentAndSnapshot(newFileDto(projectDto, "file-uuid-4"), projectSnapshot);
+    MetricDto alertStatus = newMetricDtoWithoutOptimization().setKey("alert_status").setValueType(ValueType.LEVEL.name());
+    dbClient.metricDao().insert(dbSession, alertStatus);
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(alertStatus, fileSnapshot1.getId()).setData("OK"),
+      newMeasureDto(alertStatus, fileSnapshot2.getId()).setData("ERROR"),
+      newMeasureDto(alertStatus, fileSnapshot3.getId()).setData("WARN"));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(PARAM_METRIC_SORT, "alert_status")
+      .setParam(PARAM_METRIC_KEYS, "alert_status"));
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-2", "file-uuid-3", "file-uuid-1", "file-uuid-4");
+  }
+
   @Test
   public void remove_components_without_measure_on_the_metric_sort() {
     ComponentDto projectDto = newProjectDto("project-uuid");
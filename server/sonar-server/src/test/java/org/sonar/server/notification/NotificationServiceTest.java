@@ -21,24 +21,34 @@ package org.sonar.server.notification;
 
 import com.google.common.collect.Sets;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.Settings;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
+import org.sonar.api.utils.MessageException;
 import org.sonar.db.DbClient;
 import org.sonar.db.property.PropertiesDao;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -56,6 +66,9 @@ public class NotificationServiceTest {
   NotificationDispatcher qualityGateChange = mock(NotificationDispatcher.class);
   DbClient dbClient = mock(DbClient.class);
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   private NotificationService service;
 
   private void setUpMocks() {
@@ -67,7 +80,7 @@ public class NotificationServiceTest {
     when(commentOnIssueCreatedByMe.getType()).thenReturn("issue-changes");
     when(qualityGateChange.getKey()).thenReturn("QGateChange");
     when(qualityGateChange.getType()).thenReturn("qgate-changes");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(Collections.<Notification>emptyList());
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
@@ -175,7 +188,8 @@ public class NotificationServiceTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks();
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(singletonList(notification))
+      .thenReturn(Collections.<Notification>emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -217,7 +231,8 @@ public class NotificationServiceTest {
   public void shouldLogEvery10Minutes() {
     setUpMocks();
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(singletonList(notification))
+      .thenReturn(Collections.<Notification>emptyList());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     service = spy(service);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -228,6 +243,141 @@ public class NotificationServiceTest {
     service.stop();
   }
 
+  @Test
+  public void fail_when_batch_size_is_not_strictly_positive() {
+    Settings settings = new Settings().setProperty("sonar.notifications.batchSize", 0);
+
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("value '0' of property sonar.notifications.batchSize is invalid. It must an integer strictly greater than 0.");
+
+    new NotificationService(settings, manager, dbClient);
+  }
+
+  @Test
+  public void fail_when_number_of_delivery_threads_is_not_an_integer() {
+    Settings settings = new Settings().setProperty("sonar.notifications.deliveryThreads", "two");
+
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("value 'two' of property sonar.notifications.deliveryThreads is invalid. It must an integer strictly greater than 0.");
+
+    new NotificationService(settings, manager, dbClient);
+  }
+
+  @Test
+  public void get_notifications_from_queue_by_batches_of_configured_size() {
+    setUpMocks();
+    Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L).setProperty("sonar.notifications.batchSize", 50);
+    service = new NotificationService(settings, manager, dbClient, new NotificationDispatcher[] {commentOnIssueAssignedToMe});
+
+    service.processQueue();
+
+    verify(manager, times(2)).getFromQueue(50);
+    assertThat(service.getBatchSize()).isEqualTo(50);
+    assertThat(service.getDeliveredCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void deliver_notifications_concurrently() {
+    setUpMocks();
+    Notification notification1 = mock(Notification.class);
+    Notification notification2 = mock(Notification.class);
+    Notification notification3 = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification1, notification2, notification3))
+      .thenReturn(Collections.<Notification>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    doThrow(new IllegalStateException("Failure")).when(emailChannel).deliver(notification2, ASSIGNEE_SIMON);
+    Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L).setProperty("sonar.notifications.deliveryThreads", 3);
+    service = new NotificationService(settings, manager, dbClient, new NotificationDispatcher[] {commentOnIssueAssignedToMe});
+
+    service.start();
+    verify(emailChannel, timeout(2000)).deliver(notification1, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(notification2, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(notification3, ASSIGNEE_SIMON);
+    service.stop();
+
+    assertThat(service.getDeliveryThreads()).isEqualTo(3);
+    assertThat(service.getDeliveredCount()).isEqualTo(3);
+    assertThat(service.getDeliveryFailureCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void requeue_notifications_not_delivered_when_stopped_during_a_batch() throws Exception {
+    setUpMocks();
+    Notification notification1 = mock(Notification.class);
+    Notification notification2 = mock(Notification.class);
+    Notification notification3 = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification1, notification2, notification3))
+      .thenReturn(Collections.<Notification>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    CountDownLatch deliveryStarted = new CountDownLatch(1);
+    CountDownLatch deliveryReleased = new CountDownLatch(1);
+    doAnswer(block(deliveryStarted, deliveryReleased)).when(emailChannel).deliver(notification1, ASSIGNEE_SIMON);
+
+    service.start();
+    stopDuringDelivery(deliveryStarted, deliveryReleased);
+
+    verify(manager).scheduleForSending(Arrays.asList(notification2, notification3));
+    verify(emailChannel, never()).deliver(notification2, ASSIGNEE_SIMON);
+    verify(emailChannel, never()).deliver(notification3, ASSIGNEE_SIMON);
+    assertThat(service.getDeliveredCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void requeue_notifications_not_delivered_when_stopped_during_a_concurrent_batch() throws Exception {
+    setUpMocks();
+    Notification notification1 = mock(Notification.class);
+    Notification notification2 = mock(Notification.class);
+    Notification notification3 = mock(Notification.class);
+    Notification notification4 = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification1, notification2, notification3, notification4))
+      .thenReturn(Collections.<Notification>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    CountDownLatch deliveryStarted = new CountDownLatch(2);
+    CountDownLatch deliveryReleased = new CountDownLatch(1);
+    doAnswer(block(deliveryStarted, deliveryReleased)).when(emailChannel).deliver(notification1, ASSIGNEE_SIMON);
+    doAnswer(block(deliveryStarted, deliveryReleased)).when(emailChannel).deliver(notification2, ASSIGNEE_SIMON);
+    Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L).setProperty("sonar.notifications.deliveryThreads", 2);
+    service = new NotificationService(settings, manager, dbClient, new NotificationDispatcher[] {commentOnIssueAssignedToMe});
+
+    service.start();
+    stopDuringDelivery(deliveryStarted, deliveryReleased);
+
+    verify(manager).scheduleForSending(Arrays.asList(notification3, notification4));
+    verify(emailChannel, never()).deliver(notification3, ASSIGNEE_SIMON);
+    verify(emailChannel, never()).deliver(notification4, ASSIGNEE_SIMON);
+    assertThat(service.getDeliveredCount()).isEqualTo(2);
+  }
+
+  /**
+   * Stops the service while deliveries are blocked, then releases them once the service is waiting for the
+   * polling thread to terminate.
+   */
+  private void stopDuringDelivery(CountDownLatch deliveryStarted, CountDownLatch deliveryReleased) throws InterruptedException {
+    assertThat(deliveryStarted.await(2, TimeUnit.SECONDS)).isTrue();
+    Thread stopper = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        service.stop();
+      }
+    });
+    stopper.start();
+    while (stopper.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(10L);
+    }
+    deliveryReleased.countDown();
+    stopper.join(10_000L);
+  }
+
+  private static Answer<Object> block(final CountDownLatch started, final CountDownLatch released) {
+    return new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) throws InterruptedException {
+        started.countDown();
+        released.await();
+        return null;
+      }
+    };
+  }
+
   @Test
   public void hasProjectSubscribersForType() {
     setUpMocks();
@@ -0,0 +1,76 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NotificationsMBeanImplTest {
+
+  private NotificationService notificationService = mock(NotificationService.class);
+  private DefaultNotificationManager notificationManager = mock(DefaultNotificationManager.class);
+
+  private NotificationsMBeanImpl underTest = new NotificationsMBeanImpl(notificationService, notificationManager);
+
+  @Test
+  public void register_and_unregister() throws Exception {
+    assertThat(getMBean()).isNull();
+
+    underTest.start();
+    assertThat(getMBean()).isNotNull();
+
+    underTest.stop();
+    assertThat(getMBean()).isNull();
+  }
+
+  @Test
+  public void get_methods_delegate_to_the_NotificationService_and_DefaultNotificationManager_instances() {
+    when(notificationManager.count()).thenReturn(12L);
+    when(notificationService.getDeliveredCount()).thenReturn(150L);
+    when(notificationService.getDeliveryFailureCount()).thenReturn(3L);
+    when(notificationService.getDeliveryTime()).thenReturn(2500L);
+    when(notificationService.getBatchSize()).thenReturn(100);
+    when(notificationService.getDeliveryThreads()).thenReturn(4);
+
+    assertThat(underTest.getPendingCount()).isEqualTo(12L);
+    assertThat(underTest.getDeliveredCount()).isEqualTo(150L);
+    assertThat(underTest.getDeliveryFailureCount()).isEqualTo(3L);
+    assertThat(underTest.getDeliveryTime()).isEqualTo(2500L);
+    assertThat(underTest.getBatchSize()).isEqualTo(100);
+    assertThat(underTest.getDeliveryThreads()).isEqualTo(4);
+  }
+
+  @CheckForNull
+  private ObjectInstance getMBean() throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(NotificationsMBean.OBJECT_NAME));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
@@ -55,6 +55,7 @@ import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.permission.PermissionService;
 import org.sonar.server.permission.ws.PermissionDependenciesFinder;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.usergroups.ws.UserGroupFinder;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.TestResponse;
@@ -96,6 +97,7 @@ public class ApplyTemplateActionTest {
   PermissionTemplateDto template1;
   PermissionTemplateDto template2;
   IssueAuthorizationIndexer issueAuthorizationIndexer = mock(IssueAuthorizationIndexer.class);
+  AuthorizedProjectsCache authorizedProjectsCache = mock(AuthorizedProjectsCache.class);
 
   @Before
   public void setUp() {
@@ -105,7 +107,8 @@ public class ApplyTemplateActionTest {
 
     PermissionRepository repository = new PermissionRepository(dbClient, new Settings());
     ComponentFinder componentFinder = new ComponentFinder(dbClient);
-    PermissionService permissionService = new PermissionService(dbClient, repository, issueAuthorizationIndexer, userSession, componentFinder);
+    PermissionService permissionService = new PermissionService(dbClient, repository, issueAuthorizationIndexer, userSession, componentFinder,
+      authorizedProjectsCache);
     PermissionDependenciesFinder permissionDependenciesFinder = new PermissionDependenciesFinder(dbClient, componentFinder, new UserGroupFinder(dbClient), resourceTypes);
 
     ApplyTemplateAction underTest = new ApplyTemplateAction(dbClient, permissionService, permissionDependenciesFinder);
@@ -147,6 +150,7 @@ public class ApplyTemplateActionTest {
 
     assertTemplate1AppliedToProject();
     verify(issueAuthorizationIndexer).index();
+    verify(authorizedProjectsCache).clear();
   }
 
   @Test
@@ -104,6 +104,19 @@ public class MasterServletFilterTest {
     verify(chain).doFilter(request, response);
   }
 
+  @Test
+  public void fail_request_whose_response_has_been_aborted() throws Exception {
+    MasterServletFilter filters = new MasterServletFilter();
+    filters.init(mock(FilterConfig.class), Collections.<ServletFilter>emptyList());
+    ServletRequest request = mock(HttpServletRequest.class);
+    when(request.getAttribute(org.sonar.server.ws.ServletResponse.ABORT_CAUSE_ATTRIBUTE)).thenReturn(new IllegalStateException("Unexpected"));
+
+    thrown.expect(ServletException.class);
+    thrown.expectMessage("Response has been aborted");
+
+    filters.doFilter(request, mock(HttpServletResponse.class), mock(FilterChain.class));
+  }
+
   @Test
   public void should_keep_filter_ordering() throws Exception {
     TrueFilter filter1 = new TrueFilter();
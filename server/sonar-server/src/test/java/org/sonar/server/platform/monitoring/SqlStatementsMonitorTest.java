@@ -0,0 +1,92 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.db.profiling.SqlStatementMetrics;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlStatementsMonitorTest {
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+
+  SqlStatementMetrics metrics;
+  SqlStatementsMonitor underTest;
+
+  @Before
+  public void setUp() {
+    metrics = dbTester.myBatis().getStatementMetrics();
+    metrics.reset();
+    underTest = new SqlStatementsMonitor(dbTester.getDbClient());
+  }
+
+  @Test
+  public void name_is_not_empty() {
+    assertThat(underTest.name()).isNotEmpty();
+  }
+
+  @Test
+  public void statements_info() {
+    metrics.record("org.sonar.db.issue.IssueMapper.selectByKey", MILLISECONDS.toNanos(3), 1L);
+    metrics.record("org.sonar.db.issue.IssueMapper.selectByKey", MILLISECONDS.toNanos(5), 1L);
+
+    Map<String, Object> attributes = underTest.attributes();
+    assertThat(attributes).containsOnlyKeys("org.sonar.db.issue.IssueMapper.selectByKey");
+    Map<String, Object> statement = (Map<String, Object>) attributes.get("org.sonar.db.issue.IssueMapper.selectByKey");
+    assertThat(statement.get("Executions")).isEqualTo(2L);
+    assertThat(statement.get("Rows")).isEqualTo(2L);
+    assertThat(statement.get("Total (ms)")).isEqualTo(8.0);
+    assertThat(statement.get("Max (ms)")).isEqualTo(5.0);
+    assertThat(statement).containsKeys("50th Percentile (ms)", "95th Percentile (ms)", "99th Percentile (ms)");
+
+    assertThat(underTest.getStatementCount()).isEqualTo(1);
+    assertThat(underTest.getSlowestStatements()).hasSize(1);
+    assertThat(underTest.getSlowestStatements()[0]).startsWith("org.sonar.db.issue.IssueMapper.selectByKey executions=2 rows=2 total=8.0ms");
+  }
+
+  @Test
+  public void only_slowest_statements_are_returned() {
+    for (int i = 0; i < SqlStatementsMonitor.MAX_STATEMENTS + 10; i++) {
+      metrics.record("statement" + i, MILLISECONDS.toNanos(i + 1), 0L);
+    }
+
+    Map<String, Object> attributes = underTest.attributes();
+    assertThat(attributes).hasSize(SqlStatementsMonitor.MAX_STATEMENTS);
+    assertThat(attributes).containsKey("statement" + (SqlStatementsMonitor.MAX_STATEMENTS + 9)).doesNotContainKey("statement0");
+  }
+
+  @Test
+  public void reset() {
+    metrics.record("statement", MILLISECONDS.toNanos(1), 0L);
+
+    underTest.reset();
+
+    assertThat(underTest.getStatementCount()).isEqualTo(0);
+    assertThat(underTest.attributes()).isEmpty();
+  }
+}
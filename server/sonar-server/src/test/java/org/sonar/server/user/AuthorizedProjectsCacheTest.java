@@ -0,0 +1,90 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import org.junit.Test;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.user.AuthorizationDao;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthorizedProjectsCacheTest {
+  static final Integer USER_ID = 1;
+  static final String PROJECT_KEY = "com.foo:Bar";
+  static final String PROJECT_UUID = "ABCD";
+
+  AuthorizationDao authorizationDao = mock(AuthorizationDao.class);
+  AuthorizedProjectsCache underTest = new AuthorizedProjectsCache(authorizationDao);
+
+  @Test
+  public void authorized_projects_are_loaded_once_for_all_requests() {
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(USER_ID, UserRole.USER)).thenReturn(newArrayList(PROJECT_KEY));
+    when(authorizationDao.selectAuthorizedRootProjectsUuids(USER_ID, UserRole.USER)).thenReturn(newArrayList(PROJECT_UUID));
+
+    assertThat(underTest.hasProjectPermissionByKey(USER_ID, UserRole.USER, PROJECT_KEY)).isTrue();
+    assertThat(underTest.hasProjectPermissionByKey(USER_ID, UserRole.USER, PROJECT_KEY)).isTrue();
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.USER, PROJECT_UUID)).isTrue();
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.USER, PROJECT_UUID)).isTrue();
+
+    verify(authorizationDao).selectAuthorizedRootProjectsKeys(USER_ID, UserRole.USER);
+    verify(authorizationDao).selectAuthorizedRootProjectsUuids(USER_ID, UserRole.USER);
+  }
+
+  @Test
+  public void authorized_projects_are_cached_by_user_and_permission() {
+    when(authorizationDao.selectAuthorizedRootProjectsUuids(USER_ID, UserRole.USER)).thenReturn(newArrayList(PROJECT_UUID));
+
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.USER, PROJECT_UUID)).isTrue();
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.ADMIN, PROJECT_UUID)).isFalse();
+    assertThat(underTest.hasProjectPermissionByUuid(2, UserRole.USER, PROJECT_UUID)).isFalse();
+    assertThat(underTest.hasProjectPermissionByUuid(null, UserRole.USER, PROJECT_UUID)).isFalse();
+  }
+
+  @Test
+  public void project_not_in_cache_is_checked_in_db() {
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(USER_ID, UserRole.USER)).thenReturn(newArrayList("other"));
+    when(authorizationDao.selectAuthorizedRootProjectsUuids(USER_ID, UserRole.USER)).thenReturn(newArrayList("other"));
+    when(authorizationDao.isAuthorizedComponentKey(PROJECT_KEY, USER_ID, UserRole.USER)).thenReturn(true);
+    when(authorizationDao.isAuthorizedComponentUuid(PROJECT_UUID, USER_ID, UserRole.USER)).thenReturn(true);
+
+    assertThat(underTest.hasProjectPermissionByKey(USER_ID, UserRole.USER, PROJECT_KEY)).isTrue();
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.USER, PROJECT_UUID)).isTrue();
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.USER, "unknown")).isFalse();
+  }
+
+  @Test
+  public void clear_reloads_authorized_projects() {
+    when(authorizationDao.selectAuthorizedRootProjectsUuids(USER_ID, UserRole.USER))
+      .thenReturn(newArrayList(PROJECT_UUID))
+      .thenReturn(newArrayList("other"));
+
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.USER, PROJECT_UUID)).isTrue();
+
+    underTest.clear();
+
+    assertThat(underTest.hasProjectPermissionByUuid(USER_ID, UserRole.USER, PROJECT_UUID)).isFalse();
+    verify(authorizationDao, times(2)).selectAuthorizedRootProjectsUuids(USER_ID, UserRole.USER);
+  }
+}
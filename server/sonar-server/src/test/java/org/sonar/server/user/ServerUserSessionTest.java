@@ -226,7 +226,7 @@ public class ServerUserSessionTest {
   }
 
   private ServerUserSession newServerUserSession() {
-    return new ServerUserSession(authorizationDao, resourceDao);
+    return new ServerUserSession(authorizationDao, resourceDao, new AuthorizedProjectsCache(authorizationDao));
   }
 
 }
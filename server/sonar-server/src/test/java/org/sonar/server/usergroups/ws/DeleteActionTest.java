@@ -39,9 +39,12 @@ import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.ws.WsTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.sonar.db.user.GroupTesting.newGroupDto;
 import static org.sonar.server.usergroups.ws.UserGroupsWsParameters.PARAM_GROUP_NAME;
 
@@ -61,6 +64,7 @@ public class DeleteActionTest {
 
   private DbSession dbSession;
   private Long defaultGroupId;
+  private AuthorizedProjectsCache authorizedProjectsCache = mock(AuthorizedProjectsCache.class);
 
   @Before
   public void setUp() {
@@ -82,7 +86,8 @@ public class DeleteActionTest {
         dbClient,
         new UserGroupFinder(dbClient),
         userSession,
-        settings)));
+        settings,
+        authorizedProjectsCache)));
   }
 
   @Test
@@ -122,6 +127,7 @@ public class DeleteActionTest {
       .execute().assertNoContent();
 
     assertThat(db.select("SELECT group_id FROM groups_users")).isEmpty();
+    verify(authorizedProjectsCache).clear();
   }
 
   @Test
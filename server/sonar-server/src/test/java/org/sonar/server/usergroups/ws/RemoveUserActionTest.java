@@ -38,9 +38,12 @@ import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizedProjectsCache;
 import org.sonar.server.ws.WsTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.sonar.server.usergroups.ws.UserGroupsWsParameters.PARAM_GROUP_NAME;
 import static org.sonar.server.usergroups.ws.UserGroupsWsParameters.PARAM_LOGIN;
 
@@ -60,6 +63,7 @@ public class RemoveUserActionTest {
   private GroupMembershipDao groupMembershipDao;
   private UserGroupDao userGroupDao;
   private DbSession dbSession;
+  private AuthorizedProjectsCache authorizedProjectsCache = mock(AuthorizedProjectsCache.class);
 
   @Before
   public void setUp() {
@@ -71,7 +75,7 @@ public class RemoveUserActionTest {
     groupMembershipDao = dbClient.groupMembershipDao();
     userGroupDao = dbClient.userGroupDao();
 
-    ws = new WsTester(new UserGroupsWs(new RemoveUserAction(dbClient, userSession)));
+    ws = new WsTester(new UserGroupsWs(new RemoveUserAction(dbClient, userSession, authorizedProjectsCache)));
   }
 
   @Test
@@ -89,6 +93,7 @@ public class RemoveUserActionTest {
 
     assertThat(groupMembershipDao.selectGroupsByLogins(dbSession, Arrays.asList(user.getLogin())).get(user.getLogin()))
       .isEmpty();
+    verify(authorizedProjectsCache).clear();
   }
 
   @Test
@@ -0,0 +1,89 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.util.PositiveNumberSettings.readPositiveInt;
+import static org.sonar.server.util.PositiveNumberSettings.readPositiveLong;
+
+public class PositiveNumberSettingsTest {
+
+  private static final String KEY = "foo";
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  Settings settings = new Settings();
+
+  @Test
+  public void default_value_when_property_is_not_set() {
+    assertThat(readPositiveInt(settings, KEY, 5)).isEqualTo(5);
+    assertThat(readPositiveLong(settings, KEY, 5L)).isEqualTo(5L);
+
+    settings.setProperty(KEY, "");
+    assertThat(readPositiveInt(settings, KEY, 5)).isEqualTo(5);
+  }
+
+  @Test
+  public void read_value_of_property() {
+    settings.setProperty(KEY, "12");
+
+    assertThat(readPositiveInt(settings, KEY, 5)).isEqualTo(12);
+    assertThat(readPositiveLong(settings, KEY, 5L)).isEqualTo(12L);
+  }
+
+  @Test
+  public void fail_when_value_is_not_strictly_positive() {
+    settings.setProperty(KEY, "-1");
+
+    expectInvalidValue("-1");
+
+    readPositiveLong(settings, KEY, 5L);
+  }
+
+  @Test
+  public void fail_when_value_is_not_a_number() {
+    settings.setProperty(KEY, "bar");
+
+    expectInvalidValue("bar");
+
+    readPositiveInt(settings, KEY, 5);
+  }
+
+  @Test
+  public void fail_when_value_overflows_an_int() {
+    settings.setProperty(KEY, String.valueOf(Integer.MAX_VALUE + 1L));
+
+    expectInvalidValue(String.valueOf(Integer.MAX_VALUE + 1L));
+
+    readPositiveInt(settings, KEY, 5);
+  }
+
+  private void expectInvalidValue(String value) {
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("value '" + value + "' of property foo is invalid. It must an integer strictly greater than 0.");
+  }
+}
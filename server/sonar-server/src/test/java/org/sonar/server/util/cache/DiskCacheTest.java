@@ -25,8 +25,13 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -52,6 +57,50 @@ public class DiskCacheTest {
     }
   }
 
+  @Test
+  public void write_and_read_with_codec_and_compression() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), true);
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    // enough objects to fill several blocks
+    List<String> expected = new ArrayList<>();
+    DiskCache<String>.DiskAppender appender = cache.newAppender();
+    for (int i = 0; i < 10_000; i++) {
+      String object = "object " + i;
+      expected.add(object);
+      appender.append(object);
+    }
+    appender.close();
+    cache.newAppender().append("last").close();
+    expected.add("last");
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactlyElementsOf(expected);
+    }
+  }
+
+  @Test
+  public void codec_can_not_read_more_than_what_it_wrote() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec() {
+      @Override
+      public String read(DataInput input) throws IOException {
+        String s = super.read(input);
+        input.readByte();
+        return s;
+      }
+    }, false);
+    cache.newAppender().append("foo").append("bar").close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      traverse.next();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to read file");
+    }
+  }
+
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
@@ -77,4 +126,16 @@ public class DiskCacheTest {
       assertThat(e).hasMessage("expected error");
     }
   }
+
+  private static class StringCodec implements ObjectCodec<String> {
+    @Override
+    public void write(String object, DataOutput output) throws IOException {
+      CodecUtils.writeString(output, object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return CodecUtils.readString(input);
+    }
+  }
 }
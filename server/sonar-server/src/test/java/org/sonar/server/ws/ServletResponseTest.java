@@ -0,0 +1,214 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonarqube.ws.MediaTypes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.ws.ServletResponse.STREAMING_BUFFER_SIZE;
+
+public class ServletResponseTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  HttpServletRequest source = mock(HttpServletRequest.class);
+  HttpServletResponse target = mock(HttpServletResponse.class);
+  ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+  @Before
+  public void setUp() throws IOException {
+    when(target.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        // not needed
+      }
+
+      @Override
+      public void write(int b) {
+        sent.write(b);
+      }
+    });
+  }
+
+  @Test
+  public void output_is_kept_in_memory_by_default() throws IOException {
+    ServletResponse underTest = new ServletResponse(source, target);
+
+    underTest.stream().output().write("foo".getBytes());
+    underTest.stream().finish();
+
+    assertThat(underTest.stream().isStreaming()).isFalse();
+    assertThat(underTest.stream().outputAsString()).isEqualTo("foo");
+    verify(target, never()).getOutputStream();
+  }
+
+  @Test
+  public void small_streamed_response_is_sent_at_once_with_content_length() throws IOException {
+    ServletResponse underTest = new ServletResponse(source, target);
+    underTest.setHeader("Content-Disposition", "attachment");
+    ServletResponse.ServletStream stream = underTest.stream().enableStreaming();
+    stream.setStatus(201).setMediaType(MediaTypes.TXT);
+
+    stream.output().write("foo".getBytes());
+    stream.output().flush();
+    assertThat(stream.isCommitted()).isFalse();
+    stream.finish();
+
+    assertThat(stream.isCommitted()).isTrue();
+    assertThat(sent.toString()).isEqualTo("foo");
+    verify(target).setStatus(201);
+    verify(target).setContentType(MediaTypes.TXT);
+    verify(target).setHeader("Content-Disposition", "attachment");
+    verify(target).setContentLength(3);
+    verify(target).flushBuffer();
+  }
+
+  @Test
+  public void large_streamed_response_is_committed_when_buffer_is_full() throws IOException {
+    ServletResponse.ServletStream stream = new ServletResponse(source, target).stream().enableStreaming();
+    byte[] content = newContent(STREAMING_BUFFER_SIZE + 10);
+
+    stream.output().write(content, 0, STREAMING_BUFFER_SIZE);
+    assertThat(stream.isCommitted()).isTrue();
+    assertThat(sent.size()).isEqualTo(STREAMING_BUFFER_SIZE);
+
+    stream.output().write(content, STREAMING_BUFFER_SIZE, 10);
+    stream.finish();
+
+    assertThat(sent.toByteArray()).isEqualTo(content);
+    verify(target, never()).setContentLength(STREAMING_BUFFER_SIZE + 10);
+  }
+
+  @Test
+  public void streamed_response_is_gzipped_if_accepted_by_client() throws IOException {
+    when(source.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+    ServletResponse.ServletStream stream = new ServletResponse(source, target).stream().enableStreaming();
+    byte[] content = newContent(STREAMING_BUFFER_SIZE * 2);
+
+    write(stream.output(), content);
+    stream.finish();
+
+    verify(target).setHeader("Content-Encoding", "gzip");
+    assertThat(IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(sent.toByteArray())))).isEqualTo(content);
+  }
+
+  @Test
+  public void streamed_response_can_be_reset_until_committed() throws IOException {
+    ServletResponse.ServletStream stream = new ServletResponse(source, target).stream().enableStreaming();
+    stream.output().write("foo".getBytes());
+
+    stream.reset();
+    stream.output().write("bar".getBytes());
+    stream.finish();
+
+    assertThat(sent.toString()).isEqualTo("bar");
+  }
+
+  @Test
+  public void fail_to_reset_committed_response() throws IOException {
+    ServletResponse.ServletStream stream = new ServletResponse(source, target).stream().enableStreaming();
+    write(stream.output(), newContent(STREAMING_BUFFER_SIZE));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Response is already committed");
+
+    stream.reset();
+  }
+
+  @Test
+  public void aborted_response_is_not_finished() throws IOException {
+    when(source.getHeader("Accept-Encoding")).thenReturn("gzip");
+    ServletResponse.ServletStream stream = new ServletResponse(source, target).stream().enableStreaming();
+    write(stream.output(), newContent(STREAMING_BUFFER_SIZE));
+    int sentBeforeAbort = sent.size();
+    IllegalStateException cause = new IllegalStateException("Unexpected");
+
+    stream.abort(cause);
+    write(stream.output(), newContent(STREAMING_BUFFER_SIZE));
+    stream.finish();
+
+    // gzip trailer is not sent
+    assertThat(sent.size()).isEqualTo(sentBeforeAbort);
+    verify(source).setAttribute(ServletResponse.ABORT_CAUSE_ATTRIBUTE, cause);
+    verify(target, never()).flushBuffer();
+  }
+
+  @Test
+  public void abort_has_no_effect_on_response_which_is_not_committed() throws IOException {
+    ServletResponse.ServletStream stream = new ServletResponse(source, target).stream().enableStreaming();
+    stream.output().write("foo".getBytes());
+
+    stream.abort(new IllegalStateException("Unexpected"));
+    stream.finish();
+
+    assertThat(sent.toString()).isEqualTo("foo");
+    verify(source, never()).setAttribute(eq(ServletResponse.ABORT_CAUSE_ATTRIBUTE), any());
+  }
+
+  @Test
+  public void streaming_is_not_enabled_on_response_not_created_from_servlet_response() {
+    ServletResponse.ServletStream stream = new ServletResponse().stream().enableStreaming();
+
+    assertThat(stream.isStreaming()).isFalse();
+  }
+
+  private static void write(OutputStream output, byte[] content) throws IOException {
+    // small writes, as done by JsonWriter
+    for (int i = 0; i < content.length; i += 100) {
+      output.write(content, i, Math.min(100, content.length - i));
+    }
+  }
+
+  private static byte[] newContent(int size) {
+    byte[] content = new byte[size];
+    Arrays.fill(content, (byte) 'a');
+    for (int i = 0; i < size; i += 7) {
+      content[i] = (byte) ('0' + (i % 10));
+    }
+    return content;
+  }
+}
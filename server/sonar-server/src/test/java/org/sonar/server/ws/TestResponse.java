@@ -42,4 +42,12 @@ public class TestResponse {
   public String getMediaType() {
     return dumbResponse.stream().mediaType();
   }
+
+  public int getStatus() {
+    return dumbResponse.stream().status();
+  }
+
+  public String getHeader(String headerKey) {
+    return dumbResponse.getHeader(headerKey);
+  }
 }
@@ -20,11 +20,16 @@
 package org.sonar.server.ws;
 
 import com.google.common.collect.Maps;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
 import java.util.Map;
 import javax.annotation.Nullable;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -43,7 +48,11 @@ import org.sonar.server.tester.UserSessionRule;
 import org.sonarqube.ws.MediaTypes;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class WebServiceEngineTest {
@@ -215,6 +224,41 @@ public class WebServiceEngineTest {
     assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.JSON);
   }
 
+  @Test
+  public void internal_error_of_streamed_response_which_is_not_committed() throws IOException {
+    ValidatingRequest request = new SimpleRequest("GET").setParam("size", "10");
+    HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+    ByteArrayOutputStream sent = mockOutputStream(servletResponse);
+    ServletResponse response = new ServletResponse(mock(HttpServletRequest.class), servletResponse);
+
+    underTest.execute(request, response, "api/system", "fail_while_streaming", null);
+    response.stream().finish();
+
+    assertThat(response.stream().isStreaming()).isTrue();
+    verify(servletResponse).setStatus(500);
+    verify(servletResponse).setContentType(MediaTypes.JSON);
+    assertThat(sent.toString()).isEqualTo("{\"errors\":[{\"msg\":\"Unexpected\"}]}");
+  }
+
+  @Test
+  public void internal_error_of_streamed_response_which_is_committed() throws IOException {
+    ValidatingRequest request = new SimpleRequest("GET").setParam("size", String.valueOf(ServletResponse.STREAMING_BUFFER_SIZE));
+    HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+    ByteArrayOutputStream sent = mockOutputStream(servletResponse);
+    HttpServletRequest servletRequest = mock(HttpServletRequest.class);
+    ServletResponse response = new ServletResponse(servletRequest, servletResponse);
+
+    underTest.execute(request, response, "api/system", "fail_while_streaming", null);
+    response.stream().finish();
+
+    // error can't be sent anymore, response is aborted
+    verify(servletResponse).setStatus(200);
+    verify(servletResponse, never()).setStatus(500);
+    verify(servletResponse, never()).flushBuffer();
+    verify(servletRequest).setAttribute(eq(ServletResponse.ABORT_CAUSE_ATTRIBUTE), any(IllegalStateException.class));
+    assertThat(sent.size()).isEqualTo(ServletResponse.STREAMING_BUFFER_SIZE);
+  }
+
   @Test
   public void bad_request_with_i18n_message() {
     userSessionRule.setLocale(Locale.ENGLISH);
@@ -276,6 +320,27 @@ public class WebServiceEngineTest {
     assertThat(response.getHeader(name)).isEqualTo(value);
   }
 
+  private static ByteArrayOutputStream mockOutputStream(HttpServletResponse servletResponse) throws IOException {
+    final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    when(servletResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        // not needed
+      }
+
+      @Override
+      public void write(int b) {
+        sent.write(b);
+      }
+    });
+    return sent;
+  }
+
   private static class SimpleRequest extends ValidatingRequest {
     private final String method;
     private Map<String, String> params = Maps.newHashMap();
@@ -423,6 +488,15 @@ public class WebServiceEngineTest {
           }
         }
       });
+      NewAction failWhileStreaming = createNewDefaultAction(newController, "fail_while_streaming").setStreaming(true);
+      failWhileStreaming.createParam("size").setDescription("Number of bytes written before failure");
+      failWhileStreaming.setHandler(new RequestHandler() {
+        @Override
+        public void handle(Request request, Response response) throws Exception {
+          response.stream().output().write(new byte[request.mandatoryParamAsInt("size")]);
+          throw new IllegalStateException("Unexpected");
+        }
+      });
       newController.done();
     }
 
@@ -29,10 +29,17 @@ class Api::JavaWsController < Api::ApiController
 
   def index
     ws_request = Java::OrgSonarServerWs::ServletRequest.new(servlet_request, params.to_java)
-    ws_response = Java::OrgSonarServerWs::ServletResponse.new()
+    ws_response = Java::OrgSonarServerWs::ServletResponse.new(servlet_request, request.env['java.servlet_response'])
     engine = Java::OrgSonarServerPlatform::Platform.component(Java::OrgSonarServerWs::WebServiceEngine.java_class)
     engine.execute(ws_request, ws_response, params[:wspath], params[:wsaction], params[:responseFormat])
 
+    if ws_response.stream().isStreaming()
+      # response is directly written to HttpServletResponse, which is committed. Rails response is then ignored.
+      ws_response.stream().finish()
+      render :nothing => true
+      return
+    end
+
     ws_response.getHeaderNames().to_a.each do |name|
       response.header[name] = ws_response.getHeader(name)
     end
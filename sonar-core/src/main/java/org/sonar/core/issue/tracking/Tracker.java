@@ -19,231 +19,263 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Objects;
-import javax.annotation.Nonnull;
-import org.apache.commons.lang.StringUtils;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.BatchSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
 
+/**
+ * Matches raw issues with base issues in 5 passes. Rule keys, line hashes and messages are interned into int ids once,
+ * then each pass indexes the unmatched base issues in a hash table of int arrays, so that passes do not allocate a
+ * key per issue.
+ */
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @BatchSide
 public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    Interner interner = new Interner();
+    IndexedTrackables<RAW> raws = new IndexedTrackables<>(rawInput.getIssues(), interner);
+    IndexedTrackables<BASE> bases = new IndexedTrackables<>(baseInput.getIssues(), interner);
+    BaseIndex index = new BaseIndex(bases.size());
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+    match(tracking, raws, bases, index, SearchKey.LINE_AND_LINE_HASH);
 
     // 2. detect code moves by comparing blocks of codes
-    detectCodeMoves(rawInput, baseInput, tracking);
+    detectCodeMoves(rawInput, baseInput, tracking, raws, bases);
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, bases, index, SearchKey.LINE_HASH_AND_MESSAGE);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, bases, index, SearchKey.LINE_AND_MESSAGE);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+    match(tracking, raws, bases, index, SearchKey.LINE_HASH);
 
     return tracking;
   }
 
-  private void detectCodeMoves(Input<RAW> rawInput, Input<BASE> baseInput, Tracking<RAW, BASE> tracking) {
+  private void detectCodeMoves(Input<RAW> rawInput, Input<BASE> baseInput, Tracking<RAW, BASE> tracking,
+    IndexedTrackables<RAW> raws, IndexedTrackables<BASE> bases) {
     if (!tracking.isComplete()) {
       new BlockRecognizer<RAW, BASE>().match(rawInput, baseInput, tracking);
+      for (int i = 0; i < raws.size(); i++) {
+        raws.matched[i] = tracking.baseFor(raws.get(i)) != null;
+      }
+      for (int i = 0; i < bases.size(); i++) {
+        bases.matched[i] = !tracking.containsUnmatchedBase(bases.get(i));
+      }
     }
   }
 
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
+  private void match(Tracking<RAW, BASE> tracking, IndexedTrackables<RAW> raws, IndexedTrackables<BASE> bases, BaseIndex index, SearchKey key) {
     if (tracking.isComplete()) {
       return;
     }
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
+    index.clear();
+    // bases are added in reverse order so that each bucket lists them in their original order
+    for (int b = bases.size() - 1; b >= 0; b--) {
+      if (!bases.matched[b]) {
+        index.add(key.hash(bases, b), b);
+      }
     }
 
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
-        // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
-        // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
+    for (int r = 0; r < raws.size(); r++) {
+      if (raws.matched[r]) {
+        continue;
+      }
+      // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
+      // Message could be checked to take the best one.
+      for (int b = index.first(key.hash(raws, r)); b >= 0; b = index.next(b)) {
+        if (!bases.matched[b] && key.matches(raws, r, bases, b)) {
+          tracking.match(raws.get(r), bases.get(b));
+          raws.matched[r] = true;
+          bases.matched[b] = true;
+          break;
+        }
       }
     }
   }
 
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
+  /**
+   * Fields compared by each pass. Line hash {@code null} is considered as equal to empty string.
+   */
+  private enum SearchKey {
+    LINE_AND_LINE_HASH {
+      @Override
+      int hash(IndexedTrackables<?> t, int i) {
+        return hash(t.ruleIds[i], t.lines[i], t.lineHashIds[i]);
+      }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      @Override
+      boolean matches(IndexedTrackables<?> raws, int r, IndexedTrackables<?> bases, int b) {
+        // start with most discriminant field
+        return raws.lines[r] == bases.lines[b]
+          && raws.lineHashIds[r] == bases.lineHashIds[b]
+          && raws.ruleIds[r] == bases.ruleIds[b];
+      }
+    },
+    LINE_HASH_AND_MESSAGE {
+      @Override
+      int hash(IndexedTrackables<?> t, int i) {
+        return hash(t.ruleIds[i], t.messageIds[i], t.lineHashIds[i]);
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
+      @Override
+      boolean matches(IndexedTrackables<?> raws, int r, IndexedTrackables<?> bases, int b) {
+        return raws.lineHashIds[r] == bases.lineHashIds[b]
+          && raws.messageIds[r] == bases.messageIds[b]
+          && raws.ruleIds[r] == bases.ruleIds[b];
+      }
+    },
+    LINE_AND_MESSAGE {
+      @Override
+      int hash(IndexedTrackables<?> t, int i) {
+        return hash(t.ruleIds[i], t.messageIds[i], t.lines[i]);
+      }
 
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
+      @Override
+      boolean matches(IndexedTrackables<?> raws, int r, IndexedTrackables<?> bases, int b) {
+        return raws.lines[r] == bases.lines[b]
+          && raws.messageIds[r] == bases.messageIds[b]
+          && raws.ruleIds[r] == bases.ruleIds[b];
+      }
+    },
+    LINE_HASH {
+      @Override
+      int hash(IndexedTrackables<?> t, int i) {
+        return hash(t.ruleIds[i], t.lineHashIds[i], 0);
+      }
 
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
+      @Override
+      boolean matches(IndexedTrackables<?> raws, int r, IndexedTrackables<?> bases, int b) {
+        return raws.lineHashIds[r] == bases.lineHashIds[b]
+          && raws.ruleIds[r] == bases.ruleIds[b];
+      }
+    };
 
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
+    abstract int hash(IndexedTrackables<?> t, int i);
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
-      }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
+    abstract boolean matches(IndexedTrackables<?> raws, int r, IndexedTrackables<?> bases, int b);
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
+    static int hash(int a, int b, int c) {
+      int result = a;
+      result = 31 * result + b;
+      result = 31 * result + c;
       return result;
     }
   }
 
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
+  /**
+   * Assigns the same id to equal objects.
+   */
+  private static final class Interner {
+    private static final int NULL_ID = 0;
+    private final Map<Object, Integer> ids = new HashMap<>();
+
+    int idOf(@Nullable Object o) {
+      if (o == null) {
+        return NULL_ID;
+      }
+      Integer id = ids.get(o);
+      if (id == null) {
+        id = ids.size() + 1;
+        ids.put(o, id);
+      }
+      return id;
     }
   }
 
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
-
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
+  /**
+   * Fields of the issues, as int ids, by position of issue.
+   */
+  private static final class IndexedTrackables<T extends Trackable> {
+    private static final int NO_LINE = Integer.MIN_VALUE;
+
+    private final List<T> trackables;
+    private final int[] ruleIds;
+    private final int[] lines;
+    private final int[] lineHashIds;
+    private final int[] messageIds;
+    private final boolean[] matched;
+
+    IndexedTrackables(Collection<T> trackables, Interner interner) {
+      this.trackables = new ArrayList<>(trackables);
+      int size = this.trackables.size();
+      this.ruleIds = new int[size];
+      this.lines = new int[size];
+      this.lineHashIds = new int[size];
+      this.messageIds = new int[size];
+      this.matched = new boolean[size];
+      for (int i = 0; i < size; i++) {
+        T trackable = this.trackables.get(i);
+        ruleIds[i] = interner.idOf(trackable.getRuleKey());
+        Integer line = trackable.getLine();
+        lines[i] = line == null ? NO_LINE : line;
+        String lineHash = trackable.getLineHash();
+        lineHashIds[i] = interner.idOf(lineHash == null ? "" : lineHash);
+        messageIds[i] = interner.idOf(trackable.getMessage());
+      }
     }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
-      }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
+    int size() {
+      return trackables.size();
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
+    T get(int i) {
+      return trackables.get(i);
     }
   }
 
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
+  /**
+   * Hash table of positions of base issues. Each bucket is a linked list stored in array {@link #next}. Positions
+   * of base issues with different keys can be in the same bucket, the keys must be compared when traversing it.
+   */
+  private static final class BaseIndex {
+    private static final int NONE = -1;
+    private final int[] buckets;
+    private final int[] next;
+    private final int mask;
+
+    BaseIndex(int size) {
+      int capacity = Integer.highestOneBit(Math.max(1, size) * 2);
+      this.buckets = new int[capacity];
+      this.next = new int[size];
+      this.mask = capacity - 1;
     }
-  }
 
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
+    void clear() {
+      Arrays.fill(buckets, NONE);
+    }
 
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
+    void add(int hash, int position) {
+      int bucket = bucket(hash);
+      next[position] = buckets[bucket];
+      buckets[bucket] = position;
     }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
-      }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
+    int first(int hash) {
+      return buckets[bucket(hash)];
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
+    int next(int position) {
+      return next[position];
     }
-  }
 
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
+    private int bucket(int hash) {
+      // spread bits, as keys of issues on close lines differ only in low bits
+      int h = hash * 0x9E3779B9;
+      return (h ^ (h >>> 16)) & mask;
     }
   }
 }
@@ -106,12 +106,14 @@ public class ComponentContainer implements ContainerPopulator.Container {
   }
 
   /**
-   * Create child container
+   * Create child container. Children of a same container may be created and removed concurrently.
    */
   protected ComponentContainer(ComponentContainer parent) {
     this.parent = parent;
-    this.pico = parent.pico.makeChildContainer();
-    this.parent.children.add(this);
+    synchronized (parent) {
+      this.pico = parent.pico.makeChildContainer();
+      this.parent.children.add(this);
+    }
     this.propertyDefinitions = parent.propertyDefinitions;
     this.componentKeys = new ComponentKeys();
     addSingleton(this);
@@ -281,7 +283,7 @@ public class ComponentContainer implements ContainerPopulator.Container {
     return pico.getComponents(tClass);
   }
 
-  public ComponentContainer removeChild(ComponentContainer childToBeRemoved) {
+  public synchronized ComponentContainer removeChild(ComponentContainer childToBeRemoved) {
     requireNonNull(childToBeRemoved);
     Iterator<ComponentContainer> childrenIterator = children.iterator();
     while (childrenIterator.hasNext()) {
@@ -296,7 +298,7 @@ public class ComponentContainer implements ContainerPopulator.Container {
     return this;
   }
 
-  private ComponentContainer removeChildren() {
+  private synchronized ComponentContainer removeChildren() {
     Iterator<ComponentContainer> childrenIterator = children.iterator();
     while (childrenIterator.hasNext()) {
       ComponentContainer child = childrenIterator.next();
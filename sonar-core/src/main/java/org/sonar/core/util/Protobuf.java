@@ -19,7 +19,7 @@
  */
 package org.sonar.core.util;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 import com.google.protobuf.Parser;
 import java.io.BufferedInputStream;
@@ -27,6 +27,7 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import org.apache.commons.io.IOUtils;
@@ -146,20 +147,35 @@ public class Protobuf {
     return new StreamIterator<>(parser, input);
   }
 
+  /**
+   * Messages are parsed one by one, when requested. The same {@link CodedInputStream}, hence the same buffer,
+   * is used for all the messages of the stream.
+   */
   private static class StreamIterator<MSG extends Message> extends CloseableIterator<MSG> {
     private final Parser<MSG> parser;
     private final InputStream input;
+    private final CodedInputStream codedInput;
 
     private StreamIterator(Parser<MSG> parser, InputStream input) {
       this.parser = parser;
       this.input = input;
+      this.codedInput = CodedInputStream.newInstance(input);
     }
 
     @Override
     protected MSG doNext() {
       try {
-        return parser.parsePartialDelimitedFrom(input);
-      } catch (InvalidProtocolBufferException e) {
+        if (codedInput.isAtEnd()) {
+          return null;
+        }
+        int size = codedInput.readRawVarint32();
+        int previousLimit = codedInput.pushLimit(size);
+        MSG message = parser.parsePartialFrom(codedInput);
+        codedInput.popLimit(previousLimit);
+        // the size limit of CodedInputStream applies to each message, not to the whole stream
+        codedInput.resetSizeCounter();
+        return message;
+      } catch (IOException e) {
         throw ContextException.of(e);
       }
     }
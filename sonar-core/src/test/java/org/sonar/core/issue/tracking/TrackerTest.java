@@ -61,6 +61,60 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw)).isNull();
   }
 
+  @Test
+  public void first_base_issue_is_matched_when_several_have_the_same_key() {
+    FakeInput baseInput = new FakeInput("H1", "H2");
+    Issue base1 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue base2 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue base3 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    FakeInput rawInput = new FakeInput("H1", "H2");
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(base1);
+    assertThat(tracking.baseFor(raw2)).isSameAs(base2);
+    assertThat(tracking.getUnmatchedBases()).containsOnly(base3);
+  }
+
+  @Test
+  public void issue_without_line_does_not_match_same_issue_on_a_line_with_same_hash() {
+    FakeInput baseInput = new FakeInput("");
+    Issue base = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg1");
+
+    FakeInput rawInput = new FakeInput("");
+    Issue raw1 = rawInput.createIssue(RULE_SYSTEM_PRINT, "msg2");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg3");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    // first pass matches on line
+    assertThat(tracking.baseFor(raw2)).isSameAs(base);
+    assertThat(tracking.baseFor(raw1)).isNull();
+  }
+
+  @Test
+  public void track_thousands_of_issues() {
+    int nbLines = 5_000;
+    String[] hashes = new String[nbLines];
+    for (int i = 0; i < nbLines; i++) {
+      hashes[i] = "H" + (i % 100);
+    }
+    FakeInput baseInput = new FakeInput(hashes);
+    FakeInput rawInput = new FakeInput(hashes);
+    List<Issue> raws = new ArrayList<>();
+    List<Issue> bases = new ArrayList<>();
+    for (int line = 1; line <= nbLines; line++) {
+      bases.add(baseInput.createIssueOnLine(line, line % 2 == 0 ? RULE_SYSTEM_PRINT : RULE_USE_DIAMOND, "msg " + line));
+      raws.add(rawInput.createIssueOnLine(line, line % 2 == 0 ? RULE_SYSTEM_PRINT : RULE_USE_DIAMOND, "msg " + line));
+    }
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    for (int i = 0; i < nbLines; i++) {
+      assertThat(tracking.baseFor(raws.get(i))).isSameAs(bases.get(i));
+    }
+  }
+
   @Test
   public void line_hash_has_greater_priority_than_line() {
     FakeInput baseInput = new FakeInput("H1", "H2", "H3");
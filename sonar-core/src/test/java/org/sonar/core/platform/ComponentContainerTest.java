@@ -19,7 +19,12 @@
  */
 package org.sonar.core.platform;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -154,6 +159,30 @@ public class ComponentContainerTest {
     assertThat(parent.getChildren()).isEmpty();
   }
 
+  @Test
+  public void execute_children_concurrently() throws Exception {
+    final ComponentContainer parent = new ComponentContainer();
+    parent.startComponents();
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      futures.add(executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          ComponentContainer child = parent.createChild();
+          child.addSingleton(StartableComponent.class);
+          child.execute();
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executorService.shutdown();
+
+    assertThat(parent.getChildren()).isEmpty();
+  }
+
 
   @Test
   public void shouldForwardStartAndStopToDescendants() {
@@ -20,7 +20,10 @@
 package org.sonar.core.util;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -115,5 +118,19 @@ public class ProtobufTest {
     assertThat(it.hasNext()).isFalse();
   }
 
+  @Test
+  public void read_stream_of_messages_larger_than_read_buffer() throws Exception {
+    File file = temp.newFile();
+    List<Fake> items = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      items.add(Fake.newBuilder().setLabel(StringUtils.repeat("a", i * 10)).setLine(i).build());
+    }
+    Protobuf.writeStream(items, file, false);
+
+    try (CloseableIterator<Fake> it = Protobuf.readStream(file, Fake.PARSER)) {
+      assertThat(it).containsExactlyElementsOf(items);
+    }
+  }
+
   // TODO test in-moemry file
 }
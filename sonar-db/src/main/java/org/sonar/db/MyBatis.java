@@ -24,6 +24,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import javax.annotation.Nullable;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -88,6 +89,8 @@ import org.sonar.db.permission.PermissionTemplateGroupDto;
 import org.sonar.db.permission.PermissionTemplateMapper;
 import org.sonar.db.permission.PermissionTemplateUserDto;
 import org.sonar.db.permission.UserWithPermissionDto;
+import org.sonar.db.profiling.SqlStatementMetrics;
+import org.sonar.db.profiling.SqlStatementMetricsInterceptor;
 import org.sonar.db.property.PropertiesMapper;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.db.purge.IdUuidPair;
@@ -133,6 +136,7 @@ import org.sonar.db.version.v53.Migration53Mapper;
 public class MyBatis {
 
   private final Database database;
+  private final SqlStatementMetrics statementMetrics = new SqlStatementMetrics();
   private SqlSessionFactory sessionFactory;
 
   public MyBatis(Database database) {
@@ -234,7 +238,9 @@ public class MyBatis {
     };
     confBuilder.loadMappers(mappers);
 
-    sessionFactory = new SqlSessionFactoryBuilder().build(confBuilder.build());
+    Configuration conf = confBuilder.build();
+    conf.addInterceptor(new SqlStatementMetricsInterceptor(statementMetrics));
+    sessionFactory = new SqlSessionFactoryBuilder().build(conf);
     return this;
   }
 
@@ -242,6 +248,13 @@ public class MyBatis {
     return sessionFactory;
   }
 
+  /**
+   * Execution statistics of the mapped statements
+   */
+  public SqlStatementMetrics getStatementMetrics() {
+    return statementMetrics;
+  }
+
   /**
    * @deprecated since 4.4. Replaced by <code>openSession(false)</code>.
    */
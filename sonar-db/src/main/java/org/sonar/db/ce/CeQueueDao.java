@@ -108,8 +108,14 @@ public class CeQueueDao implements Dao {
     return mapper(dbSession).countByStatusAndComponentUuid(status, componentUuid);
   }
 
+  /**
+   * Claims the oldest pending task whose component has no task in progress. Components of the tasks in progress
+   * are loaded first, so that pending tasks are selected through the index on status without any self-join of
+   * the table.
+   */
   public Optional<CeQueueDto> peek(DbSession session) {
-    List<String> taskUuids = mapper(session).selectEligibleForPeek(ONE_ROW_LIMIT);
+    List<String> inProgressComponentUuids = mapper(session).selectComponentUuidsInProgress();
+    List<String> taskUuids = mapper(session).selectEligibleForPeek(inProgressComponentUuids, ONE_ROW_LIMIT);
     if (taskUuids.isEmpty()) {
       return Optional.absent();
     }
@@ -118,6 +124,15 @@ public class CeQueueDao implements Dao {
     return tryToPeek(session, taskUuid);
   }
 
+  /**
+   * Counts the pending tasks which could be peeked by concurrent workers. Tasks of the same component are counted
+   * once as they are processed one after the other.
+   */
+  public int countEligibleForPeek(DbSession session) {
+    List<String> inProgressComponentUuids = mapper(session).selectComponentUuidsInProgress();
+    return mapper(session).countEligibleForPeek(inProgressComponentUuids);
+  }
+
   private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
     int touchedRows = mapper(session).updateIfStatus(taskUuid, IN_PROGRESS, system2.now(), system2.now(), PENDING);
     if (touchedRows != 1) {
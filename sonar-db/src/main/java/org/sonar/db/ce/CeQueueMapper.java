@@ -35,7 +35,11 @@ public interface CeQueueMapper {
 
   int countByQuery(@Param("query") CeTaskQuery query);
 
-  List<String> selectEligibleForPeek(RowBounds rowBounds);
+  List<String> selectComponentUuidsInProgress();
+
+  List<String> selectEligibleForPeek(@Param("excludedComponentUuids") List<String> excludedComponentUuids, RowBounds rowBounds);
+
+  int countEligibleForPeek(@Param("excludedComponentUuids") List<String> excludedComponentUuids);
 
   @CheckForNull
   CeQueueDto selectByUuid(@Param("uuid") String uuid);
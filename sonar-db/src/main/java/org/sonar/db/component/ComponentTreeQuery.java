@@ -24,18 +24,28 @@ import com.google.common.base.Joiner;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.db.WildcardPosition;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.FluentIterable.from;
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.db.DatabaseUtils.buildLikeValue;
 import static org.sonar.db.WildcardPosition.AFTER;
 
 public class ComponentTreeQuery {
+  /**
+   * Sort field on the measure set by {@link Builder#setMeasureSort(int, Long, MeasureValue)}. Components without
+   * measure are always last.
+   */
+  public static final String MEASURE_SORT_FIELD = "measure";
+
   @CheckForNull
   private final String nameOrKeyQuery;
   @CheckForNull
@@ -48,6 +58,14 @@ public class ComponentTreeQuery {
   private final String baseSnapshotPath;
   private final String sqlSort;
   private final String direction;
+  @CheckForNull
+  private final Integer measureMetricId;
+  @CheckForNull
+  private final Long measureDeveloperId;
+  @CheckForNull
+  private final String measureSqlValue;
+  @CheckForNull
+  private final String measureFilterSqlValue;
 
   private ComponentTreeQuery(Builder builder) {
     this.nameOrKeyQuery = builder.nameOrKeyQuery;
@@ -57,7 +75,11 @@ public class ComponentTreeQuery {
     this.baseSnapshot = builder.baseSnapshot;
     this.baseSnapshotPath = buildBaseSnapshotPath(baseSnapshot);
     this.direction = builder.asc ? "ASC" : "DESC";
-    this.sqlSort = sortFieldsToSqlSort(builder.sortFields, direction);
+    this.measureMetricId = builder.measureMetricId;
+    this.measureDeveloperId = builder.measureDeveloperId;
+    this.measureSqlValue = builder.measureSort == null ? null : builder.measureSort.toSql();
+    this.measureFilterSqlValue = builder.measureFilter == null ? null : builder.measureFilter.toSql();
+    this.sqlSort = sortFieldsToSqlSort(builder.sortFields, direction, measureSqlValue);
   }
 
   public Collection<String> getQualifiers() {
@@ -98,13 +120,34 @@ public class ComponentTreeQuery {
     return direction;
   }
 
+  /**
+   * Id of the metric of the measures joined to components, if any
+   */
+  @CheckForNull
+  public Integer getMeasureMetricId() {
+    return measureMetricId;
+  }
+
+  @CheckForNull
+  public Long getMeasureDeveloperId() {
+    return measureDeveloperId;
+  }
+
+  /**
+   * SQL expression of the measure value which must not be null, if any
+   */
+  @CheckForNull
+  public String getMeasureFilterSqlValue() {
+    return measureFilterSqlValue;
+  }
+
   public static Builder builder() {
     return new Builder();
   }
 
-  private static String sortFieldsToSqlSort(List<String> sortFields, String direction) {
+  private static String sortFieldsToSqlSort(List<String> sortFields, String direction, @Nullable String measureSqlValue) {
     List<String> sqlSortFields = from(sortFields)
-      .transform(new SortFieldToSqlSortFieldFunction(direction)).toList();
+      .transform(new SortFieldToSqlSortFieldFunction(direction, measureSqlValue)).toList();
 
     return Joiner.on(", ").join(sqlSortFields);
   }
@@ -126,6 +169,14 @@ public class ComponentTreeQuery {
     private SnapshotDto baseSnapshot;
     private List<String> sortFields;
     private boolean asc = true;
+    @CheckForNull
+    private Integer measureMetricId;
+    @CheckForNull
+    private Long measureDeveloperId;
+    @CheckForNull
+    private MeasureValue measureSort;
+    @CheckForNull
+    private MeasureValue measureFilter;
 
     private Builder() {
       // private constructor
@@ -133,6 +184,7 @@ public class ComponentTreeQuery {
 
     public ComponentTreeQuery build() {
       requireNonNull(baseSnapshot);
+      checkArgument(measureSort != null || !sortFields.contains(MEASURE_SORT_FIELD), "Measure to sort on is not set");
       return new ComponentTreeQuery(this);
     }
 
@@ -171,21 +223,127 @@ public class ComponentTreeQuery {
       this.asc = asc;
       return this;
     }
+
+    /**
+     * Sorts components on the measure of a metric, when {@link #MEASURE_SORT_FIELD} is one of the sort fields.
+     * The measure is joined in SQL, so that only the requested page of components is loaded.
+     *
+     * @param developerId developer of the measure, {@code null} for measures which are not related to a developer
+     */
+    public Builder setMeasureSort(int metricId, @Nullable Long developerId, MeasureValue value) {
+      checkMeasureMetric(metricId, developerId);
+      this.measureSort = requireNonNull(value);
+      return this;
+    }
+
+    /**
+     * Keeps only components having a value for the measure of a metric.
+     *
+     * @param developerId developer of the measure, {@code null} for measures which are not related to a developer
+     */
+    public Builder setMeasureFilter(int metricId, @Nullable Long developerId, MeasureValue value) {
+      checkMeasureMetric(metricId, developerId);
+      this.measureFilter = requireNonNull(value);
+      return this;
+    }
+
+    private void checkMeasureMetric(int metricId, @Nullable Long developerId) {
+      checkArgument(measureMetricId == null || (measureMetricId == metricId && Objects.equals(measureDeveloperId, developerId)),
+        "Sort and filter must be on the same measure");
+      this.measureMetricId = metricId;
+      this.measureDeveloperId = developerId;
+    }
+  }
+
+  /**
+   * Value of a measure, as a SQL expression on table PROJECT_MEASURES.
+   */
+  public static final class MeasureValue {
+    private static final String FILE_QUALIFIERS = format("'%s','%s'", Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
+    private static final int MAX_PERIOD_INDEX = 5;
+
+    private final String sqlValue;
+
+    private MeasureValue(String sqlValue) {
+      this.sqlValue = sqlValue;
+    }
+
+    /**
+     * Numerical value of the measure
+     *
+     * @param fileBestValue value of files which don't have a measure, as the measures of metrics optimized for best
+     *                      value are not persisted on files. {@code null} if not relevant.
+     */
+    public static MeasureValue value(@Nullable Double fileBestValue) {
+      return new MeasureValue(withFileBestValue("pm.value", fileBestValue));
+    }
+
+    /**
+     * Not null when the measure has either a numerical value or a textual value
+     *
+     * @param fileBestValue see {@link #value(Double)}
+     */
+    public static MeasureValue valueOrData(@Nullable Double fileBestValue) {
+      return new MeasureValue(withFileBestValue("CASE WHEN pm.value IS NOT NULL OR pm.text_value IS NOT NULL OR pm.measure_data IS NOT NULL THEN 1 END",
+        fileBestValue));
+    }
+
+    /**
+     * Variation of the measure on a period
+     *
+     * @param periodIndex index of the period, from 1 to 5
+     * @param fileBestValue see {@link #value(Double)}
+     */
+    public static MeasureValue variation(int periodIndex, @Nullable Double fileBestValue) {
+      checkArgument(periodIndex >= 1 && periodIndex <= MAX_PERIOD_INDEX, "Invalid period index: %s", periodIndex);
+      return new MeasureValue(withFileBestValue("pm.variation_value_" + periodIndex, fileBestValue));
+    }
+
+    /**
+     * Level of the measure ({@link org.sonar.api.measures.Metric.Level}), from the worst to the best one.
+     */
+    public static MeasureValue level() {
+      StringBuilder sql = new StringBuilder("CASE WHEN pm.text_value IS NULL THEN NULL");
+      Metric.Level[] levels = Metric.Level.values();
+      for (int i = 0; i < levels.length; i++) {
+        sql.append(format(" WHEN pm.text_value='%s' THEN %d", levels[i].name(), levels.length - 1 - i));
+      }
+      return new MeasureValue(sql.append(" ELSE ").append(levels.length).append(" END").toString());
+    }
+
+    private static String withFileBestValue(String column, @Nullable Double fileBestValue) {
+      if (fileBestValue == null) {
+        return column;
+      }
+      // Double#toString() does not depend on locale
+      return format("CASE WHEN pm.id IS NULL AND p.qualifier IN (%s) THEN %s ELSE %s END", FILE_QUALIFIERS, fileBestValue.toString(), column);
+    }
+
+    String toSql() {
+      return sqlValue;
+    }
   }
 
   private static class SortFieldToSqlSortFieldFunction implements Function<String, String> {
     private static final String PATTERN = "LOWER(p.%1$s) %2$s, p.%1$s %2$s";
+    private static final String MEASURE_PATTERN = "CASE WHEN %1$s IS NULL THEN 1 ELSE 0 END ASC, %1$s %2$s";
 
     private final String direction;
+    @CheckForNull
+    private final String measureSqlValue;
 
-    private SortFieldToSqlSortFieldFunction(String direction) {
+    private SortFieldToSqlSortFieldFunction(String direction, @Nullable String measureSqlValue) {
       this.direction = direction;
+      this.measureSqlValue = measureSqlValue;
     }
 
     @Nonnull
     @Override
     public String apply(@Nonnull String input) {
-      return String.format(PATTERN, input, direction);
+      if (MEASURE_SORT_FIELD.equals(input)) {
+        return format(MEASURE_PATTERN, measureSqlValue, direction);
+      }
+      return format(PATTERN, input, direction);
     }
   }
 }
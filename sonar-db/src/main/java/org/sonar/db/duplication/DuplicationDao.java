@@ -20,6 +20,9 @@
 package org.sonar.db.duplication;
 
 import com.google.common.base.Function;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nonnull;
@@ -27,9 +30,19 @@ import javax.annotation.Nullable;
 import org.sonar.db.Dao;
 import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
+import org.sonar.db.MyBatis;
+import org.sonar.db.ResultSetIterator;
 
 public class DuplicationDao implements Dao {
 
+  private static final String SQL_SELECT_HASHES = "SELECT hash FROM duplications_index";
+
+  private final MyBatis myBatis;
+
+  public DuplicationDao(MyBatis myBatis) {
+    this.myBatis = myBatis;
+  }
+
   /**
    * @param projectSnapshotId snapshot id of the project from the previous analysis (islast=true)
    */
@@ -42,6 +55,29 @@ public class DuplicationDao implements Dao {
     });
   }
 
+  /**
+   * Hashes of the rows of the table DUPLICATIONS_INDEX. The same hash can be returned several times. Rows are
+   * scrolled, so that the table is not loaded in memory by the JDBC driver. The iterator must be closed.
+   */
+  public ResultSetIterator<String> selectHashes(DbSession session) {
+    PreparedStatement stmt = myBatis.newScrollingSelectStatement(session, SQL_SELECT_HASHES);
+    try {
+      return new ResultSetIterator<String>(stmt) {
+        @Override
+        protected String read(ResultSet rs) throws SQLException {
+          return rs.getString(1);
+        }
+      };
+    } catch (SQLException e) {
+      DatabaseUtils.closeQuietly(stmt);
+      throw new IllegalStateException("Fail to select hashes of duplication blocks", e);
+    }
+  }
+
+  public int countUnits(DbSession session) {
+    return session.getMapper(DuplicationMapper.class).countUnits();
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
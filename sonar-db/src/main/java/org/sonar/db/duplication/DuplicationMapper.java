@@ -31,6 +31,8 @@ public interface DuplicationMapper {
     @Param("language") String language,
     @Param("hashes") Collection<String> hashes);
 
+  int countUnits();
+
   void batchInsert(DuplicationUnitDto unit);
 
 }
@@ -19,10 +19,14 @@
  */
 package org.sonar.db.notification;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nonnull;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.db.Dao;
+import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 
@@ -47,13 +51,20 @@ public class NotificationQueueDao implements Dao {
     }
   }
 
+  /**
+   * Notifications are deleted by groups of 1000 ids, in a single transaction.
+   */
   public void delete(List<NotificationQueueDto> dtos) {
-    DbSession session = mybatis.openSession(true);
-    NotificationQueueMapper mapper = session.getMapper(NotificationQueueMapper.class);
+    DbSession session = mybatis.openSession(false);
+    final NotificationQueueMapper mapper = session.getMapper(NotificationQueueMapper.class);
     try {
-      for (NotificationQueueDto dto : dtos) {
-        mapper.delete(dto.getId());
-      }
+      DatabaseUtils.executeLargeInputsWithoutOutput(Lists.transform(dtos, NotificationQueueDtoToId.INSTANCE), new Function<List<Long>, Void>() {
+        @Override
+        public Void apply(@Nonnull List<Long> ids) {
+          mapper.deleteByIds(ids);
+          return null;
+        }
+      });
       session.commit();
     } finally {
       MyBatis.closeQuietly(session);
@@ -80,4 +91,13 @@ public class NotificationQueueDao implements Dao {
       MyBatis.closeQuietly(session);
     }
   }
+
+  private enum NotificationQueueDtoToId implements Function<NotificationQueueDto, Long> {
+    INSTANCE;
+
+    @Override
+    public Long apply(@Nonnull NotificationQueueDto dto) {
+      return dto.getId();
+    }
+  }
 }
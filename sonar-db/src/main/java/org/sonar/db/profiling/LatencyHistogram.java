@@ -0,0 +1,88 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.profiling;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, in the spirit of HdrHistogram. Values are counted in buckets which have a relative
+ * width of 1/16th (16 sub-buckets per power of two), so that percentiles are approximated by less than 6.25%.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // greater values are counted in the last bucket
+  private static final int MAX_EXPONENT = 40;
+  static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  void record(long value) {
+    counts.incrementAndGet(bucketIndex(value));
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the highest value of the bucket containing the given percentile, or 0 if no values are recorded
+   */
+  long valueAtPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0L) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(percentile * total / 100.0));
+    long cumulated = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      cumulated += snapshot[i];
+      if (cumulated >= rank) {
+        return highestValueOfBucket(i);
+      }
+    }
+    return highestValueOfBucket(BUCKETS - 1);
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(0L, value);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+  }
+
+  static long highestValueOfBucket(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    long lowestValue = (SUB_BUCKETS + subBucket) << shift;
+    return lowestValue + (1L << shift) - 1L;
+  }
+}
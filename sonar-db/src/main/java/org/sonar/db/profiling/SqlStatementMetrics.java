@@ -0,0 +1,161 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.profiling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution count, number of rows and latency of SQL statements, aggregated by statement id (usually the id of the
+ * MyBatis mapped statement, see {@link SqlStatementMetricsInterceptor}). Contrary to the logging of SQL requests
+ * (see {@link ProfiledConnectionInterceptor}), it is cheap enough to be always enabled. Thread-safe.
+ */
+public class SqlStatementMetrics {
+
+  private final ConcurrentMap<String, Metrics> metricsById = new ConcurrentHashMap<>();
+
+  public void record(String statementId, long durationNanos, long rows) {
+    Metrics metrics = metricsById.get(statementId);
+    if (metrics == null) {
+      metrics = new Metrics();
+      Metrics existing = metricsById.putIfAbsent(statementId, metrics);
+      if (existing != null) {
+        metrics = existing;
+      }
+    }
+    metrics.record(TimeUnit.NANOSECONDS.toMicros(durationNanos), rows);
+  }
+
+  /**
+   * Statistics of the executed statements, sorted by decreasing total duration
+   */
+  public List<StatementStats> getStatements() {
+    List<StatementStats> result = new ArrayList<>(metricsById.size());
+    for (Map.Entry<String, Metrics> entry : metricsById.entrySet()) {
+      result.add(entry.getValue().toStats(entry.getKey()));
+    }
+    Collections.sort(result, TotalDurationComparator.INSTANCE);
+    return result;
+  }
+
+  public void reset() {
+    metricsById.clear();
+  }
+
+  private static final class Metrics {
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private void record(long micros, long rowCount) {
+      executions.incrementAndGet();
+      rows.addAndGet(rowCount);
+      totalMicros.addAndGet(micros);
+      histogram.record(micros);
+      long max = maxMicros.get();
+      while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+        max = maxMicros.get();
+      }
+    }
+
+    private StatementStats toStats(String id) {
+      long max = maxMicros.get();
+      return new StatementStats(id, executions.get(), rows.get(), totalMicros.get(), max,
+        Math.min(max, histogram.valueAtPercentile(50.0)),
+        Math.min(max, histogram.valueAtPercentile(95.0)),
+        Math.min(max, histogram.valueAtPercentile(99.0)));
+    }
+  }
+
+  /**
+   * Immutable snapshot of the metrics of a statement. Durations are in microseconds.
+   */
+  public static final class StatementStats {
+    private final String id;
+    private final long executions;
+    private final long rows;
+    private final long totalMicros;
+    private final long maxMicros;
+    private final long p50Micros;
+    private final long p95Micros;
+    private final long p99Micros;
+
+    private StatementStats(String id, long executions, long rows, long totalMicros, long maxMicros, long p50Micros, long p95Micros, long p99Micros) {
+      this.id = id;
+      this.executions = executions;
+      this.rows = rows;
+      this.totalMicros = totalMicros;
+      this.maxMicros = maxMicros;
+      this.p50Micros = p50Micros;
+      this.p95Micros = p95Micros;
+      this.p99Micros = p99Micros;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public long getExecutions() {
+      return executions;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getTotalMicros() {
+      return totalMicros;
+    }
+
+    public long getMaxMicros() {
+      return maxMicros;
+    }
+
+    public long getP50Micros() {
+      return p50Micros;
+    }
+
+    public long getP95Micros() {
+      return p95Micros;
+    }
+
+    public long getP99Micros() {
+      return p99Micros;
+    }
+  }
+
+  private enum TotalDurationComparator implements Comparator<StatementStats> {
+    INSTANCE;
+
+    @Override
+    public int compare(StatementStats s1, StatementStats s2) {
+      return Long.compare(s2.getTotalMicros(), s1.getTotalMicros());
+    }
+  }
+}
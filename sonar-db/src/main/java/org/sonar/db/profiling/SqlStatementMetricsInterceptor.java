@@ -0,0 +1,105 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.profiling;
+
+import java.util.List;
+import java.util.Properties;
+import javax.annotation.Nullable;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * MyBatis plugin which records the executions of mapped statements in {@link SqlStatementMetrics}. The duration
+ * includes the mapping of results. Rows are the number of selected rows for queries and the number of updated rows
+ * for updates, when it's known (not for batch sessions).
+ */
+@Intercepts({
+  @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+  @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public class SqlStatementMetricsInterceptor implements Interceptor {
+
+  private final SqlStatementMetrics metrics;
+
+  public SqlStatementMetricsInterceptor(SqlStatementMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    Object[] args = invocation.getArgs();
+    MappedStatement statement = (MappedStatement) args[0];
+    CountingResultHandler countingHandler = null;
+    if (args.length > 3 && args[3] != null) {
+      countingHandler = new CountingResultHandler((ResultHandler) args[3]);
+      args[3] = countingHandler;
+    }
+    long start = System.nanoTime();
+    Object result = invocation.proceed();
+    metrics.record(statement.getId(), System.nanoTime() - start, countRows(result, countingHandler));
+    return result;
+  }
+
+  private static long countRows(Object result, @Nullable CountingResultHandler countingHandler) {
+    if (countingHandler != null) {
+      return countingHandler.count;
+    }
+    if (result instanceof List) {
+      return ((List) result).size();
+    }
+    if (result instanceof Integer && (Integer) result > 0) {
+      return (Integer) result;
+    }
+    return 0L;
+  }
+
+  @Override
+  public Object plugin(Object target) {
+    return Plugin.wrap(target, this);
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // no properties
+  }
+
+  private static final class CountingResultHandler implements ResultHandler {
+    private final ResultHandler delegate;
+    private long count = 0L;
+
+    private CountingResultHandler(ResultHandler delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void handleResult(ResultContext context) {
+      count++;
+      delegate.handleResult(context);
+    }
+  }
+}
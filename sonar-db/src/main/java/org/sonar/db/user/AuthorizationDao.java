@@ -85,6 +85,23 @@ public class AuthorizationDao implements Dao {
     }
   }
 
+  public boolean isAuthorizedComponentUuid(String componentUuid, @Nullable Integer userId, String role) {
+    DbSession session = mybatis.openSession(false);
+    try {
+      return keepAuthorizedComponentUuids(session, componentUuid, userId, role).size() == 1;
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private static List<String> keepAuthorizedComponentUuids(final DbSession session, final String componentUuid, @Nullable final Integer userId, final String role) {
+    if (userId == null) {
+      return session.getMapper(AuthorizationMapper.class).keepAuthorizedComponentUuidsForAnonymous(role, Sets.newHashSet(componentUuid));
+    } else {
+      return session.getMapper(AuthorizationMapper.class).keepAuthorizedComponentUuidsForUser(userId, role, Sets.newHashSet(componentUuid));
+    }
+  }
+
   public Collection<String> selectAuthorizedRootProjectsKeys(@Nullable Integer userId, String role) {
     SqlSession session = mybatis.openSession(false);
     try {
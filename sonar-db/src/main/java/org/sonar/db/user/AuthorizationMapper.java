@@ -33,6 +33,10 @@ public interface AuthorizationMapper {
 
   List<String> keepAuthorizedComponentKeysForUser(@Param("userId") Integer userId, @Param("role") String role, @Param("componentKeys") Collection<String> componentKeys);
 
+  List<String> keepAuthorizedComponentUuidsForAnonymous(@Param("role") String role, @Param("componentUuids") Collection<String> componentUuids);
+
+  List<String> keepAuthorizedComponentUuidsForUser(@Param("userId") Integer userId, @Param("role") String role, @Param("componentUuids") Collection<String> componentUuids);
+
   List<Long> keepAuthorizedUsersForRoleAndProject(@Param("role") String role, @Param("componentId") long componentId, @Param("userIds") List<Long> userIds);
 
 }
@@ -21,10 +21,23 @@ package org.sonar.db.version;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.dbutils.DbUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.ProgressLogger;
 import org.sonar.db.Database;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 public class MassUpdate {
 
   public interface Handler {
@@ -36,6 +49,12 @@ public class MassUpdate {
     boolean handle(Select.Row row, SqlStatement update) throws SQLException;
   }
 
+  private static final Logger LOG = Loggers.get(MassUpdate.class);
+
+  static final String CHECKPOINT_PROPERTY_PREFIX = "sonar.internal.massUpdate.";
+  static final int DEFAULT_CHUNK_SIZE = 10_000;
+  static final int DEFAULT_WORKERS = 4;
+
   private final Database db;
   private final Connection readConnection;
   private final Connection writeConnection;
@@ -43,7 +62,15 @@ public class MassUpdate {
   private final ProgressLogger progress = ProgressLogger.create(getClass(), counter);
 
   private Select select;
+  private String selectSql;
   private Upsert update;
+  private String updateSql;
+
+  // partitioned mode, see partitionBy(String, String)
+  private String partitionTable;
+  private String partitionColumn;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private int workers = DEFAULT_WORKERS;
 
   MassUpdate(Database db, Connection readConnection, Connection writeConnection) {
     this.db = db;
@@ -53,11 +80,13 @@ public class MassUpdate {
 
   public SqlStatement select(String sql) throws SQLException {
     this.select = SelectImpl.create(db, readConnection, sql);
+    this.selectSql = sql;
     return this.select;
   }
 
   public MassUpdate update(String sql) throws SQLException {
     this.update = UpsertImpl.create(writeConnection, sql);
+    this.updateSql = sql;
     return this;
   }
 
@@ -66,6 +95,38 @@ public class MassUpdate {
     return this;
   }
 
+  /**
+   * Processes the rows by chunks of ids of the column {@code idColumn} of {@code table}, concurrently by
+   * several workers which have their own connections (see {@link #chunkSize(int)} and {@link #workers(int)}).
+   * <p>
+   * The SELECT request must have only two parameters, the lower (inclusive) and the upper (exclusive) bounds of
+   * the chunk, for example {@code "SELECT i.id, i.data FROM issues i WHERE i.id>=? AND i.id<?"}. The parameters set
+   * on the statement returned by {@link #select(String)} are ignored. The {@link Handler} is called concurrently.
+   * </p>
+   * <p>
+   * The id below which all rows have been processed is stored in the table PROPERTIES, so that an interrupted
+   * migration resumes from it. Rows of the chunks processed while a previous chunk was not done are processed again,
+   * hence the handler must not update the rows it has already converted.
+   * </p>
+   */
+  public MassUpdate partitionBy(String table, String idColumn) {
+    this.partitionTable = table;
+    this.partitionColumn = idColumn;
+    return this;
+  }
+
+  public MassUpdate chunkSize(int i) {
+    checkArgument(i > 0, "Chunk size must be strictly positive: %s", i);
+    this.chunkSize = i;
+    return this;
+  }
+
+  public MassUpdate workers(int i) {
+    checkArgument(i > 0, "Number of workers must be strictly positive: %s", i);
+    this.workers = i;
+    return this;
+  }
+
   public void execute(final Handler handler) throws SQLException {
     if (select == null || update == null) {
       throw new IllegalStateException("SELECT or UPDATE requests are not defined");
@@ -73,19 +134,14 @@ public class MassUpdate {
 
     progress.start();
     try {
-      select.scroll(new Select.RowHandler() {
-        @Override
-        public void handle(Select.Row row) throws SQLException {
-          if (handler.handle(row, update)) {
-            update.addBatch();
-          }
-          counter.getAndIncrement();
-        }
-      });
-      if (((UpsertImpl) update).getBatchCount() > 0L) {
-        update.execute().commit();
+      if (partitionTable == null) {
+        process(select, (UpsertImpl) update, handler);
+      } else {
+        // statements of the workers are created on their own connections
+        select.close();
+        update.close();
+        executeByChunks(handler);
       }
-      update.close();
 
       // log the total number of processed rows
       progress.log();
@@ -94,4 +150,182 @@ public class MassUpdate {
     }
   }
 
+  private void process(Select chunkSelect, final UpsertImpl chunkUpdate, final Handler handler) throws SQLException {
+    chunkSelect.scroll(new Select.RowHandler() {
+      @Override
+      public void handle(Select.Row row) throws SQLException {
+        if (handler.handle(row, chunkUpdate)) {
+          chunkUpdate.addBatch();
+        }
+        counter.getAndIncrement();
+      }
+    });
+    if (chunkUpdate.getBatchCount() > 0L) {
+      chunkUpdate.execute().commit();
+    }
+    chunkUpdate.close();
+  }
+
+  private void executeByChunks(Handler handler) throws SQLException {
+    String checkpointKey = CHECKPOINT_PROPERTY_PREFIX + (partitionTable + "." + partitionColumn).toLowerCase(Locale.ENGLISH);
+    Long minId = SelectImpl.create(db, readConnection, "SELECT MIN(" + partitionColumn + ") FROM " + partitionTable).get(Select.LONG_READER);
+    Long maxId = SelectImpl.create(db, readConnection, "SELECT MAX(" + partitionColumn + ") FROM " + partitionTable).get(Select.LONG_READER);
+    if (minId == null || maxId == null) {
+      deleteCheckpoint(checkpointKey);
+      return;
+    }
+    long startId = minId;
+    String checkpoint = SelectImpl.create(db, readConnection, "SELECT text_value FROM properties WHERE prop_key=? AND resource_id IS NULL AND user_id IS NULL")
+      .setString(1, checkpointKey)
+      .get(Select.STRING_READER);
+    if (checkpoint != null) {
+      startId = Math.max(minId, Long.parseLong(checkpoint));
+      LOG.info("Resume update of table {} from {}={}", partitionTable, partitionColumn, startId);
+    }
+
+    Chunks chunks = new Chunks(checkpointKey, startId, maxId);
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    try {
+      CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+      for (int i = 0; i < workers; i++) {
+        completionService.submit(new Worker(chunks, handler));
+      }
+      Throwable failure = null;
+      for (int i = 0; i < workers; i++) {
+        try {
+          completionService.take().get();
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause();
+            // let the other workers complete their current chunk, so that the checkpoint is accurate
+            chunks.abort();
+          }
+        }
+      }
+      if (failure != null) {
+        throw propagate(failure);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while updating table " + partitionTable, e);
+    } finally {
+      executor.shutdownNow();
+    }
+    deleteCheckpoint(checkpointKey);
+  }
+
+  private static SQLException propagate(Throwable failure) {
+    if (failure instanceof SQLException) {
+      return (SQLException) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    throw new IllegalStateException(failure);
+  }
+
+  private synchronized void writeCheckpoint(String checkpointKey, long id) throws SQLException {
+    deleteCheckpoint(checkpointKey);
+    UpsertImpl.create(writeConnection, "INSERT INTO properties (prop_key, text_value) VALUES (?, ?)")
+      .setString(1, checkpointKey)
+      .setString(2, String.valueOf(id))
+      .execute()
+      .commit()
+      .close();
+  }
+
+  private synchronized void deleteCheckpoint(String checkpointKey) throws SQLException {
+    UpsertImpl.create(writeConnection, "DELETE FROM properties WHERE prop_key=? AND resource_id IS NULL AND user_id IS NULL")
+      .setString(1, checkpointKey)
+      .execute()
+      .commit()
+      .close();
+  }
+
+  /**
+   * Distributes the chunks of ids to the workers and keeps track of the ones which are done.
+   */
+  private class Chunks {
+    private final String checkpointKey;
+    private final long startId;
+    private final long maxId;
+    // indices of the chunks which are done, after the first one which is not done
+    private final TreeSet<Long> doneAfterCheckpoint = new TreeSet<>();
+    private long nextChunk = 0L;
+    private long firstNotDone = 0L;
+    private boolean aborted = false;
+
+    private Chunks(String checkpointKey, long startId, long maxId) {
+      this.checkpointKey = checkpointKey;
+      this.startId = startId;
+      this.maxId = maxId;
+    }
+
+    /**
+     * @return the index of the next chunk to be processed, or -1 if there's no more chunks
+     */
+    private synchronized long next() {
+      if (aborted || lowerBound(nextChunk) > maxId) {
+        return -1L;
+      }
+      long chunk = nextChunk;
+      nextChunk++;
+      return chunk;
+    }
+
+    private long lowerBound(long chunk) {
+      return startId + chunk * chunkSize;
+    }
+
+    private synchronized void done(long chunk) throws SQLException {
+      doneAfterCheckpoint.add(chunk);
+      long previous = firstNotDone;
+      while (!doneAfterCheckpoint.isEmpty() && doneAfterCheckpoint.first() == firstNotDone) {
+        doneAfterCheckpoint.pollFirst();
+        firstNotDone++;
+      }
+      if (firstNotDone > previous) {
+        writeCheckpoint(checkpointKey, lowerBound(firstNotDone));
+      }
+    }
+
+    private synchronized void abort() {
+      aborted = true;
+    }
+  }
+
+  private class Worker implements Callable<Void> {
+    private final Chunks chunks;
+    private final Handler handler;
+
+    private Worker(Chunks chunks, Handler handler) {
+      this.chunks = chunks;
+      this.handler = handler;
+    }
+
+    @Override
+    public Void call() throws SQLException {
+      Connection workerReadConnection = null;
+      Connection workerWriteConnection = null;
+      try {
+        workerReadConnection = BaseDataChange.openReadConnection(db);
+        workerWriteConnection = BaseDataChange.openWriteConnection(db);
+        for (long chunk = chunks.next(); chunk >= 0L; chunk = chunks.next()) {
+          long lowerBound = chunks.lowerBound(chunk);
+          Select chunkSelect = SelectImpl.create(db, workerReadConnection, selectSql)
+            .setLong(1, lowerBound)
+            .setLong(2, lowerBound + chunkSize);
+          process(chunkSelect, UpsertImpl.create(workerWriteConnection, updateSql), handler);
+          chunks.done(chunk);
+        }
+        return null;
+      } finally {
+        DbUtils.closeQuietly(workerReadConnection);
+        DbUtils.closeQuietly(workerWriteConnection);
+      }
+    }
+  }
 }
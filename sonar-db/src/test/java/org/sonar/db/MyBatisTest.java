@@ -19,12 +19,14 @@
  */
 package org.sonar.db;
 
+import java.util.List;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.hamcrest.core.Is;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.sonar.db.profiling.SqlStatementMetrics;
 import org.sonar.db.rule.RuleMapper;
 
 import static org.hamcrest.Matchers.notNullValue;
@@ -68,4 +70,24 @@ public class MyBatisTest {
       session.close();
     }
   }
+
+  @Test
+  public void shouldRecordMetricsOfMappedStatements() {
+    MyBatis myBatis = new MyBatis(database);
+    myBatis.start();
+
+    SqlSession session = myBatis.openSession(false);
+    try {
+      session.getMapper(IsAliveMapper.class).isAlive();
+      session.getMapper(IsAliveMapper.class).isAlive();
+    } finally {
+      session.close();
+    }
+
+    List<SqlStatementMetrics.StatementStats> statements = myBatis.getStatementMetrics().getStatements();
+    assertThat(statements.size(), Is.is(1));
+    assertThat(statements.get(0).getId(), Is.is("org.sonar.db.IsAliveMapper.isAlive"));
+    assertThat(statements.get(0).getExecutions(), Is.is(2L));
+    assertThat(statements.get(0).getRows(), Is.is(2L));
+  }
 }
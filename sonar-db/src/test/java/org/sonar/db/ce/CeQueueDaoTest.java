@@ -182,6 +182,49 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
   }
 
+  @Test
+  public void peek_oldest_pending_task_of_a_component_without_task_in_progress() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+    system2.setNow(INIT_TIME + 1_000_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+
+    Optional<CeQueueDto> peek = underTest.peek(db.getSession());
+    assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_3);
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, PENDING, TASK_UUID_3, IN_PROGRESS);
+
+    assertThat(underTest.peek(db.getSession()).isPresent()).isFalse();
+  }
+
+  @Test
+  public void peek_pending_task_without_component_when_other_tasks_are_in_progress() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+    system2.setNow(INIT_TIME + 1_000_000);
+    insert(TASK_UUID_2, null, PENDING);
+
+    Optional<CeQueueDto> peek = underTest.peek(db.getSession());
+    assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
+  }
+
+  @Test
+  public void count_eligible_for_peek() {
+    assertThat(underTest.countEligibleForPeek(db.getSession())).isEqualTo(0);
+
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    assertThat(underTest.countEligibleForPeek(db.getSession())).isEqualTo(0);
+
+    // tasks of the same component are processed one after the other
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+    insert("TASK_4", COMPONENT_UUID_2, PENDING);
+    assertThat(underTest.countEligibleForPeek(db.getSession())).isEqualTo(1);
+
+    insert("TASK_5", null, PENDING);
+    insert("TASK_6", null, PENDING);
+    assertThat(underTest.countEligibleForPeek(db.getSession())).isEqualTo(3);
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
@@ -31,6 +31,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.RowNotFoundException;
+import org.sonar.db.metric.MetricDto;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
@@ -44,6 +45,8 @@ import static org.sonar.db.component.ComponentTesting.newProjectCopy;
 import static org.sonar.db.component.ComponentTesting.newProjectDto;
 import static org.sonar.db.component.ComponentTesting.newSubView;
 import static org.sonar.db.component.ComponentTesting.newView;
+import static org.sonar.db.measure.MeasureTesting.newMeasureDto;
+import static org.sonar.db.metric.MetricTesting.newMetricDto;
 
 public class ComponentDaoTest {
 
@@ -946,6 +949,111 @@ public class ComponentDaoTest {
     assertThat(result).extracting("uuid").containsExactly("file-uuid-6", "file-uuid-5", "file-uuid-4");
   }
 
+  @Test
+  public void select_all_children_paginated_and_ordered_by_measure() {
+    ComponentDto project = newProjectDto().setKey("project-key").setUuid("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(project);
+    MetricDto metric = insertMetric();
+    for (int i = 1; i <= 9; i++) {
+      SnapshotDto fileSnapshot = componentDb.insertComponentAndSnapshot(newFileDto(project, "file-uuid-" + i).setName("file-name-" + i), projectSnapshot);
+      insertMeasure(metric, fileSnapshot, (double) (i % 5));
+    }
+    // no measure
+    componentDb.insertComponentAndSnapshot(newFileDto(project, "file-uuid-10").setName("file-name-10"), projectSnapshot);
+    db.commit();
+
+    ComponentTreeQuery query = newTreeQuery(projectSnapshot)
+      .setPage(2)
+      .setPageSize(3)
+      .setSortFields(newArrayList(ComponentTreeQuery.MEASURE_SORT_FIELD, "name"))
+      .setMeasureSort(metric.getId(), null, ComponentTreeQuery.MeasureValue.value(null))
+      .setAsc(false)
+      .build();
+
+    List<ComponentDtoWithSnapshotId> result = underTest.selectAllChildren(dbSession, query);
+    int count = underTest.countAllChildren(dbSession, query);
+
+    assertThat(count).isEqualTo(10);
+    assertThat(result).extracting("uuid").containsExactly("file-uuid-3", "file-uuid-7", "file-uuid-2");
+  }
+
+  @Test
+  public void select_direct_children_with_measure_filtered_and_ordered_with_best_value() {
+    ComponentDto project = newProjectDto().setKey("project-key").setUuid("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(project);
+    MetricDto metric = insertMetric();
+    insertMeasure(metric, componentDb.insertComponentAndSnapshot(newModuleDto("module-uuid", project).setName("module"), projectSnapshot), 3d);
+    insertMeasure(metric, componentDb.insertComponentAndSnapshot(newFileDto(project, "file-uuid-1").setName("file-1"), projectSnapshot), 5d);
+    // no measure as equal to best value
+    componentDb.insertComponentAndSnapshot(newFileDto(project, "file-uuid-2").setName("file-2"), projectSnapshot);
+    // no measure, but not a file
+    componentDb.insertComponentAndSnapshot(newModuleDto("module-uuid-2", project).setName("module-2"), projectSnapshot);
+    db.commit();
+
+    ComponentTreeQuery query = newTreeQuery(projectSnapshot)
+      .setSortFields(newArrayList(ComponentTreeQuery.MEASURE_SORT_FIELD, "name"))
+      .setMeasureSort(metric.getId(), null, ComponentTreeQuery.MeasureValue.value(0d))
+      .setMeasureFilter(metric.getId(), null, ComponentTreeQuery.MeasureValue.value(0d))
+      .build();
+
+    List<ComponentDtoWithSnapshotId> result = underTest.selectDirectChildren(dbSession, query);
+    int count = underTest.countDirectChildren(dbSession, query);
+
+    assertThat(count).isEqualTo(3);
+    assertThat(result).extracting("uuid").containsExactly("file-uuid-2", "module-uuid", "file-uuid-1");
+  }
+
+  @Test
+  public void select_direct_children_ordered_by_variation_and_developer_measure() {
+    ComponentDto project = newProjectDto().setKey("project-key").setUuid("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(project);
+    ComponentDto developer = componentDb.insertComponent(newDeveloper("developer"));
+    MetricDto metric = insertMetric();
+    SnapshotDto file1Snapshot = componentDb.insertComponentAndSnapshot(newFileDto(project, "file-uuid-1"), projectSnapshot);
+    SnapshotDto file2Snapshot = componentDb.insertComponentAndSnapshot(newFileDto(project, "file-uuid-2"), projectSnapshot);
+    db.getDbClient().measureDao().insert(dbSession,
+      newMeasureDto(metric, file1Snapshot.getId()).setVariation(2, 10d),
+      newMeasureDto(metric, file2Snapshot.getId()).setVariation(2, 20d),
+      newMeasureDto(metric, file1Snapshot.getId()).setDeveloperId(developer.getId()).setVariation(2, 30d));
+    db.commit();
+
+    ComponentTreeQuery query = newTreeQuery(projectSnapshot)
+      .setSortFields(singletonList(ComponentTreeQuery.MEASURE_SORT_FIELD))
+      .setMeasureSort(metric.getId(), null, ComponentTreeQuery.MeasureValue.variation(2, null))
+      .setAsc(false)
+      .build();
+    ComponentTreeQuery developerQuery = newTreeQuery(projectSnapshot)
+      .setSortFields(singletonList(ComponentTreeQuery.MEASURE_SORT_FIELD))
+      .setMeasureSort(metric.getId(), developer.getId(), ComponentTreeQuery.MeasureValue.variation(2, null))
+      .setAsc(false)
+      .build();
+
+    assertThat(underTest.selectDirectChildren(dbSession, query)).extracting("uuid").containsExactly("file-uuid-2", "file-uuid-1");
+    assertThat(underTest.selectDirectChildren(dbSession, developerQuery)).extracting("uuid").containsExactly("file-uuid-1", "file-uuid-2");
+  }
+
+  @Test
+  public void fail_to_sort_on_measure_when_measure_is_not_set() {
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(newProjectDto());
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Measure to sort on is not set");
+
+    newTreeQuery(projectSnapshot)
+      .setSortFields(singletonList(ComponentTreeQuery.MEASURE_SORT_FIELD))
+      .build();
+  }
+
+  private MetricDto insertMetric() {
+    MetricDto metric = newMetricDto().setValueType("INT");
+    db.getDbClient().metricDao().insert(dbSession, metric);
+    return metric;
+  }
+
+  private void insertMeasure(MetricDto metric, SnapshotDto snapshot, double value) {
+    db.getDbClient().measureDao().insert(dbSession, newMeasureDto(metric, snapshot.getId()).setValue(value));
+  }
+
   private static ComponentTreeQuery.Builder newTreeQuery(SnapshotDto baseSnapshot) {
     return ComponentTreeQuery.builder()
       .setPage(1)
@@ -19,12 +19,14 @@
  */
 package org.sonar.db.duplication;
 
+import com.google.common.collect.Lists;
 import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.db.ResultSetIterator;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -39,6 +41,19 @@ public class DuplicationDaoTest {
 
   DuplicationDao dao = db.getDbClient().duplicationDao();
 
+  @Test
+  public void select_hashes() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    dbSession.commit();
+
+    List<String> hashes;
+    try (ResultSetIterator<String> it = dao.selectHashes(dbSession)) {
+      hashes = Lists.newArrayList(it);
+    }
+
+    assertThat(hashes).hasSize(dao.countUnits(dbSession)).containsOnly("aa", "bb");
+  }
+
   @Test
   public void select_candidates() {
     db.prepareDbUnit(getClass(), "select_candidates.xml");
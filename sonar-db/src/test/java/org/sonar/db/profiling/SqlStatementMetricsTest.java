@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.profiling;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlStatementMetricsTest {
+
+  SqlStatementMetrics underTest = new SqlStatementMetrics();
+
+  @Test
+  public void no_statements_by_default() {
+    assertThat(underTest.getStatements()).isEmpty();
+  }
+
+  @Test
+  public void aggregate_executions_by_statement() {
+    underTest.record("select", millis(2), 10L);
+    underTest.record("select", millis(4), 5L);
+    underTest.record("update", millis(1), 1L);
+
+    List<SqlStatementMetrics.StatementStats> statements = underTest.getStatements();
+    assertThat(statements).extracting("id").containsExactly("select", "update");
+
+    SqlStatementMetrics.StatementStats select = statements.get(0);
+    assertThat(select.getExecutions()).isEqualTo(2L);
+    assertThat(select.getRows()).isEqualTo(15L);
+    assertThat(select.getTotalMicros()).isEqualTo(6_000L);
+    assertThat(select.getMaxMicros()).isEqualTo(4_000L);
+  }
+
+  @Test
+  public void sort_statements_by_decreasing_total_duration() {
+    underTest.record("fast", millis(1), 0L);
+    underTest.record("slow", millis(50), 0L);
+    underTest.record("frequent", millis(10), 0L);
+    underTest.record("frequent", millis(10), 0L);
+    underTest.record("frequent", millis(10), 0L);
+    underTest.record("frequent", millis(10), 0L);
+    underTest.record("frequent", millis(11), 0L);
+
+    assertThat(underTest.getStatements()).extracting("id").containsExactly("frequent", "slow", "fast");
+  }
+
+  @Test
+  public void compute_percentiles_with_relative_precision() {
+    for (int i = 1; i <= 1000; i++) {
+      underTest.record("select", millis(i), 0L);
+    }
+
+    SqlStatementMetrics.StatementStats stats = underTest.getStatements().get(0);
+    assertThat(stats.getP50Micros()).isBetween(500_000L, 500_000L * 1063 / 1000);
+    assertThat(stats.getP95Micros()).isBetween(950_000L, 950_000L * 1063 / 1000);
+    assertThat(stats.getP99Micros()).isBetween(990_000L, 990_000L * 1063 / 1000);
+    // percentiles do not exceed the max duration
+    assertThat(stats.getMaxMicros()).isEqualTo(1_000_000L);
+    assertThat(stats.getP99Micros()).isLessThanOrEqualTo(stats.getMaxMicros());
+  }
+
+  @Test
+  public void reset() {
+    underTest.record("select", millis(2), 10L);
+
+    underTest.reset();
+
+    assertThat(underTest.getStatements()).isEmpty();
+  }
+
+  @Test
+  public void buckets_of_histogram_are_contiguous() {
+    for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+      long highestValue = LatencyHistogram.highestValueOfBucket(i);
+      assertThat(LatencyHistogram.bucketIndex(highestValue)).isEqualTo(i);
+      assertThat(LatencyHistogram.bucketIndex(highestValue + 1)).isEqualTo(i + 1);
+    }
+    assertThat(LatencyHistogram.bucketIndex(-1L)).isEqualTo(0);
+    assertThat(LatencyHistogram.bucketIndex(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+  }
+
+  private static long millis(long ms) {
+    return TimeUnit.MILLISECONDS.toNanos(ms);
+  }
+}
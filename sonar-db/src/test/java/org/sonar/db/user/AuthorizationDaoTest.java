@@ -135,6 +135,37 @@ public class AuthorizationDaoTest {
     assertThat(authorization.isAuthorizedComponentKey(PROJECT, null, "admin")).isFalse();
   }
 
+  @Test
+  public void is_authorized_component_uuid_for_user() {
+    dbTester.prepareDbUnit(getClass(), "keep_authorized_project_ids_for_user.xml");
+
+    assertThat(authorization.isAuthorizedComponentUuid("DEFG", USER, "user")).isTrue();
+    assertThat(authorization.isAuthorizedComponentUuid("EFGH", USER, "user")).isFalse();
+
+    // user does not have the role "admin"
+    assertThat(authorization.isAuthorizedComponentUuid("DEFG", USER, "admin")).isFalse();
+  }
+
+  @Test
+  public void is_authorized_component_uuid_for_group() {
+    dbTester.prepareDbUnit(getClass(), "keep_authorized_project_ids_for_group.xml");
+
+    assertThat(authorization.isAuthorizedComponentUuid("DEFG", USER, "user")).isTrue();
+    assertThat(authorization.isAuthorizedComponentUuid("EFGH", USER, "user")).isFalse();
+
+    // user does not have the role "admin"
+    assertThat(authorization.isAuthorizedComponentUuid("DEFG", USER, "admin")).isFalse();
+  }
+
+  @Test
+  public void is_authorized_component_uuid_for_anonymous() {
+    dbTester.prepareDbUnit(getClass(), "keep_authorized_project_ids_for_anonymous.xml");
+
+    assertThat(authorization.isAuthorizedComponentUuid("DEFG", null, "user")).isTrue();
+    assertThat(authorization.isAuthorizedComponentUuid("EFGH", null, "user")).isFalse();
+    assertThat(authorization.isAuthorizedComponentUuid("DEFG", null, "admin")).isFalse();
+  }
+
   @Test
   public void group_should_be_authorized() {
     // user is in an authorized group
@@ -48,6 +48,7 @@ public class BaseDataChangeTest {
   @Before
   public void setUp() {
     db.executeUpdateSql("truncate table persons");
+    db.executeUpdateSql("truncate table properties");
   }
 
   @Test
@@ -427,6 +428,111 @@ public class BaseDataChangeTest {
     }
   }
 
+  @Test
+  public void partitioned_mass_update() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+
+    new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        MassUpdate massUpdate = context.prepareMassUpdate();
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.partitionBy("persons", "id").chunkSize(1).workers(2);
+        massUpdate.execute(new UpdateFromIdHandler(2L));
+      }
+    }.execute();
+
+    db.assertDbUnit(getClass(), "mass-update-result.xml", "persons");
+    // checkpoint is dropped when all rows are processed
+    assertThat(db.countRowsOfTable("properties")).isEqualTo(0);
+  }
+
+  @Test
+  public void partitioned_mass_update_resumes_from_checkpoint() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+    db.executeUpdateSql("insert into properties (prop_key, text_value) values ('sonar.internal.massUpdate.persons.id', '3')");
+
+    new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        MassUpdate massUpdate = context.prepareMassUpdate();
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.partitionBy("persons", "id").chunkSize(1).workers(2);
+        massUpdate.execute(new UpdateFromIdHandler(1L));
+      }
+    }.execute();
+
+    db.assertDbUnit(getClass(), "resume-partitioned-mass-update-result.xml", "persons");
+    assertThat(db.countRowsOfTable("properties")).isEqualTo(0);
+  }
+
+  @Test
+  public void partitioned_mass_update_stores_checkpoint_if_error() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+
+    BaseDataChange change = new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        MassUpdate massUpdate = context.prepareMassUpdate();
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.partitionBy("persons", "id").chunkSize(1).workers(1);
+        massUpdate.execute(new MassUpdate.Handler() {
+          @Override
+          public boolean handle(Select.Row row, SqlStatement update) throws SQLException {
+            long id = row.getNullableLong(1);
+            if (id == 3L) {
+              throw new IllegalStateException("Unexpected error");
+            }
+            update.setString(1, "login" + id).setInt(2, 10 + (int) id).setLong(3, id);
+            return true;
+          }
+        });
+      }
+    };
+    try {
+      change.execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Error during processing of row: [id=3]");
+    }
+
+    // rows 1 and 2 are processed
+    assertThat(db.countSql("select count(1) from persons where login in ('login1', 'login2')")).isEqualTo(2);
+    assertThat(db.countSql("select count(1) from properties where prop_key='sonar.internal.massUpdate.persons.id' and text_value='3'")).isEqualTo(1);
+  }
+
+  @Test
+  public void partitioned_mass_update_of_empty_table() throws Exception {
+    new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        MassUpdate massUpdate = context.prepareMassUpdate();
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.partitionBy("persons", "id");
+        massUpdate.execute(new UpdateFromIdHandler(1L));
+      }
+    }.execute();
+
+    assertThat(db.countRowsOfTable("persons")).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_if_chunk_size_is_not_positive() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Chunk size must be strictly positive: 0");
+
+    new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        context.prepareMassUpdate().chunkSize(0);
+      }
+    }.execute();
+  }
+
   @Test
   public void read_not_null_fields() throws Exception {
     db.prepareDbUnit(getClass(), "persons.xml");
@@ -462,6 +568,30 @@ public class BaseDataChangeTest {
     assertThat(persons.get(0)[5]).isEqualTo(5.2);
   }
 
+  /**
+   * Updates the rows whose id is greater than or equal to a given id
+   */
+  private static class UpdateFromIdHandler implements MassUpdate.Handler {
+    private final long fromId;
+
+    private UpdateFromIdHandler(long fromId) {
+      this.fromId = fromId;
+    }
+
+    @Override
+    public boolean handle(Select.Row row, SqlStatement update) throws SQLException {
+      long id = row.getNullableLong(1);
+      if (id < fromId) {
+        return false;
+      }
+      update
+        .setString(1, "login" + id)
+        .setInt(2, 10 + (int) id)
+        .setLong(3, id);
+      return true;
+    }
+  }
+
   static class UserReader implements Select.RowReader<Object[]> {
     @Override
     public Object[] read(Select.Row row) throws SQLException {
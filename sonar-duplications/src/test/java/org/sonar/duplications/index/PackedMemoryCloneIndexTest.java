@@ -28,6 +28,11 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -142,6 +147,44 @@ public class PackedMemoryCloneIndexTest {
     index.getBySequenceHash(new ByteArray(1L));
   }
 
+  /**
+   * Given: sorted index.
+   * Expected: concurrent searches by hash return same results as sequential ones.
+   */
+  @Test
+  public void search_by_hash_concurrently() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("r" + (i % 10), i % 100));
+    }
+    // sort index
+    index.getBySequenceHash(new ByteArray(0L));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        results.add(executorService.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            for (int n = 0; n < 10_000; n++) {
+              long hash = n % 110;
+              Collection<Block> blocks = index.getBySequenceHash(new ByteArray(hash));
+              if (blocks.size() != (hash < 100 ? 10 : 0)) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   private static Block newBlock(String resourceId, long hash) {
     return Block.builder()
         .setResourceId(resourceId)
@@ -26,6 +26,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.lang.ref.SoftReference;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -54,6 +55,8 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   private String hash;
   private int nonBlankLines;
   private int[] originalLineOffsets;
+  // computed along with the other metadata, but can be reclaimed as they can be computed again if needed
+  private SoftReference<byte[][]> lineHashes;
 
   public DefaultInputFile(String moduleKey, String relativePath) {
     this.moduleKey = moduleKey;
@@ -203,6 +206,16 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     return this;
   }
 
+  /**
+   * MD5 hashes of lines, as computed by {@link FileMetadata#computeLineHashesForIssueTracking(DefaultInputFile, FileMetadata.LineHashConsumer)}
+   *
+   * @return null if the hashes were not computed or are no longer available
+   */
+  @CheckForNull
+  byte[][] lineHashes() {
+    return lineHashes == null ? null : lineHashes.get();
+  }
+
   @Override
   public TextPointer newPointer(int line, int lineOffset) {
     DefaultTextPointer textPointer = new DefaultTextPointer(line, lineOffset);
@@ -283,6 +296,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     this.setNonBlankLines(metadata.nonBlankLines);
     this.setHash(metadata.hash);
     this.setOriginalLineOffsets(metadata.originalLineOffsets);
+    this.lineHashes = new SoftReference<>(metadata.lineHashes);
     return this;
   }
 
@@ -19,8 +19,6 @@
  */
 package org.sonar.api.batch.fs.internal;
 
-import com.google.common.primitives.Ints;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -28,15 +26,12 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.List;
-import javax.annotation.CheckForNull;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -74,271 +69,255 @@ public class FileMetadata {
     }
   }
 
-  private static class LineCounter extends CharHandler {
-    private int lines = 1;
-    private int nonBlankLines = 0;
-    private boolean blankLine = true;
-    boolean alreadyLoggedInvalidCharacter = false;
-    private final File file;
-    private final Charset encoding;
+  /**
+   * Computes in a single pass all the metadata of a file: lines, offsets, hash of the file and hashes of lines.
+   * Instances are reused by the thread which created them, so that buffers and digests are not allocated
+   * for each file.
+   */
+  private static final class MetadataComputer {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final float UTF_8_MAX_BYTES_PER_CHAR = 3.0f;
+    private static final int MAX_RETAINED_LINE_LENGTH = 64 * 1024;
 
-    LineCounter(File file, Charset encoding) {
+    private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+    private final MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
+    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer encoded = ByteBuffer.allocate(1024);
+
+    // characters of the current line, excluding EOL
+    private char[] line = new char[1024];
+    private int lineLength;
+    // non-whitespace characters of the current line
+    private char[] significant = new char[1024];
+    private int significantLength;
+
+    private File file;
+    private Charset encoding;
+    private boolean alreadyLoggedInvalidCharacter;
+    private boolean afterCR;
+    private int lines;
+    private int nonBlankLines;
+    private int currentOriginalOffset;
+    private int[] originalLineOffsets = new int[1024];
+    private byte[][] lineHashes = new byte[1024][];
+
+    private void reset(File file, Charset encoding) {
       this.file = file;
       this.encoding = encoding;
+      this.alreadyLoggedInvalidCharacter = false;
+      this.afterCR = false;
+      this.lines = 1;
+      this.nonBlankLines = 0;
+      this.currentOriginalOffset = 0;
+      this.originalLineOffsets[0] = 0;
+      this.lineLength = 0;
+      this.significantLength = 0;
+      this.globalMd5Digest.reset();
+    }
+
+    Metadata compute(Reader reader, File file, Charset encoding) throws IOException {
+      reset(file, encoding);
+      try {
+        int read;
+        while ((read = reader.read(readBuffer)) != -1) {
+          handle(readBuffer, read);
+        }
+        if (afterCR) {
+          newLine();
+        }
+        eof();
+        return new Metadata(lines, nonBlankLines, Hex.encodeHexString(globalMd5Digest.digest()), Arrays.copyOf(originalLineOffsets, lines),
+          currentOriginalOffset, Arrays.copyOf(lineHashes, lines));
+      } finally {
+        // do not retain the hashes of the file, nor the buffers of very long lines, in the thread-local instance
+        Arrays.fill(lineHashes, 0, Math.min(lines, lineHashes.length), null);
+        this.file = null;
+        if (line.length > MAX_RETAINED_LINE_LENGTH) {
+          line = new char[MAX_RETAINED_LINE_LENGTH];
+          significant = new char[MAX_RETAINED_LINE_LENGTH];
+          encoded = ByteBuffer.allocate(MAX_RETAINED_LINE_LENGTH);
+        }
+      }
     }
 
-    @Override
-    protected void handleAll(char c) {
+    private void handle(char[] chars, int length) {
+      for (int i = 0; i < length; i++) {
+        char c = chars[i];
+        if (afterCR) {
+          afterCR = false;
+          if (c == LINE_FEED) {
+            currentOriginalOffset++;
+            newLine();
+            continue;
+          }
+          newLine();
+        }
+        currentOriginalOffset++;
+        if (c == LINE_FEED) {
+          newLine();
+        } else if (c == CARRIAGE_RETURN) {
+          afterCR = true;
+        } else {
+          handleLineChar(c);
+        }
+      }
+    }
+
+    private void handleLineChar(char c) {
       if (!alreadyLoggedInvalidCharacter && c == '\ufffd') {
         LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", file,
           lines, encoding, CoreProperties.ENCODING_PROPERTY);
         alreadyLoggedInvalidCharacter = true;
       }
-    }
-
-    @Override
-    protected void newLine() {
-      lines++;
-      if (!blankLine) {
-        nonBlankLines++;
+      if (lineLength == line.length) {
+        line = Arrays.copyOf(line, lineLength * 2);
       }
-      blankLine = true;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
+      line[lineLength] = c;
+      lineLength++;
       if (!Character.isWhitespace(c)) {
-        blankLine = false;
-      }
-    }
-
-    @Override
-    protected void eof() {
-      if (!blankLine) {
-        nonBlankLines++;
+        if (significantLength == significant.length) {
+          significant = Arrays.copyOf(significant, significantLength * 2);
+        }
+        significant[significantLength] = c;
+        significantLength++;
       }
     }
 
-    public int lines() {
-      return lines;
-    }
-
-    public int nonBlankLines() {
-      return nonBlankLines;
-    }
-
-  }
-
-  private static class FileHashComputer extends CharHandler {
-    private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-    private StringBuilder sb = new StringBuilder();
-    private final CharsetEncoder encoder;
-    private final File file;
-
-    public FileHashComputer(File f) {
-      encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-      file = f;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      sb.append(c);
-    }
-
-    @Override
-    protected void newLine() {
-      sb.append(LINE_FEED);
-      processBuffer();
-      sb.setLength(0);
-    }
-
-    @Override
-    protected void eof() {
-      if (sb.length() > 0) {
-        processBuffer();
+    private void newLine() {
+      if (lineLength == line.length) {
+        line = Arrays.copyOf(line, lineLength * 2);
       }
-    }
+      line[lineLength] = LINE_FEED;
+      lineLength++;
+      endOfLine();
 
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          globalMd5Digest.update(encoded.array(), 0, encoded.limit());
-        }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
+      lines++;
+      if (lines > originalLineOffsets.length) {
+        originalLineOffsets = Arrays.copyOf(originalLineOffsets, originalLineOffsets.length * 2);
+        lineHashes = Arrays.copyOf(lineHashes, lineHashes.length * 2);
       }
+      originalLineOffsets[lines - 1] = currentOriginalOffset;
     }
 
-    @CheckForNull
-    public String getHash() {
-      return Hex.encodeHexString(globalMd5Digest.digest());
+    private void eof() {
+      endOfLine();
     }
-  }
 
-  private static class LineHashComputer extends CharHandler {
-    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-    private final CharsetEncoder encoder;
-    private final StringBuilder sb = new StringBuilder();
-    private final LineHashConsumer consumer;
-    private final File file;
-    private int line = 1;
-
-    public LineHashComputer(LineHashConsumer consumer, File f) {
-      this.consumer = consumer;
-      this.file = f;
-      this.encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        sb.append(c);
+    private void endOfLine() {
+      if (lineLength > 0) {
+        digest(globalMd5Digest, line, lineLength);
+        lineLength = 0;
       }
-    }
-
-    @Override
-    protected void newLine() {
-      processBuffer();
-      sb.setLength(0);
-      line++;
-    }
-
-    @Override
-    protected void eof() {
-      if (this.line > 0) {
-        processBuffer();
+      if (significantLength > 0) {
+        nonBlankLines++;
+        digest(lineMd5Digest, significant, significantLength);
+        lineHashes[lines - 1] = lineMd5Digest.digest();
+        significantLength = 0;
       }
     }
 
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          lineMd5Digest.update(encoded.array(), 0, encoded.limit());
-          consumer.consume(line, lineMd5Digest.digest());
-        }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
+    private void digest(MessageDigest digest, char[] chars, int length) {
+      int maxBytes = (int) (length * UTF_8_MAX_BYTES_PER_CHAR);
+      if (encoded.capacity() < maxBytes) {
+        encoded = ByteBuffer.allocate(maxBytes);
       }
+      encoded.clear();
+      encoder.reset();
+      CharBuffer in = CharBuffer.wrap(chars, 0, length);
+      encoder.encode(in, encoded, true);
+      encoder.flush(encoded);
+      digest.update(encoded.array(), 0, encoded.position());
     }
   }
 
-  private static class LineOffsetCounter extends CharHandler {
-    private int currentOriginalOffset = 0;
-    private List<Integer> originalLineOffsets = new ArrayList<>();
-    private int lastValidOffset = 0;
-
-    public LineOffsetCounter() {
-      originalLineOffsets.add(0);
-    }
-
-    @Override
-    protected void handleAll(char c) {
-      currentOriginalOffset++;
-    }
-
+  private static final ThreadLocal<MetadataComputer> COMPUTERS = new ThreadLocal<MetadataComputer>() {
     @Override
-    protected void newLine() {
-      originalLineOffsets.add(currentOriginalOffset);
-    }
-
-    @Override
-    protected void eof() {
-      lastValidOffset = currentOriginalOffset;
+    protected MetadataComputer initialValue() {
+      return new MetadataComputer();
     }
-
-    public List<Integer> getOriginalLineOffsets() {
-      return originalLineOffsets;
-    }
-
-    public int getLastValidOffset() {
-      return lastValidOffset;
-    }
-
-  }
+  };
 
   /**
    * Compute hash of a file ignoring line ends differences.
-   * Maximum performance is needed.
+   * Maximum performance is needed: the file is read only once, by chunks, to compute all the metadata,
+   * including the hashes of lines used by issue tracking (see {@link #computeLineHashesForIssueTracking(DefaultInputFile, LineHashConsumer)}).
    */
   public Metadata readMetadata(File file, Charset encoding) {
-    LineCounter lineCounter = new LineCounter(file, encoding);
-    FileHashComputer fileHashComputer = new FileHashComputer(file);
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    try (Reader reader = newReader(file, encoding)) {
+      return COMPUTERS.get().compute(reader, file, encoding);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
+    }
   }
 
   /**
    * For testing purpose
    */
   public Metadata readMetadata(Reader reader) {
-    LineCounter lineCounter = new LineCounter(new File("fromString"), StandardCharsets.UTF_16);
-    FileHashComputer fileHashComputer = new FileHashComputer(new File("fromString"));
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
     try {
-      read(reader, lineCounter, fileHashComputer, lineOffsetCounter);
+      return COMPUTERS.get().compute(reader, new File("fromString"), StandardCharsets.UTF_16);
     } catch (IOException e) {
       throw new IllegalStateException("Should never occurs", e);
     }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
   }
 
   public static void readFile(File file, Charset encoding, CharHandler... handlers) {
-    try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
-      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-      Reader reader = new BufferedReader(new InputStreamReader(bomIn, encoding))) {
+    try (Reader reader = newReader(file, encoding)) {
       read(reader, handlers);
     } catch (IOException e) {
       throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
     }
   }
 
+  private static Reader newReader(File file, Charset encoding) throws IOException {
+    BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
+      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
+    // characters are read by chunks, so no need for a BufferedReader
+    return new InputStreamReader(bomIn, encoding);
+  }
+
   private static void read(Reader reader, CharHandler... handlers) throws IOException {
-    char c;
-    int i = reader.read();
+    char[] buffer = new char[MetadataComputer.READ_BUFFER_SIZE];
     boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
-      if (afterCR) {
-        for (CharHandler handler : handlers) {
-          if (c == CARRIAGE_RETURN) {
-            handler.newLine();
-            handler.handleAll(c);
-          } else if (c == LINE_FEED) {
+    int read;
+    while ((read = reader.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        char c = buffer[i];
+        if (afterCR) {
+          for (CharHandler handler : handlers) {
+            if (c == CARRIAGE_RETURN) {
+              handler.newLine();
+              handler.handleAll(c);
+            } else if (c == LINE_FEED) {
+              handler.handleAll(c);
+              handler.newLine();
+            } else {
+              handler.newLine();
+              handler.handleIgnoreEoL(c);
+              handler.handleAll(c);
+            }
+          }
+          afterCR = c == CARRIAGE_RETURN;
+        } else if (c == LINE_FEED) {
+          for (CharHandler handler : handlers) {
             handler.handleAll(c);
             handler.newLine();
-          } else {
-            handler.newLine();
+          }
+        } else if (c == CARRIAGE_RETURN) {
+          afterCR = true;
+          for (CharHandler handler : handlers) {
+            handler.handleAll(c);
+          }
+        } else {
+          for (CharHandler handler : handlers) {
             handler.handleIgnoreEoL(c);
             handler.handleAll(c);
           }
         }
-        afterCR = c == CARRIAGE_RETURN;
-      } else if (c == LINE_FEED) {
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-          handler.newLine();
-        }
-      } else if (c == CARRIAGE_RETURN) {
-        afterCR = true;
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-        }
-      } else {
-        for (CharHandler handler : handlers) {
-          handler.handleIgnoreEoL(c);
-          handler.handleAll(c);
-        }
       }
-      i = reader.read();
     }
     for (CharHandler handler : handlers) {
       if (afterCR) {
@@ -355,12 +334,16 @@ public class FileMetadata {
     final int[] originalLineOffsets;
     final int lastValidOffset;
 
-    private Metadata(int lines, int nonBlankLines, String hash, List<Integer> originalLineOffsets, int lastValidOffset) {
+    // hashes of lines are kept only until they are needed by issue tracking, see DefaultInputFile
+    final byte[][] lineHashes;
+
+    private Metadata(int lines, int nonBlankLines, String hash, int[] originalLineOffsets, int lastValidOffset, byte[][] lineHashes) {
       this.lines = lines;
       this.nonBlankLines = nonBlankLines;
       this.hash = hash;
-      this.originalLineOffsets = Ints.toArray(originalLineOffsets);
+      this.originalLineOffsets = originalLineOffsets;
       this.lastValidOffset = lastValidOffset;
+      this.lineHashes = lineHashes;
     }
   }
 
@@ -371,9 +354,18 @@ public class FileMetadata {
   }
 
   /**
-   * Compute a MD5 hash of each line of the file after removing of all blank chars
+   * Compute a MD5 hash of each line of the file after removing of all blank chars. The hashes computed by
+   * {@link #readMetadata(File, Charset)} are used when still available, otherwise the file is read again.
    */
   public static void computeLineHashesForIssueTracking(DefaultInputFile f, LineHashConsumer consumer) {
-    readFile(f.file(), f.charset(), new LineHashComputer(consumer, f.file()));
+    byte[][] lineHashes = f.lineHashes();
+    if (lineHashes == null) {
+      lineHashes = new FileMetadata().readMetadata(f.file(), f.charset()).lineHashes;
+    }
+    for (int i = 0; i < lineHashes.length; i++) {
+      if (lineHashes[i] != null) {
+        consumer.consume(i + 1, lineHashes[i]);
+      }
+    }
   }
 }
@@ -79,4 +79,13 @@ public interface SensorDescriptor {
    */
   SensorDescriptor requireProperties(String... propertyKeys);
 
+  /**
+   * Declares that {@link Sensor#execute(SensorContext)} is thread-safe. The platform may then execute this {@link Sensor}
+   * at the same time as the other thread-safe sensors of the module, as long as none of them depends upon the others
+   * (see {@link org.sonar.api.batch.DependsUpon} and {@link org.sonar.api.batch.DependedUpon}).
+   * Default is to execute sensor alone.
+   * @since 6.0
+   */
+  SensorDescriptor threadSafe();
+
 }
@@ -251,6 +251,7 @@ public interface WebService extends Definable<WebService.Context> {
     private String deprecatedSince;
     private boolean post = false;
     private boolean isInternal = false;
+    private boolean streaming = false;
     private RequestHandler handler;
     private Map<String, NewParam> newParams = Maps.newHashMap();
     private URL responseExample = null;
@@ -303,6 +304,19 @@ public interface WebService extends Definable<WebService.Context> {
       return this;
     }
 
+    /**
+     * Whether the response is sent to the client while it is written by the {@link RequestHandler}, instead of
+     * being fully kept in memory. It should be enabled on actions returning large responses. The status and the
+     * headers of the response must then be set before writing its content.
+     * Default is false.
+     *
+     * @since 6.0
+     */
+    public NewAction setStreaming(boolean b) {
+      this.streaming = b;
+      return this;
+    }
+
     public NewAction setHandler(RequestHandler h) {
       this.handler = h;
       return this;
@@ -466,6 +480,7 @@ public interface WebService extends Definable<WebService.Context> {
     private final String deprecatedSince;
     private final boolean post;
     private final boolean isInternal;
+    private final boolean streaming;
     private final RequestHandler handler;
     private final Map<String, Param> params;
     private final URL responseExample;
@@ -479,6 +494,7 @@ public interface WebService extends Definable<WebService.Context> {
       this.deprecatedSince = newAction.deprecatedSince;
       this.post = newAction.post;
       this.isInternal = newAction.isInternal;
+      this.streaming = newAction.streaming;
       this.responseExample = newAction.responseExample;
       this.handler = newAction.handler;
 
@@ -538,6 +554,14 @@ public interface WebService extends Definable<WebService.Context> {
       return isInternal;
     }
 
+    /**
+     * @see NewAction#setStreaming(boolean)
+     * @since 6.0
+     */
+    public boolean isStreaming() {
+      return streaming;
+    }
+
     public RequestHandler handler() {
       return handler;
     }
@@ -25,6 +25,7 @@ import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -272,6 +273,42 @@ public class FileMetadataTest {
     });
   }
 
+  @Test
+  public void reuse_line_hashes_computed_with_metadata() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, " foo\n\nb ar\r\n", StandardCharsets.UTF_8, true);
+
+    DefaultInputFile f = new DefaultInputFile("foo", tempFile.getName());
+    f.setModuleBaseDir(tempFile.getParentFile().toPath());
+    f.setCharset(StandardCharsets.UTF_8);
+    f.initMetadata(new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8));
+    // file is not read again
+    FileUtils.forceDelete(tempFile);
+
+    final String[] hashes = new String[f.lines()];
+    FileMetadata.computeLineHashesForIssueTracking(f, new LineHashConsumer() {
+      @Override
+      public void consume(int lineIdx, @Nullable byte[] hash) {
+        hashes[lineIdx - 1] = Hex.encodeHexString(hash);
+      }
+    });
+    assertThat(hashes).containsExactly(md5Hex("foo"), null, md5Hex("bar"), null);
+  }
+
+  @Test
+  public void read_file_larger_than_read_buffer() throws Exception {
+    String firstLine = StringUtils.repeat("a", 16 * 1024 - 1);
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, firstLine + "\r\nb\rc", StandardCharsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(3);
+    assertThat(metadata.nonBlankLines).isEqualTo(3);
+    assertThat(metadata.hash).isEqualTo(md5Hex(firstLine + "\nb\nc"));
+    assertThat(metadata.originalLineOffsets).containsExactly(0, firstLine.length() + 2, firstLine.length() + 4);
+    assertThat(metadata.lastValidOffset).isEqualTo(firstLine.length() + 5);
+  }
+
   @Test
   public void should_throw_if_file_does_not_exist() throws Exception {
     File tempFolder = temp.newFolder();
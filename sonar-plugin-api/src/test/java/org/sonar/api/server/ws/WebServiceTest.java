@@ -78,6 +78,7 @@ public class WebServiceTest {
     assertThat(showAction.since()).isEqualTo("4.2");
     assertThat(showAction.isPost()).isFalse();
     assertThat(showAction.isInternal()).isFalse();
+    assertThat(showAction.isStreaming()).isFalse();
     assertThat(showAction.path()).isEqualTo("api/metric/show");
     WebService.Action createAction = controller.action("create");
     assertThat(createAction).isNotNull();
@@ -88,6 +89,7 @@ public class WebServiceTest {
     assertThat(createAction.since()).isEqualTo("4.1");
     assertThat(createAction.isPost()).isTrue();
     assertThat(createAction.isInternal()).isTrue();
+    assertThat(createAction.isStreaming()).isTrue();
   }
 
   @Test
@@ -533,6 +535,7 @@ public class WebServiceTest {
         .setDeprecatedSince("5.3")
         .setPost(true)
         .setInternal(true)
+        .setStreaming(true)
         .setResponseExample(getClass().getResource("WebServiceTest/response-example.txt"))
         .setHandler(new RequestHandler() {
           @Override
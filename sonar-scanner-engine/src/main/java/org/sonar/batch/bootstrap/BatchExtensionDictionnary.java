@@ -29,7 +29,11 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.ClassUtils;
 import org.sonar.api.batch.CheckProject;
@@ -43,6 +47,7 @@ import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.AnnotationUtils;
 import org.sonar.api.utils.dag.DirectAcyclicGraph;
+import org.sonar.api.utils.dag.Node;
 import org.sonar.batch.postjob.PostJobOptimizer;
 import org.sonar.batch.postjob.PostJobWrapper;
 import org.sonar.batch.sensor.DefaultSensorContext;
@@ -137,10 +142,58 @@ public class BatchExtensionDictionnary {
   }
 
   public <T> Collection<T> sort(Collection<T> extensions) {
+    DirectAcyclicGraph dag = toDag(extensions, new HashMap<Object, Node>());
+    List sortedList = dag.sort();
+
+    return Collections2.filter(sortedList, Predicates.in(extensions));
+  }
+
+  /**
+   * Same order as {@link #sort(Collection)}, with extensions grouped by level. The extensions of a level only depend,
+   * directly or not, upon extensions of the previous levels, so they don't depend upon each other.
+   *
+   * @since 6.0
+   */
+  public <T> List<List<T>> sortByLevel(Collection<T> extensions) {
+    Map<Object, Node> nodesByExtension = new HashMap<>();
+    DirectAcyclicGraph dag = toDag(extensions, nodesByExtension);
+    // fails on cyclic dependencies
+    List sortedList = dag.sort();
+
+    Map<Node, Integer> levelsByNode = new HashMap<>();
+    SortedMap<Integer, List<T>> extensionsByLevel = new TreeMap<>();
+    for (T extension : Collections2.filter((List<T>) sortedList, Predicates.in(extensions))) {
+      int level = level(nodesByExtension.get(extension), levelsByNode);
+      List<T> levelExtensions = extensionsByLevel.get(level);
+      if (levelExtensions == null) {
+        levelExtensions = new ArrayList<>();
+        extensionsByLevel.put(level, levelExtensions);
+      }
+      levelExtensions.add(extension);
+    }
+    return new ArrayList<>(extensionsByLevel.values());
+  }
+
+  private static int level(Node node, Map<Node, Integer> levelsByNode) {
+    Integer level = levelsByNode.get(node);
+    if (level == null) {
+      level = 0;
+      for (Node dependency : node.getDependencies()) {
+        level = Math.max(level, level(dependency, levelsByNode) + 1);
+      }
+      levelsByNode.put(node, level);
+    }
+    return level;
+  }
+
+  /**
+   * @param nodesByExtension filled with the node of each extension
+   */
+  private <T> DirectAcyclicGraph toDag(Collection<T> extensions, Map<Object, Node> nodesByExtension) {
     DirectAcyclicGraph dag = new DirectAcyclicGraph();
 
     for (T extension : extensions) {
-      dag.add(extension);
+      nodesByExtension.put(extension, dag.add(extension));
       for (Object dependency : getDependencies(extension)) {
         dag.add(extension, dependency);
       }
@@ -149,9 +202,7 @@ public class BatchExtensionDictionnary {
       }
       completePhaseDependencies(dag, extension);
     }
-    List sortedList = dag.sort();
-
-    return Collections2.filter(sortedList, Predicates.in(extensions));
+    return dag;
   }
 
   /**
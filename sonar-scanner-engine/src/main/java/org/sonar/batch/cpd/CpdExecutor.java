@@ -22,6 +22,7 @@ package org.sonar.batch.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -39,10 +40,13 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplicate;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplication;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -55,11 +59,19 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection of the duplications of each file is executed concurrently by {@link #THREADS_PROPERTY} threads
+ * (by default number of processors minus one) on the read-only index. Results are saved by the calling thread, in the
+ * order of the index, so that the report does not depend on the number of threads.
+ * </p>
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
+  public static final String THREADS_PROPERTY = "sonar.cpd.threads";
   // timeout for the computation of duplicates in a file (seconds)
   private static final int TIMEOUT = 5 * 60;
+  // number of files submitted to the detection threads and not saved yet, per thread
+  private static final int PENDING_FILES_PER_THREAD = 2;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
 
@@ -67,7 +79,6 @@ public class CpdExecutor {
   private final ReportPublisher publisher;
   private final BatchComponentCache batchComponentCache;
   private final Settings settings;
-  private final ExecutorService executorService;
   private final ProgressReport progressReport;
   private int count;
   private int total;
@@ -77,58 +88,100 @@ public class CpdExecutor {
     this.index = index;
     this.publisher = publisher;
     this.batchComponentCache = batchComponentCache;
-    this.executorService = Executors.newSingleThreadExecutor();
     this.progressReport = new ProgressReport("CPD computation", TimeUnit.SECONDS.toMillis(10));
   }
 
   public void execute() {
+    execute(TimeUnit.SECONDS.toMillis(TIMEOUT));
+  }
+
+  @VisibleForTesting
+  void execute(long timeoutMillis) {
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CpdExecutor-%d")
+      .setDaemon(true)
+      .build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      Deque<FileDetection> pendingFiles = new ArrayDeque<>();
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(resourceBlocks.resourceId(), resourceBlocks.blocks());
-        count++;
+        FileDetection detection = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection == null) {
+          count++;
+        } else {
+          pendingFiles.add(detection);
+        }
+        if (pendingFiles.size() >= threads * PENDING_FILES_PER_THREAD) {
+          saveCpdAnalysis(pendingFiles.poll(), timeoutMillis);
+        }
+      }
+      while (!pendingFiles.isEmpty()) {
+        saveCpdAnalysis(pendingFiles.poll(), timeoutMillis);
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
     }
+    return threads;
   }
 
-  private void runCpdAnalysis(String resource, final Collection<Block> fileBlocks) {
+  private FileDetection submitCpdAnalysis(ExecutorService executorService, String resource, final Collection<Block> fileBlocks) {
     LOG.debug("Detection of duplications for {}", resource);
 
     BatchComponent component = batchComponentCache.get(resource);
     if (component == null) {
       LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", resource);
-      return;
+      return null;
     }
 
+    Future<List<CloneGroup>> futureResult = executorService.submit(new Callable<List<CloneGroup>>() {
+      @Override
+      public List<CloneGroup> call() throws Exception {
+        return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+      }
+    });
+    return new FileDetection(component, futureResult);
+  }
+
+  /**
+   * Files are saved in the order of their submission, so when the calling thread starts waiting for the result of
+   * a file, all the files submitted before are done and the detection on this file is already started. The timeout
+   * is applied from that moment.
+   */
+  private void saveCpdAnalysis(FileDetection detection, long timeoutMillis) {
+    BatchComponent component = detection.component;
     InputFile inputFile = (InputFile) component.inputComponent();
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
+    count++;
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = null;
     try {
-      futureResult = executorService.submit(new Callable<List<CloneGroup>>() {
-        @Override
-        public List<CloneGroup> call() throws Exception {
-          return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
-        }
-      });
-      duplications = futureResult.get(TIMEOUT, TimeUnit.SECONDS);
+      duplications = detection.futureResult.get(timeoutMillis, TimeUnit.MILLISECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      if (futureResult != null) {
-        futureResult.cancel(true);
-      }
+      detection.futureResult.cancel(true);
       return;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during detection of duplication for " + inputFile.absolutePath(), e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e.getCause());
     }
 
     List<CloneGroup> filtered;
@@ -142,6 +195,16 @@ public class CpdExecutor {
     saveDuplications(component, filtered);
   }
 
+  private static class FileDetection {
+    private final BatchComponent component;
+    private final Future<List<CloneGroup>> futureResult;
+
+    private FileDetection(BatchComponent component, Future<List<CloneGroup>> futureResult) {
+      this.component = component;
+      this.futureResult = futureResult;
+    }
+  }
+
   @VisibleForTesting
   /**
    * Not applicable to Java, as the {@link BlockChunker} that it uses does not record start and end units of each block. 
@@ -54,7 +54,10 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     this.settings = settings;
   }
 
-  public void insert(InputFile inputFile, Collection<Block> blocks) {
+  /**
+   * Files of different modules, or of the same module by thread-safe sensors, may be inserted concurrently.
+   */
+  public synchronized void insert(InputFile inputFile, Collection<Block> blocks) {
     if (isCrossProjectDuplicationEnabled(settings)) {
       int id = batchComponentCache.get(inputFile).batchId();
       final ScannerReport.CpdTextBlock.Builder builder = ScannerReport.CpdTextBlock.newBuilder();
@@ -77,7 +80,7 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     indexedFiles.add(inputFile);
   }
 
-  public boolean isIndexed(InputFile inputFile) {
+  public synchronized boolean isIndexed(InputFile inputFile) {
     return indexedFiles.contains(inputFile);
   }
 
@@ -23,6 +23,8 @@ import com.google.common.collect.Sets;
 import com.persistit.Exchange;
 import com.persistit.Key;
 import com.persistit.KeyFilter;
+import com.persistit.Tree;
+import com.persistit.Value;
 import com.persistit.exception.PersistitException;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
@@ -34,17 +36,32 @@ import java.util.Set;
 
 /**
  * <p>
- * This cache is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This cache is thread-safe. As a {@link com.persistit.Exchange} must be used by a single thread, each thread accesses
+ * the underlying tree through its own exchange. Iterators must not be shared between threads.
  * </p>
  */
 public class Cache<V> {
 
   private final String name;
-  private final Exchange exchange;
+  // the exchange given by Caches is used by the thread which creates the cache
+  private final ThreadLocal<Exchange> exchanges;
 
   Cache(String name, Exchange exchange) {
     this.name = name;
-    this.exchange = exchange;
+    final Tree tree = exchange.getTree();
+    this.exchanges = new ThreadLocal<Exchange>() {
+      @Override
+      protected Exchange initialValue() {
+        Exchange threadExchange = new Exchange(tree);
+        threadExchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+        return threadExchange;
+      }
+    };
+    this.exchanges.set(exchange);
+  }
+
+  private Exchange exchange() {
+    return exchanges.get();
   }
 
   public Cache<V> put(Object key, V value) {
@@ -68,6 +85,7 @@ public class Cache<V> {
   }
 
   private Cache<V> doPut(V value) {
+    Exchange exchange = exchange();
     try {
       exchange.getValue().put(value);
       exchange.store();
@@ -115,6 +133,7 @@ public class Cache<V> {
   @SuppressWarnings("unchecked")
   @CheckForNull
   private V doGet() {
+    Exchange exchange = exchange();
     try {
       exchange.fetch();
       if (!exchange.getValue().isDefined()) {
@@ -148,6 +167,7 @@ public class Cache<V> {
   }
 
   private boolean doContainsKey() {
+    Exchange exchange = exchange();
     try {
       exchange.fetch();
       return exchange.isValueDefined();
@@ -179,7 +199,7 @@ public class Cache<V> {
 
   private boolean doRemove() {
     try {
-      return exchange.remove();
+      return exchange().remove();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
@@ -212,6 +232,7 @@ public class Cache<V> {
   }
 
   private Cache<V> doClear() {
+    Exchange exchange = exchange();
     try {
       Key to = new Key(exchange.getKey());
       to.append(Key.AFTER);
@@ -226,6 +247,7 @@ public class Cache<V> {
    * Clears the default as well as all group caches.
    */
   public void clear() {
+    Exchange exchange = exchange();
     try {
       exchange.clear();
       exchange.removeAll();
@@ -243,6 +265,7 @@ public class Cache<V> {
    */
   @SuppressWarnings("rawtypes")
   public Set keySet(Object key) {
+    Exchange exchange = exchange();
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
       exchange.clear();
@@ -260,6 +283,7 @@ public class Cache<V> {
 
   @SuppressWarnings("rawtypes")
   public Set keySet(Object firstKey, Object secondKey) {
+    Exchange exchange = exchange();
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
       exchange.clear();
@@ -282,6 +306,7 @@ public class Cache<V> {
    * @return The set containing the keys for this cache.
    */
   public Set<Object> keySet() {
+    Exchange exchange = exchange();
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
       exchange.clear();
@@ -300,47 +325,51 @@ public class Cache<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+    return new ValueIterable<>(this, firstKey, secondKey);
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+    return new ValueIterable<>(this, firstKey);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
+    return new ValueIterable<>(this);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
+    return new EntryIterable<>(this);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
+    return new EntryIterable<>(this, firstKey);
   }
 
   private void resetKey(Object key) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(key);
   }
 
   private void resetKey(Object first, Object second) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second);
   }
 
   private void resetKey(Object first, Object second, Object third) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second).append(third);
   }
 
   private void resetKey(Object[] keys) {
+    Exchange exchange = exchange();
     exchange.clear();
     for (Object o : keys) {
       exchange.append(o);
@@ -352,16 +381,17 @@ public class Cache<V> {
   //
 
   private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
+    private final Cache<?> cache;
     private final Object[] keys;
 
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private ValueIterable(Cache<?> cache, Object... keys) {
+      this.cache = cache;
       this.keys = keys;
     }
 
     @Override
     public Iterator<T> iterator() {
+      Exchange originExchange = cache.exchange();
       originExchange.clear();
       KeyFilter filter = new KeyFilter();
       for (Object key : keys) {
@@ -413,16 +443,17 @@ public class Cache<V> {
   }
 
   private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
+    private final Cache<?> cache;
     private final Object[] keys;
 
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private EntryIterable(Cache<?> cache, Object... keys) {
+      this.cache = cache;
       this.keys = keys;
     }
 
     @Override
     public Iterator<Entry<T>> iterator() {
+      Exchange originExchange = cache.exchange();
       originExchange.clear();
       KeyFilter filter = new KeyFilter();
       for (Object key : keys) {
@@ -65,7 +65,7 @@ public class Caches implements Startable {
     cm.registerValueCoder(clazz, coder);
   }
 
-  public <V> Cache<V> createCache(String cacheName) {
+  public synchronized <V> Cache<V> createCache(String cacheName) {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
     try {
@@ -80,7 +80,7 @@ public class Caches implements Startable {
   }
 
   @Override
-  public void stop() {
+  public synchronized void stop() {
     for (Entry<String, Exchange> e : cacheMap.entrySet()) {
       persistit.releaseExchange(e.getValue());
     }
@@ -19,15 +19,19 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
@@ -54,6 +58,12 @@ import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.DefaultSensorStorage;
 import org.sonar.core.component.ComponentKeys;
 
+/**
+ * Modules may be scanned concurrently (see {@link org.sonar.batch.scan.ProjectScanContainer#MODULES_THREADS_PROPERTY}),
+ * so the current module is bound to the thread scanning it, and is inherited by the threads it starts (for example
+ * to execute thread-safe sensors). Directories and files are indexed by module, as their keys are relative to
+ * their module.
+ */
 public class DefaultIndex extends SonarIndex {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultIndex.class);
@@ -63,9 +73,10 @@ public class DefaultIndex extends SonarIndex {
   private final PathResolver pathResolver;
   private final DefaultProjectTree projectTree;
   // caches
-  private DefaultSensorStorage sensorStorage;
-  private Project currentProject;
-  private Map<Resource, Bucket> buckets = Maps.newLinkedHashMap();
+  private final ThreadLocal<DefaultSensorStorage> sensorStorage = new InheritableThreadLocal<>();
+  private final ThreadLocal<Project> currentProject = new InheritableThreadLocal<>();
+  private final Map<Resource, Bucket> moduleBuckets = Collections.synchronizedMap(Maps.<Resource, Bucket>newLinkedHashMap());
+  private final ConcurrentMap<Resource, Map<Resource, Bucket>> bucketsByModule = new ConcurrentHashMap<>();
 
   public DefaultIndex(BatchComponentCache componentCache, DefaultProjectTree projectTree, MeasureCache measureCache, PathResolver pathResolver) {
     this.componentCache = componentCache;
@@ -86,7 +97,7 @@ public class DefaultIndex extends SonarIndex {
     addBucket(rootProject, bucket);
     BatchComponent component = componentCache.add(rootProject, null);
     component.setInputComponent(new DefaultInputModule(rootProject.getEffectiveKey()));
-    currentProject = rootProject;
+    currentProject.set(rootProject);
 
     for (Project module : rootProject.getModules()) {
       addModule(rootProject, module);
@@ -94,7 +105,24 @@ public class DefaultIndex extends SonarIndex {
   }
 
   private void addBucket(Resource resource, Bucket bucket) {
-    buckets.put(resource, bucket);
+    bucketsOf(resource).put(resource, bucket);
+  }
+
+  private Map<Resource, Bucket> bucketsOf(Resource resource) {
+    if (ResourceUtils.isSet(resource)) {
+      return moduleBuckets;
+    }
+    Project module = getProject();
+    Preconditions.checkState(module != null, "No module is being scanned");
+    Map<Resource, Bucket> buckets = bucketsByModule.get(module);
+    if (buckets == null) {
+      Map<Resource, Bucket> newBuckets = Collections.synchronizedMap(Maps.<Resource, Bucket>newLinkedHashMap());
+      buckets = bucketsByModule.putIfAbsent(module, newBuckets);
+      if (buckets == null) {
+        buckets = newBuckets;
+      }
+    }
+    return buckets;
   }
 
   private void addModule(Project parent, Project module) {
@@ -111,29 +139,28 @@ public class DefaultIndex extends SonarIndex {
 
   @Override
   public Project getProject() {
-    return currentProject;
+    return currentProject.get();
   }
 
+  /**
+   * Sets the module scanned by the current thread.
+   */
   public void setCurrentProject(Project project, DefaultSensorStorage sensorStorage) {
-    this.currentProject = project;
+    this.currentProject.set(project);
 
     // the following components depend on the current module, so they need to be reloaded.
-    this.sensorStorage = sensorStorage;
+    this.sensorStorage.set(sensorStorage);
   }
 
   /**
-   * Keep only project stuff
+   * Keep only project stuff of the given module. Resources of the other modules, which may still be scanned, are kept.
    */
-  public void clear() {
-    Iterator<Map.Entry<Resource, Bucket>> it = buckets.entrySet().iterator();
-    while (it.hasNext()) {
-      Map.Entry<Resource, Bucket> entry = it.next();
-      Resource resource = entry.getKey();
-      if (!ResourceUtils.isSet(resource)) {
-        entry.getValue().clear();
-        it.remove();
+  public synchronized void clear(Project module) {
+    Map<Resource, Bucket> buckets = bucketsByModule.remove(module);
+    if (buckets != null) {
+      for (Bucket bucket : buckets.values()) {
+        bucket.clear();
       }
-
     }
   }
 
@@ -170,7 +197,7 @@ public class DefaultIndex extends SonarIndex {
   public Measure addMeasure(Resource resource, Measure measure) {
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
-      return sensorStorage.saveMeasure(resource, measure);
+      return sensorStorage.get().saveMeasure(resource, measure);
     }
     return measure;
   }
@@ -182,7 +209,16 @@ public class DefaultIndex extends SonarIndex {
 
   @Override
   public Set<Resource> getResources() {
-    return buckets.keySet();
+    Set<Resource> resources;
+    synchronized (moduleBuckets) {
+      resources = new LinkedHashSet<>(moduleBuckets.keySet());
+    }
+    for (Map<Resource, Bucket> buckets : bucketsByModule.values()) {
+      synchronized (buckets) {
+        resources.addAll(buckets.keySet());
+      }
+    }
+    return resources;
   }
 
   @Override
@@ -190,7 +226,7 @@ public class DefaultIndex extends SonarIndex {
     Resource resource = getResource(reference);
     if (resource instanceof File) {
       File file = (File) resource;
-      Project module = currentProject;
+      Project module = getProject();
       ProjectDefinition def = projectTree.getProjectDefinition(module);
       try {
         return FileUtils.readFileToString(new java.io.File(def.getBaseDir(), file.getPath()));
@@ -260,7 +296,7 @@ public class DefaultIndex extends SonarIndex {
     return bucket != null;
   }
 
-  private Bucket doIndex(Resource resource, @Nullable Resource parentReference) {
+  private synchronized Bucket doIndex(Resource resource, @Nullable Resource parentReference) {
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
       return bucket;
@@ -271,7 +307,8 @@ public class DefaultIndex extends SonarIndex {
       return null;
     }
 
-    Resource parent = (Resource) ObjectUtils.defaultIfNull(parentReference, currentProject);
+    Project project = getProject();
+    Resource parent = (Resource) ObjectUtils.defaultIfNull(parentReference, project);
 
     Bucket parentBucket = getBucket(parent);
     if (parentBucket == null && parent != null) {
@@ -282,7 +319,7 @@ public class DefaultIndex extends SonarIndex {
     if (ResourceUtils.isProject(resource) || /* For technical projects */ResourceUtils.isRootProject(resource)) {
       resource.setEffectiveKey(resource.getKey());
     } else {
-      resource.setEffectiveKey(ComponentKeys.createEffectiveKey(currentProject, resource));
+      resource.setEffectiveKey(ComponentKeys.createEffectiveKey(project, resource));
     }
     bucket = new Bucket(resource).setParent(parentBucket);
     addBucket(resource, bucket);
@@ -311,7 +348,7 @@ public class DefaultIndex extends SonarIndex {
       return null;
     }
     if (StringUtils.isNotBlank(reference.getKey())) {
-      return buckets.get(reference);
+      return bucketsOf(reference).get(reference);
     }
     String relativePathFromSourceDir = null;
     boolean isTest = false;
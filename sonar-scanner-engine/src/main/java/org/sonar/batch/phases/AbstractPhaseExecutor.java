@@ -86,7 +86,7 @@ public abstract class AbstractPhaseExecutor {
       executeOnRoot();
       postJobsExecutor.execute(sensorContext);
     }
-    cleanMemory();
+    cleanMemory(module);
     eventBus.fireEvent(new ProjectAnalysisEvent(module, false));
   }
 
@@ -111,10 +111,10 @@ public abstract class AbstractPhaseExecutor {
     fsLogger.log();
   }
 
-  private void cleanMemory() {
+  private void cleanMemory(Project module) {
     String cleanMemory = "Clean memory";
     eventBus.fireEvent(new BatchStepEvent(cleanMemory, true));
-    index.clear();
+    index.clear(module);
     eventBus.fireEvent(new BatchStepEvent(cleanMemory, false));
   }
 }
@@ -19,20 +19,23 @@
  */
 package org.sonar.batch.phases;
 
-
-import org.sonar.batch.util.BatchUtils;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.events.SensorExecutionHandler;
 import org.sonar.api.batch.events.SensorsPhaseHandler;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
+import org.sonar.batch.util.BatchUtils;
 
 public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseHandler {
 
   private static final Logger LOG = Loggers.get(PhasesTimeProfiler.class);
 
-  private Profiler profiler = Profiler.create(LOG);
+  // sensors and modules may be executed concurrently
+  private final Map<Sensor, Profiler> profilersBySensor = new ConcurrentHashMap<>();
 
   @Override
   public void onSensorsPhase(SensorsPhaseEvent event) {
@@ -44,9 +47,13 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
   @Override
   public void onSensorExecution(SensorExecutionEvent event) {
     if (event.isStart()) {
-      profiler.startInfo("Sensor " + BatchUtils.describe(event.getSensor()));
+      Profiler profiler = Profiler.create(LOG).startInfo("Sensor " + BatchUtils.describe(event.getSensor()));
+      profilersBySensor.put(event.getSensor(), profiler);
     } else {
-      profiler.stopInfo();
+      Profiler profiler = profilersBySensor.remove(event.getSensor());
+      if (profiler != null) {
+        profiler.stopInfo();
+      }
     }
   }
 
@@ -19,16 +19,30 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.sonar.api.batch.BatchSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
 import org.sonar.batch.events.EventBus;
+import org.sonar.batch.sensor.SensorWrapper;
 
-import java.util.Collection;
-
+/**
+ * Executes sensors in the order of their dependencies. Successive sensors which declare to be thread-safe
+ * (see {@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}) and which don't depend upon each other
+ * are executed concurrently.
+ */
 @BatchSide
 public class SensorsExecutor {
 
@@ -43,19 +57,95 @@ public class SensorsExecutor {
   }
 
   public void execute(SensorContext context) {
-    Collection<Sensor> sensors = selector.select(Sensor.class, module, true, null);
-    eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
+    List<List<Sensor>> sensorsByLevel = selector.sortByLevel(selector.select(Sensor.class, module, false, null));
+    List<Sensor> sensors = Lists.newArrayList(Iterables.concat(sensorsByLevel));
+    eventBus.fireEvent(new SensorsPhaseEvent(sensors, true));
+
+    ExecutorService executorService = null;
+    try {
+      for (List<Sensor> levelSensors : sensorsByLevel) {
+        List<Sensor> threadSafeSensors = new ArrayList<>();
+        for (Sensor sensor : levelSensors) {
+          if (isThreadSafe(sensor)) {
+            threadSafeSensors.add(sensor);
+          } else {
+            executorService = executeConcurrently(context, threadSafeSensors, executorService);
+            threadSafeSensors.clear();
+            executeSensor(context, sensor);
+          }
+        }
+        executorService = executeConcurrently(context, threadSafeSensors, executorService);
+      }
+    } finally {
+      if (executorService != null) {
+        executorService.shutdownNow();
+      }
+    }
+
+    eventBus.fireEvent(new SensorsPhaseEvent(sensors, false));
+  }
+
+  private static boolean isThreadSafe(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).isThreadSafe();
+  }
 
-    for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+  /**
+   * @return the executor service, created on first use
+   */
+  private ExecutorService executeConcurrently(final SensorContext context, Collection<Sensor> sensors, ExecutorService executorService) {
+    if (sensors.size() <= 1) {
+      for (Sensor sensor : sensors) {
+        executeSensor(context, sensor);
+      }
+      return executorService;
     }
 
-    eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
+    ExecutorService executor = executorService;
+    if (executor == null) {
+      // at least two sensors are executed concurrently
+      int threads = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("SensorsExecutor-%d").setDaemon(true).build());
+    }
+    List<Future<Void>> tasks = new ArrayList<>();
+    for (final Sensor sensor : sensors) {
+      tasks.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          executeSensor(context, sensor);
+          return null;
+        }
+      }));
+    }
+    waitForTasksToComplete(tasks);
+    return executor;
+  }
+
+  private static void waitForTasksToComplete(List<Future<Void>> tasks) {
+    for (Future<Void> task : tasks) {
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        // Unwrap ExecutionException
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while executing sensors", e);
+      }
+    }
   }
 
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(module, context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  /**
+   * Event handlers are not thread-safe
+   */
+  private void fireEvent(SensorExecutionEvent event) {
+    synchronized (eventBus) {
+      eventBus.fireEvent(event);
+    }
   }
 }
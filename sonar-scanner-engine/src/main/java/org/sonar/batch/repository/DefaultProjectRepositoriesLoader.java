@@ -24,39 +24,60 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.util.Date;
 import java.util.Map;
-
+import javax.annotation.CheckForNull;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.MessageException;
 import org.sonar.batch.bootstrap.BatchWsClient;
+import org.sonar.batch.bootstrap.GlobalProperties;
 import org.sonar.batch.util.BatchUtils;
+import org.sonar.home.cache.FileCache;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.FileDataByPath;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.Settings;
 import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.WsResponse;
 
+/**
+ * The last response is kept in the user home (see {@link LocalWsCache}) and is downloaded again only if its ETag
+ * is no longer valid, for example when the project has been analyzed since then.
+ */
 public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoader {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultProjectRepositoriesLoader.class);
   private static final String BATCH_PROJECT_URL = "/batch/project.protobuf";
-  private BatchWsClient wsClient;
+  private final BatchWsClient wsClient;
+  private final LocalWsCache localCache;
 
-  public DefaultProjectRepositoriesLoader(BatchWsClient wsClient) {
+  public DefaultProjectRepositoriesLoader(BatchWsClient wsClient, FileCache fileCache, GlobalProperties globalProperties) {
     this.wsClient = wsClient;
+    this.localCache = new LocalWsCache(wsClient, fileCache, globalProperties, "project");
   }
 
   @Override
   public ProjectRepositories load(String projectKey, boolean issuesMode) {
     try {
-      GetRequest request = new GetRequest(getUrl(projectKey, issuesMode));
-      InputStream is = wsClient.call(request).contentStream();
-      return processStream(is, projectKey);
+      String url = getUrl(projectKey, issuesMode);
+      File localFile = localCache.file(url);
+      WsProjectResponse localResponse = readLocalResponse(localFile);
+      if (localResponse != null && localResponse.hasEtag()) {
+        url += "&etag=" + BatchUtils.encodeForUrl(localResponse.getEtag());
+      }
+      WsResponse response = wsClient.call(new GetRequest(url));
+      if (localResponse != null && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        LOG.debug("Project repository not modified since previous analysis");
+        return toProjectRepositories(localResponse);
+      }
+      return processStream(response.contentStream(), projectKey, localFile);
     } catch (RuntimeException e) {
       if (shouldThrow(e)) {
         throw e;
@@ -78,6 +99,27 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     return builder.toString();
   }
 
+  @CheckForNull
+  private static WsProjectResponse readLocalResponse(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+      return WsProjectResponse.parseFrom(is);
+    } catch (IOException e) {
+      LOG.debug("Fail to read project repository from " + file + ". It is reloaded.", e);
+      return null;
+    }
+  }
+
+  private static void writeLocalResponse(WsProjectResponse response, File file) {
+    try {
+      LocalWsCache.write(file, response.toByteArray());
+    } catch (IOException e) {
+      LOG.warn("Fail to write project repository to " + file, e);
+    }
+  }
+
   private static boolean shouldThrow(Exception e) {
     for (Throwable t : Throwables.getCausalChain(e)) {
       if (t instanceof HttpException) {
@@ -92,33 +134,39 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     return false;
   }
 
-  private static ProjectRepositories processStream(InputStream is, String projectKey) {
+  private static ProjectRepositories processStream(InputStream is, String projectKey, File localFile) {
     try {
       WsProjectResponse response = WsProjectResponse.parseFrom(is);
-
-      Table<String, String, FileData> fileDataTable = HashBasedTable.create();
-      Table<String, String, String> settings = HashBasedTable.create();
-
-      Map<String, Settings> settingsByModule = response.getSettingsByModule();
-      for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
-        for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
-          settings.put(e1.getKey(), e2.getKey(), e2.getValue());
-        }
-      }
-
-      Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
-      for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
-        for (Map.Entry<String, org.sonarqube.ws.WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
-          FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
-          fileDataTable.put(e1.getKey(), e2.getKey(), fd);
-        }
+      if (response.hasEtag()) {
+        writeLocalResponse(response, localFile);
       }
-
-      return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
+      return toProjectRepositories(response);
     } catch (IOException e) {
       throw new IllegalStateException("Couldn't load project repository for " + projectKey, e);
     } finally {
       IOUtils.closeQuietly(is);
     }
   }
+
+  private static ProjectRepositories toProjectRepositories(WsProjectResponse response) {
+    Table<String, String, FileData> fileDataTable = HashBasedTable.create();
+    Table<String, String, String> settings = HashBasedTable.create();
+
+    Map<String, Settings> settingsByModule = response.getSettingsByModule();
+    for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
+      for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
+        settings.put(e1.getKey(), e2.getKey(), e2.getValue());
+      }
+    }
+
+    Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
+    for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
+      for (Map.Entry<String, org.sonarqube.ws.WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
+        FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
+        fileDataTable.put(e1.getKey(), e2.getKey(), fd);
+      }
+    }
+
+    return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
+  }
 }
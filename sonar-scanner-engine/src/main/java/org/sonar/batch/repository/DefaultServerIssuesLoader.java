@@ -20,34 +20,97 @@
 package org.sonar.batch.repository;
 
 import com.google.common.base.Function;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.IOUtils;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.batch.bootstrap.BatchWsClient;
+import org.sonar.batch.bootstrap.GlobalProperties;
 import org.sonar.batch.util.BatchUtils;
+import org.sonar.home.cache.FileCache;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonarqube.ws.client.GetRequest;
 
+/**
+ * Issues are kept in the user home, by component (see {@link LocalWsCache} and {@link LocalServerIssues}). When they were
+ * synchronized recently, only the issues updated since the last synchronization are downloaded.
+ */
 public class DefaultServerIssuesLoader implements ServerIssuesLoader {
 
+  private static final Logger LOG = Loggers.get(DefaultServerIssuesLoader.class);
+
+  /**
+   * Issues updated shortly before the last synchronization may not have been indexed yet by the server,
+   * so they are downloaded again.
+   */
+  static final long SYNC_OVERLAP_MS = TimeUnit.HOURS.toMillis(1);
+
+  /**
+   * Closed issues are purged by the server after some days. Local issues which were not synchronized for
+   * a longer time may include such issues, so they are fully reloaded.
+   */
+  static final long MAX_AGE_OF_LOCAL_ISSUES_MS = TimeUnit.DAYS.toMillis(1);
+
   private final BatchWsClient wsClient;
+  private final LocalWsCache localCache;
+  private final System2 system;
 
-  public DefaultServerIssuesLoader(BatchWsClient wsClient) {
+  public DefaultServerIssuesLoader(BatchWsClient wsClient, FileCache fileCache, GlobalProperties globalProperties, System2 system) {
     this.wsClient = wsClient;
+    this.localCache = new LocalWsCache(wsClient, fileCache, globalProperties, "issues");
+    this.system = system;
   }
 
   @Override
   public void load(String componentKey, Function<ServerIssue, Void> consumer) {
-    GetRequest getRequest = new GetRequest("/batch/issues.protobuf?key=" + BatchUtils.encodeForUrl(componentKey));
-    InputStream is = wsClient.call(getRequest).contentStream();
-    parseIssues(is, consumer);
+    File localIssuesFile = localCache.file(componentKey);
+    LocalServerIssues localIssues = readLocalIssues(localIssuesFile);
+
+    StringBuilder url = new StringBuilder("/batch/issues.protobuf?key=").append(BatchUtils.encodeForUrl(componentKey));
+    if (localIssues.lastUpdateDate() > 0L) {
+      Date since = new Date(localIssues.lastUpdateDate() - SYNC_OVERLAP_MS);
+      url.append("&since=").append(BatchUtils.encodeForUrl(DateUtils.formatDateTime(since)));
+    }
+    InputStream is = wsClient.call(new GetRequest(url.toString())).contentStream();
+    parseIssues(is, localIssues);
+    writeLocalIssues(localIssues, localIssuesFile);
+
+    for (ServerIssue issue : localIssues.issues()) {
+      consumer.apply(issue);
+    }
+  }
+
+  private LocalServerIssues readLocalIssues(File file) {
+    if (!file.exists() || system.now() - file.lastModified() > MAX_AGE_OF_LOCAL_ISSUES_MS) {
+      return new LocalServerIssues();
+    }
+    try {
+      return LocalServerIssues.read(file);
+    } catch (IOException e) {
+      LOG.debug("Fail to read local issues from " + file + ". They are reloaded.", e);
+      return new LocalServerIssues();
+    }
+  }
+
+  private static void writeLocalIssues(LocalServerIssues localIssues, File file) {
+    try {
+      localIssues.write(file);
+    } catch (IOException e) {
+      LOG.warn("Fail to write local issues to " + file, e);
+    }
   }
 
-  private static void parseIssues(InputStream is, Function<ServerIssue, Void> consumer) {
+  private static void parseIssues(InputStream is, LocalServerIssues localIssues) {
     try {
       ServerIssue previousIssue = ServerIssue.parseDelimitedFrom(is);
       while (previousIssue != null) {
-        consumer.apply(previousIssue);
+        localIssues.put(previousIssue);
         previousIssue = ServerIssue.parseDelimitedFrom(is);
       }
     } catch (IOException e) {
@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.repository;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.api.issue.Issue;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+
+/**
+ * Copy of the issues of a component on server side, persisted between analyses so that only the issues
+ * updated since the previous analysis are downloaded. Closed issues are dropped.
+ * <p>
+ * The file contains the greatest update date of the issues (as a date of the server), followed by the issues
+ * as delimited protobuf messages.
+ * </p>
+ */
+class LocalServerIssues {
+
+  private final Map<String, ServerIssue> issuesByKey = new LinkedHashMap<>();
+  private long lastUpdateDate = 0L;
+
+  /**
+   * @throws IOException if the file can't be read or is corrupted
+   */
+  static LocalServerIssues read(File file) throws IOException {
+    LocalServerIssues localIssues = new LocalServerIssues();
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      long lastUpdateDate = input.readLong();
+      ServerIssue issue = ServerIssue.parseDelimitedFrom(input);
+      while (issue != null) {
+        localIssues.put(issue);
+        issue = ServerIssue.parseDelimitedFrom(input);
+      }
+      localIssues.lastUpdateDate = Math.max(localIssues.lastUpdateDate, lastUpdateDate);
+    }
+    return localIssues;
+  }
+
+  /**
+   * Adds, replaces or, if it's closed, removes the issue
+   */
+  void put(ServerIssue issue) {
+    if (Issue.STATUS_CLOSED.equals(issue.getStatus())) {
+      issuesByKey.remove(issue.getKey());
+    } else {
+      issuesByKey.put(issue.getKey(), issue);
+    }
+    lastUpdateDate = Math.max(lastUpdateDate, issue.getUpdateDate());
+  }
+
+  Collection<ServerIssue> issues() {
+    return issuesByKey.values();
+  }
+
+  /**
+   * Greatest update date of the issues, including the closed ones, or 0 if unknown
+   */
+  long lastUpdateDate() {
+    return lastUpdateDate;
+  }
+
+  void write(File file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeLong(lastUpdateDate);
+    for (ServerIssue issue : issuesByKey.values()) {
+      issue.writeDelimitedTo(output);
+    }
+    output.flush();
+    LocalWsCache.write(file, bytes.toByteArray());
+  }
+}
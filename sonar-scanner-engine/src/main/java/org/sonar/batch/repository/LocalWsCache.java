@@ -0,0 +1,67 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.repository;
+
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.sonar.api.CoreProperties;
+import org.sonar.batch.bootstrap.BatchWsClient;
+import org.sonar.batch.bootstrap.GlobalProperties;
+import org.sonar.home.cache.FileCache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Responses of web services kept in the user home between analyses, in the directory "ws_cache" next to
+ * the {@link FileCache}. Files are identified by server, login and key, so that responses are never shared
+ * between servers or between users with different permissions.
+ */
+class LocalWsCache {
+
+  private final File dir;
+  private final String serverAndLogin;
+
+  LocalWsCache(BatchWsClient wsClient, FileCache fileCache, GlobalProperties globalProperties, String name) {
+    this.dir = new File(fileCache.getDir().getParentFile(), "ws_cache/" + name);
+    this.serverAndLogin = wsClient.baseUrl() + '\n' + globalProperties.property(CoreProperties.LOGIN);
+  }
+
+  File file(String key) {
+    return new File(dir, Hashing.sha1().hashString(serverAndLogin + '\n' + key, UTF_8).toString());
+  }
+
+  /**
+   * The file is replaced atomically, so that concurrent analyses never read a partially written file
+   */
+  static void write(File file, byte[] data) throws IOException {
+    File parentDir = file.getParentFile();
+    Files.createDirectories(parentDir.toPath());
+    File tempFile = File.createTempFile(file.getName(), ".tmp", parentDir);
+    try {
+      Files.write(tempFile.toPath(), data);
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+}
@@ -20,6 +20,17 @@
 package org.sonar.batch.scan;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.InstantiationStrategy;
 import org.sonar.api.config.Settings;
@@ -95,6 +106,15 @@ public class ProjectScanContainer extends ComponentContainer {
 
   private static final Logger LOG = Loggers.get(ProjectScanContainer.class);
 
+  /**
+   * Number of threads scanning modules. A module is scanned once all its sub-modules are scanned, so that sibling
+   * modules are scanned concurrently. Modules are scanned sequentially by default, as plugins may not support
+   * being executed concurrently. Zero or negative value stands for the number of processors minus one.
+   */
+  public static final String MODULES_THREADS_PROPERTY = "sonar.modules.threads";
+  // time given to the scans still running to stop when the scan of a module fails
+  private static final long TERMINATION_TIMEOUT_SECONDS = 30L;
+
   private final AnalysisProperties props;
 
   public ProjectScanContainer(ComponentContainer globalContainer, AnalysisProperties props) {
@@ -223,12 +243,33 @@ public class ProjectScanContainer extends ComponentContainer {
     analysisMode.printMode();
     LOG.debug("Start recursive analysis of project modules");
     DefaultProjectTree tree = getComponentByType(DefaultProjectTree.class);
-    scanRecursively(tree.getRootProject());
+    int threads = getModulesThreads();
+    if (threads > 1) {
+      scanConcurrently(tree.getRootProject(), threads);
+    } else {
+      scanRecursively(tree.getRootProject());
+    }
     if (analysisMode.isMediumTest()) {
       getComponentByType(ScanTaskObservers.class).notifyEndOfScanTask();
     }
   }
 
+  private int getModulesThreads() {
+    Settings settings = getComponentByType(Settings.class);
+    if (!settings.hasKey(MODULES_THREADS_PROPERTY)) {
+      return 1;
+    }
+    if (settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
+      LOG.warn("Modules are scanned sequentially when profiling is enabled");
+      return 1;
+    }
+    int threads = settings.getInt(MODULES_THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+    return threads;
+  }
+
   private void scanRecursively(Project module) {
     for (Project subModules : module.getModules()) {
       scanRecursively(subModules);
@@ -236,6 +277,93 @@ public class ProjectScanContainer extends ComponentContainer {
     scan(module);
   }
 
+  @VisibleForTesting
+  void scanConcurrently(Project rootProject, int threads) {
+    LOG.debug("Scan modules with {} threads", threads);
+    // Components are lazily instantiated by picocontainer, which is not thread-safe
+    getPicoContainer().getComponents();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("ModuleScanner-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      CompletionService<Project> completionService = new ExecutorCompletionService<>(executorService);
+      // number of sub-modules not scanned yet, by module
+      Map<Project, Integer> pendingSubModules = new HashMap<>();
+      int submitted = submitModulesWithoutSubModules(rootProject, completionService, pendingSubModules);
+      while (submitted > 0) {
+        Project module = waitForNextScannedModule(completionService);
+        submitted--;
+        Project parent = module.getParent();
+        if (parent != null) {
+          int pending = pendingSubModules.get(parent) - 1;
+          pendingSubModules.put(parent, pending);
+          if (pending == 0) {
+            submit(parent, completionService);
+            submitted++;
+          }
+        }
+      }
+    } finally {
+      executorService.shutdownNow();
+      awaitTermination(executorService);
+    }
+  }
+
+  private static void awaitTermination(ExecutorService executorService) {
+    try {
+      if (!executorService.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Scan of modules is still running after {} seconds", TERMINATION_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private int submitModulesWithoutSubModules(Project module, CompletionService<Project> completionService, Map<Project, Integer> pendingSubModules) {
+    List<Project> subModules = module.getModules();
+    if (subModules.isEmpty()) {
+      submit(module, completionService);
+      return 1;
+    }
+    pendingSubModules.put(module, subModules.size());
+    int submitted = 0;
+    for (Project subModule : subModules) {
+      submitted += submitModulesWithoutSubModules(subModule, completionService, pendingSubModules);
+    }
+    return submitted;
+  }
+
+  private void submit(final Project module, CompletionService<Project> completionService) {
+    completionService.submit(new Callable<Project>() {
+      @Override
+      public Project call() {
+        scan(module);
+        return module;
+      }
+    });
+  }
+
+  private static Project waitForNextScannedModule(CompletionService<Project> completionService) {
+    try {
+      return completionService.take().get();
+    } catch (ExecutionException e) {
+      // Unwrap ExecutionException
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while scanning modules", e);
+    }
+  }
+
   @VisibleForTesting
   void scan(Project module) {
     new ModuleScanContainer(this, module).execute();
@@ -19,74 +19,116 @@
  */
 package org.sonar.batch.scan.filesystem;
 
-import com.google.common.collect.Table;
-import com.google.common.collect.TreeBasedTable;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.BatchSide;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputFile;
 
-import javax.annotation.CheckForNull;
-
 /**
  * Cache of all files and dirs. This cache is shared amongst all project modules. Inclusion and
  * exclusion patterns are already applied.
+ * <p>
+ * Modules may be scanned concurrently, so the cache of each module is stored in a concurrent map. The files and dirs
+ * of a module are only added by the thread scanning this module.
+ * </p>
  */
 @BatchSide
 public class InputPathCache {
 
-  private final Table<String, String, InputFile> inputFileCache = TreeBasedTable.create();
-  private final Table<String, String, InputDir> inputDirCache = TreeBasedTable.create();
+  // relative paths by module key, both sorted
+  private final ConcurrentMap<String, SortedMap<String, InputFile>> inputFileCache = new ConcurrentSkipListMap<>();
+  private final ConcurrentMap<String, SortedMap<String, InputDir>> inputDirCache = new ConcurrentSkipListMap<>();
 
   public Iterable<InputFile> allFiles() {
-    return inputFileCache.values();
+    return Iterables.concat(Iterables.transform(inputFileCache.values(), InputPathCache.<InputFile>values()));
   }
 
   public Iterable<InputDir> allDirs() {
-    return inputDirCache.values();
+    return Iterables.concat(Iterables.transform(inputDirCache.values(), InputPathCache.<InputDir>values()));
   }
 
   public Iterable<InputFile> filesByModule(String moduleKey) {
-    return inputFileCache.row(moduleKey).values();
+    return row(inputFileCache, moduleKey).values();
   }
 
   public Iterable<InputDir> dirsByModule(String moduleKey) {
-    return inputDirCache.row(moduleKey).values();
+    return row(inputDirCache, moduleKey).values();
   }
 
   public InputPathCache removeModule(String moduleKey) {
-    inputFileCache.row(moduleKey).clear();
-    inputDirCache.row(moduleKey).clear();
+    inputFileCache.remove(moduleKey);
+    inputDirCache.remove(moduleKey);
     return this;
   }
 
   public InputPathCache remove(String moduleKey, InputFile inputFile) {
-    inputFileCache.remove(moduleKey, inputFile.relativePath());
+    SortedMap<String, InputFile> row = inputFileCache.get(moduleKey);
+    if (row != null) {
+      row.remove(inputFile.relativePath());
+    }
     return this;
   }
 
   public InputPathCache remove(String moduleKey, InputDir inputDir) {
-    inputDirCache.remove(moduleKey, inputDir.relativePath());
+    SortedMap<String, InputDir> row = inputDirCache.get(moduleKey);
+    if (row != null) {
+      row.remove(inputDir.relativePath());
+    }
     return this;
   }
 
   public InputPathCache put(String moduleKey, InputFile inputFile) {
-    inputFileCache.put(moduleKey, inputFile.relativePath(), inputFile);
+    getOrCreateRow(inputFileCache, moduleKey).put(inputFile.relativePath(), inputFile);
     return this;
   }
 
   public InputPathCache put(String moduleKey, InputDir inputDir) {
-    inputDirCache.put(moduleKey, inputDir.relativePath(), inputDir);
+    getOrCreateRow(inputDirCache, moduleKey).put(inputDir.relativePath(), inputDir);
     return this;
   }
 
   @CheckForNull
   public InputFile getFile(String moduleKey, String relativePath) {
-    return inputFileCache.get(moduleKey, relativePath);
+    return row(inputFileCache, moduleKey).get(relativePath);
   }
 
   @CheckForNull
   public InputDir getDir(String moduleKey, String relativePath) {
-    return inputDirCache.get(moduleKey, relativePath);
+    return row(inputDirCache, moduleKey).get(relativePath);
+  }
+
+  private static <T> SortedMap<String, T> row(ConcurrentMap<String, SortedMap<String, T>> cache, String moduleKey) {
+    SortedMap<String, T> row = cache.get(moduleKey);
+    return row == null ? Collections.<String, T>emptySortedMap() : row;
+  }
+
+  private static <T> SortedMap<String, T> getOrCreateRow(ConcurrentMap<String, SortedMap<String, T>> cache, String moduleKey) {
+    SortedMap<String, T> row = cache.get(moduleKey);
+    if (row == null) {
+      SortedMap<String, T> newRow = new TreeMap<>();
+      row = cache.putIfAbsent(moduleKey, newRow);
+      if (row == null) {
+        row = newRow;
+      }
+    }
+    return row;
+  }
+
+  private static <T> Function<Map<String, T>, Iterable<T>> values() {
+    return new Function<Map<String, T>, Iterable<T>>() {
+      @Override
+      public Iterable<T> apply(Map<String, T> row) {
+        return row.values();
+      }
+    };
   }
 
 }
@@ -65,6 +65,10 @@ import org.sonar.duplications.internal.pmd.PmdBlockChunker;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 
+/**
+ * Thread-safe, as thread-safe sensors may store data concurrently. Only the writes to the shared caches and indexes are
+ * serialized.
+ */
 public class DefaultSensorStorage implements SensorStorage {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultSensorStorage.class);
@@ -131,7 +135,7 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  public org.sonar.api.measures.Measure saveMeasure(Resource resource, org.sonar.api.measures.Measure measure) {
+  public synchronized org.sonar.api.measures.Measure saveMeasure(Resource resource, org.sonar.api.measures.Measure measure) {
     if (DEPRECATED_METRICS_KEYS.contains(measure.getMetricKey())) {
       // Ignore deprecated metrics
       return null;
@@ -176,7 +180,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(Issue issue) {
+  public synchronized void store(Issue issue) {
     moduleIssues.initAndAddIssue(issue);
   }
 
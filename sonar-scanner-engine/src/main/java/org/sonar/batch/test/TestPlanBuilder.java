@@ -38,7 +38,7 @@ public class TestPlanBuilder extends PerspectiveBuilder<MutableTestPlan> {
 
   @CheckForNull
   @Override
-  public MutableTestPlan loadPerspective(Class<MutableTestPlan> perspectiveClass, BatchComponent component) {
+  public synchronized MutableTestPlan loadPerspective(Class<MutableTestPlan> perspectiveClass, BatchComponent component) {
     if (component.isFile()) {
       InputFile inputFile = (InputFile) component.inputComponent();
       if (inputFile.type() == Type.TEST) {
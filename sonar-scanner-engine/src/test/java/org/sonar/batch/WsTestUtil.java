@@ -60,6 +60,12 @@ public class WsTestUtil {
     when(mock.call(argThat(new RequestMatcher(path)))).thenReturn(response);
   }
 
+  public static void mockCode(BatchWsClient mock, String path, int code) {
+    WsResponse response = mock(WsResponse.class);
+    when(response.code()).thenReturn(code);
+    when(mock.call(argThat(new RequestMatcher(path)))).thenReturn(response);
+  }
+
   public static void mockException(BatchWsClient mock, Exception e) {
     when(mock.call(any(WsRequest.class))).thenThrow(e);
   }
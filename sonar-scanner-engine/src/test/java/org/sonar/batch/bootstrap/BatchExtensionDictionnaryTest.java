@@ -120,6 +120,36 @@ public class BatchExtensionDictionnaryTest {
     assertThat(extensions.get(2)).isEqualTo(c);
   }
 
+  @Test
+  public void sortExtensionsByLevel() {
+    BatchExtension a = new MethodDependentOf(null);
+    BatchExtension b = new MethodDependentOf(a);
+    BatchExtension c = new MethodDependentOf(a);
+    BatchExtension d = new MethodDependentOf(b);
+
+    BatchExtensionDictionnary selector = newSelector(d, c, b, a);
+    List<List<BatchExtension>> levels = selector.sortByLevel(selector.select(BatchExtension.class, null, false, null));
+
+    assertThat(levels).hasSize(3);
+    assertThat(levels.get(0)).containsExactly(a);
+    assertThat(levels.get(1)).containsOnly(b, c);
+    assertThat(levels.get(2)).containsExactly(d);
+  }
+
+  @Test
+  public void independent_extensions_are_at_the_same_level() {
+    BatchExtension a = new GeneratesSomething("foo");
+    BatchExtension b = new MethodDependentOf("foo");
+    BatchExtension c = new MethodDependentOf(null);
+
+    BatchExtensionDictionnary selector = newSelector(a, b, c);
+    List<List<BatchExtension>> levels = selector.sortByLevel(selector.select(BatchExtension.class, null, false, null));
+
+    assertThat(levels).hasSize(2);
+    assertThat(levels.get(0)).containsOnly(a, c);
+    assertThat(levels.get(1)).containsExactly(b);
+  }
+
   @Test
   public void useMethodAnnotationsToSortExtensions() {
     BatchExtension a = new GeneratesSomething("foo");
@@ -120,6 +120,15 @@ public class BatchWsClientTest {
     new BatchWsClient(wsClient, true).call(request);
   }
 
+  @Test
+  public void do_not_fail_if_not_modified() throws Exception {
+    WsRequest request = newRequest();
+    WsResponse response = newResponse().setCode(304);
+    when(wsClient.wsConnector().call(request)).thenReturn(response);
+
+    assertThat(new BatchWsClient(wsClient, true).call(request)).isSameAs(response);
+  }
+
   private MockWsResponse newResponse() {
     return new MockWsResponse().setRequestUrl("https://local/api/issues/search");
   }
@@ -23,12 +23,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.config.Settings;
@@ -40,14 +43,18 @@ import org.sonar.batch.index.BatchComponent;
 import org.sonar.batch.index.BatchComponentCache;
 import org.sonar.batch.report.ReportPublisher;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplicate;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplication;
 import org.sonar.scanner.protocol.output.ScannerReportReader;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -67,6 +74,7 @@ public class CpdExecutorTest {
   // private AbstractCpdEngine engine;
 
   private ScannerReportReader reader;
+  private File baseDir;
   private BatchComponent batchComponent1;
   private BatchComponent batchComponent2;
   private BatchComponent batchComponent3;
@@ -74,6 +82,7 @@ public class CpdExecutorTest {
   @Before
   public void setUp() throws IOException {
     File outputDir = temp.newFolder();
+    baseDir = temp.newFolder();
 
     settings = new Settings();
     index = mock(SonarCpdBlockIndex.class);
@@ -93,7 +102,98 @@ public class CpdExecutorTest {
 
   private BatchComponent createComponent(String relativePath, int lines) {
     org.sonar.api.resources.Resource sampleFile = org.sonar.api.resources.File.create("relativePath").setEffectiveKey("foo:" + relativePath);
-    return componentCache.add(sampleFile, null).setInputComponent(new DefaultInputFile("foo", relativePath).setLines(lines));
+    return componentCache.add(sampleFile, null).setInputComponent(new DefaultInputFile("foo", relativePath).setModuleBaseDir(baseDir.toPath()).setLanguage("java").setLines(lines));
+  }
+
+  @Test
+  public void threads_default_to_number_of_processors_minus_one() {
+    assertThat(executor.getThreads()).isEqualTo(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  @Test
+  public void threads_can_be_configured() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "3");
+    assertThat(executor.getThreads()).isEqualTo(3);
+  }
+
+  @Test
+  public void duplications_do_not_depend_on_number_of_threads() throws IOException {
+    List<List<Duplication>> singleThreaded = detectDuplicationsOfManyFiles(1);
+    List<List<Duplication>> multiThreaded = detectDuplicationsOfManyFiles(4);
+
+    assertThat(singleThreaded).hasSize(20);
+    assertThat(singleThreaded.get(0)).isNotEmpty();
+    assertThat(multiThreaded).isEqualTo(singleThreaded);
+  }
+
+  private List<List<Duplication>> detectDuplicationsOfManyFiles(int threads) throws IOException {
+    File outputDir = temp.newFolder();
+    when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, threads);
+    SonarCpdBlockIndex realIndex = new SonarCpdBlockIndex(publisher, componentCache, settings);
+    List<BatchComponent> components = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      BatchComponent component = createComponent("src/Dup" + threads + "_" + i + ".java", 100);
+      List<Block> blocks = new ArrayList<>();
+      for (int b = 0; b < 10; b++) {
+        // every file shares its first blocks with the next one
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setBlockHash(new ByteArray((long) (b < 5 ? (i * 5 + b) : ((i + 1) * 5 + b - 5))))
+          .setIndexInFile(b)
+          .setLines(b * 10 + 1, b * 10 + 10)
+          .setUnit(b * 100, b * 100 + 99)
+          .build());
+      }
+      realIndex.insert((DefaultInputFile) component.inputComponent(), blocks);
+      components.add(component);
+    }
+
+    new CpdExecutor(settings, realIndex, publisher, componentCache).execute();
+
+    ScannerReportReader outputReader = new ScannerReportReader(outputDir);
+    List<List<Duplication>> result = new ArrayList<>();
+    for (BatchComponent component : components) {
+      List<Duplication> duplications = new ArrayList<>();
+      try (CloseableIterator<Duplication> it = outputReader.readComponentDuplications(component.batchId())) {
+        while (it.hasNext()) {
+          Duplication duplication = it.next();
+          // references to other files differ between the two executions, only ranges are compared
+          Duplication.Builder builder = duplication.toBuilder();
+          for (int d = 0; d < builder.getDuplicateCount(); d++) {
+            builder.setDuplicate(d, builder.getDuplicate(d).toBuilder().clearOtherFileRef());
+          }
+          duplications.add(builder.build());
+        }
+      }
+      result.add(duplications);
+    }
+    return result;
+  }
+
+  @Test
+  public void skip_file_when_detection_times_out() {
+    final Block slowBlock = Block.builder().setResourceId(batchComponent1.key()).setBlockHash(new ByteArray(1L)).setIndexInFile(0).setLines(1, 10).build();
+    Block fastBlock = Block.builder().setResourceId(batchComponent2.key()).setBlockHash(new ByteArray(2L)).setIndexInFile(0).setLines(1, 10).build();
+    when(index.noResources()).thenReturn(2);
+    when(index.iterator()).thenReturn(Arrays.asList(
+      new ResourceBlocks(batchComponent1.key(), Collections.singletonList(slowBlock)),
+      new ResourceBlocks(batchComponent2.key(), Collections.singletonList(fastBlock))).iterator());
+    when(index.getBySequenceHash(any(ByteArray.class))).thenAnswer(new Answer<Collection<Block>>() {
+      @Override
+      public Collection<Block> answer(InvocationOnMock invocation) throws Throwable {
+        ByteArray hash = (ByteArray) invocation.getArguments()[0];
+        if (hash.equals(slowBlock.getBlockHash())) {
+          Thread.sleep(10_000L);
+        }
+        return Collections.emptyList();
+      }
+    });
+
+    executor.execute(100L);
+
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsOnly("Timeout during detection of duplications for " + ((DefaultInputFile) batchComponent1.inputComponent()).absolutePath());
+    assertThat(reader.readComponentDuplications(batchComponent2.batchId())).hasSize(0);
   }
 
   @Test
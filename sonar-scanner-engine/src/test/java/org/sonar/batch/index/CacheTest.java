@@ -20,6 +20,12 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.sonar.batch.index.Cache.Entry;
 
@@ -65,6 +71,36 @@ public class CacheTest extends AbstractCachesTest {
     assertThat(values).isEmpty();
   }
 
+  @Test
+  public void concurrent_puts_and_gets() throws Exception {
+    final Cache<String> cache = caches.createCache("concurrent");
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Void>> tasks = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        final int threadIndex = thread;
+        tasks.add(executorService.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < 1000; i++) {
+              cache.put(threadIndex, i, "value-" + threadIndex + "-" + i);
+              assertThat(cache.get(threadIndex, i)).isEqualTo("value-" + threadIndex + "-" + i);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> task : tasks) {
+        task.get();
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(cache.keySet()).containsOnly(0, 1, 2, 3);
+    assertThat(cache.values()).hasSize(4000);
+  }
+
   @Test
   public void test_key_being_prefix_of_another_key() throws Exception {
     Cache<String> cache = caches.createCache("components");
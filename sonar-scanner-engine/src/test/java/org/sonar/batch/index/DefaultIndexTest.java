@@ -152,6 +152,40 @@ public class DefaultIndexTest {
     assertThat(index.getMeasures(dir, MeasuresFilters.metric("ncloc"))).isNull();
   }
 
+  @Test
+  public void clear_only_resources_of_module() {
+    index.setCurrentProject(moduleA, mock(DefaultSensorStorage.class));
+    File fileA = File.create("src/org/foo/Bar.java", null, false);
+    assertThat(index.index(fileA)).isTrue();
+    index.setCurrentProject(moduleB, mock(DefaultSensorStorage.class));
+    File fileB = File.create("src/org/foo/Bar.java", null, false);
+    assertThat(index.index(fileB)).isTrue();
+
+    index.clear(moduleA);
+
+    assertThat(index.getResources()).containsOnly(project, moduleA, moduleB, moduleB1, fileB, fileB.getParent());
+  }
+
+  @Test
+  public void current_module_is_bound_to_thread() throws Exception {
+    index.setCurrentProject(moduleA, mock(DefaultSensorStorage.class));
+    final Project[] moduleOfOtherThread = new Project[2];
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        // inherited from the thread which started this one
+        moduleOfOtherThread[0] = index.getProject();
+        index.setCurrentProject(moduleB, mock(DefaultSensorStorage.class));
+        moduleOfOtherThread[1] = index.getProject();
+      }
+    };
+    thread.start();
+    thread.join();
+
+    assertThat(moduleOfOtherThread).containsExactly(moduleA, moduleB);
+    assertThat(index.getProject()).isEqualTo(moduleA);
+  }
+
   @Test
   public void shouldComputePathOfIndexedModules() {
     assertThat(index.getResource(project).getPath()).isNull();
@@ -0,0 +1,154 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.phases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.resources.Project;
+import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
+import org.sonar.batch.events.EventBus;
+import org.sonar.batch.sensor.SensorWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SensorsExecutorTest {
+  SensorsExecutor executor;
+
+  Project project = new Project("project");
+  BatchExtensionDictionnary selector = mock(BatchExtensionDictionnary.class);
+  SensorContext context = mock(SensorContext.class);
+
+  @Before
+  public void setUp() {
+    executor = new SensorsExecutor(selector, project, mock(EventBus.class));
+  }
+
+  @Test
+  public void execute_sensors_in_order() {
+    Sensor sensor1 = mock(Sensor.class);
+    Sensor sensor2 = mock(Sensor.class);
+    Sensor sensor3 = mock(Sensor.class);
+    mockSensorsByLevel(Arrays.asList(sensor1, sensor2), Collections.singletonList(sensor3));
+
+    executor.execute(context);
+
+    InOrder inOrder = inOrder(sensor1, sensor2, sensor3);
+    inOrder.verify(sensor1).analyse(project, context);
+    inOrder.verify(sensor2).analyse(project, context);
+    inOrder.verify(sensor3).analyse(project, context);
+  }
+
+  @Test
+  public void execute_thread_safe_sensors_of_same_level_concurrently() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    AtomicBoolean concurrent = new AtomicBoolean(true);
+    SensorWrapper sensor1 = threadSafeSensor(bothStarted, concurrent);
+    SensorWrapper sensor2 = threadSafeSensor(bothStarted, concurrent);
+    mockSensorsByLevel(Arrays.<Sensor>asList(sensor1, sensor2));
+
+    executor.execute(context);
+
+    verify(sensor1).analyse(project, context);
+    verify(sensor2).analyse(project, context);
+    assertThat(concurrent.get()).isTrue();
+  }
+
+  @Test
+  public void do_not_execute_concurrently_thread_safe_sensors_of_different_levels() {
+    SensorWrapper sensor1 = mock(SensorWrapper.class);
+    SensorWrapper sensor2 = mock(SensorWrapper.class);
+    when(sensor1.isThreadSafe()).thenReturn(true);
+    when(sensor2.isThreadSafe()).thenReturn(true);
+    mockSensorsByLevel(Collections.<Sensor>singletonList(sensor1), Collections.<Sensor>singletonList(sensor2));
+
+    executor.execute(context);
+
+    InOrder inOrder = inOrder(sensor1, sensor2);
+    inOrder.verify(sensor1).analyse(project, context);
+    inOrder.verify(sensor2).analyse(project, context);
+  }
+
+  @Test
+  public void fail_when_thread_safe_sensor_fails() {
+    SensorWrapper sensor1 = mock(SensorWrapper.class);
+    SensorWrapper sensor2 = mock(SensorWrapper.class);
+    when(sensor1.isThreadSafe()).thenReturn(true);
+    when(sensor2.isThreadSafe()).thenReturn(true);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        throw new IllegalStateException("Sensor failure");
+      }
+    }).when(sensor2).analyse(project, context);
+    mockSensorsByLevel(Arrays.<Sensor>asList(sensor1, sensor2));
+
+    try {
+      executor.execute(context);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Sensor failure");
+    }
+  }
+
+  private SensorWrapper threadSafeSensor(final CountDownLatch bothStarted, final AtomicBoolean concurrent) {
+    SensorWrapper sensor = mock(SensorWrapper.class);
+    when(sensor.isThreadSafe()).thenReturn(true);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws InterruptedException {
+        bothStarted.countDown();
+        // fails if the other sensor is not executed at the same time
+        if (!bothStarted.await(10, TimeUnit.SECONDS)) {
+          concurrent.set(false);
+        }
+        return null;
+      }
+    }).when(sensor).analyse(project, context);
+    return sensor;
+  }
+
+  @SafeVarargs
+  private final void mockSensorsByLevel(List<Sensor>... sensorsByLevel) {
+    List<Sensor> sensors = new ArrayList<>();
+    for (List<Sensor> levelSensors : sensorsByLevel) {
+      sensors.addAll(levelSensors);
+    }
+    when(selector.select(Sensor.class, project, false, null)).thenReturn(sensors);
+    when(selector.sortByLevel(sensors)).thenReturn(Arrays.asList(sensorsByLevel));
+  }
+}
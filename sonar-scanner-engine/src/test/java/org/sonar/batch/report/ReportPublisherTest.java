@@ -19,8 +19,11 @@
  */
 package org.sonar.batch.report;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import org.junit.Before;
@@ -28,23 +31,32 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.config.PropertyDefinitions;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.MessageException;
-import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.batch.analysis.DefaultAnalysisMode;
 import org.sonar.batch.bootstrap.BatchWsClient;
 import org.sonar.batch.scan.ImmutableProjectReactor;
 import org.sonar.core.config.CorePropertyDefinitions;
+import org.sonar.scanner.protocol.output.ReportStream;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonarqube.ws.WsCe;
+import org.sonarqube.ws.client.PostRequest;
+import org.sonarqube.ws.client.WsRequest;
+import org.sonarqube.ws.client.WsResponse;
 
 import static org.apache.commons.io.FileUtils.readFileToString;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ReportPublisherTest {
@@ -74,7 +86,7 @@ public class ReportPublisherTest {
 
   @Test
   public void log_and_dump_information_about_report_uploading() throws IOException {
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.logSuccess("TASK-123");
 
@@ -96,7 +108,7 @@ public class ReportPublisherTest {
   @Test
   public void log_public_url_if_defined() throws IOException {
     settings.setProperty(CoreProperties.SERVER_BASE_URL, "https://publicserver/sonarqube");
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.logSuccess("TASK-123");
 
@@ -117,7 +129,7 @@ public class ReportPublisherTest {
   @Test
   public void fail_if_public_url_malformed() throws IOException {
     settings.setProperty(CoreProperties.SERVER_BASE_URL, "invalid");
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
     
     exception.expect(MessageException.class);
     exception.expectMessage("Failed to parse public URL set in SonarQube server: invalid");
@@ -126,7 +138,7 @@ public class ReportPublisherTest {
 
   @Test
   public void log_but_not_dump_information_when_report_is_not_uploaded() {
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.logSuccess(/* report not uploaded, no server task */null);
 
@@ -138,12 +150,36 @@ public class ReportPublisherTest {
     assertThat(detailsFile).doesNotExist();
   }
 
+  @Test
+  public void upload_report_as_stream() throws IOException {
+    WsResponse response = mock(WsResponse.class);
+    when(response.failIfNotSuccessful()).thenReturn(response);
+    when(response.contentStream()).thenReturn(new ByteArrayInputStream(WsCe.SubmitResponse.newBuilder().setTaskId("TASK-123").build().toByteArray()));
+    when(wsClient.call(any(WsRequest.class))).thenReturn(response);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
+    underTest.start();
+    underTest.getWriter().writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("struts").build());
+
+    assertThat(underTest.upload()).isEqualTo("TASK-123");
+
+    ArgumentCaptor<WsRequest> request = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient).call(request.capture());
+    PostRequest.Part part = ((PostRequest) request.getValue()).getParts().get("report");
+    assertThat(part.getFile()).isNull();
+    File sentReport = temp.newFile();
+    try (OutputStream output = new FileOutputStream(sentReport)) {
+      part.getContentWriter().writeTo(output);
+    }
+    assertThat(ReportStream.isReportStream(sentReport)).isTrue();
+    assertThat(new ScannerReportReader(sentReport).readMetadata().getProjectKey()).isEqualTo("struts");
+  }
+
   @Test
   public void should_not_delete_report_if_property_is_set() throws IOException {
     settings.setProperty("sonar.batch.keepReport", true);
     Path reportDir = temp.getRoot().toPath().resolve("batch-report");
     Files.createDirectory(reportDir);
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.start();
     underTest.stop();
@@ -154,7 +190,7 @@ public class ReportPublisherTest {
   public void should_delete_report_by_default() throws IOException {
     Path reportDir = temp.getRoot().toPath().resolve("batch-report");
     Files.createDirectory(reportDir);
-    ReportPublisher job = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher job = new ReportPublisher(settings, wsClient, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     job.start();
     job.stop();
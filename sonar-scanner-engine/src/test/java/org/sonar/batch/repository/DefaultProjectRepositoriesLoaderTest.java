@@ -24,13 +24,17 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.MessageException;
 import org.sonar.batch.WsTestUtil;
 import org.sonar.batch.bootstrap.BatchWsClient;
+import org.sonar.batch.bootstrap.GlobalProperties;
+import org.sonar.home.cache.FileCache;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsRequest;
@@ -44,6 +48,8 @@ public class DefaultProjectRepositoriesLoaderTest {
   private final static String PROJECT_KEY = "foo?";
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
 
   private DefaultProjectRepositoriesLoader loader;
   private BatchWsClient wsClient;
@@ -51,9 +57,12 @@ public class DefaultProjectRepositoriesLoaderTest {
   @Before
   public void prepare() throws IOException {
     wsClient = mock(BatchWsClient.class);
+    when(wsClient.baseUrl()).thenReturn("http://localhost:9000");
     InputStream is = mockData();
     WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", is);
-    loader = new DefaultProjectRepositoriesLoader(wsClient);
+    FileCache fileCache = mock(FileCache.class);
+    when(fileCache.getDir()).thenReturn(temp.newFolder("cache"));
+    loader = new DefaultProjectRepositoriesLoader(wsClient, fileCache, new GlobalProperties(Collections.<String, String>emptyMap()));
   }
 
   @Test
@@ -110,6 +119,41 @@ public class DefaultProjectRepositoriesLoaderTest {
     WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F");
   }
 
+  @Test
+  public void reuse_previous_response_if_not_modified() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", mockDataWithSetting("abc"));
+    assertThat(loader.load(PROJECT_KEY, false).settings(PROJECT_KEY)).containsEntry("sonar.jira.project.key", "SONAR");
+
+    WsTestUtil.mockCode(wsClient, "/batch/project.protobuf?key=foo%3F&etag=abc", 304);
+    ProjectRepositories proj = loader.load(PROJECT_KEY, false);
+
+    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&etag=abc");
+    assertThat(proj.exists()).isTrue();
+    assertThat(proj.settings(PROJECT_KEY)).containsEntry("sonar.jira.project.key", "SONAR");
+  }
+
+  @Test
+  public void replace_previous_response_if_modified() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", new ByteArrayInputStream(WsProjectResponse.newBuilder().setEtag("abc").build().toByteArray()));
+    loader.load(PROJECT_KEY, false);
+
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&etag=abc", mockDataWithSetting("def"));
+    assertThat(loader.load(PROJECT_KEY, false).settings(PROJECT_KEY)).containsEntry("sonar.jira.project.key", "SONAR");
+
+    WsTestUtil.mockCode(wsClient, "/batch/project.protobuf?key=foo%3F&etag=def", 304);
+    assertThat(loader.load(PROJECT_KEY, false).settings(PROJECT_KEY)).containsEntry("sonar.jira.project.key", "SONAR");
+  }
+
+  @Test
+  public void do_not_reuse_response_of_other_mode() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", new ByteArrayInputStream(WsProjectResponse.newBuilder().setEtag("abc").build().toByteArray()));
+    loader.load(PROJECT_KEY, false);
+
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&issues_mode=true", mockData());
+    loader.load(PROJECT_KEY, true);
+    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&issues_mode=true");
+  }
+
   private InputStream mockData() throws IOException {
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     WsProjectResponse.Builder projectResponseBuilder = WsProjectResponse.newBuilder();
@@ -132,6 +176,14 @@ public class DefaultProjectRepositoriesLoaderTest {
     assertThat(fd.hash()).isEqualTo("edb6b3b9ab92d8dc53ba90ab86cd422e");
   }
 
+  private static InputStream mockDataWithSetting(String etag) {
+    WsProjectResponse.Settings.Builder settings = WsProjectResponse.Settings.newBuilder();
+    settings.getMutableSettings().put("sonar.jira.project.key", "SONAR");
+    WsProjectResponse.Builder response = WsProjectResponse.newBuilder().setEtag(etag);
+    response.getMutableSettingsByModule().put(PROJECT_KEY, settings.build());
+    return new ByteArrayInputStream(response.build().toByteArray());
+  }
+
   private InputStream getTestResource(String name) throws IOException {
     return Resources.asByteSource(this.getClass().getResource(this.getClass().getSimpleName() + "/" + name))
       .openBufferedStream();
@@ -19,32 +19,53 @@
  */
 package org.sonar.batch.repository;
 
-import org.sonar.batch.WsTestUtil;
-import org.sonar.batch.bootstrap.BatchWsClient;
-import org.sonar.scanner.protocol.input.ScannerInput;
-import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import com.google.common.base.Function;
-import org.junit.Before;
-import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.api.utils.System2;
+import org.sonar.batch.WsTestUtil;
+import org.sonar.batch.bootstrap.BatchWsClient;
+import org.sonar.batch.bootstrap.GlobalProperties;
+import org.sonar.batch.util.BatchUtils;
+import org.sonar.home.cache.FileCache;
+import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class DefaultServerIssuesLoaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DefaultServerIssuesLoader loader;
   private BatchWsClient wsClient;
+  private System2 system = mock(System2.class);
+  // local files are dated by the file system
+  private long now = System.currentTimeMillis();
 
   @Before
-  public void prepare() {
+  public void prepare() throws IOException {
     wsClient = mock(BatchWsClient.class);
-    loader = new DefaultServerIssuesLoader(wsClient);
+    when(wsClient.baseUrl()).thenReturn("http://localhost:9000");
+    FileCache fileCache = mock(FileCache.class);
+    when(fileCache.getDir()).thenReturn(temp.newFolder("cache"));
+    when(system.now()).thenReturn(now);
+    loader = new DefaultServerIssuesLoader(wsClient, fileCache, new GlobalProperties(ImmutableMap.of("sonar.login", "john")), system);
   }
 
   @Test
@@ -59,17 +80,47 @@ public class DefaultServerIssuesLoaderTest {
     InputStream is = new ByteArrayInputStream(bos.toByteArray());
     WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", is);
 
-    final List<ServerIssue> result = new ArrayList<>();
-    loader.load("foo", new Function<ScannerInput.ServerIssue, Void>() {
+    assertThat(load("foo")).extracting("key").containsExactly("ab1", "ab2");
+  }
 
-      @Override
-      public Void apply(ServerIssue input) {
-        result.add(input);
-        return null;
-      }
-    });
+  @Test
+  public void load_only_issues_updated_since_previous_load() throws Exception {
+    long updateDate = now - 10_000L;
+    mockIssues("/batch/issues.protobuf?key=foo",
+      issue("ab1", Issue.STATUS_OPEN, updateDate),
+      issue("ab2", Issue.STATUS_OPEN, updateDate - 1L),
+      issue("ab3", Issue.STATUS_CONFIRMED, updateDate - 2L));
+    assertThat(load("foo")).extracting("key").containsExactly("ab1", "ab2", "ab3");
+
+    String since = BatchUtils.encodeForUrl(DateUtils.formatDateTime(updateDate - DefaultServerIssuesLoader.SYNC_OVERLAP_MS));
+    mockIssues("/batch/issues.protobuf?key=foo&since=" + since,
+      issue("ab2", Issue.STATUS_CLOSED, now - 5_000L),
+      issue("ab3", Issue.STATUS_RESOLVED, now - 5_000L),
+      issue("ab4", Issue.STATUS_OPEN, now - 4_000L));
+    List<ServerIssue> issues = load("foo");
 
-    assertThat(result).extracting("key").containsExactly("ab1", "ab2");
+    assertThat(issues).extracting("key").containsExactly("ab1", "ab3", "ab4");
+    assertThat(issues).extracting("status").containsExactly(Issue.STATUS_OPEN, Issue.STATUS_RESOLVED, Issue.STATUS_OPEN);
+  }
+
+  @Test
+  public void reload_all_issues_if_local_issues_are_too_old() throws Exception {
+    mockIssues("/batch/issues.protobuf?key=foo", issue("ab1", Issue.STATUS_OPEN, now - 10_000L));
+    assertThat(load("foo")).extracting("key").containsExactly("ab1");
+
+    when(system.now()).thenReturn(now + DefaultServerIssuesLoader.MAX_AGE_OF_LOCAL_ISSUES_MS + 60_000L);
+    mockIssues("/batch/issues.protobuf?key=foo", issue("ab2", Issue.STATUS_OPEN, now));
+
+    assertThat(load("foo")).extracting("key").containsExactly("ab2");
+  }
+
+  @Test
+  public void local_issues_are_kept_by_component() throws Exception {
+    mockIssues("/batch/issues.protobuf?key=foo", issue("ab1", Issue.STATUS_OPEN, now - 10_000L));
+    assertThat(load("foo")).extracting("key").containsExactly("ab1");
+
+    mockIssues("/batch/issues.protobuf?key=bar", issue("ab2", Issue.STATUS_OPEN, now - 10_000L));
+    assertThat(load("bar")).extracting("key").containsExactly("ab2");
   }
 
   @Test(expected = IllegalStateException.class)
@@ -79,4 +130,28 @@ public class DefaultServerIssuesLoaderTest {
     WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", is);
     loader.load("foo", mock(Function.class));
   }
+
+  private List<ServerIssue> load(String componentKey) {
+    final List<ServerIssue> result = new ArrayList<>();
+    loader.load(componentKey, new Function<ScannerInput.ServerIssue, Void>() {
+      @Override
+      public Void apply(ServerIssue input) {
+        result.add(input);
+        return null;
+      }
+    });
+    return result;
+  }
+
+  private void mockIssues(String path, ServerIssue... issues) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for (ServerIssue issue : issues) {
+      issue.writeDelimitedTo(bos);
+    }
+    WsTestUtil.mockStream(wsClient, path, new ByteArrayInputStream(bos.toByteArray()));
+  }
+
+  private static ServerIssue issue(String key, String status, long updateDate) {
+    return ServerIssue.newBuilder().setKey(key).setStatus(status).setUpdateDate(updateDate).build();
+  }
 }
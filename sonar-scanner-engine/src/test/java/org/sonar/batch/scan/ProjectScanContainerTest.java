@@ -19,13 +19,24 @@
  */
 package org.sonar.batch.scan;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.ServerExtension;
 import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.resources.Project;
 import org.sonar.api.task.TaskExtension;
+import org.sonar.batch.analysis.AnalysisProperties;
+import org.sonar.core.platform.ComponentContainer;
 
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class ProjectScanContainerTest {
 
@@ -44,6 +55,135 @@ public class ProjectScanContainerTest {
     assertThat(filter.accept(MyTaskExtension.class)).isFalse();
   }
 
+  @Test
+  public void scan_sibling_modules_concurrently_and_sub_modules_before_their_parent() {
+    final Project root = new Project("root");
+    final Project moduleA = new Project("moduleA").setParent(root);
+    final Project moduleB = new Project("moduleB").setParent(root);
+    final Project moduleB1 = new Project("moduleB1").setParent(moduleB);
+    final Project moduleB2 = new Project("moduleB2").setParent(moduleB);
+    final List<Project> scannedModules = Collections.synchronizedList(new ArrayList<Project>());
+    final CountDownLatch siblingsStarted = new CountDownLatch(2);
+    final AtomicBoolean concurrent = new AtomicBoolean(true);
+    ProjectScanContainer container = new ProjectScanContainer(new ComponentContainer(), new AnalysisProperties(Collections.<String, String>emptyMap())) {
+      @Override
+      void scan(Project module) {
+        if (module == moduleB1 || module == moduleB2) {
+          siblingsStarted.countDown();
+          // fails if the other sibling is not scanned at the same time
+          try {
+            if (!siblingsStarted.await(10, TimeUnit.SECONDS)) {
+              concurrent.set(false);
+            }
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+        scannedModules.add(module);
+      }
+    };
+
+    container.scanConcurrently(root, 2);
+
+    assertThat(concurrent.get()).isTrue();
+    assertThat(scannedModules).hasSize(5);
+    assertThat(scannedModules.get(4)).isSameAs(root);
+    assertThat(scannedModules).contains(moduleA);
+    assertThat(scannedModules.indexOf(moduleB)).isGreaterThan(scannedModules.indexOf(moduleB1));
+    assertThat(scannedModules.indexOf(moduleB)).isGreaterThan(scannedModules.indexOf(moduleB2));
+  }
+
+  @Test
+  public void fail_when_scan_of_module_fails() {
+    final Project root = new Project("root");
+    final Project moduleA = new Project("moduleA").setParent(root);
+    new Project("moduleB").setParent(root);
+    final List<Project> scannedModules = Collections.synchronizedList(new ArrayList<Project>());
+    ProjectScanContainer container = new ProjectScanContainer(new ComponentContainer(), new AnalysisProperties(Collections.<String, String>emptyMap())) {
+      @Override
+      void scan(Project module) {
+        if (module == moduleA) {
+          throw new IllegalStateException("Scan failure");
+        }
+        scannedModules.add(module);
+      }
+    };
+
+    try {
+      container.scanConcurrently(root, 2);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Scan failure");
+    }
+    assertThat(scannedModules).doesNotContain(root);
+  }
+
+  @Test
+  public void wait_for_scans_in_progress_to_stop_when_scan_of_module_fails() {
+    final Project root = new Project("root");
+    final Project moduleA = new Project("moduleA").setParent(root);
+    final Project moduleB = new Project("moduleB").setParent(root);
+    final CountDownLatch moduleBStarted = new CountDownLatch(1);
+    final AtomicBoolean moduleBStopped = new AtomicBoolean(false);
+    ProjectScanContainer container = new ProjectScanContainer(new ComponentContainer(), new AnalysisProperties(Collections.<String, String>emptyMap())) {
+      @Override
+      void scan(Project module) {
+        try {
+          if (module == moduleA) {
+            moduleBStarted.await(10, TimeUnit.SECONDS);
+            throw new IllegalStateException("Scan failure");
+          }
+          if (module == moduleB) {
+            moduleBStarted.countDown();
+            stopWhenInterrupted();
+            moduleBStopped.set(true);
+          }
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      private void stopWhenInterrupted() {
+        try {
+          Thread.sleep(10_000L);
+        } catch (InterruptedException e) {
+          // time to release resources
+          sleepUninterruptibly(200L, TimeUnit.MILLISECONDS);
+        }
+      }
+    };
+
+    try {
+      container.scanConcurrently(root, 2);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Scan failure");
+    }
+    assertThat(moduleBStopped.get()).isTrue();
+  }
+
+  @Test
+  public void rethrow_error_raised_by_scan_of_module() {
+    final Project root = new Project("root");
+    final Project moduleA = new Project("moduleA").setParent(root);
+    final Error error = new OutOfMemoryError();
+    ProjectScanContainer container = new ProjectScanContainer(new ComponentContainer(), new AnalysisProperties(Collections.<String, String>emptyMap())) {
+      @Override
+      void scan(Project module) {
+        if (module == moduleA) {
+          throw error;
+        }
+      }
+    };
+
+    try {
+      container.scanConcurrently(root, 2);
+      fail();
+    } catch (OutOfMemoryError e) {
+      assertThat(e).isSameAs(error);
+    }
+  }
+
   @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
   static class MyBatchExtension implements BatchExtension {
 
@@ -38,6 +38,7 @@ public class ProjectRepositories {
   private Map<String, Map<String, String>> settingsByModule = new HashMap<>();
   private Map<String, Map<String, FileData>> fileDataByModuleAndPath = new HashMap<>();
   private Date lastAnalysisDate;
+  private String etag;
 
   public Map<String, String> settings(String moduleKey) {
     return settingsByModule.containsKey(moduleKey) ? settingsByModule.get(moduleKey) : Collections.<String, String>emptyMap();
@@ -105,6 +106,18 @@ public class ProjectRepositories {
     this.lastAnalysisDate = lastAnalysisDate;
   }
 
+  /**
+   * Identifier of the content, which changes when settings, modules or files (as of the last analysis) change
+   */
+  @CheckForNull
+  public String etag() {
+    return etag;
+  }
+
+  public void setETag(@Nullable String etag) {
+    this.etag = etag;
+  }
+
   public String toJson() {
     return GsonHelper.create().toJson(this);
   }
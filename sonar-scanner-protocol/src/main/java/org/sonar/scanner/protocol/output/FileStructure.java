@@ -22,7 +22,7 @@ package org.sonar.scanner.protocol.output;
 import java.io.File;
 
 /**
- * Structure of files in the zipped report
+ * Structure of files in the report directory. The same names are used for the entries of {@link ReportStream}.
  */
 public class FileStructure {
 
@@ -50,6 +50,10 @@ public class FileStructure {
     }
   }
 
+  static final String METADATA_FILENAME = "metadata.pb";
+  static final String ANALYSIS_LOG_FILENAME = "analysis.log";
+  static final String ACTIVE_RULES_FILENAME = "activerules.pb";
+
   private final File dir;
 
   public FileStructure(File dir) {
@@ -60,19 +64,27 @@ public class FileStructure {
   }
 
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, METADATA_FILENAME);
   }
 
   public File analysisLog() {
-    return new File(dir, "analysis.log");
+    return new File(dir, ANALYSIS_LOG_FILENAME);
   }
 
   public File activeRules() {
-    return new File(dir, "activerules.pb");
+    return new File(dir, ACTIVE_RULES_FILENAME);
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
+    return file(fileNameFor(domain, componentRef));
+  }
+
+  File file(String fileName) {
+    return new File(dir, fileName);
+  }
+
+  static String fileNameFor(Domain domain, int componentRef) {
+    return domain.filePrefix + componentRef + domain.fileSuffix;
   }
 
 }
@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stream over a region of a file mapped in memory. Bytes are read from the page cache through the mapping,
+ * without system calls nor intermediate buffers.
+ * <p>
+ * The mapping is released when the stream is closed, so that the file can be deleted right away (Windows does not
+ * allow to delete a file which is mapped). If the JVM does not allow it, the mapping is released when the stream is
+ * garbage collected.
+ * </p>
+ */
+final class MappedInputStream extends InputStream {
+
+  private MappedByteBuffer buffer;
+
+  private MappedInputStream(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  static MappedInputStream map(File file) throws IOException {
+    return map(file, 0L, file.length());
+  }
+
+  static MappedInputStream map(File file, long offset, long length) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // the mapping remains valid once the channel is closed
+      return new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    checkNotClosed();
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    checkNotClosed();
+    if (length == 0) {
+      return 0;
+    }
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    int count = Math.min(length, buffer.remaining());
+    buffer.get(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    checkNotClosed();
+    if (n <= 0L) {
+      return 0L;
+    }
+    int count = (int) Math.min(n, buffer.remaining());
+    buffer.position(buffer.position() + count);
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException {
+    checkNotClosed();
+    return buffer.remaining();
+  }
+
+  @Override
+  public void close() {
+    if (buffer != null) {
+      unmap(buffer);
+      // the buffer must not be read anymore, memory is not mapped
+      buffer = null;
+    }
+  }
+
+  private void checkNotClosed() throws IOException {
+    if (buffer == null) {
+      throw new IOException("Stream is closed");
+    }
+  }
+
+  /**
+   * Calls the cleaner of the buffer, which is not part of the public API of the JDK.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (Exception e) {
+      // mapping is released when the buffer is garbage collected
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+
+/**
+ * Analysis report serialized as a single stream, so that it can be sent to the server while being produced and
+ * read by the server without extracting it first.
+ * <p>
+ * The stream starts with the bytes {@code SQRS}, a version byte and a flags byte (see {@link #COMPRESSED}). It
+ * is followed by the entries of the report, each one made of its name (see {@link DataOutputStream#writeUTF(String)}),
+ * the length of its data (see {@link DataOutputStream#writeLong(long)}) and its data. When the stream is compressed,
+ * the data of each entry is compressed independently with LZ4, so that any entry can be read without reading the
+ * previous ones.
+ * </p>
+ * <p>
+ * Entries have the names of the files of the report directory (see {@link FileStructure}). Instances are
+ * thread-safe.
+ * </p>
+ */
+public final class ReportStream {
+
+  private static final byte[] MAGIC = {'S', 'Q', 'R', 'S'};
+  private static final byte VERSION = 1;
+  private static final byte COMPRESSED = 1;
+
+  private final File file;
+  private final boolean compressed;
+  private final Map<String, Entry> entriesByName;
+
+  private ReportStream(File file, boolean compressed, Map<String, Entry> entriesByName) {
+    this.file = file;
+    this.compressed = compressed;
+    this.entriesByName = entriesByName;
+  }
+
+  /**
+   * Writes the files of the report directory to {@code output}, which is not closed.
+   */
+  public static void write(File reportDir, OutputStream output, boolean compress) throws IOException {
+    DataOutputStream dataOutput = new DataOutputStream(output);
+    dataOutput.write(MAGIC);
+    dataOutput.writeByte(VERSION);
+    dataOutput.writeByte(compress ? COMPRESSED : 0);
+
+    File[] files = reportDir.listFiles();
+    if (files == null) {
+      throw new IllegalStateException("Directory of analysis report does not exist: " + reportDir);
+    }
+    Arrays.sort(files);
+    // buffer of the compressed data of an entry, as its length must be written first
+    ByteArrayOutputStream compressedData = new ByteArrayOutputStream();
+    for (File file : files) {
+      if (!file.isFile()) {
+        continue;
+      }
+      dataOutput.writeUTF(file.getName());
+      if (compress) {
+        compressedData.reset();
+        try (LZ4BlockOutputStream lz4Output = new LZ4BlockOutputStream(compressedData)) {
+          FileUtils.copyFile(file, lz4Output);
+        }
+        dataOutput.writeLong(compressedData.size());
+        compressedData.writeTo(dataOutput);
+      } else {
+        dataOutput.writeLong(file.length());
+        FileUtils.copyFile(file, dataOutput);
+      }
+    }
+    dataOutput.flush();
+  }
+
+  /**
+   * Whether {@code file} is a report stream, rather than for example a zip of the report directory
+   */
+  public static boolean isReportStream(File file) {
+    if (!file.isFile()) {
+      return false;
+    }
+    try (InputStream input = new FileInputStream(file)) {
+      byte[] magic = new byte[MAGIC.length];
+      return IOUtils.read(input, magic) == MAGIC.length && Arrays.equals(magic, MAGIC);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read file " + file, e);
+    }
+  }
+
+  /**
+   * Reads the names and positions of the entries of the report stream. The data of the entries is not read.
+   */
+  public static ReportStream open(File file) {
+    try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+      DataInputStream input = new DataInputStream(counter)) {
+      byte[] magic = new byte[MAGIC.length];
+      input.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IllegalStateException("File is not an analysis report stream: " + file);
+      }
+      byte version = input.readByte();
+      if (version != VERSION) {
+        throw new IllegalStateException("Unsupported version of analysis report stream: " + version);
+      }
+      boolean compressed = (input.readByte() & COMPRESSED) != 0;
+
+      Map<String, Entry> entriesByName = new HashMap<>();
+      long fileLength = file.length();
+      while (counter.getByteCount() < fileLength) {
+        String name = input.readUTF();
+        long length = input.readLong();
+        long offset = counter.getByteCount();
+        if (offset + length > fileLength) {
+          throw new IllegalStateException("Analysis report stream is truncated: " + file);
+        }
+        entriesByName.put(name, new Entry(offset, length));
+        IOUtils.skipFully(input, length);
+      }
+      return new ReportStream(file, compressed, entriesByName);
+    } catch (EOFException e) {
+      throw new IllegalStateException("Analysis report stream is truncated: " + file, e);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read analysis report stream: " + file, e);
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public boolean isCompressed() {
+    return compressed;
+  }
+
+  public Set<String> getEntryNames() {
+    return entriesByName.keySet();
+  }
+
+  public boolean hasEntry(String name) {
+    return entriesByName.containsKey(name);
+  }
+
+  /**
+   * Opens the (uncompressed) data of the entry. The region of the file containing the entry is mapped in memory.
+   * The stream should be closed by the caller.
+   *
+   * @return null if the report has no entry with this name
+   */
+  @CheckForNull
+  public InputStream openEntry(String name) {
+    Entry entry = entriesByName.get(name);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      InputStream data = MappedInputStream.map(file, entry.offset, entry.length);
+      if (compressed) {
+        return new LZ4BlockInputStream(data);
+      }
+      return data;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read entry " + name + " of analysis report stream: " + file, e);
+    }
+  }
+
+  private static final class Entry {
+    private final long offset;
+    private final long length;
+
+    private Entry(long offset, long length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
@@ -19,154 +19,232 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads an analysis report, either from the report directory or from a file produced by {@link ReportStream}.
+ * The latter is read in place, without being extracted.
+ * <p>
+ * Files are mapped in memory and messages are parsed from the mapping. Streams of delimited messages are
+ * parsed one message at a time, while being iterated.
+ * </p>
+ */
 public class ScannerReportReader {
 
+  @CheckForNull
   private final FileStructure fileStructure;
-
-  public ScannerReportReader(File dir) {
-    this.fileStructure = new FileStructure(dir);
+  @CheckForNull
+  private final ReportStream reportStream;
+
+  /**
+   * @param report the report directory or a {@link ReportStream} file
+   */
+  public ScannerReportReader(File report) {
+    if (report.isFile()) {
+      this.fileStructure = null;
+      this.reportStream = ReportStream.open(report);
+    } else {
+      this.fileStructure = new FileStructure(report);
+      this.reportStream = null;
+    }
   }
 
   public ScannerReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    ScannerReport.Metadata metadata = read(FileStructure.METADATA_FILENAME, ScannerReport.Metadata.parser());
+    if (metadata == null) {
+      throw new IllegalStateException("Metadata file is missing in analysis report: " + location(FileStructure.METADATA_FILENAME));
     }
-    return Protobuf.read(file, ScannerReport.Metadata.parser());
+    return metadata;
   }
 
   public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
-    File file = fileStructure.activeRules();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
-    }
-    return Protobuf.readStream(file, ScannerReport.ActiveRule.parser());
+    return readStream(FileStructure.ACTIVE_RULES_FILENAME, ScannerReport.ActiveRule.parser());
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.fileNameFor(FileStructure.Domain.MEASURES, componentRef), ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
-    }
-    return null;
+    return read(FileStructure.fileNameFor(FileStructure.Domain.CHANGESETS, componentRef), ScannerReport.Changesets.parser());
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    String fileName = FileStructure.fileNameFor(FileStructure.Domain.COMPONENT, componentRef);
+    ScannerReport.Component component = read(fileName, ScannerReport.Component.parser());
+    if (component == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + location(fileName));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return component;
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.fileNameFor(FileStructure.Domain.ISSUES, componentRef), ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.fileNameFor(FileStructure.Domain.DUPLICATIONS, componentRef), ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.fileNameFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef), ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.fileNameFor(FileStructure.Domain.SYMBOLS, componentRef), ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return exists(FileStructure.fileNameFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef));
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.fileNameFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef), ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return exists(FileStructure.fileNameFor(FileStructure.Domain.COVERAGES, componentRef));
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.fileNameFor(FileStructure.Domain.COVERAGES, fileRef), ScannerReport.LineCoverage.parser());
   }
 
+  /**
+   * Only supported when reading the report directory. See {@link #openFileSource(int)}.
+   */
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return fileIfExists(FileStructure.Domain.SOURCE, fileRef);
   }
 
+  /**
+   * Only supported when reading the report directory. See {@link #openTests(int)}.
+   */
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
-    if (fileExists(file)) {
-      return file;
+    return fileIfExists(FileStructure.Domain.TESTS, testFileRef);
+  }
+
+  /**
+   * Only supported when reading the report directory. See {@link #openCoverageDetails(int)}.
+   */
+  @CheckForNull
+  public File readCoverageDetails(int testFileRef) {
+    return fileIfExists(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  }
+
+  /**
+   * The stream must be closed by the caller.
+   *
+   * @return null if the report does not contain the source of the file
+   */
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return open(FileStructure.fileNameFor(FileStructure.Domain.SOURCE, fileRef));
+  }
+
+  /**
+   * The stream, made of delimited {@link ScannerReport.Test} messages, must be closed by the caller.
+   *
+   * @return null if the report does not contain tests for the file
+   */
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return open(FileStructure.fileNameFor(FileStructure.Domain.TESTS, testFileRef));
+  }
+
+  /**
+   * The stream, made of delimited {@link ScannerReport.CoverageDetail} messages, must be closed by the caller.
+   *
+   * @return null if the report does not contain coverage details for the file
+   */
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return open(FileStructure.fileNameFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef));
+  }
+
+  /**
+   * The stream must be closed by the caller.
+   *
+   * @return null if the report does not contain the analysis log
+   */
+  @CheckForNull
+  public InputStream openAnalysisLog() {
+    return open(FileStructure.ANALYSIS_LOG_FILENAME);
+  }
+
+  /**
+   * Only supported when reading the report directory.
+   */
+  public FileStructure getFileStructure() {
+    if (fileStructure == null) {
+      throw new IllegalStateException("Analysis report is not a directory: " + reportStream.getFile());
     }
+    return fileStructure;
+  }
 
-    return null;
+  @CheckForNull
+  private <MSG extends Message> MSG read(String fileName, Parser<MSG> parser) {
+    InputStream input = open(fileName);
+    return input == null ? null : Protobuf.read(input, parser);
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readStream(String fileName, Parser<MSG> parser) {
+    InputStream input = open(fileName);
+    return input == null ? emptyCloseableIterator() : Protobuf.readStream(input, parser);
   }
 
   @CheckForNull
-  public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  private InputStream open(String fileName) {
+    if (reportStream != null) {
+      return reportStream.openEntry(fileName);
+    }
+    File file = fileStructure.file(fileName);
+    if (!fileExists(file)) {
+      return null;
+    }
+    try {
+      return MappedInputStream.map(file);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read file " + file, e);
+    }
+  }
+
+  private boolean exists(String fileName) {
+    if (reportStream != null) {
+      return reportStream.hasEntry(fileName);
+    }
+    return fileExists(fileStructure.file(fileName));
+  }
+
+  @CheckForNull
+  private File fileIfExists(FileStructure.Domain domain, int componentRef) {
+    File file = getFileStructure().fileFor(domain, componentRef);
     if (fileExists(file)) {
       return file;
     }
-
     return null;
   }
 
-  private static boolean fileExists(File file) {
-    return file.exists() && file.isFile();
+  private String location(String fileName) {
+    if (reportStream != null) {
+      return fileName + " in " + reportStream.getFile();
+    }
+    return fileStructure.file(fileName).toString();
   }
 
-  public FileStructure getFileStructure() {
-    return fileStructure;
+  private static boolean fileExists(File file) {
+    return file.exists() && file.isFile();
   }
 }
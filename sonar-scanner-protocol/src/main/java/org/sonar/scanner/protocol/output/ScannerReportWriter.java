@@ -22,18 +22,25 @@ package org.sonar.scanner.protocol.output;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
+/**
+ * Each component is written in its own files, so that different components can be written concurrently,
+ * for example when modules are scanned concurrently. Data of a given component must not be written concurrently.
+ */
 public class ScannerReportWriter {
 
+  private final File dir;
   private final FileStructure fileStructure;
 
   public ScannerReportWriter(File dir) {
     if (!dir.exists() && !dir.mkdirs()) {
       throw new IllegalStateException("Unable to create directory: " + dir);
     }
+    this.dir = dir;
     this.fileStructure = new FileStructure(dir);
   }
 
@@ -138,4 +145,11 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Writes all the files of the report to {@code output} as a {@link ReportStream}. The output is not closed.
+   */
+  public void writeStream(OutputStream output, boolean compress) throws IOException {
+    ReportStream.write(dir, output, compress);
+  }
+
 }
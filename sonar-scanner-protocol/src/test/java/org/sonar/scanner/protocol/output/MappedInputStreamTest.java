@@ -0,0 +1,103 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedInputStreamTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void read_whole_file() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "0123456789", UTF_8);
+
+    try (InputStream input = MappedInputStream.map(file)) {
+      assertThat(input.available()).isEqualTo(10);
+      assertThat(input.read()).isEqualTo('0');
+      assertThat(input.skip(4L)).isEqualTo(4L);
+      assertThat(IOUtils.toString(input, UTF_8)).isEqualTo("56789");
+      assertThat(input.read()).isEqualTo(-1);
+      assertThat(input.read(new byte[2], 0, 2)).isEqualTo(-1);
+      assertThat(input.skip(10L)).isEqualTo(0L);
+    }
+  }
+
+  @Test
+  public void read_region_of_file() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "0123456789", UTF_8);
+
+    try (InputStream input = MappedInputStream.map(file, 3L, 4L)) {
+      assertThat(IOUtils.toString(input, UTF_8)).isEqualTo("3456");
+    }
+  }
+
+  @Test
+  public void file_can_be_deleted_once_stream_is_closed() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "0123456789", UTF_8);
+
+    InputStream input = MappedInputStream.map(file);
+    assertThat(input.read()).isEqualTo('0');
+    input.close();
+    // closing twice has no effect
+    input.close();
+
+    assertThat(file.delete()).isTrue();
+  }
+
+  @Test
+  public void fail_to_read_closed_stream() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "0123456789", UTF_8);
+    InputStream input = MappedInputStream.map(file);
+    input.close();
+
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Stream is closed");
+
+    input.read();
+  }
+
+  @Test
+  public void read_empty_file() throws Exception {
+    File file = temp.newFile();
+
+    try (InputStream input = MappedInputStream.map(file)) {
+      assertThat(input.read()).isEqualTo(-1);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReportStreamTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File dir;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_A").setRootComponentRef(1).build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/Foo.java").build());
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("the message").build()));
+    FileUtils.write(writer.getSourceFile(1), "line1\nline2", UTF_8);
+  }
+
+  @Test
+  public void write_and_read_uncompressed_entries() throws Exception {
+    File file = writeStream(false);
+
+    ReportStream underTest = ReportStream.open(file);
+
+    assertThat(underTest.getFile()).isEqualTo(file);
+    assertThat(underTest.isCompressed()).isFalse();
+    verifyEntries(underTest);
+  }
+
+  @Test
+  public void write_and_read_compressed_entries() throws Exception {
+    File file = writeStream(true);
+
+    ReportStream underTest = ReportStream.open(file);
+
+    assertThat(underTest.isCompressed()).isTrue();
+    verifyEntries(underTest);
+  }
+
+  @Test
+  public void read_entries_with_report_reader() throws Exception {
+    ScannerReportReader reader = new ScannerReportReader(writeStream(true));
+
+    assertThat(reader.readMetadata().getProjectKey()).isEqualTo("PROJECT_A");
+    assertThat(reader.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+    assertThat(reader.readComponentIssues(1)).hasSize(1);
+    assertThat(reader.readComponentIssues(2)).isEmpty();
+    assertThat(reader.readChangesets(1)).isNull();
+    assertThat(reader.hasCoverage(1)).isFalse();
+    assertThat(reader.openTests(1)).isNull();
+    try (InputStream source = reader.openFileSource(1)) {
+      assertThat(IOUtils.readLines(source, UTF_8)).containsExactly("line1", "line2");
+    }
+  }
+
+  @Test
+  public void report_reader_fails_to_read_missing_component_of_stream() throws Exception {
+    ScannerReportReader reader = new ScannerReportReader(writeStream(false));
+
+    try {
+      reader.readComponent(2);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Unable to find report for component #2");
+    }
+  }
+
+  @Test
+  public void zip_is_not_a_report_stream() throws Exception {
+    File zip = temp.newFile();
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+      output.putNextEntry(new ZipEntry("metadata.pb"));
+      output.closeEntry();
+    }
+
+    assertThat(ReportStream.isReportStream(zip)).isFalse();
+    assertThat(ReportStream.isReportStream(dir)).isFalse();
+    assertThat(ReportStream.isReportStream(writeStream(true))).isTrue();
+  }
+
+  @Test
+  public void fail_to_open_truncated_stream() throws Exception {
+    File file = writeStream(false);
+    byte[] bytes = FileUtils.readFileToByteArray(file);
+    FileUtils.writeByteArrayToFile(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+    try {
+      ReportStream.open(file);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Analysis report stream is truncated");
+    }
+  }
+
+  @Test
+  public void fail_to_open_file_which_is_not_a_stream() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "not a report", UTF_8);
+
+    try {
+      ReportStream.open(file);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("File is not an analysis report stream");
+    }
+  }
+
+  private File writeStream(boolean compress) throws IOException {
+    File file = temp.newFile();
+    try (OutputStream output = new FileOutputStream(file)) {
+      new ScannerReportWriter(dir).writeStream(output, compress);
+    }
+    return file;
+  }
+
+  private static void verifyEntries(ReportStream underTest) throws IOException {
+    assertThat(underTest.getEntryNames()).containsOnly("metadata.pb", "component-1.pb", "issues-1.pb", "source-1.txt");
+    assertThat(underTest.hasEntry("source-1.txt")).isTrue();
+    assertThat(underTest.hasEntry("source-2.txt")).isFalse();
+    assertThat(underTest.openEntry("source-2.txt")).isNull();
+    try (InputStream input = underTest.openEntry("source-1.txt")) {
+      assertThat(IOUtils.toString(input, UTF_8)).isEqualTo("line1\nline2");
+    }
+    try (InputStream input = underTest.openEntry("component-1.pb")) {
+      assertThat(ScannerReport.Component.parser().parseFrom(input).getPath()).isEqualTo("src/Foo.java");
+    }
+  }
+}
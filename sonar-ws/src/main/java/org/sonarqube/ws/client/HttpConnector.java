@@ -38,6 +38,7 @@ import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLSocketFactory;
+import okio.BufferedSink;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -167,7 +168,7 @@ public class HttpConnector implements WsConnector {
         PostRequest.Part part = param.getValue();
         body.addPart(
           Headers.of("Content-Disposition", format("form-data; name=\"%s\"", param.getKey())),
-          RequestBody.create(MediaType.parse(part.getMediaType()), part.getFile()));
+          toRequestBody(part));
       }
       okRequestBuilder.post(body.build());
     }
@@ -175,6 +176,26 @@ public class HttpConnector implements WsConnector {
     return doCall(okRequestBuilder.build());
   }
 
+  private static RequestBody toRequestBody(PostRequest.Part part) {
+    final MediaType mediaType = MediaType.parse(part.getMediaType());
+    final PostRequest.ContentWriter contentWriter = part.getContentWriter();
+    if (contentWriter == null) {
+      return RequestBody.create(mediaType, part.getFile());
+    }
+    // content length is unknown, so the part is sent with chunked transfer encoding
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return mediaType;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        contentWriter.writeTo(sink.outputStream());
+      }
+    };
+  }
+
   private HttpUrl.Builder prepareUrlBuilder(WsRequest wsRequest) {
     String path = wsRequest.getPath();
     HttpUrl.Builder urlBuilder = baseUrl
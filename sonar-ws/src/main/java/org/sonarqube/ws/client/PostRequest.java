@@ -20,8 +20,11 @@
 package org.sonarqube.ws.client;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 
 /**
  * @since 5.3
@@ -51,19 +54,54 @@ public class PostRequest extends BaseRequest<PostRequest> {
   public static class Part {
     private final String mediaType;
     private final File file;
+    private final ContentWriter contentWriter;
 
     public Part(String mediaType, File file) {
       this.mediaType = mediaType;
       this.file = file;
+      this.contentWriter = null;
+    }
+
+    /**
+     * Part whose content is written while the request is sent, without being stored in a file beforehand.
+     * @since 6.0
+     */
+    public Part(String mediaType, ContentWriter contentWriter) {
+      this.mediaType = mediaType;
+      this.file = null;
+      this.contentWriter = contentWriter;
     }
 
     public String getMediaType() {
       return mediaType;
     }
 
+    /**
+     * Null if the content of the part is written by {@link #getContentWriter()}
+     */
+    @CheckForNull
     public File getFile() {
       return file;
     }
+
+    /**
+     * Null if the content of the part is the file {@link #getFile()}
+     * @since 6.0
+     */
+    @CheckForNull
+    public ContentWriter getContentWriter() {
+      return contentWriter;
+    }
+  }
+
+  /**
+   * @since 6.0
+   */
+  public interface ContentWriter {
+    /**
+     * Writes the content of the part. The output stream must not be closed.
+     */
+    void writeTo(OutputStream output) throws IOException;
   }
 
 }
@@ -21,6 +21,7 @@ package org.sonarqube.ws.client;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -56,5 +57,23 @@ public class PostRequestTest {
     PostRequest.Part part = request.getParts().get("report");
     assertThat(part.getMediaType()).isEqualTo(MediaTypes.JSON);
     assertThat(part.getFile()).isSameAs(reportFile);
+    assertThat(part.getContentWriter()).isNull();
+  }
+
+  @Test
+  public void add_part_written_while_sending_request() {
+    PostRequest request = new PostRequest("api/issues/search");
+    PostRequest.ContentWriter contentWriter = new PostRequest.ContentWriter() {
+      @Override
+      public void writeTo(OutputStream output) throws IOException {
+        output.write(1);
+      }
+    };
+    request.setPart("report", new PostRequest.Part(MediaTypes.JSON, contentWriter));
+
+    PostRequest.Part part = request.getParts().get("report");
+    assertThat(part.getMediaType()).isEqualTo(MediaTypes.JSON);
+    assertThat(part.getContentWriter()).isSameAs(contentWriter);
+    assertThat(part.getFile()).isNull();
   }
 }